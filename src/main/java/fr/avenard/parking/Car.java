@@ -16,9 +16,9 @@ import lombok.Setter;
  */
 public class Car {
     /**
-     * License plate (should be a unique identifier)
+     * License plate, interned: it identifies the car
      */
-    private final String plate;
+    private final Plate plate;
     /**
      * The car type defines where it can park
      */
@@ -30,27 +30,73 @@ public class Car {
      */
     @Getter
     @Setter(value = AccessLevel.PROTECTED)
-    private LocalDateTime parkedAt;
+    private volatile LocalDateTime parkedAt;
     /**
      * The car departure time on a parking slot
      */
     @Getter
     @Setter(value = AccessLevel.PROTECTED)
-    private LocalDateTime leftAt;
+    private volatile LocalDateTime leftAt;
 
     /**
-     * Create a Car with both fields defined
+     * Create a Car with both fields defined, its plate interned by the {@link PlateRegistry#getDefault() default
+     * registry}
      *
      * @param plate
      *         a not empty string
      * @param type
      *         a non-null car type
      */
-    public Car(final String plate, @NonNull final CarType type) {
+    public Car(@NonNull final String plate, @NonNull final CarType type) {
+        this(PlateRegistry.getDefault().intern(plate), type);
+    }
+
+    /**
+     * Create a Car with an interned plate
+     *
+     * @param plate
+     *         a plate interned by a {@link PlateRegistry}
+     * @param type
+     *         a non-null car type
+     */
+    public Car(@NonNull final Plate plate, @NonNull final CarType type) {
         this.plate = plate;
         this.type = type;
     }
 
+    /**
+     * @return the license plate
+     */
+    public String getPlate() {
+        return this.plate.getText();
+    }
+
+    /**
+     * @return the compact id of the license plate in its registry
+     */
+    public int getPlateId() {
+        return this.plate.getId();
+    }
+
+    /**
+     * Cars are identified by their interned plate.
+     */
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        return this.plate == ((Car) o).plate;
+    }
+
+    @Override
+    public int hashCode() {
+        return this.plate.getId();
+    }
+
     @Override
     public String toString() {
         return "Car{" +
@@ -0,0 +1,23 @@
+package fr.avenard.parking;
+
+import fr.avenard.parking.exception.ParkingException;
+import lombok.NonNull;
+
+/**
+ * Check of the cars entering a {@link Parking}, whatever the gate: set it with {@link Parking#withEntryCheck}.
+ * It is called by the gate threads before any lock of the parking is taken, for the entries waiting for a slot too.
+ */
+@FunctionalInterface
+public interface EntryCheck {
+
+    /**
+     * Let the car enter the parking lot, or reject it.
+     *
+     * @param car
+     *         the car entering the parking lot
+     *
+     * @throws ParkingException
+     *         to reject the car, thrown to the caller of the entry
+     */
+    void check(@NonNull Car car) throws ParkingException;
+}
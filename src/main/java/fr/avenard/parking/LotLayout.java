@@ -0,0 +1,305 @@
+package fr.avenard.parking;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.validation.constraints.Positive;
+
+import fr.avenard.parking.exception.ParkingException;
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * Declarative layout of a parking lot: its zones, by floor, each with a slot type and a number of slots.
+ * A parking is built from a layout in one go (see {@link Parking#Parking(fr.avenard.parking.policy.PricingPolicy,
+ * LotLayout)}): the slot storage and the indexes are allocated at their final size, so that lots of hundreds of
+ * thousands of slots start in a few milliseconds.
+ * <p>
+ * The slots are indexed in the order the zones are declared. A layout is written to disk as a compact image, a few
+ * bytes per zone, with {@link #write(WritableByteChannel)} and read back with {@link #read(ReadableByteChannel)}.
+ * <p>
+ * Image format (big-endian):
+ * <pre>
+ * int   magic number "PKLY"
+ * short format version
+ * int   number of zones
+ * then for each zone, in index order:
+ * short floor length, followed by the UTF-8 floor bytes
+ * short zone name length, followed by the UTF-8 zone name bytes
+ * byte  car type ordinal
+ * int   number of slots
+ * </pre>
+ * Not thread-safe while being declared.
+ */
+public class LotLayout {
+    private static final int MAGIC = 0x504B4C59; // PKLY
+    private static final short VERSION = 1;
+    private static final int BUFFER_SIZE = 256 * 1024;
+    private static final int MAX_ZONE_SIZE = 2 * (Short.BYTES + 0xFFFF) + 1 + Integer.BYTES;
+
+    private final List<Zone> zones = new ArrayList<>();
+    private final Map<String, Set<String>> names = new HashMap<>(); // zone names by floor
+    /**
+     * Number of slots of the lot
+     */
+    @Getter
+    private int size;
+
+    /**
+     * Declare a zone of the lot, its slots are indexed after the slots of the zones already declared.
+     *
+     * @param floor
+     *         floor of the zone
+     * @param name
+     *         name of the zone, unique on its floor
+     * @param slotsType
+     *         a supported slot type
+     * @param numberOfSlots
+     *         strictly positive number of slots
+     *
+     * @return this to chain calls (fluent interface)
+     *
+     * @throws ParkingException
+     *         if the floor already has a zone with this name
+     */
+    public LotLayout withZone(@NonNull String floor, @NonNull String name, @NonNull CarType slotsType,
+            @Positive int numberOfSlots) throws ParkingException {
+        if (numberOfSlots <= 0) {
+            throw new IllegalArgumentException("The number of slots must be positive");
+        }
+        if (floor.getBytes(StandardCharsets.UTF_8).length > 0xFFFF
+                || name.getBytes(StandardCharsets.UTF_8).length > 0xFFFF) {
+            throw new IllegalArgumentException("Floor and zone names are limited to 65535 bytes");
+        }
+        final int size = Math.addExact(this.size, numberOfSlots);
+        if (!this.names.computeIfAbsent(floor, f -> new HashSet<>()).add(name)) {
+            throw new ParkingException("The floor " + floor + " already contains the zone " + name);
+        }
+        this.zones.add(new Zone(floor, name, slotsType, numberOfSlots, this.size));
+        this.size = size;
+        return this;
+    }
+
+    /**
+     * @return the zones, in index order
+     */
+    public List<Zone> getZones() {
+        return Collections.unmodifiableList(this.zones);
+    }
+
+    /**
+     * Returns how many slots of the layout match the provided type.
+     *
+     * @param slotsType
+     *         a supported {@link CarType}
+     *
+     * @return a positive number
+     */
+    public long totalSlots(@NonNull CarType slotsType) {
+        long total = 0;
+        for (Zone zone : this.zones) {
+            if (zone.slotType == slotsType) {
+                total += zone.slots;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Find the zone of a slot of a parking built from this layout.
+     *
+     * @param parkingSlot
+     *         a slot of the parking
+     *
+     * @return the zone of the slot
+     *
+     * @throws IllegalArgumentException
+     *         if the slot is not part of the layout
+     */
+    public Zone zoneOf(@NonNull ParkingSlot parkingSlot) {
+        final int index = parkingSlot.getIndex();
+        if (index < 0 || index >= this.size) {
+            throw new IllegalArgumentException("The slot " + index + " is not part of the layout");
+        }
+        // binary search of the last zone starting at or before the index
+        int low = 0;
+        int high = this.zones.size() - 1;
+        while (low < high) {
+            final int middle = (low + high + 1) >>> 1;
+            if (this.zones.get(middle).firstIndex <= index) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return this.zones.get(low);
+    }
+
+    /**
+     * Create the slots of the layout, in a single array.
+     *
+     * @return the slots, indexed by {@link ParkingSlot#getIndex()}
+     */
+    ParkingSlot[] createSlots() {
+        final ParkingSlot[] slots = new ParkingSlot[this.size];
+        for (Zone zone : this.zones) {
+            for (int index = zone.firstIndex, end = zone.firstIndex + zone.slots; index < end; index++) {
+                slots[index] = new ParkingSlot(zone.slotType, index);
+            }
+        }
+        return slots;
+    }
+
+    /**
+     * Write the image of the layout.
+     *
+     * @param channel
+     *         channel to write the image to, it is not closed
+     *
+     * @throws IOException
+     *         if the channel cannot be written
+     */
+    public void write(@NonNull WritableByteChannel channel) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        buffer.putInt(MAGIC).putShort(VERSION).putInt(this.zones.size());
+        for (Zone zone : this.zones) {
+            if (buffer.remaining() < MAX_ZONE_SIZE) {
+                flush(buffer, channel);
+            }
+            final byte[] floor = zone.floor.getBytes(StandardCharsets.UTF_8);
+            final byte[] name = zone.name.getBytes(StandardCharsets.UTF_8);
+            buffer.putShort((short) floor.length).put(floor)
+                    .putShort((short) name.length).put(name)
+                    .put((byte) zone.slotType.ordinal())
+                    .putInt(zone.slots);
+        }
+        flush(buffer, channel);
+    }
+
+    /**
+     * Read a layout image written by {@link #write(WritableByteChannel)}.
+     *
+     * @param channel
+     *         channel to read the image from, it is not closed
+     *
+     * @return the layout
+     *
+     * @throws IOException
+     *         if the channel cannot be read or the image is corrupted
+     */
+    public static LotLayout read(@NonNull ReadableByteChannel channel) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).flip();
+        fill(buffer, channel, Integer.BYTES + Short.BYTES + Integer.BYTES);
+        if (buffer.getInt() != MAGIC) {
+            throw new StreamCorruptedException("Not a lot layout");
+        }
+        final short version = buffer.getShort();
+        if (version != VERSION) {
+            throw new StreamCorruptedException("Unsupported lot layout version " + version);
+        }
+        final int numberOfZones = buffer.getInt();
+        if (numberOfZones < 0) {
+            throw new StreamCorruptedException("Invalid number of zones " + numberOfZones);
+        }
+
+        final CarType[] carTypes = CarType.values();
+        final LotLayout layout = new LotLayout();
+        for (int i = 0; i < numberOfZones; i++) {
+            final String floor = readString(buffer, channel);
+            final String name = readString(buffer, channel);
+            fill(buffer, channel, 1 + Integer.BYTES);
+            final int ordinal = buffer.get() & 0xFF;
+            if (ordinal >= carTypes.length) {
+                throw new StreamCorruptedException("Unknown car type " + ordinal);
+            }
+            final int numberOfSlots = buffer.getInt();
+            try {
+                layout.withZone(floor, name, carTypes[ordinal], numberOfSlots);
+            } catch (ParkingException | IllegalArgumentException | ArithmeticException e) {
+                throw new StreamCorruptedException("Invalid zone " + floor + "/" + name + ": " + e.getMessage());
+            }
+        }
+        return layout;
+    }
+
+    private static String readString(final ByteBuffer buffer, final ReadableByteChannel channel) throws IOException {
+        fill(buffer, channel, Short.BYTES);
+        final int length = buffer.getShort() & 0xFFFF;
+        fill(buffer, channel, length);
+        final byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Write the buffer content to the channel and clear it.
+     */
+    private static void flush(final ByteBuffer buffer, final WritableByteChannel channel) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Read from the channel until the buffer has at least the required number of bytes to get.
+     */
+    private static void fill(final ByteBuffer buffer, final ReadableByteChannel channel, final int required) throws
+            IOException {
+        if (buffer.remaining() >= required) {
+            return;
+        }
+        buffer.compact();
+        while (buffer.position() < required) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("Truncated lot layout");
+            }
+        }
+        buffer.flip();
+    }
+
+    /**
+     * A zone of the lot: contiguous slots of a single type on a floor.
+     */
+    @Getter
+    public static class Zone {
+        private final String floor;
+        private final String name;
+        private final CarType slotType;
+        /**
+         * Number of slots of the zone
+         */
+        private final int slots;
+        /**
+         * Index of the first slot of the zone
+         */
+        private final int firstIndex;
+
+        private Zone(final String floor, final String name, final CarType slotType, final int slots,
+                final int firstIndex) {
+            this.floor = floor;
+            this.name = name;
+            this.slotType = slotType;
+            this.slots = slots;
+            this.firstIndex = firstIndex;
+        }
+
+        @Override
+        public String toString() {
+            return this.floor + "/" + this.name;
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package fr.avenard.parking;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+
+import lombok.Getter;
+
+/**
+ * Immutable occupancy of the parking slots at a given event sequence, for dashboards and reporting.
+ * <p>
+ * The slots are split in chunks of {@value #CHUNK_SIZE}: a new snapshot copies only the chunks updated since the
+ * previous one and shares the others with it.
+ */
+public class OccupancySnapshot {
+    static final int CHUNK_SHIFT = 10;
+    static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+
+    /**
+     * Sequence of the last event included in the snapshot
+     */
+    @Getter
+    private final long sequence;
+    private final CarType[] slotTypes; // shared while no slot is added
+    private final LocalDateTime[][] chunks; // arrival time of the car parked on each slot, null if free
+    private final int[][] chunkOccupied; // occupied slots of each chunk, by slot type
+    private final int[] occupied; // by slot type
+
+    private OccupancySnapshot(final long sequence, final CarType[] slotTypes, final LocalDateTime[][] chunks,
+            final int[][] chunkOccupied) {
+        this.sequence = sequence;
+        this.slotTypes = slotTypes;
+        this.chunks = chunks;
+        this.chunkOccupied = chunkOccupied;
+        this.occupied = new int[CarType.values().length];
+        for (int[] counts : chunkOccupied) {
+            for (int type = 0; type < counts.length; type++) {
+                this.occupied[type] += counts[type];
+            }
+        }
+    }
+
+    /**
+     * Build the next snapshot, reading again only the chunks updated since the previous one.
+     *
+     * @param previous
+     *         the previous snapshot, null if none
+     * @param capture
+     *         capture opened with the chunks updated since the previous snapshot
+     *
+     * @return the snapshot at the capture sequence
+     */
+    static OccupancySnapshot refresh(final OccupancySnapshot previous, final SlotCapture capture) {
+        final ParkingSlot[] slots = capture.getSlots();
+        final long[] dirty = capture.getDirtyChunks();
+        final int numberOfChunks = (slots.length + CHUNK_SIZE - 1) >> CHUNK_SHIFT;
+
+        final CarType[] slotTypes;
+        final LocalDateTime[][] chunks;
+        final int[][] chunkOccupied;
+        if (previous != null && previous.slotTypes.length == slots.length) {
+            slotTypes = previous.slotTypes;
+            chunks = previous.chunks.clone();
+            chunkOccupied = previous.chunkOccupied.clone();
+        } else {
+            slotTypes = new CarType[slots.length];
+            for (int i = 0; i < slots.length; i++) {
+                slotTypes[i] = slots[i].getSlotType();
+            }
+            chunks = previous == null ? new LocalDateTime[numberOfChunks][] : Arrays.copyOf(previous.chunks,
+                    numberOfChunks);
+            chunkOccupied = previous == null ? new int[numberOfChunks][] : Arrays.copyOf(previous.chunkOccupied,
+                    numberOfChunks);
+        }
+
+        for (int chunk = 0; chunk < numberOfChunks; chunk++) {
+            final int from = chunk << CHUNK_SHIFT;
+            final int to = Math.min(from + CHUNK_SIZE, slots.length);
+            if (chunks[chunk] == null || chunks[chunk].length != to - from || isDirty(dirty, chunk)) {
+                final LocalDateTime[] parkedAt = new LocalDateTime[to - from];
+                final int[] counts = new int[CarType.values().length];
+                for (int i = from; i < to; i++) {
+                    parkedAt[i - from] = capture.parkedAtOf(slots[i]);
+                    if (parkedAt[i - from] != null) {
+                        counts[slotTypes[i].ordinal()]++;
+                    }
+                }
+                chunks[chunk] = parkedAt;
+                chunkOccupied[chunk] = counts;
+            }
+        }
+        return new OccupancySnapshot(capture.getSequence(), slotTypes, chunks, chunkOccupied);
+    }
+
+    /**
+     * Get the number of longs of a bitmap with a bit per chunk.
+     *
+     * @param numberOfSlots
+     *         number of slots of the parking
+     *
+     * @return the bitmap length
+     */
+    static int bitmapLength(final int numberOfSlots) {
+        return (((numberOfSlots + CHUNK_SIZE - 1) >> CHUNK_SHIFT) + 63) >> 6;
+    }
+
+    private static boolean isDirty(final long[] dirty, final int chunk) {
+        return dirty == null || (chunk >> 6) >= dirty.length || (dirty[chunk >> 6] & (1L << chunk)) != 0;
+    }
+
+    /**
+     * Get the number of slots of the parking
+     *
+     * @return the number of slots
+     */
+    public int size() {
+        return this.slotTypes.length;
+    }
+
+    /**
+     * Get the type of a slot
+     *
+     * @param index
+     *         index of the slot
+     *
+     * @return the slot type
+     */
+    public CarType getSlotType(final int index) {
+        return this.slotTypes[index];
+    }
+
+    /**
+     * Check if a car was parked on a slot
+     *
+     * @param index
+     *         index of the slot
+     *
+     * @return true if the slot was occupied
+     */
+    public boolean isOccupied(final int index) {
+        return this.getParkedAt(index) != null;
+    }
+
+    /**
+     * Get the arrival time of the car parked on a slot
+     *
+     * @param index
+     *         index of the slot
+     *
+     * @return the arrival time, null if the slot was free
+     */
+    public LocalDateTime getParkedAt(final int index) {
+        if (index < 0 || index >= this.slotTypes.length) {
+            throw new IndexOutOfBoundsException("No slot " + index + " in the parking");
+        }
+        return this.chunks[index >> CHUNK_SHIFT][index & (CHUNK_SIZE - 1)];
+    }
+
+    /**
+     * Get the number of occupied slots of a type
+     *
+     * @param carType
+     *         type of slot
+     *
+     * @return the number of occupied slots
+     */
+    public int occupiedSlots(final CarType carType) {
+        return this.occupied[carType.ordinal()];
+    }
+
+    /**
+     * Update a bitmap of the occupied slots, a bit per slot (bit {@code index & 63} of the long {@code index >> 6}),
+     * from the snapshot it was last updated from: only the chunks copied since that snapshot are read again, the
+     * bits of the shared chunks are kept.
+     *
+     * @param previous
+     *         the snapshot the bitmap was last updated from, null to read every chunk
+     * @param bitmap
+     *         the bitmap to update, null to allocate it
+     *
+     * @return the updated bitmap, a new one if the parking has new slots
+     */
+    public long[] updateBitmap(final OccupancySnapshot previous, final long[] bitmap) {
+        final int length = (this.slotTypes.length + 63) >> 6;
+        final boolean full = previous == null || bitmap == null || bitmap.length != length
+                || previous.slotTypes.length != this.slotTypes.length;
+        final long[] updated = full ? new long[length] : bitmap;
+        for (int chunk = 0; chunk < this.chunks.length; chunk++) {
+            if (!full && this.chunks[chunk] == previous.chunks[chunk]) {
+                continue; // not updated since
+            }
+            final LocalDateTime[] parkedAt = this.chunks[chunk];
+            final int first = chunk << (CHUNK_SHIFT - 6);
+            for (int word = 0; word < (parkedAt.length + 63) >> 6; word++) {
+                long bits = 0;
+                for (int bit = 0, i = word << 6; bit < 64 && i < parkedAt.length; bit++, i++) {
+                    if (parkedAt[i] != null) {
+                        bits |= 1L << bit;
+                    }
+                }
+                updated[first + word] = bits;
+            }
+        }
+        return updated;
+    }
+
+    /**
+     * Check if two snapshots share the chunk of a slot, i.e. it was not copied again
+     *
+     * @param other
+     *         another snapshot
+     * @param index
+     *         index of the slot
+     *
+     * @return true if the chunk is shared
+     */
+    boolean sharesChunk(final OccupancySnapshot other, final int index) {
+        return this.chunks[index >> CHUNK_SHIFT] == other.chunks[index >> CHUNK_SHIFT];
+    }
+}
@@ -0,0 +1,90 @@
+package fr.avenard.parking;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.Synchronized;
+
+/**
+ * Notify the cars parked for longer than a threshold, created with {@link Parking#watchOverstays}.
+ * <p>
+ * The parking sessions are indexed by arrival time. The watch remembers the last session it notified: each check
+ * only reads the sessions that crossed the threshold since the previous check, never the whole parking.
+ * Sessions restored with an arrival time older than the last notified one are not notified.
+ */
+public class OverstayWatch {
+    private final ConcurrentNavigableMap<SessionKey, Car> sessions;
+    private final Clock clock;
+    @Getter
+    private final Duration threshold;
+    private final Consumer<Car> callback;
+    private SessionKey lastNotified; // guarded by the lock
+
+    OverstayWatch(@NonNull final ConcurrentNavigableMap<SessionKey, Car> sessions, @NonNull final Clock clock,
+            @NonNull final Duration threshold, @NonNull final Consumer<Car> callback) {
+        this.sessions = sessions;
+        this.clock = clock;
+        this.threshold = threshold;
+        this.callback = callback;
+    }
+
+    /**
+     * Notify the cars that crossed the threshold since the last check, at the time of the parking clock.
+     *
+     * @return the number of notified cars
+     */
+    public int check() {
+        return this.check(LocalDateTime.now(this.clock));
+    }
+
+    /**
+     * Notify the cars that crossed the threshold at the provided time since the last check.
+     *
+     * @param now
+     *         the current time
+     *
+     * @return the number of notified cars
+     */
+    @Synchronized
+    public int check(@NonNull final LocalDateTime now) {
+        final SessionKey limit = new SessionKey(now.minus(this.threshold), -1);
+        if (this.lastNotified != null && this.lastNotified.compareTo(limit) >= 0) {
+            return 0; // nothing crossed the threshold since the last check
+        }
+        final ConcurrentNavigableMap<SessionKey, Car> crossed = this.lastNotified == null
+                ? this.sessions.headMap(limit)
+                : this.sessions.subMap(this.lastNotified, false, limit, false);
+
+        int notified = 0;
+        for (Map.Entry<SessionKey, Car> session : crossed.entrySet()) {
+            this.callback.accept(session.getValue());
+            this.lastNotified = session.getKey();
+            notified++;
+        }
+        return notified;
+    }
+
+    /**
+     * Check the overstays periodically.
+     *
+     * @param scheduler
+     *         the scheduler running the checks
+     * @param period
+     *         the time between two checks
+     *
+     * @return the scheduled checks, cancel it to stop watching
+     */
+    public ScheduledFuture<?> checkEvery(@NonNull final ScheduledExecutorService scheduler,
+            @NonNull final Duration period) {
+        return scheduler.scheduleAtFixedRate(this::check, 0, period.toNanos(), TimeUnit.NANOSECONDS);
+    }
+}
@@ -1,13 +1,38 @@
 package fr.avenard.parking;
 
+import java.io.IOException;
 import java.math.BigDecimal;
-import java.util.Objects;
-import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.function.Predicate;
-import java.util.stream.IntStream;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 import javax.validation.constraints.Positive;
 
+import fr.avenard.parking.event.ParkingEvent;
+import fr.avenard.parking.event.ParkingListener;
 import fr.avenard.parking.exception.CarNotFoundException;
 import fr.avenard.parking.exception.IncompatibleSlotException;
 import fr.avenard.parking.exception.NoCarParkedException;
@@ -15,7 +40,6 @@ import fr.avenard.parking.exception.ParkingException;
 import fr.avenard.parking.exception.SlotNotFoundException;
 import fr.avenard.parking.policy.PricingPolicy;
 import lombok.NonNull;
-import lombok.Synchronized;
 
 /**
  * Parking class that use a {@link PricingPolicy} implementation
@@ -25,12 +49,113 @@ import lombok.Synchronized;
  * {@code new Parking(PricingPolicy).withSlots(CarType.SEDAN, 3).withSlots(CarType.ELECTRIC_20KW, 6)}
  */
 public class Parking {
+    private static final CarType[] CAR_TYPES = CarType.values();
+
     private final PricingPolicy policy;
-    private final ConcurrentLinkedQueue<ParkingSlot> parkingSlots;
+    private final Clock clock; // time of the gates
+    private volatile ParkingSlot[] parkingSlots; // indexed by ParkingSlot#getIndex, copied when slots are added
+    private final Map<CarType, SlotPool> pools = new EnumMap<>(CarType.class); // the slots of each type, and their lock
+    private final List<ParkingListener> listeners = new CopyOnWriteArrayList<>();
+    private volatile EntryCheck entryCheck; // null to let every car enter
+    private final AtomicLong sequence; // sequence of the last published event
+    private final List<SlotCapture> captures = new CopyOnWriteArrayList<>(); // snapshots being written
+    private final ConcurrentNavigableMap<SessionKey, Car> sessions = new ConcurrentSkipListMap<>(); // by arrival
+    private final Map<Car, ParkingSlot> parkedCars; // by plate id
+    private final AtomicLongArray freeSlots = new AtomicLongArray(CAR_TYPES.length); // by slot type, pool lock held
+    private volatile AtomicLongArray dirtyChunks; // occupancy chunks updated since the last occupancy snapshot
+    private volatile OccupancySnapshot occupancy; // last occupancy snapshot
+    private final Object occupancyLock = new Object(); // a single reader refreshes the occupancy snapshot
 
     public Parking(PricingPolicy policy) {
+        this(policy, Clock.systemDefaultZone());
+    }
+
+    /**
+     * Create a parking reading the time of the gates from a clock, for instance a simulated clock to replay
+     * recorded events (see {@link fr.avenard.parking.replay.ReplayEngine}).
+     *
+     * @param policy
+     *         the parking pricing policy
+     * @param clock
+     *         the clock giving the arrival and departure times of the cars
+     */
+    public Parking(PricingPolicy policy, @NonNull Clock clock) {
+        this(policy, clock, new ParkingSlot[0], 0);
+    }
+
+    /**
+     * Create a parking with all the slots of a layout at once: the slots and the indexes are allocated at their final
+     * size, instead of growing with each {@link #withSlots(CarType, Integer)}. Use it to build large lots.
+     *
+     * @param policy
+     *         the parking pricing policy
+     * @param layout
+     *         the layout of the parking lot, for instance read from an image with {@link LotLayout#read}
+     */
+    public Parking(PricingPolicy policy, @NonNull LotLayout layout) {
+        this(policy, Clock.systemDefaultZone(), layout);
+    }
+
+    /**
+     * Create a parking with all the slots of a layout at once, reading the time of the gates from a clock.
+     *
+     * @param policy
+     *         the parking pricing policy
+     * @param clock
+     *         the clock giving the arrival and departure times of the cars
+     * @param layout
+     *         the layout of the parking lot
+     */
+    public Parking(PricingPolicy policy, @NonNull Clock clock, @NonNull LotLayout layout) {
+        this(policy, clock, layout.createSlots(), 0);
+    }
+
+    /**
+     * Create a parking with existing slots, as restored from a snapshot or created from a layout.
+     * The slots are dispatched to their pool in a single pass.
+     *
+     * @param policy
+     *         the parking pricing policy
+     * @param clock
+     *         the clock giving the arrival and departure times of the cars
+     * @param parkingSlots
+     *         slots indexed by {@link ParkingSlot#getIndex()}
+     * @param sequence
+     *         sequence of the last event published by the parking
+     */
+    private Parking(PricingPolicy policy, Clock clock, ParkingSlot[] parkingSlots, long sequence) {
         this.policy = policy;
-        this.parkingSlots = new ConcurrentLinkedQueue<>();
+        this.clock = clock;
+        this.parkingSlots = parkingSlots;
+        this.sequence = new AtomicLong(sequence);
+        this.dirtyChunks = new AtomicLongArray(OccupancySnapshot.bitmapLength(parkingSlots.length));
+        this.parkedCars = new ConcurrentHashMap<>(parkingSlots.length); // every slot may be taken
+
+        final int[] counts = new int[CAR_TYPES.length];
+        for (ParkingSlot parkingSlot : parkingSlots) {
+            counts[parkingSlot.getSlotType().ordinal()]++;
+        }
+        final ParkingSlot[][] poolSlots = new ParkingSlot[CAR_TYPES.length][];
+        for (CarType carType : CAR_TYPES) {
+            poolSlots[carType.ordinal()] = new ParkingSlot[counts[carType.ordinal()]];
+            this.pools.put(carType, new SlotPool(poolSlots[carType.ordinal()], sequence));
+        }
+        final int[] free = new int[CAR_TYPES.length];
+        Arrays.fill(counts, 0);
+        for (ParkingSlot parkingSlot : parkingSlots) {
+            final int ordinal = parkingSlot.getSlotType().ordinal();
+            poolSlots[ordinal][counts[ordinal]++] = parkingSlot;
+            if (parkingSlot.isFree()) {
+                free[ordinal]++;
+            } else {
+                this.sessions.put(new SessionKey(parkingSlot.getCar().getParkedAt(), parkingSlot.getIndex()),
+                        parkingSlot.getCar());
+                this.parkedCars.put(parkingSlot.getCar(), parkingSlot);
+            }
+        }
+        for (int ordinal = 0; ordinal < free.length; ordinal++) {
+            this.freeSlots.set(ordinal, free[ordinal]);
+        }
     }
 
     /**
@@ -46,13 +171,31 @@ public class Parking {
      */
     public Parking withSlots(@NonNull CarType slotsType, @NonNull @Positive Integer numberOfSlots) throws
             ParkingException {
-        // reject if the parking already has this slot type
-        if (this.parkingSlots.stream().anyMatch(parkingSlot -> parkingSlot.getSlotType().equals(slotsType))) {
+        final SlotPool pool = this.pools.get(slotsType);
+        final boolean added = this.inAllPools(0, () -> {
+            // reject if the parking already has this slot type
+            if (pool.slots.length > 0) {
+                return false;
+            }
+
+            // create the new parking slots, the slots of a type are contiguous
+            final ParkingSlot[] slots = Arrays.copyOf(this.parkingSlots, this.parkingSlots.length + numberOfSlots);
+            for (int index = this.parkingSlots.length; index < slots.length; index++) {
+                slots[index] = new ParkingSlot(slotsType, index);
+            }
+            final AtomicLongArray dirtyChunks = new AtomicLongArray(OccupancySnapshot.bitmapLength(slots.length));
+            for (int i = 0; i < this.dirtyChunks.length(); i++) {
+                dirtyChunks.set(i, this.dirtyChunks.get(i));
+            }
+            this.dirtyChunks = dirtyChunks;
+            pool.slots = Arrays.copyOfRange(slots, this.parkingSlots.length, slots.length);
+            this.parkingSlots = slots;
+            this.freeSlots.addAndGet(slotsType.ordinal(), numberOfSlots);
+            return true;
+        });
+        if (!added) {
             throw new ParkingException("This parking already contains " + slotsType + " slots");
         }
-
-        // create the new parking slots
-        IntStream.range(0, numberOfSlots).mapToObj(i -> new ParkingSlot(slotsType)).forEach(this.parkingSlots::add);
         return this;
     }
 
@@ -63,8 +206,8 @@ public class Parking {
      * It returns the parking slot where the car is parked. It's not mandatory to save this return object,
      * you can use either the {@link #leave(Car)} or the {@link #leave(ParkingSlot)} )} to leave the parking slot.
      * <p>
-     * This method uses {@link @Synchronized} to be safe with multi-threading.
-     * Only one car can enter the parking lot at the same time.
+     * This method locks the pool of slots of the car type to be safe with multi-threading.
+     * Only one car of a type can enter the parking lot at the same time, cars of other types do not wait.
      *
      * @param car
      *         car to store in the parking lot
@@ -74,24 +217,311 @@ public class Parking {
      * @throws SlotNotFoundException
      *         in case there is no slot available for the car
      * @throws ParkingException
-     *         in case the car is already parked in the parking lot
+     *         in case the car is already parked in the parking lot, its plate is longer than 65535 UTF-8 bytes, or
+     *         the {@link #withEntryCheck entry check} rejects it
      */
-    @Synchronized
     public ParkingSlot enter(@NonNull Car car) throws ParkingException {
-        // check car is not already parked
-        if (this.parkingSlots.stream().anyMatch(parkingSlot -> Objects.equals(parkingSlot.getCar(), car))) {
+        this.checkEntry(car);
+        final SlotPool pool = this.pools.get(car.getType());
+        synchronized (pool) {
+            checkNotParked(pool, car);
+
+            final ParkingSlot parkingSlot = pool.firstFree();
+            if (parkingSlot == null) {
+                throw new SlotNotFoundException("No Slot found for " + car);
+            }
+            this.park(parkingSlot, car);
+            return parkingSlot;
+        }
+    }
+
+    /**
+     * Allow a car to enter the parking lot, waiting at most the provided time for a slot to be freed.
+     * Waiting cars are served in arrival order (FIFO) per {@link CarType}: a slot freed with {@link #leave(ParkingSlot)}
+     * is handed directly to the first car waiting for this type, so it never goes back to the free slots.
+     * <p>
+     * Gate controllers should use this method instead of retrying {@link #enter(Car)} when the parking lot is full.
+     *
+     * @param car
+     *         car to store in the parking lot
+     * @param timeout
+     *         the maximum time to wait, zero or negative to not wait at all
+     * @param unit
+     *         the time unit of the timeout argument
+     *
+     * @return the parking slot where the car is parked
+     *
+     * @throws SlotNotFoundException
+     *         in case no slot was freed for the car before the timeout
+     * @throws ParkingException
+     *         in case the car is already parked or waiting in the parking lot, its plate is too long, or the entry
+     *         check rejects it
+     * @throws InterruptedException
+     *         if the current thread was interrupted while waiting
+     */
+    public ParkingSlot enter(@NonNull Car car, long timeout, @NonNull TimeUnit unit) throws ParkingException,
+            InterruptedException {
+        final WaitingCar waitingCar = this.requestSlot(car);
+        try {
+            return waitingCar.slot.get(timeout, unit);
+        } catch (TimeoutException e) {
+            if (this.stopWaiting(waitingCar)) {
+                throw new SlotNotFoundException("No Slot freed in time for " + car);
+            }
+            return waitingCar.slot.join(); // a slot was handed over just before the timeout
+        } catch (InterruptedException e) {
+            if (this.stopWaiting(waitingCar)) {
+                throw e;
+            }
+            Thread.currentThread().interrupt(); // keep the interruption status, the car is already parked
+            return waitingCar.slot.join();
+        } catch (ExecutionException e) {
+            throw (ParkingException) e.getCause(); // only parking exceptions complete the future exceptionally
+        }
+    }
+
+    /**
+     * Asynchronous variant of {@link #enter(Car, long, TimeUnit)}: the car waits in the FIFO queue of its
+     * {@link CarType} until a slot is freed for it.
+     * <p>
+     * The returned future is completed by the thread leaving the parking slot once it released the locks of the
+     * parking (by the common pool when the slot is left within a {@link #batch}), after the ENTER event of the car is
+     * published: its dependent stages can use the parking. Use the {@code *Async} methods of the future to run any
+     * time consuming task. Cancelling the future removes the car from the queue; a car whose slot was handed over
+     * just as the future was cancelled leaves the slot at once.
+     *
+     * @param car
+     *         car to store in the parking lot
+     *
+     * @return the parking slot where the car is parked, completed exceptionally with a {@link ParkingException}
+     * in case the car is already parked or there is no slot of its type in the parking lot
+     */
+    public CompletableFuture<ParkingSlot> enterAsync(@NonNull Car car) {
+        try {
+            return this.requestSlot(car).slot;
+        } catch (ParkingException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Park the car on a free slot if any, or add it to the queue of waiting cars.
+     *
+     * @param car
+     *         car to store in the parking lot
+     *
+     * @return the waiting car, with its slot already completed if a slot was free
+     *
+     * @throws ParkingException
+     *         in case the car is already parked or there is no slot of its type in the parking lot
+     */
+    private WaitingCar requestSlot(@NonNull Car car) throws ParkingException {
+        this.checkEntry(car);
+        final SlotPool pool = this.pools.get(car.getType());
+        synchronized (pool) {
+            checkNotParked(pool, car);
+
+            final WaitingCar waitingCar = new WaitingCar(car);
+            final ParkingSlot parkingSlot = pool.firstFree();
+            if (parkingSlot != null) {
+                this.park(parkingSlot, car);
+                waitingCar.slot.complete(parkingSlot);
+            } else if (pool.slots.length > 0) {
+                pool.waitingCars.add(waitingCar);
+                waitingCar.slot.whenComplete((slot, e) -> {
+                    if (waitingCar.slot.isCancelled()) {
+                        this.stopWaiting(waitingCar); // the car can enter again at once
+                    }
+                });
+            } else {
+                throw new SlotNotFoundException("No Slot found for " + car);
+            }
+            return waitingCar;
+        }
+    }
+
+    /**
+     * Check a car entering the parking lot, before any lock is taken.
+     *
+     * @param car
+     *         car to store in the parking lot
+     *
+     * @throws ParkingException
+     *         in case its plate is too long, or the entry check rejects the car
+     */
+    private void checkEntry(@NonNull Car car) throws ParkingException {
+        ParkingSnapshot.checkPlate(car);
+        final EntryCheck check = this.entryCheck;
+        if (check != null) {
+            check.check(car);
+        }
+    }
+
+    /**
+     * Remove a car from the queue of waiting cars.
+     *
+     * @param waitingCar
+     *         the car that does not want to wait anymore
+     *
+     * @return true if the car was still waiting, false if a slot was already handed over
+     */
+    private boolean stopWaiting(@NonNull WaitingCar waitingCar) {
+        final SlotPool pool = this.pools.get(waitingCar.car.getType());
+        synchronized (pool) {
+            return pool.waitingCars.remove(waitingCar);
+        }
+    }
+
+    /**
+     * Reject a car that is already parked or waiting in the parking lot.
+     * It must be called with the lock of the pool of the car type held.
+     *
+     * @param pool
+     *         the pool of the car type
+     * @param car
+     *         the car entering the parking lot
+     *
+     * @throws ParkingException
+     *         in case the car is already parked or waiting in the parking lot
+     */
+    private void checkNotParked(@NonNull SlotPool pool, @NonNull Car car) throws ParkingException {
+        if (this.parkedCars.containsKey(car)) {
             throw new ParkingException("Car is already parked in the parking");
         }
+        for (WaitingCar waitingCar : pool.waitingCars) { // a loop, not a stream: run on every entry
+            if (waitingCar.car.equals(car)) {
+                throw new ParkingException("Car is already waiting for a slot in the parking");
+            }
+        }
+    }
 
-        final ParkingSlot parkingSlot = this.parkingSlots.stream().filter(isFree(car.getType()))
-                .findFirst()
-                .orElseThrow(() -> new SlotNotFoundException("No Slot found for " + car));
+    /**
+     * Park a car on a free slot matching its type.
+     * It must be called with the lock of the pool of the slot type held.
+     *
+     * @param parkingSlot
+     *         a free slot
+     * @param car
+     *         a car of the slot type
+     *
+     * @throws ParkingException
+     *         in case a car with the same plate but another type has just parked
+     */
+    private void park(@NonNull ParkingSlot parkingSlot, @NonNull Car car) throws ParkingException {
+        if (this.parkedCars.putIfAbsent(car, parkingSlot) != null) {
+            throw new ParkingException("Car is already parked in the parking"); // in the pool of another type
+        }
+        this.beforeUpdate(parkingSlot);
         try {
-            parkingSlot.takeSlot(car);
+            parkingSlot.takeSlot(car, LocalDateTime.now(this.clock));
         } catch (IncompatibleSlotException e) {
             // ignore this exception as we get a parking slot that matches the car type.
         }
-        return parkingSlot;
+        this.freeSlots.decrementAndGet(parkingSlot.getSlotType().ordinal());
+        this.taken(parkingSlot, this.sequence.incrementAndGet());
+    }
+
+    /**
+     * Hand a freed slot over to the first car waiting for this slot type, or give it back to the free slots.
+     * Cars that stopped waiting (cancelled future) are skipped. The future of the car is not completed: complete it
+     * with {@link #handedOver(WaitingCar, ParkingSlot)} once the lock is released.
+     * It must be called with the lock of the pool of the slot type held.
+     *
+     * @param parkingSlot
+     *         a slot that has just been freed
+     *
+     * @return the car the slot was handed over to, null if no car was waiting
+     */
+    private WaitingCar handOver(@NonNull ParkingSlot parkingSlot) {
+        final Queue<WaitingCar> queue = this.pools.get(parkingSlot.getSlotType()).waitingCars;
+        WaitingCar waitingCar;
+        while ((waitingCar = queue.poll()) != null) {
+            if (waitingCar.slot.isDone()) {
+                continue; // the car does not wait anymore
+            }
+            if (this.parkedCars.putIfAbsent(waitingCar.car, parkingSlot) != null) {
+                final CompletableFuture<ParkingSlot> rejected = waitingCar.slot;
+                CompletableFuture.runAsync(() -> rejected.completeExceptionally(
+                        new ParkingException("Car is already parked in the parking"))); // not under the lock
+                continue; // a car with the same plate but another type has parked meanwhile
+            }
+            this.beforeUpdate(parkingSlot);
+            try {
+                parkingSlot.takeSlot(waitingCar.car, LocalDateTime.now(this.clock));
+            } catch (IncompatibleSlotException e) {
+                // ignore this exception as cars wait in the queue of their type.
+            }
+            this.taken(parkingSlot, this.sequence.incrementAndGet());
+            return waitingCar;
+        }
+        this.freeSlots.incrementAndGet(parkingSlot.getSlotType().ordinal());
+        return null;
+    }
+
+    /**
+     * Complete the future of a car a slot was handed over to, so that its dependent stages never run with a lock of
+     * the parking held. Within a {@link #batch}, the future is completed by the common pool.
+     * If the car stopped waiting meanwhile, it leaves the slot at once, for the next waiting car.
+     *
+     * @param waitingCar
+     *         the car the slot was handed over to, null if none
+     * @param parkingSlot
+     *         the slot handed over
+     */
+    private void handedOver(WaitingCar waitingCar, @NonNull ParkingSlot parkingSlot) {
+        if (waitingCar == null) {
+            return;
+        }
+        for (CarType carType : CAR_TYPES) {
+            if (Thread.holdsLock(this.pools.get(carType))) {
+                CompletableFuture.runAsync(() -> this.handedOver(waitingCar, parkingSlot));
+                return;
+            }
+        }
+        if (!waitingCar.slot.complete(parkingSlot)) {
+            try {
+                this.leave(waitingCar.car);
+            } catch (CarNotFoundException | NoCarParkedException e) {
+                // already left
+            }
+        }
+    }
+
+    /**
+     * Index the session of a car that has just parked on a slot, then publish it.
+     * The car must already be indexed by plate in {@link #parkedCars}.
+     * It must be called with the lock of the pool of the slot type held.
+     *
+     * @param parkingSlot
+     *         the slot the car has just taken
+     * @param sequence
+     *         sequence of the event
+     */
+    private void taken(@NonNull ParkingSlot parkingSlot, long sequence) {
+        final Car car = parkingSlot.getCar();
+        this.sessions.put(new SessionKey(car.getParkedAt(), parkingSlot.getIndex()), car);
+        if (!this.listeners.isEmpty()) { // no event allocated without listeners
+            this.publish(ParkingEvent.enter(sequence, parkingSlot));
+        }
+    }
+
+    /**
+     * Remove the session of a car that has just left its slot from the index, then publish it.
+     * It must be called with the lock of the pool of the slot type held.
+     *
+     * @param parkingSlot
+     *         the slot the car has just left
+     * @param car
+     *         the car that left the slot
+     * @param sequence
+     *         sequence of the event
+     */
+    private void freed(@NonNull ParkingSlot parkingSlot, @NonNull Car car, long sequence) {
+        this.sessions.remove(new SessionKey(car.getParkedAt(), parkingSlot.getIndex()));
+        this.parkedCars.remove(car, parkingSlot);
+        if (!this.listeners.isEmpty()) {
+            this.publish(ParkingEvent.leave(sequence, parkingSlot, car));
+        }
     }
 
     /**
@@ -99,8 +529,9 @@ public class Parking {
      * The car must be found in the parking lot, otherwise, it will be rejected.
      * The returned car object store when the car left the parking slot. This information may be use to create the bill.
      * <p>
-     * This method uses a sub-method {@link @Synchronized} to be safe with multi-threading.
-     * Only one car can leave the parking lot at the same time.
+     * This method locks the pool of slots of the car type to be safe with multi-threading: the slot is looked up again
+     * with the lock held, so it cannot be freed by another thread meanwhile.
+     * Only one car of a type can leave the parking lot at the same time, cars of other types do not wait.
      *
      * @param car
      *         car of the user
@@ -110,17 +541,31 @@ public class Parking {
      * @throws CarNotFoundException
      *         if the car cannot be found in the parking lot
      * @throws NoCarParkedException
-     *         if the parking slot where the car should be parked was updated by another thread at the same time.
+     *         never thrown, kept for compatibility
      */
     public Car leave(@NonNull Car car) throws CarNotFoundException, NoCarParkedException {
-        // find where the car is parked
-        final ParkingSlot parkingSlot = this.parkingSlots.stream()
-                .filter(ps -> ps.getSlotType().equals(car.getType()) && car.equals(ps.getCar()))
-                .findFirst()
-                .orElseThrow(() -> new CarNotFoundException("Car not found in any parking slot " + car));
-
-        // free the slot and charge the client
-        return this.leave(parkingSlot);
+        // find where the car is parked, the car may be of another type than the one provided
+        ParkingSlot parkingSlot = this.parkedCars.get(car);
+        while (parkingSlot != null) {
+            final Car left;
+            final WaitingCar next;
+            synchronized (this.pools.get(parkingSlot.getSlotType())) {
+                if (this.parkedCars.get(car) == parkingSlot) {
+                    // free the slot and charge the client
+                    left = this.free(parkingSlot);
+                    next = this.handOver(parkingSlot);
+                } else {
+                    left = null;
+                    next = null;
+                }
+            }
+            if (left != null) {
+                this.handedOver(next, parkingSlot);
+                return left;
+            }
+            parkingSlot = this.parkedCars.get(car); // left meanwhile
+        }
+        throw new CarNotFoundException("Car not found in any parking slot " + car);
     }
 
     /**
@@ -129,8 +574,10 @@ public class Parking {
      * The slot must have a car parked, otherwise, it will be rejected.
      * The returned car object store when the car left the parking slot. This information may be use to create the bill.
      * <p>
-     * This method uses {@link @Synchronized} to be safe with multi-threading.
-     * Only one car can leave the parking lot at the same time.
+     * If cars are waiting for a slot of this type, the slot is directly given to the first of them.
+     * <p>
+     * This method locks the pool of slots of the slot type to be safe with multi-threading.
+     * Only one car of a type can leave the parking lot at the same time, cars of other types do not wait.
      *
      * @param parkingSlot
      *         slot where the car is parked
@@ -138,15 +585,43 @@ public class Parking {
      * @return the updated car
      *
      * @throws NoCarParkedException
-     *         if the car is not parked on the parking slot
+     *         if the car is not parked on the parking slot, or the slot is not a slot of this parking (a slot of a
+     *         parking it was restored from)
      */
-    @Synchronized
     public Car leave(@NonNull ParkingSlot parkingSlot) throws NoCarParkedException {
-        if (parkingSlot.isFree()) {
-            throw new NoCarParkedException("No car parked on this parking slot");
+        final Car car;
+        final WaitingCar next;
+        synchronized (this.pools.get(parkingSlot.getSlotType())) {
+            final ParkingSlot[] slots = this.parkingSlots;
+            if (parkingSlot.getIndex() < 0 || parkingSlot.getIndex() >= slots.length
+                    || slots[parkingSlot.getIndex()] != parkingSlot) {
+                throw new NoCarParkedException("Slot " + parkingSlot.getIndex() + " is not a slot of this parking");
+            }
+            if (parkingSlot.isFree()) {
+                throw new NoCarParkedException("No car parked on this parking slot");
+            }
+
+            car = this.free(parkingSlot);
+            next = this.handOver(parkingSlot);
         }
+        this.handedOver(next, parkingSlot);
+        return car;
+    }
 
-        return parkingSlot.freeSlot();
+    /**
+     * Free an occupied slot.
+     * It must be called with the lock of the pool of the slot type held.
+     *
+     * @param parkingSlot
+     *         an occupied slot
+     *
+     * @return the car that left the slot
+     */
+    private Car free(@NonNull ParkingSlot parkingSlot) {
+        this.beforeUpdate(parkingSlot);
+        final Car car = parkingSlot.freeSlot(LocalDateTime.now(this.clock));
+        this.freed(parkingSlot, car, this.sequence.incrementAndGet());
+        return car;
     }
 
     /**
@@ -163,12 +638,129 @@ public class Parking {
      */
     public BigDecimal bill(@NonNull Car car) throws ParkingException {
         // check the car is not parked anymore
-        if (this.parkingSlots.stream().anyMatch(s -> Objects.equals(car, s.getCar()))) {
+        if (this.isParked(car)) {
             throw new ParkingException("Cars must leave their parking slot and pay at the toll");
         }
 
         // compute the fare to charge the client
-        return this.policy.computeFare(car);
+        final BigDecimal fare = this.policy.computeFare(car);
+        final long sequence = this.sequence.incrementAndGet();
+        if (!this.listeners.isEmpty()) {
+            this.publish(ParkingEvent.bill(sequence, car, fare, LocalDateTime.now(this.clock)));
+        }
+        return fare;
+    }
+
+    /**
+     * Check if a car is parked, with the lock of the pool of its type held so that the check is ordered with
+     * the gates.
+     *
+     * @param car
+     *         a car
+     *
+     * @return true if the car is parked on a slot
+     */
+    private boolean isParked(@NonNull Car car) {
+        synchronized (this.pools.get(car.getType())) {
+            return this.parkedCars.containsKey(car);
+        }
+    }
+
+    /**
+     * Run several operations (enter, leave, bill...) with the locks of every pool held once, as a single gate
+     * controller serving the requests of many gates: they are applied back to back, without contending for the locks
+     * between them. The operations must not wait (use {@link #enter(Car)}, not {@link #enter(Car, long, TimeUnit)}).
+     *
+     * @param operations
+     *         the operations to run
+     */
+    public void batch(@NonNull Runnable operations) {
+        this.inAllPools(0, () -> {
+            operations.run();
+            return null;
+        });
+    }
+
+    /**
+     * Run an action with the locks of every pool held, taken in {@link CarType} order so that it cannot deadlock
+     * with another action run this way.
+     *
+     * @param ordinal
+     *         ordinal of the first {@link CarType} whose pool is not locked yet, 0 to lock them all
+     * @param action
+     *         the action to run
+     * @param <T>
+     *         type of the action result
+     *
+     * @return the action result
+     */
+    private <T> T inAllPools(int ordinal, @NonNull Supplier<T> action) {
+        if (ordinal == CAR_TYPES.length) {
+            return action.get();
+        }
+        synchronized (this.pools.get(CAR_TYPES[ordinal])) {
+            return this.inAllPools(ordinal + 1, action);
+        }
+    }
+
+    /**
+     * Check every car entering the parking lot, through {@link #enter(Car)}, {@link #enter(Car, long, TimeUnit)} or
+     * {@link #enterAsync(Car)}, for instance to send all the entries through the {@link
+     * fr.avenard.parking.admission.CapacityQuotas}. Slots restored from a snapshot are not checked.
+     *
+     * @param entryCheck
+     *         the check, replacing the previous one, null to let every car enter
+     *
+     * @return this to chain calls (fluent interface)
+     */
+    public Parking withEntryCheck(EntryCheck entryCheck) {
+        this.entryCheck = entryCheck;
+        return this;
+    }
+
+    /**
+     * Register a listener notified for each step of the parking sessions (enter, leave, bill).
+     * The listener is called by the gate threads: see {@link ParkingListener} before adding one.
+     *
+     * @param listener
+     *         a listener, like a {@link fr.avenard.parking.event.ParkingEventPublisher}
+     *
+     * @return this to chain calls (fluent interface)
+     */
+    public Parking addListener(@NonNull ParkingListener listener) {
+        this.listeners.add(listener);
+        return this;
+    }
+
+    /**
+     * Unregister a listener.
+     *
+     * @param listener
+     *         a registered listener
+     *
+     * @return true if the listener was registered
+     */
+    public boolean removeListener(@NonNull ParkingListener listener) {
+        return this.listeners.remove(listener);
+    }
+
+    /**
+     * @return the registered listeners, in registration order (read-only)
+     */
+    public List<ParkingListener> getListeners() {
+        return Collections.unmodifiableList(this.listeners);
+    }
+
+    /**
+     * Notify the listeners of a parking session step.
+     *
+     * @param event
+     *         the event to publish
+     */
+    private void publish(@NonNull ParkingEvent event) {
+        for (ParkingListener listener : this.listeners) {
+            listener.onEvent(event);
+        }
     }
 
     /**
@@ -180,7 +772,7 @@ public class Parking {
      * @return true if has free slots of the provided type, false otherwise
      */
     public boolean hasFreeSlot(@NonNull CarType slotsType) {
-        return this.parkingSlots.stream().anyMatch(isFree(slotsType));
+        return this.remainingFreeSlots(slotsType) > 0;
     }
 
     /**
@@ -192,18 +784,372 @@ public class Parking {
      * @return a positive number
      */
     public long remainingFreeSlots(@NonNull CarType slotsType) {
-        return this.parkingSlots.stream().filter(isFree(slotsType)).count();
+        return this.freeSlots.get(slotsType.ordinal()); // updated with the lock of the pool held, with the slots
     }
 
     /**
-     * Predicate whether a parking slot is free and matches the provided car type.
+     * Write a compact binary snapshot of the parking lot: the type of each slot, and the plate and arrival time of
+     * the cars parked. The snapshot is consistent (the state of the parking after the event of the returned sequence)
+     * but the gates are not paused while writing it: the slots updated meanwhile are copied before being updated.
+     * <p>
+     * The pricing policy, the listeners and the waiting cars are not part of the snapshot.
+     *
+     * @param channel
+     *         channel to write the snapshot to, it is not closed
+     *
+     * @return the sequence of the last event included in the snapshot
+     *
+     * @throws IOException
+     *         if the snapshot cannot be written
+     * @see #restore(ReadableByteChannel, PricingPolicy)
+     */
+    public long snapshot(@NonNull WritableByteChannel channel) throws IOException {
+        final SlotCapture capture = this.openCapture();
+        try {
+            ParkingSnapshot.write(capture, channel);
+            return capture.getSequence();
+        } finally {
+            this.captures.remove(capture);
+        }
+    }
+
+    /**
+     * Create a parking from a snapshot written by {@link #snapshot(WritableByteChannel)}, for instance to fail over
+     * to a standby server. The cars are parked on the same slots, since the same time.
+     *
+     * @param channel
+     *         channel to read the snapshot from, it is not closed
+     * @param policy
+     *         the pricing policy of the restored parking
+     *
+     * @return the restored parking
+     *
+     * @throws IOException
+     *         if the snapshot cannot be read or is corrupted
+     */
+    public static Parking restore(@NonNull ReadableByteChannel channel, @NonNull PricingPolicy policy) throws
+            IOException {
+        return restore(channel, policy, Clock.systemDefaultZone());
+    }
+
+    /**
+     * Create a parking from a snapshot written by {@link #snapshot(WritableByteChannel)}, reading the time of the
+     * gates from the provided clock (to run a restored parking in simulated time, etc).
+     *
+     * @param channel
+     *         channel to read the snapshot from, it is not closed
+     * @param policy
+     *         the pricing policy of the restored parking
+     * @param clock
+     *         the clock of the restored parking
+     *
+     * @return the restored parking
+     *
+     * @throws IOException
+     *         if the snapshot cannot be read or is corrupted
+     */
+    public static Parking restore(@NonNull ReadableByteChannel channel, @NonNull PricingPolicy policy,
+            @NonNull Clock clock) throws IOException {
+        final ParkingSnapshot snapshot = ParkingSnapshot.read(channel);
+        return new Parking(policy, clock, snapshot.getSlots(), snapshot.getSequence());
+    }
+
+    /**
+     * Apply a car parking on a slot of the primary parking this parking replicates.
+     * Events already included in this parking (sequence lower or equal to the last event applied to the pool of the
+     * slot type) are ignored: the pools publish their events concurrently, so the events of different pools may not
+     * be received in sequence order, but the events of a pool always are.
+     *
+     * @param sequence
+     *         sequence of the event in the primary parking
+     * @param index
+     *         index of the slot
+     * @param plate
+     *         plate of the car
+     * @param parkedAt
+     *         arrival time of the car
+     */
+    void replicateEnter(long sequence, int index, String plate, @NonNull LocalDateTime parkedAt) {
+        final ParkingSlot parkingSlot = this.parkingSlots[index];
+        final SlotPool pool = this.pools.get(parkingSlot.getSlotType());
+        synchronized (pool) {
+            if (sequence <= pool.sequence) {
+                return;
+            }
+            final Car car = new Car(plate, parkingSlot.getSlotType());
+            car.setParkedAt(parkedAt);
+
+            this.beforeUpdate(parkingSlot);
+            final Car previous = parkingSlot.restoreFree();
+            if (previous != null) {
+                this.sessions.remove(new SessionKey(previous.getParkedAt(), index)); // missed leave, not expected
+                this.parkedCars.remove(previous, parkingSlot);
+            } else {
+                this.freeSlots.decrementAndGet(parkingSlot.getSlotType().ordinal());
+            }
+            parkingSlot.restoreSlot(car);
+            this.parkedCars.put(car, parkingSlot);
+            this.replicated(pool, sequence);
+            this.taken(parkingSlot, sequence);
+        }
+    }
+
+    /**
+     * Apply a car leaving a slot of the primary parking this parking replicates.
+     * Events already included in this parking (sequence lower or equal to the last event applied to the pool of the
+     * slot type) are ignored.
+     *
+     * @param sequence
+     *         sequence of the event in the primary parking
+     * @param index
+     *         index of the slot
+     * @param leftAt
+     *         departure time of the car
+     */
+    void replicateLeave(long sequence, int index, @NonNull LocalDateTime leftAt) {
+        final ParkingSlot parkingSlot = this.parkingSlots[index];
+        final SlotPool pool = this.pools.get(parkingSlot.getSlotType());
+        synchronized (pool) {
+            if (sequence <= pool.sequence) {
+                return;
+            }
+            this.beforeUpdate(parkingSlot);
+            final Car car = parkingSlot.restoreFree();
+            this.replicated(pool, sequence);
+            if (car != null) {
+                car.setLeftAt(leftAt);
+                this.freeSlots.incrementAndGet(parkingSlot.getSlotType().ordinal());
+                this.freed(parkingSlot, car, sequence);
+            }
+        }
+    }
+
+    /**
+     * Record the sequence of an event of the primary parking applied to a pool.
+     * It must be called with the lock of the pool held.
+     *
+     * @param pool
+     *         the pool of the slot updated
+     * @param sequence
+     *         sequence of the event in the primary parking
+     */
+    private void replicated(@NonNull SlotPool pool, long sequence) {
+        pool.sequence = sequence;
+        this.sequence.accumulateAndGet(sequence, Math::max);
+    }
+
+    /**
+     * @return the sequence of the last event published by the parking, or of the last event replicated
+     */
+    long getSequence() {
+        return this.sequence.get();
+    }
+
+    /**
+     * Start capturing the slots state at the current sequence.
+     * The capture must be removed from {@link #captures} once used.
+     *
+     * @return the new capture
+     */
+    SlotCapture openCapture() {
+        return this.inAllPools(0, () -> {
+            final SlotCapture capture = new SlotCapture(this.sequence.get(), this.parkingSlots);
+            this.captures.add(capture);
+            return capture;
+        });
+    }
+
+    /**
+     * Copy the state of a slot into the open captures before updating it,
+     * and mark its {@link OccupancySnapshot} chunk to refresh.
+     * It must be called with the lock of the pool of the slot type held. A chunk may hold slots of two pools: it is
+     * marked atomically.
+     *
+     * @param parkingSlot
+     *         the slot about to be updated
+     */
+    private void beforeUpdate(@NonNull ParkingSlot parkingSlot) {
+        for (SlotCapture capture : this.captures) {
+            capture.preserve(parkingSlot);
+        }
+        final int chunk = parkingSlot.getIndex() >> OccupancySnapshot.CHUNK_SHIFT;
+        final long bit = 1L << chunk;
+        this.dirtyChunks.accumulateAndGet(chunk >> 6, bit, (bits, mask) -> bits | mask);
+    }
+
+    /**
+     * Returns an immutable view of the occupancy of every slot, consistent at a given event sequence.
+     * It can be read without any lock while the gates keep updating the slots.
+     * <p>
+     * The snapshot is refreshed only when slots were updated, by copying only the chunks of slots updated since the
+     * previous snapshot: the other chunks are shared. Thousands of readers per second cost almost nothing.
+     *
+     * @return the occupancy snapshot
+     */
+    public OccupancySnapshot occupancy() {
+        OccupancySnapshot snapshot = this.occupancy;
+        if (snapshot != null && snapshot.getSequence() == this.sequence.get()
+                && snapshot.size() == this.parkingSlots.length) {
+            return snapshot; // nothing changed since
+        }
+
+        synchronized (this.occupancyLock) {
+            snapshot = this.occupancy;
+            if (snapshot != null && snapshot.getSequence() == this.sequence.get()
+                    && snapshot.size() == this.parkingSlots.length) {
+                return snapshot; // refreshed by another reader
+            }
+            final SlotCapture capture = this.openOccupancyCapture();
+            try {
+                snapshot = OccupancySnapshot.refresh(snapshot, capture);
+            } finally {
+                this.captures.remove(capture);
+            }
+            this.occupancy = snapshot;
+            return snapshot;
+        }
+    }
+
+    /**
+     * Start capturing the slots state, and take the chunks updated since the previous occupancy snapshot.
+     *
+     * @return the new capture, with its dirty chunks
+     */
+    private SlotCapture openOccupancyCapture() {
+        return this.inAllPools(0, () -> {
+            final SlotCapture capture = this.openCapture();
+            final long[] dirtyChunks = new long[this.dirtyChunks.length()];
+            for (int i = 0; i < dirtyChunks.length; i++) {
+                dirtyChunks[i] = this.dirtyChunks.get(i);
+            }
+            capture.setDirtyChunks(dirtyChunks);
+            this.dirtyChunks = new AtomicLongArray(dirtyChunks.length);
+            return capture;
+        });
+    }
+
+    /**
+     * @return the parking slots, in index order
+     */
+    Stream<ParkingSlot> slots() {
+        return Arrays.stream(this.parkingSlots);
+    }
+
+    /**
+     * Returns the cars parked before the provided time, the longest parked first.
+     * The sessions are indexed by arrival time: only the returned cars are read.
+     *
+     * @param time
+     *         a date time
+     *
+     * @return the cars parked before the time
+     */
+    public List<Car> parkedBefore(@NonNull LocalDateTime time) {
+        return new ArrayList<>(this.sessions.headMap(new SessionKey(time, -1)).values());
+    }
+
+    /**
+     * Returns the cars parked for longer than the provided duration, the longest parked first.
+     *
+     * @param threshold
+     *         a parking duration
+     *
+     * @return the cars parked for longer than the duration
+     */
+    public List<Car> overstays(@NonNull Duration threshold) {
+        return this.parkedBefore(LocalDateTime.now(this.clock).minus(threshold));
+    }
+
+    /**
+     * Watch the cars parked for longer than the provided duration: the callback is called once for each car
+     * when it crosses the threshold. Call {@link OverstayWatch#check()} periodically, or schedule it with
+     * {@link OverstayWatch#checkEvery}.
+     *
+     * @param threshold
+     *         a parking duration
+     * @param callback
+     *         called with the cars crossing the threshold, by the checking thread
+     *
+     * @return the watch
+     */
+    public OverstayWatch watchOverstays(@NonNull Duration threshold, @NonNull Consumer<Car> callback) {
+        return new OverstayWatch(this.sessions, this.clock, threshold, callback);
+    }
+
+    /**
+     * Returns the clock the time of the gates is read from: the components sampling the parking (overstay
+     * watches, reconciliation, exports...) read the current time from it too.
+     *
+     * @return the clock of the parking
+     */
+    public Clock getClock() {
+        return this.clock;
+    }
+
+    /**
+     * Returns how many parking slots match the provided type, free or not.
+     *
+     * @param slotsType
+     *         a supported {@link CarType}
+     *
+     * @return a positive number
+     */
+    public long totalSlots(@NonNull CarType slotsType) {
+        return this.pools.get(slotsType).slots.length;
+    }
+
+    /**
+     * Returns how many cars are waiting for a parking slot of the provided type to be freed.
      *
      * @param slotsType
      *         a supported {@link CarType}
      *
-     * @return a predicate to provide in a stream
+     * @return a positive number
+     * @see #enter(Car, long, TimeUnit)
+     */
+    public int waitingCars(@NonNull CarType slotsType) {
+        final SlotPool pool = this.pools.get(slotsType);
+        synchronized (pool) {
+            return pool.waitingCars.size();
+        }
+    }
+
+    /**
+     * The slots of a {@link CarType}, with their own lock: the cars of different types never wait for each other.
+     * The pool object is the lock; operations on the whole parking lock every pool, in {@link CarType} order.
      */
-    private static Predicate<ParkingSlot> isFree(@NonNull CarType slotsType) {
-        return parkingSlot -> parkingSlot.isFree(slotsType);
+    private static class SlotPool {
+        private volatile ParkingSlot[] slots; // set once, with the locks of every pool held
+        private final Queue<WaitingCar> waitingCars = new ArrayDeque<>(); // FIFO of cars waiting for a slot
+        private long sequence; // sequence of the last event replicated to the pool
+
+        private SlotPool(final ParkingSlot[] slots, final long sequence) {
+            this.slots = slots;
+            this.sequence = sequence;
+        }
+
+        /**
+         * @return the first free slot of the pool, null if every slot is taken
+         */
+        private ParkingSlot firstFree() {
+            for (ParkingSlot parkingSlot : this.slots) {
+                if (parkingSlot.isFree()) {
+                    return parkingSlot;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * A car waiting for a slot, with the future completed when a slot is handed over.
+     */
+    private static class WaitingCar {
+        private final Car car;
+        private final CompletableFuture<ParkingSlot> slot = new CompletableFuture<>();
+
+        private WaitingCar(final Car car) {
+            this.car = car;
+        }
     }
 }
@@ -0,0 +1,164 @@
+package fr.avenard.parking;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SocketChannel;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import fr.avenard.parking.policy.PricingPolicy;
+import lombok.NonNull;
+
+/**
+ * Standby copy of a primary parking, kept up to date by a {@link ParkingReplicator} through a socket.
+ * <p>
+ * The replica serves the read-only queries (signage, etc) to take load off the primary parking.
+ * When the primary server fails, {@link #promote()} the replica to get a parking ready to manage the gates.
+ */
+public class ParkingReplica implements AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(ParkingReplica.class.getName());
+
+    private final SocketChannel channel;
+    private final Parking parking;
+    private final Thread receiver;
+    private volatile boolean connected = true;
+
+    private ParkingReplica(final SocketChannel channel, final Parking parking) {
+        this.channel = channel;
+        this.parking = parking;
+        this.receiver = new Thread(this::receive, "parking-replica-" + channel.socket().getRemoteSocketAddress());
+        this.receiver.setDaemon(true);
+    }
+
+    /**
+     * Connect to a primary parking. The replica is ready once the snapshot of the primary parking is received,
+     * the next updates are then applied in background.
+     *
+     * @param primary
+     *         address of the {@link ParkingReplicator}
+     * @param policy
+     *         the pricing policy of the parking, used once promoted
+     *
+     * @return the connected replica
+     *
+     * @throws IOException
+     *         if the replica cannot connect or receive the snapshot
+     */
+    public static ParkingReplica connect(@NonNull final InetSocketAddress primary, @NonNull final PricingPolicy policy)
+            throws IOException {
+        final SocketChannel channel = SocketChannel.open(primary);
+        try {
+            final ByteBuffer snapshot = ReplicationLog.readFrame(channel);
+            final Parking parking = Parking.restore(new ByteBufferChannel(snapshot), policy);
+            final ParkingReplica replica = new ParkingReplica(channel, parking);
+            replica.receiver.start();
+            return replica;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return true while the updates of the primary parking are received
+     */
+    public boolean isConnected() {
+        return this.connected;
+    }
+
+    /**
+     * @return the sequence of the last event of the primary parking applied to the replica
+     */
+    public long getSequence() {
+        return this.parking.getSequence();
+    }
+
+    /**
+     * @see Parking#hasFreeSlot(CarType)
+     */
+    public boolean hasFreeSlot(@NonNull final CarType slotsType) {
+        return this.parking.hasFreeSlot(slotsType);
+    }
+
+    /**
+     * @see Parking#remainingFreeSlots(CarType)
+     */
+    public long remainingFreeSlots(@NonNull final CarType slotsType) {
+        return this.parking.remainingFreeSlots(slotsType);
+    }
+
+    /**
+     * Stop receiving the updates of the primary parking and get the parking to manage the gates.
+     *
+     * @return the parking, as up to date as the last update received
+     *
+     * @throws InterruptedException
+     *         if interrupted while waiting for the last update to be applied
+     */
+    public Parking promote() throws InterruptedException {
+        this.close();
+        this.receiver.join();
+        return this.parking;
+    }
+
+    /**
+     * Disconnect from the primary parking.
+     */
+    @Override
+    public void close() {
+        this.connected = false;
+        try {
+            this.channel.close();
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Unable to close the replication connection", e);
+        }
+    }
+
+    private void receive() {
+        try {
+            while (this.connected) {
+                ReplicationLog.apply(ReplicationLog.readFrame(this.channel), this.parking);
+            }
+        } catch (IOException e) {
+            if (this.connected) {
+                LOGGER.log(Level.WARNING, "Replication stream interrupted", e);
+            }
+        } finally {
+            this.connected = false;
+        }
+    }
+
+    /**
+     * Read-only channel over a buffer, to restore the snapshot frame.
+     */
+    private static class ByteBufferChannel implements ReadableByteChannel {
+        private final ByteBuffer buffer;
+
+        private ByteBufferChannel(final ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read(final ByteBuffer destination) {
+            if (!this.buffer.hasRemaining()) {
+                return -1;
+            }
+            final int length = Math.min(destination.remaining(), this.buffer.remaining());
+            destination.put(this.buffer.slice().limit(length));
+            this.buffer.position(this.buffer.position() + length);
+            return length;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+            // nothing to release
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package fr.avenard.parking;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import fr.avenard.parking.event.ParkingEvent;
+import fr.avenard.parking.event.ParkingEventType;
+import fr.avenard.parking.event.ParkingListener;
+import lombok.NonNull;
+
+/**
+ * Stream the state of a primary parking to {@link ParkingReplica}s connected through a socket.
+ * <p>
+ * Each replica first gets a snapshot of the parking, then the slot updates made since the snapshot, in batches
+ * (see {@link ReplicationLog}). The gate threads only add the updates to a bounded queue per replica: a replica
+ * that cannot keep up is disconnected, and has to connect again to get a new snapshot.
+ */
+public class ParkingReplicator implements AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(ParkingReplicator.class.getName());
+    private static final int DEFAULT_QUEUE_CAPACITY = 64 * 1024;
+    private static final int MAX_BATCH_SIZE = 1024;
+    private static final int FRAME_SIZE = 256 * 1024;
+
+    private final Parking parking;
+    private final int queueCapacity;
+    private final ServerSocketChannel serverChannel;
+    private final List<ReplicationSession> sessions = new CopyOnWriteArrayList<>();
+    private final Thread acceptor;
+
+    /**
+     * Start accepting replicas on the provided address.
+     *
+     * @param parking
+     *         the primary parking
+     * @param address
+     *         the address to listen to, use port 0 to get an ephemeral port
+     * @param queueCapacity
+     *         maximum number of slot updates waiting to be sent to a replica
+     *
+     * @throws IOException
+     *         if the address cannot be bound
+     */
+    public ParkingReplicator(@NonNull final Parking parking, @NonNull final InetSocketAddress address,
+            final int queueCapacity) throws IOException {
+        if (queueCapacity <= 0) {
+            throw new IllegalArgumentException("Queue capacity must be strictly positive");
+        }
+        this.parking = parking;
+        this.queueCapacity = queueCapacity;
+        this.serverChannel = ServerSocketChannel.open().bind(address);
+        this.acceptor = new Thread(this::accept, "parking-replicator");
+        this.acceptor.setDaemon(true);
+        this.acceptor.start();
+    }
+
+    /**
+     * Start accepting replicas on the provided address, with a queue of 65536 updates per replica.
+     *
+     * @param parking
+     *         the primary parking
+     * @param address
+     *         the address to listen to, use port 0 to get an ephemeral port
+     *
+     * @throws IOException
+     *         if the address cannot be bound
+     */
+    public ParkingReplicator(@NonNull final Parking parking, @NonNull final InetSocketAddress address) throws
+            IOException {
+        this(parking, address, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * @return the address the replicas connect to
+     *
+     * @throws IOException
+     *         if the replicator is closed
+     */
+    public InetSocketAddress getAddress() throws IOException {
+        return (InetSocketAddress) this.serverChannel.getLocalAddress();
+    }
+
+    /**
+     * @return the number of connected replicas
+     */
+    public int getNumberOfReplicas() {
+        return this.sessions.size();
+    }
+
+    /**
+     * Stop accepting replicas and disconnect the connected ones.
+     *
+     * @throws IOException
+     *         if the server socket cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        this.serverChannel.close();
+        for (ReplicationSession session : this.sessions) {
+            session.close();
+        }
+    }
+
+    private void accept() {
+        while (this.serverChannel.isOpen()) {
+            try {
+                new ReplicationSession(this.serverChannel.accept()).start();
+            } catch (IOException e) {
+                if (this.serverChannel.isOpen()) {
+                    LOGGER.log(Level.WARNING, "Unable to accept a replica", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Connection to a replica: queue the slot updates and send them in batches.
+     */
+    private class ReplicationSession implements ParkingListener, Runnable {
+        private final SocketChannel channel;
+        private final BlockingQueue<ParkingEvent> updates;
+        private final Thread sender;
+        private volatile boolean overflowed;
+
+        private ReplicationSession(final SocketChannel channel) throws IOException {
+            this.channel = channel;
+            this.updates = new ArrayBlockingQueue<>(ParkingReplicator.this.queueCapacity);
+            this.sender = new Thread(this, "parking-replicator-" + channel.getRemoteAddress());
+            this.sender.setDaemon(true);
+        }
+
+        private void start() {
+            ParkingReplicator.this.sessions.add(this);
+            this.sender.start();
+        }
+
+        @Override
+        public void onEvent(@NonNull final ParkingEvent event) {
+            if (event.getType() != ParkingEventType.BILL && !this.updates.offer(event)) {
+                this.overflowed = true;
+                ParkingReplicator.this.parking.removeListener(this);
+                this.updates.clear();
+                this.updates.offer(event); // wake the sender up so that it disconnects
+            }
+        }
+
+        @Override
+        public void run() {
+            ParkingReplicator.this.parking.addListener(this); // listen first to not miss any update after the snapshot
+            try {
+                final ByteArrayOutputStream snapshot = new ByteArrayOutputStream();
+                final long snapshotSequence = ParkingReplicator.this.parking.snapshot(Channels.newChannel(snapshot));
+                ReplicationLog.writeFrame(ByteBuffer.wrap(snapshot.toByteArray()), this.channel);
+
+                final ByteBuffer frame = ByteBuffer.allocateDirect(FRAME_SIZE);
+                final List<ParkingEvent> batch = new ArrayList<>(MAX_BATCH_SIZE);
+                while (this.channel.isOpen()) {
+                    batch.add(this.updates.take());
+                    this.updates.drainTo(batch, MAX_BATCH_SIZE - 1);
+                    if (this.overflowed) {
+                        LOGGER.warning("Replica " + this.channel.getRemoteAddress() + " is too slow, disconnecting");
+                        break;
+                    }
+
+                    frame.clear().putInt(0); // number of updates, set once the frame is full
+                    int numberOfUpdates = 0;
+                    for (ParkingEvent event : batch) {
+                        if (event.getSequence() <= snapshotSequence) {
+                            continue; // already in the snapshot
+                        }
+                        if (frame.remaining() < ReplicationLog.MAX_ENTRY_SIZE) {
+                            ReplicationLog.writeFrame(frame.putInt(0, numberOfUpdates).flip(), this.channel);
+                            frame.clear().putInt(0);
+                            numberOfUpdates = 0;
+                        }
+                        ReplicationLog.encode(frame, event);
+                        numberOfUpdates++;
+                    }
+                    batch.clear();
+                    if (numberOfUpdates > 0) {
+                        ReplicationLog.writeFrame(frame.putInt(0, numberOfUpdates).flip(), this.channel);
+                    }
+                }
+            } catch (IOException e) {
+                LOGGER.log(Level.INFO, "Replica disconnected", e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                this.close();
+            }
+        }
+
+        private void close() {
+            if (Thread.currentThread() != this.sender) {
+                this.sender.interrupt(); // stop waiting for updates
+            }
+            ParkingReplicator.this.parking.removeListener(this);
+            ParkingReplicator.this.sessions.remove(this);
+            try {
+                this.channel.close();
+            } catch (IOException e) {
+                LOGGER.log(Level.FINE, "Unable to close the replica connection", e);
+            }
+        }
+    }
+}
@@ -14,13 +14,31 @@ public class ParkingSlot {
 
     @Getter
     private final CarType slotType;
+    /**
+     * Position of the slot in its parking, -1 if the slot does not belong to a parking
+     */
+    @Getter
+    private final int index;
 
     // fields when a car is parked
     @Getter
-    private Car car; // car that parks on the parking slot
+    private volatile Car car; // car that parks on the parking slot
 
     public ParkingSlot(final CarType slotType) {
+        this(slotType, -1);
+    }
+
+    /**
+     * Create a slot of a parking.
+     *
+     * @param slotType
+     *         slot type
+     * @param index
+     *         position of the slot in its parking
+     */
+    ParkingSlot(final CarType slotType, final int index) {
         this.slotType = slotType;
+        this.index = index;
     }
 
     /**
@@ -53,13 +71,48 @@ public class ParkingSlot {
      *         a non-null car
      */
     protected void takeSlot(@NonNull Car car) throws IncompatibleSlotException {
+        this.takeSlot(car, LocalDateTime.now());
+    }
+
+    /**
+     * Park a car on this slot at the provided time.
+     *
+     * @param car
+     *         a non-null car
+     * @param now
+     *         the arrival time of the car
+     *
+     * @see #takeSlot(Car)
+     */
+    void takeSlot(@NonNull Car car, @NonNull LocalDateTime now) throws IncompatibleSlotException {
         if (!this.getSlotType().equals(car.getType())) {
             throw new IncompatibleSlotException(
                     "Car " + car + " cannot park on this slot, available only for " + slotType);
         }
 
+        car.setParkedAt(now);
+        this.car = car; // publish the car once its arrival time is set
+    }
+
+    /**
+     * Park a car restored from a snapshot, keeping its arrival time.
+     *
+     * @param car
+     *         a car of the slot type, with its arrival time
+     */
+    void restoreSlot(@NonNull Car car) {
         this.car = car;
-        this.car.setParkedAt(LocalDateTime.now());
+    }
+
+    /**
+     * Free the slot replicated from another parking, without updating the car.
+     *
+     * @return the car that was parked in this slot, null if the slot was free
+     */
+    Car restoreFree() {
+        final Car returnCar = this.car;
+        this.car = null;
+        return returnCar;
     }
 
     /**
@@ -69,9 +122,32 @@ public class ParkingSlot {
      * @return the car that was parked in this slot
      */
     protected Car freeSlot() {
-        this.car.setLeftAt(LocalDateTime.now()); // it leaves the parking slot now
+        return this.freeSlot(LocalDateTime.now());
+    }
+
+    /**
+     * Free the slot at the provided time.
+     *
+     * @param now
+     *         the departure time of the car
+     *
+     * @return the car that was parked in this slot
+     *
+     * @see #freeSlot()
+     */
+    Car freeSlot(@NonNull LocalDateTime now) {
+        this.car.setLeftAt(now); // it leaves the parking slot now
         final Car returnCar = this.car; // exchange the pointer to return it
         this.car = null; // set the car to null so that another car can use it
         return returnCar;
     }
+
+    /**
+     * Cancel a {@link #takeSlot(Car)} when the car finally did not park on this slot.
+     * The car is restored as if it never entered the parking lot.
+     */
+    protected void cancelSlot() {
+        this.car.setParkedAt(null);
+        this.car = null;
+    }
 }
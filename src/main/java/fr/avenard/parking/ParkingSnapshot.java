@@ -0,0 +1,211 @@
+package fr.avenard.parking;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+import fr.avenard.parking.exception.ParkingException;
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * Binary snapshot of the parking slots, written and read through NIO channels.
+ * <p>
+ * Format (big-endian):
+ * <pre>
+ * int   magic number "PKSN"
+ * short format version
+ * long  sequence of the last event included
+ * int   number of slots
+ * then for each slot, in index order:
+ * byte  car type ordinal, with the {@link #OCCUPIED} bit set if a car is parked
+ * and when a car is parked:
+ * long  arrival epoch second (UTC)
+ * int   arrival nanoseconds
+ * short plate length, followed by the UTF-8 plate bytes
+ * </pre>
+ * A free slot takes a single byte, so that large parking lots are written and read in a few milliseconds.
+ */
+class ParkingSnapshot {
+    private static final int MAGIC = 0x504B534E; // PKSN
+    private static final short VERSION = 1;
+    private static final int OCCUPIED = 0x80;
+    private static final int MAX_PLATE_SIZE = 0xFFFF; // bytes, the length is written as an unsigned short
+    private static final int MAX_SLOT_SIZE = 1 + Long.BYTES + Integer.BYTES + Short.BYTES + MAX_PLATE_SIZE;
+    private static final int BUFFER_SIZE = 4 * MAX_SLOT_SIZE; // flushed when the next slot does not fit
+
+    /**
+     * The restored slots, indexed by {@link ParkingSlot#getIndex()}
+     */
+    @Getter
+    private final ParkingSlot[] slots;
+    /**
+     * Sequence of the last event included in the snapshot
+     */
+    @Getter
+    private final long sequence;
+
+    private ParkingSnapshot(final ParkingSlot[] slots, final long sequence) {
+        this.slots = slots;
+        this.sequence = sequence;
+    }
+
+    /**
+     * Write the slots state at the capture sequence.
+     *
+     * @param capture
+     *         capture opened before reading the slots
+     * @param channel
+     *         channel to write to
+     *
+     * @throws IOException
+     *         if the channel cannot be written
+     */
+    static void write(@NonNull final SlotCapture capture, @NonNull final WritableByteChannel channel) throws
+            IOException {
+        final ParkingSlot[] slots = capture.getSlots();
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        buffer.putInt(MAGIC).putShort(VERSION).putLong(capture.getSequence()).putInt(slots.length);
+
+        for (ParkingSlot slot : slots) {
+            // read the current state first, then the copy made if the slot was updated since the capture
+            final Car car = slot.getCar();
+            String plate = car == null ? null : car.getPlate();
+            LocalDateTime parkedAt = car == null ? null : car.getParkedAt();
+            final SlotCapture.SlotState copy = capture.copyOf(slot);
+            if (copy != null) {
+                plate = copy.getPlate();
+                parkedAt = copy.getParkedAt();
+            }
+
+            if (parkedAt == null) {
+                if (!buffer.hasRemaining()) {
+                    flush(buffer, channel);
+                }
+                buffer.put((byte) slot.getSlotType().ordinal()); // free slot
+            } else {
+                final byte[] plateBytes = plate == null ? new byte[0] : plate.getBytes(StandardCharsets.UTF_8);
+                if (plateBytes.length > MAX_PLATE_SIZE) {
+                    throw new IOException("Plate of " + plateBytes.length + " bytes too long for a snapshot");
+                }
+                if (buffer.remaining() < MAX_SLOT_SIZE - MAX_PLATE_SIZE + plateBytes.length) {
+                    flush(buffer, channel);
+                }
+                buffer.put((byte) (slot.getSlotType().ordinal() | OCCUPIED))
+                        .putLong(parkedAt.toEpochSecond(ZoneOffset.UTC))
+                        .putInt(parkedAt.getNano())
+                        .putShort((short) plateBytes.length)
+                        .put(plateBytes);
+            }
+        }
+        flush(buffer, channel);
+    }
+
+    /**
+     * Reject a plate too long to be written in a snapshot, before the car enters.
+     *
+     * @param car
+     *         a car entering the parking lot
+     *
+     * @throws ParkingException
+     *         if the UTF-8 plate is longer than 65535 bytes
+     */
+    static void checkPlate(@NonNull final Car car) throws ParkingException {
+        final String plate = car.getPlate();
+        // 3 bytes at most per UTF-16 char: only the long plates are encoded
+        if (plate.length() > MAX_PLATE_SIZE / 3
+                && plate.getBytes(StandardCharsets.UTF_8).length > MAX_PLATE_SIZE) {
+            throw new ParkingException("Plate too long, " + MAX_PLATE_SIZE + " UTF-8 bytes at most");
+        }
+    }
+
+    /**
+     * Read a snapshot and create the slots with their parked cars.
+     *
+     * @param channel
+     *         channel to read from
+     *
+     * @return the restored slots
+     *
+     * @throws IOException
+     *         if the channel cannot be read or the snapshot is corrupted
+     */
+    static ParkingSnapshot read(@NonNull final ReadableByteChannel channel) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).flip();
+        fill(buffer, channel, Integer.BYTES + Short.BYTES + Long.BYTES + Integer.BYTES);
+        if (buffer.getInt() != MAGIC) {
+            throw new StreamCorruptedException("Not a parking snapshot");
+        }
+        final short version = buffer.getShort();
+        if (version != VERSION) {
+            throw new StreamCorruptedException("Unsupported parking snapshot version " + version);
+        }
+        final long sequence = buffer.getLong();
+        final int numberOfSlots = buffer.getInt();
+        if (numberOfSlots < 0) {
+            throw new StreamCorruptedException("Invalid number of slots " + numberOfSlots);
+        }
+
+        final CarType[] carTypes = CarType.values();
+        final ParkingSlot[] slots = new ParkingSlot[numberOfSlots];
+        for (int index = 0; index < numberOfSlots; index++) {
+            fill(buffer, channel, 1);
+            final int header = buffer.get() & 0xFF;
+            final int ordinal = header & ~OCCUPIED;
+            if (ordinal >= carTypes.length) {
+                throw new StreamCorruptedException("Unknown car type " + ordinal);
+            }
+            final CarType slotType = carTypes[ordinal];
+            slots[index] = new ParkingSlot(slotType, index);
+
+            if ((header & OCCUPIED) != 0) {
+                fill(buffer, channel, Long.BYTES + Integer.BYTES + Short.BYTES);
+                final LocalDateTime parkedAt = LocalDateTime.ofEpochSecond(buffer.getLong(), buffer.getInt(),
+                        ZoneOffset.UTC);
+                final int plateLength = buffer.getShort() & 0xFFFF;
+                fill(buffer, channel, plateLength);
+                final byte[] plateBytes = new byte[plateLength];
+                buffer.get(plateBytes);
+
+                final Car car = new Car(new String(plateBytes, StandardCharsets.UTF_8), slotType);
+                car.setParkedAt(parkedAt);
+                slots[index].restoreSlot(car);
+            }
+        }
+        return new ParkingSnapshot(slots, sequence);
+    }
+
+    /**
+     * Write the buffer content to the channel and clear it.
+     */
+    private static void flush(final ByteBuffer buffer, final WritableByteChannel channel) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Read from the channel until the buffer has at least the required number of bytes to get.
+     */
+    private static void fill(final ByteBuffer buffer, final ReadableByteChannel channel, final int required) throws
+            IOException {
+        if (buffer.remaining() >= required) {
+            return;
+        }
+        buffer.compact();
+        while (buffer.position() < required) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("Truncated parking snapshot");
+            }
+        }
+        buffer.flip();
+    }
+}
@@ -0,0 +1,34 @@
+package fr.avenard.parking;
+
+import lombok.Getter;
+
+/**
+ * Canonical license plate, interned by a {@link PlateRegistry}.
+ * A registry holds a single instance per plate text, so plates are compared by identity and hashed by their id.
+ */
+@Getter
+public final class Plate {
+    /**
+     * Compact id of the plate in its registry
+     */
+    private final int id;
+    /**
+     * License plate text
+     */
+    private final String text;
+
+    Plate(final int id, final String text) {
+        this.id = id;
+        this.text = text;
+    }
+
+    @Override
+    public int hashCode() {
+        return this.id;
+    }
+
+    @Override
+    public String toString() {
+        return this.text;
+    }
+}
@@ -0,0 +1,115 @@
+package fr.avenard.parking;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.validation.constraints.Positive;
+
+import lombok.NonNull;
+
+/**
+ * Intern table of the license plates: a regular customer gets the same {@link Plate}, with the same compact id, on
+ * every visit instead of a new plate string.
+ * <p>
+ * The table is bounded: it keeps the {@code capacity} most recently interned plates, and the plates still referenced
+ * by a {@link Car} (parked cars, cars being billed, etc). The other plates are evicted, and their ids reused, once the
+ * garbage collector reclaims them. A plate is never evicted while a car references it, so its id stays stable.
+ */
+public class PlateRegistry {
+    private static final PlateRegistry DEFAULT = new PlateRegistry(1 << 16);
+
+    private final Map<String, PlateReference> plates = new ConcurrentHashMap<>();
+    private final ReferenceQueue<Plate> evicted = new ReferenceQueue<>();
+    private final Plate[] recent; // most recently interned plates, kept from eviction
+    private final AtomicInteger cursor = new AtomicInteger();
+    private final Object lock = new Object(); // guards the ids below
+    private int nextId;
+    private int[] freeIds = new int[16]; // stack of the ids of the evicted plates
+    private int freeIdCount;
+
+    /**
+     * Create a plate registry.
+     *
+     * @param capacity
+     *         number of recently interned plates kept from eviction
+     */
+    public PlateRegistry(@Positive final int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("The registry capacity must be positive");
+        }
+        this.recent = new Plate[capacity];
+    }
+
+    /**
+     * @return the registry used by {@link Car#Car(String, CarType)}
+     */
+    public static PlateRegistry getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Get the canonical plate of a license plate text, interning it if needed.
+     *
+     * @param text
+     *         a license plate
+     *
+     * @return the plate, the same instance as long as it is not evicted
+     */
+    public Plate intern(@NonNull final String text) {
+        final PlateReference reference = this.plates.get(text);
+        Plate plate = reference == null ? null : reference.get();
+        if (plate == null) {
+            synchronized (this.lock) {
+                this.purge();
+                final PlateReference current = this.plates.get(text);
+                plate = current == null ? null : current.get();
+                if (plate == null) {
+                    plate = new Plate(this.freeIdCount > 0 ? this.freeIds[--this.freeIdCount] : this.nextId++, text);
+                    this.plates.put(text, new PlateReference(plate, this.evicted));
+                }
+            }
+        }
+        this.recent[Math.floorMod(this.cursor.getAndIncrement(), this.recent.length)] = plate;
+        return plate;
+    }
+
+    /**
+     * @return the number of plates in the table, evicted plates not purged yet included
+     */
+    public int size() {
+        return this.plates.size();
+    }
+
+    /**
+     * Remove the evicted plates from the table and release their ids.
+     * It must be called with the lock held.
+     */
+    private void purge() {
+        PlateReference reference;
+        while ((reference = (PlateReference) this.evicted.poll()) != null) {
+            this.plates.remove(reference.text, reference);
+            if (this.freeIdCount == this.freeIds.length) {
+                this.freeIds = Arrays.copyOf(this.freeIds, this.freeIdCount * 2);
+            }
+            this.freeIds[this.freeIdCount++] = reference.id;
+        }
+    }
+
+    /**
+     * Entry of the table, cleared once no car nor recent slot references the plate.
+     */
+    private static class PlateReference extends WeakReference<Plate> {
+        private final int id;
+        private final String text;
+
+        PlateReference(final Plate plate, final ReferenceQueue<Plate> queue) {
+            super(plate, queue);
+            this.id = plate.getId();
+            this.text = plate.getText();
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package fr.avenard.parking;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+import fr.avenard.parking.event.ParkingEvent;
+import fr.avenard.parking.event.ParkingEventType;
+import lombok.NonNull;
+
+/**
+ * Binary log of the slot updates streamed from a primary parking to its replicas.
+ * <p>
+ * The stream is made of frames, each one prefixed by its length (int). The first frame is a {@link ParkingSnapshot},
+ * the next ones are batches of slot updates (big-endian):
+ * <pre>
+ * int   number of updates
+ * then for each update:
+ * byte  {@link #ENTER} or {@link #LEAVE}
+ * long  sequence of the event
+ * int   slot index
+ * long  event epoch second (UTC)
+ * int   event nanoseconds
+ * and for {@link #ENTER} only:
+ * short plate length, followed by the UTF-8 plate bytes
+ * </pre>
+ */
+class ReplicationLog {
+    private static final byte ENTER = 1;
+    private static final byte LEAVE = 2;
+    static final int MAX_ENTRY_SIZE = 1 + Long.BYTES + Integer.BYTES + Long.BYTES + Integer.BYTES + Short.BYTES
+            + 0xFFFF;
+
+    private ReplicationLog() {
+    }
+
+    /**
+     * Encode a slot update at the buffer position.
+     *
+     * @param buffer
+     *         buffer with at least {@link #MAX_ENTRY_SIZE} bytes remaining
+     * @param event
+     *         an {@link ParkingEventType#ENTER} or {@link ParkingEventType#LEAVE} event
+     */
+    static void encode(@NonNull final ByteBuffer buffer, @NonNull final ParkingEvent event) {
+        final boolean enter = event.getType() == ParkingEventType.ENTER;
+        buffer.put(enter ? ENTER : LEAVE)
+                .putLong(event.getSequence())
+                .putInt(event.getSlot().getIndex())
+                .putLong(event.getTime().toEpochSecond(ZoneOffset.UTC))
+                .putInt(event.getTime().getNano());
+        if (enter) {
+            final String plate = event.getCar().getPlate();
+            final byte[] plateBytes = plate == null ? new byte[0] : plate.getBytes(StandardCharsets.UTF_8);
+            buffer.putShort((short) plateBytes.length).put(plateBytes);
+        }
+    }
+
+    /**
+     * Decode a batch of slot updates and apply them to the replica parking.
+     *
+     * @param frame
+     *         the frame content
+     * @param parking
+     *         the replica parking
+     *
+     * @throws StreamCorruptedException
+     *         if an update is unknown
+     */
+    static void apply(@NonNull final ByteBuffer frame, @NonNull final Parking parking) throws
+            StreamCorruptedException {
+        final int numberOfUpdates = frame.getInt();
+        for (int i = 0; i < numberOfUpdates; i++) {
+            final byte operation = frame.get();
+            final long sequence = frame.getLong();
+            final int index = frame.getInt();
+            final LocalDateTime time = LocalDateTime.ofEpochSecond(frame.getLong(), frame.getInt(), ZoneOffset.UTC);
+            if (operation == ENTER) {
+                final byte[] plateBytes = new byte[frame.getShort() & 0xFFFF];
+                frame.get(plateBytes);
+                parking.replicateEnter(sequence, index, new String(plateBytes, StandardCharsets.UTF_8), time);
+            } else if (operation == LEAVE) {
+                parking.replicateLeave(sequence, index, time);
+            } else {
+                throw new StreamCorruptedException("Unknown replication operation " + operation);
+            }
+        }
+    }
+
+    /**
+     * Write a frame: its length then its content.
+     *
+     * @param frame
+     *         the frame content, from its position to its limit
+     * @param channel
+     *         the replication channel
+     *
+     * @throws IOException
+     *         if the channel cannot be written
+     */
+    static void writeFrame(@NonNull final ByteBuffer frame, @NonNull final WritableByteChannel channel) throws
+            IOException {
+        final ByteBuffer length = ByteBuffer.allocate(Integer.BYTES).putInt(frame.remaining()).flip();
+        while (length.hasRemaining()) {
+            channel.write(length);
+        }
+        while (frame.hasRemaining()) {
+            channel.write(frame);
+        }
+    }
+
+    /**
+     * Read a complete frame.
+     *
+     * @param channel
+     *         the replication channel
+     *
+     * @return the frame content
+     *
+     * @throws IOException
+     *         if the channel cannot be read or was closed
+     */
+    static ByteBuffer readFrame(@NonNull final ReadableByteChannel channel) throws IOException {
+        final ByteBuffer length = readFully(ByteBuffer.allocate(Integer.BYTES), channel);
+        final int frameLength = length.getInt();
+        if (frameLength < 0) {
+            throw new StreamCorruptedException("Invalid replication frame length " + frameLength);
+        }
+        return readFully(ByteBuffer.allocate(frameLength), channel);
+    }
+
+    private static ByteBuffer readFully(final ByteBuffer buffer, final ReadableByteChannel channel) throws
+            IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("Replication stream closed");
+            }
+        }
+        return buffer.flip();
+    }
+}
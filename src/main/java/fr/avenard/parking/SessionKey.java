@@ -0,0 +1,48 @@
+package fr.avenard.parking;
+
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.Objects;
+
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * Key of a parking session, ordered by arrival time then slot index.
+ * A slot holds a single session at a time, so the key is unique among the current sessions.
+ */
+@Getter
+class SessionKey implements Comparable<SessionKey> {
+    private static final Comparator<SessionKey> ORDER = Comparator.comparing(SessionKey::getParkedAt)
+            .thenComparingInt(SessionKey::getSlotIndex);
+
+    private final LocalDateTime parkedAt;
+    private final int slotIndex;
+
+    SessionKey(@NonNull final LocalDateTime parkedAt, final int slotIndex) {
+        this.parkedAt = parkedAt;
+        this.slotIndex = slotIndex;
+    }
+
+    @Override
+    public int compareTo(@NonNull final SessionKey other) {
+        return ORDER.compare(this, other);
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        final SessionKey that = (SessionKey) o;
+        return this.slotIndex == that.slotIndex && this.parkedAt.equals(that.parkedAt);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(this.parkedAt, this.slotIndex);
+    }
+}
@@ -0,0 +1,104 @@
+package fr.avenard.parking;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.Setter;
+
+/**
+ * Consistent view of the parking slots at a given sequence, while the gates keep updating them (copy-on-write).
+ * <p>
+ * The parking copies the state of a slot into the capture before updating it for the first time: a reader reads
+ * the current state of a slot, then uses the copy if any. Any update made before the read left a copy behind, so the
+ * reader always gets the state of the slot at the capture sequence.
+ */
+class SlotCapture {
+    /**
+     * Sequence of the last event included in the capture
+     */
+    @Getter
+    private final long sequence;
+    /**
+     * The parking slots when the capture was opened
+     */
+    @Getter
+    private final ParkingSlot[] slots;
+    /**
+     * The occupancy chunks updated since the previous occupancy snapshot, null unless capturing the occupancy
+     */
+    @Getter
+    @Setter(AccessLevel.PACKAGE)
+    private long[] dirtyChunks;
+    private final Map<Integer, SlotState> copies = new ConcurrentHashMap<>();
+
+    SlotCapture(final long sequence, @NonNull final ParkingSlot[] slots) {
+        this.sequence = sequence;
+        this.slots = slots;
+    }
+
+    /**
+     * Copy the state of a slot, unless it is already copied.
+     * Called by the parking, with its lock held, before updating the slot.
+     *
+     * @param parkingSlot
+     *         the slot about to be updated
+     */
+    void preserve(@NonNull final ParkingSlot parkingSlot) {
+        this.copies.computeIfAbsent(parkingSlot.getIndex(), index -> SlotState.of(parkingSlot.getCar()));
+    }
+
+    /**
+     * Get the copy of a slot state. It must be called after reading the current slot state.
+     *
+     * @param parkingSlot
+     *         a slot of the parking
+     *
+     * @return the state of the slot at the capture sequence, or null if the slot was not updated since
+     */
+    SlotState copyOf(@NonNull final ParkingSlot parkingSlot) {
+        return this.copies.get(parkingSlot.getIndex());
+    }
+
+    /**
+     * Read the arrival time of the car parked on a slot at the capture sequence.
+     *
+     * @param parkingSlot
+     *         a slot of the parking
+     *
+     * @return the arrival time, null if the slot was free
+     */
+    LocalDateTime parkedAtOf(@NonNull final ParkingSlot parkingSlot) {
+        final Car car = parkingSlot.getCar();
+        final LocalDateTime parkedAt = car == null ? null : car.getParkedAt();
+        final SlotState copy = this.copyOf(parkingSlot);
+        return copy == null ? parkedAt : copy.getParkedAt();
+    }
+
+    /**
+     * State of a slot: the plate and arrival time of the car parked, or nothing if the slot is free.
+     */
+    @Getter
+    static class SlotState {
+        private static final SlotState FREE = new SlotState(null, null);
+
+        private final String plate;
+        private final LocalDateTime parkedAt;
+
+        private SlotState(final String plate, final LocalDateTime parkedAt) {
+            this.plate = plate;
+            this.parkedAt = parkedAt;
+        }
+
+        static SlotState of(final Car car) {
+            return car == null ? FREE : new SlotState(car.getPlate(), car.getParkedAt());
+        }
+
+        boolean isFree() {
+            return this.parkedAt == null;
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package fr.avenard.parking.admission;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import javax.validation.constraints.Positive;
+
+import fr.avenard.parking.Car;
+import fr.avenard.parking.Parking;
+import fr.avenard.parking.ParkingSlot;
+import fr.avenard.parking.exception.AdmissionRejectedException;
+import fr.avenard.parking.exception.ParkingException;
+import fr.avenard.parking.exception.SlotNotFoundException;
+import lombok.NonNull;
+
+/**
+ * Admission control in front of {@link Parking#enter(Car)}, so that a surge of entries on a full parking lot, or a
+ * gate retrying in a loop, does not starve the exits and the billing of the parking lock. An entry is admitted in
+ * three steps, the cheapest first:
+ * <ol>
+ * <li>no free slot of the car type: rejected at once with a {@link SlotNotFoundException}, without the lock (a car
+ * already parked is rejected the same way)</li>
+ * <li>the token bucket of its gate is empty: rejected with an {@link AdmissionRejectedException}</li>
+ * <li>the entries in flight reach the concurrency limit: rejected with an {@link AdmissionRejectedException}. The
+ * limit adapts to the latency of the entries: it shrinks when they queue for the parking lock</li>
+ * </ol>
+ * The exits and the billing go to the parking directly.
+ */
+public class AdmissionController {
+    private static final int INITIAL_LIMIT = 16;
+    private static final int DEFAULT_MAX_LIMIT = 256;
+
+    private final Parking parking;
+    private final double ratePerGate;
+    private final int burstPerGate;
+    private final LongSupplier nanoTime;
+    private final Map<String, TokenBucket> buckets = new ConcurrentHashMap<>(); // by gate
+    private final ConcurrencyLimit limit;
+    private final LongAdder noSlotRejections = new LongAdder();
+    private final LongAdder rateRejections = new LongAdder();
+    private final LongAdder overloadRejections = new LongAdder();
+
+    /**
+     * Create the admission control of a parking.
+     *
+     * @param parking
+     *         the parking
+     * @param ratePerGate
+     *         entries per second allowed for each gate
+     * @param burstPerGate
+     *         entries allowed at once for each gate
+     * @param maxConcurrency
+     *         highest number of entries in flight
+     */
+    public AdmissionController(@NonNull final Parking parking, @Positive final double ratePerGate,
+            @Positive final int burstPerGate, @Positive final int maxConcurrency) {
+        this(parking, ratePerGate, burstPerGate, maxConcurrency, System::nanoTime);
+    }
+
+    /**
+     * Create the admission control of a parking, up to 256 entries in flight.
+     *
+     * @param parking
+     *         the parking
+     * @param ratePerGate
+     *         entries per second allowed for each gate
+     * @param burstPerGate
+     *         entries allowed at once for each gate
+     */
+    public AdmissionController(@NonNull final Parking parking, @Positive final double ratePerGate,
+            @Positive final int burstPerGate) {
+        this(parking, ratePerGate, burstPerGate, DEFAULT_MAX_LIMIT);
+    }
+
+    /**
+     * Create the admission control of a parking.
+     *
+     * @param parking
+     *         the parking
+     * @param ratePerGate
+     *         entries per second allowed for each gate
+     * @param burstPerGate
+     *         entries allowed at once for each gate
+     * @param maxConcurrency
+     *         highest number of entries in flight
+     * @param nanoTime
+     *         time source, like {@link System#nanoTime()}
+     */
+    AdmissionController(@NonNull final Parking parking, @Positive final double ratePerGate,
+            @Positive final int burstPerGate, @Positive final int maxConcurrency, @NonNull final LongSupplier nanoTime) {
+        if (ratePerGate <= 0 || burstPerGate <= 0 || maxConcurrency <= 0) {
+            throw new IllegalArgumentException("The rate, the burst and the concurrency must be positive");
+        }
+        this.parking = parking;
+        this.ratePerGate = ratePerGate;
+        this.burstPerGate = burstPerGate;
+        this.nanoTime = nanoTime;
+        this.limit = new ConcurrencyLimit(Math.min(INITIAL_LIMIT, maxConcurrency), maxConcurrency, nanoTime);
+    }
+
+    /**
+     * Let a car enter the parking lot through a gate, if admitted.
+     *
+     * @param gate
+     *         id of the gate
+     * @param car
+     *         car to store in the parking lot
+     *
+     * @return the parking slot where the car is parked
+     *
+     * @throws SlotNotFoundException
+     *         if there is no slot available for the car
+     * @throws AdmissionRejectedException
+     *         if the gate sent too many entries, or the parking is overloaded
+     * @throws ParkingException
+     *         if the car is already parked in the parking lot
+     * @see Parking#enter(Car)
+     */
+    public ParkingSlot enter(@NonNull final String gate, @NonNull final Car car) throws ParkingException {
+        if (!this.parking.hasFreeSlot(car.getType())) {
+            this.noSlotRejections.increment();
+            throw new SlotNotFoundException("No Slot found for " + car);
+        }
+
+        final long now = this.nanoTime.getAsLong();
+        final TokenBucket bucket = this.buckets.computeIfAbsent(gate,
+                key -> new TokenBucket(this.ratePerGate, this.burstPerGate, now));
+        if (!bucket.tryTake(now)) {
+            this.rateRejections.increment();
+            throw new AdmissionRejectedException("Too many entries from gate " + gate);
+        }
+
+        if (!this.limit.tryAcquire()) {
+            this.overloadRejections.increment();
+            throw new AdmissionRejectedException("Parking overloaded, " + car + " not admitted");
+        }
+        final long start = this.nanoTime.getAsLong();
+        try {
+            return this.parking.enter(car);
+        } finally {
+            this.limit.release(this.nanoTime.getAsLong() - start);
+        }
+    }
+
+    /**
+     * Forget a gate taken out of service.
+     *
+     * @param gate
+     *         id of the gate
+     */
+    public void removeGate(@NonNull final String gate) {
+        this.buckets.remove(gate);
+    }
+
+    /**
+     * @return the current limit of entries in flight
+     */
+    public int getConcurrencyLimit() {
+        return this.limit.getLimit();
+    }
+
+    /**
+     * @return the number of entries in flight
+     */
+    public int getEntriesInFlight() {
+        return this.limit.getInFlight();
+    }
+
+    /**
+     * @return the number of entries rejected because no slot was free
+     */
+    public long getNoSlotRejections() {
+        return this.noSlotRejections.sum();
+    }
+
+    /**
+     * @return the number of entries rejected by the rate limit of their gate
+     */
+    public long getRateRejections() {
+        return this.rateRejections.sum();
+    }
+
+    /**
+     * @return the number of entries rejected by the concurrency limit
+     */
+    public long getOverloadRejections() {
+        return this.overloadRejections.sum();
+    }
+}
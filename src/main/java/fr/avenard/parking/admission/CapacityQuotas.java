@@ -0,0 +1,289 @@
+package fr.avenard.parking.admission;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.validation.constraints.PositiveOrZero;
+
+import fr.avenard.parking.Car;
+import fr.avenard.parking.CarType;
+import fr.avenard.parking.Parking;
+import fr.avenard.parking.ParkingSlot;
+import fr.avenard.parking.event.ParkingEvent;
+import fr.avenard.parking.event.ParkingEventType;
+import fr.avenard.parking.event.ParkingListener;
+import fr.avenard.parking.exception.ParkingException;
+import fr.avenard.parking.exception.QuotaExceededException;
+import lombok.NonNull;
+import lombok.Synchronized;
+
+/**
+ * Capacity quotas of the {@link CustomerClass}es in front of {@link Parking#enter(Car)}: each class is guaranteed a
+ * minimum number of slots of each {@link CarType}, and the slots not reserved are a surplus shared by all the
+ * classes. A car takes a slot of its class reservation first, then borrows from the surplus:
+ * <p>
+ * {@code new CapacityQuotas(parking).withReserved(CarType.SEDAN, CustomerClass.PERMIT_HOLDER, 40)}
+ * <p>
+ * The quotas are counters updated with compare-and-set, never a scan of the slots nor the lock of the parking: the
+ * reserved slots taken and the surplus slots borrowed by a class are packed in a single word, so a class never takes
+ * more than its reservation plus the surplus, even under concurrent entries. The quotas listen to the parking: a car
+ * leaving through any gate, or released by an operator, gives its slot back to its class.
+ * <p>
+ * Every entry of a slot type with reservations must go through the quotas: the quotas are the
+ * {@link Parking#withEntryCheck entry check} of the parking, and reject the cars entering the parking directly, or
+ * waiting for a slot, with a {@link QuotaExceededException}. The types without reservation are not checked.
+ */
+public class CapacityQuotas implements ParkingListener {
+    private static final CustomerClass[] CLASSES = CustomerClass.values();
+    private static final int RESERVED_SHIFT = 32;
+    private static final long RESERVED_ONE = 1L << RESERVED_SHIFT;
+    private static final long BORROWED_MASK = RESERVED_ONE - 1;
+
+    private final Parking parking;
+    private final Map<CarType, TypeQuotas> quotas = new EnumMap<>(CarType.class);
+    private final Map<Car, CustomerClass> admitted = new ConcurrentHashMap<>(); // by plate id
+    private final LongAdder rejections = new LongAdder();
+
+    /**
+     * Create the quotas of a parking, without any reservation: all the slots are shared.
+     * The quotas register themselves as a listener and as the entry check of the parking.
+     *
+     * @param parking
+     *         the parking
+     */
+    public CapacityQuotas(@NonNull final Parking parking) {
+        this.parking = parking;
+        for (CarType carType : CarType.values()) {
+            this.quotas.put(carType, new TypeQuotas());
+        }
+        parking.addListener(this).withEntryCheck(this::checkAdmitted);
+    }
+
+    /**
+     * Guarantee slots of a type to a customer class. Configure the quotas before the cars enter through them.
+     *
+     * @param slotsType
+     *         a supported slot type
+     * @param customerClass
+     *         the customer class
+     * @param reservedSlots
+     *         the number of slots only the class can take, replacing the previous reservation
+     *
+     * @return this to chain calls (fluent interface)
+     *
+     * @throws ParkingException
+     *         if the reservations of the type exceed its slots
+     */
+    @Synchronized
+    public CapacityQuotas withReserved(@NonNull final CarType slotsType,
+            @NonNull final CustomerClass customerClass, @PositiveOrZero final int reservedSlots)
+            throws ParkingException {
+        if (reservedSlots < 0) {
+            throw new IllegalArgumentException("The reserved slots must be positive");
+        }
+        final TypeQuotas typeQuotas = this.quotas.get(slotsType);
+        final long reservedTotal = typeQuotas.reservedTotal - typeQuotas.reserved.get(customerClass.ordinal())
+                + reservedSlots;
+        if (reservedTotal > this.parking.totalSlots(slotsType)) {
+            throw new ParkingException("Cannot reserve " + reservedTotal + " slots out of "
+                    + this.parking.totalSlots(slotsType) + " " + slotsType + " slots");
+        }
+        typeQuotas.reserved.set(customerClass.ordinal(), reservedSlots);
+        typeQuotas.reservedTotal = reservedTotal; // publishes the reservation
+        return this;
+    }
+
+    /**
+     * Let a car of a customer class enter the parking lot, if its class has a slot left.
+     *
+     * @param car
+     *         car to store in the parking lot
+     * @param customerClass
+     *         the customer class of the car
+     *
+     * @return the parking slot where the car is parked
+     *
+     * @throws QuotaExceededException
+     *         if the class took its reservation and the surplus is exhausted
+     * @throws ParkingException
+     *         if the car is already parked in the parking lot, or no slot is free
+     * @see Parking#enter(Car)
+     */
+    public ParkingSlot enter(@NonNull final Car car, @NonNull final CustomerClass customerClass)
+            throws ParkingException {
+        if (this.admitted.putIfAbsent(car, customerClass) != null) {
+            throw new ParkingException("Car is already parked in the parking");
+        }
+        final TypeQuotas typeQuotas = this.quotas.get(car.getType());
+        if (!typeQuotas.tryAcquire(customerClass.ordinal(), this.shared(car.getType(), typeQuotas))) {
+            this.admitted.remove(car, customerClass);
+            this.rejections.increment();
+            throw new QuotaExceededException("No slot left for " + customerClass + " " + car);
+        }
+        try {
+            return this.parking.enter(car);
+        } catch (ParkingException | RuntimeException e) {
+            if (this.admitted.remove(car, customerClass)) {
+                typeQuotas.release(customerClass.ordinal());
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Reject the cars entering the parking without a customer class, while their type has reservations.
+     *
+     * @param car
+     *         the car entering the parking lot
+     *
+     * @throws QuotaExceededException
+     *         if the car did not enter through {@link #enter(Car, CustomerClass)}
+     */
+    private void checkAdmitted(@NonNull final Car car) throws QuotaExceededException {
+        if (this.quotas.get(car.getType()).reservedTotal > 0 && !this.admitted.containsKey(car)) {
+            this.rejections.increment();
+            throw new QuotaExceededException("Cars must enter through the capacity quotas: " + car);
+        }
+    }
+
+    /**
+     * Give the slot of a car leaving the parking back to its class.
+     *
+     * @param event
+     *         a parking event
+     */
+    @Override
+    public void onEvent(@NonNull final ParkingEvent event) {
+        if (event.getType() == ParkingEventType.LEAVE) {
+            final Car car = event.getCar();
+            final CustomerClass customerClass = this.admitted.remove(car);
+            if (customerClass != null) {
+                this.quotas.get(car.getType()).release(customerClass.ordinal());
+            }
+        }
+    }
+
+    /**
+     * Returns how many slots of a type a customer class can still take, in O(1) (for the signage of its lane): the
+     * reserved slots it did not take, and the surplus not borrowed.
+     *
+     * @param slotsType
+     *         a supported slot type
+     * @param customerClass
+     *         the customer class
+     *
+     * @return a positive number
+     */
+    public long freeSlots(@NonNull final CarType slotsType, @NonNull final CustomerClass customerClass) {
+        final TypeQuotas typeQuotas = this.quotas.get(slotsType);
+        final long shared = this.shared(slotsType, typeQuotas);
+        final int index = customerClass.ordinal();
+        final long used = typeQuotas.used.get(index);
+        return Math.max(0, typeQuotas.reserved.get(index) - (used >>> RESERVED_SHIFT))
+                + Math.max(0, shared - typeQuotas.borrowed.get());
+    }
+
+    /**
+     * Returns how many slots of a type are taken by a customer class.
+     *
+     * @param slotsType
+     *         a supported slot type
+     * @param customerClass
+     *         the customer class
+     *
+     * @return a positive number
+     */
+    public long occupiedSlots(@NonNull final CarType slotsType, @NonNull final CustomerClass customerClass) {
+        final long used = this.quotas.get(slotsType).used.get(customerClass.ordinal());
+        return (used >>> RESERVED_SHIFT) + (used & BORROWED_MASK);
+    }
+
+    /**
+     * @return the number of entries rejected because their class had no slot left, or without a class
+     */
+    public long getQuotaRejections() {
+        return this.rejections.sum();
+    }
+
+    private long shared(final CarType slotsType, final TypeQuotas typeQuotas) {
+        final long reservedTotal = typeQuotas.reservedTotal; // read first, to see the reservation
+        return this.parking.totalSlots(slotsType) - reservedTotal;
+    }
+
+    /**
+     * The quotas of a slot type.
+     */
+    private static class TypeQuotas {
+        private final AtomicLongArray reserved = new AtomicLongArray(CLASSES.length); // by class, set under the lock
+        private volatile long reservedTotal;
+        // by class: the reserved slots taken in the high bits, the surplus slots borrowed in the low bits
+        private final AtomicLongArray used = new AtomicLongArray(CLASSES.length);
+        private final AtomicLong borrowed = new AtomicLong(); // surplus slots borrowed by all the classes
+
+        /**
+         * Take a reserved slot of a class, else borrow a slot of the surplus.
+         *
+         * @param index
+         *         ordinal of the class
+         * @param shared
+         *         the number of slots of the surplus
+         *
+         * @return false if the class took its reservation and the surplus is exhausted
+         */
+        private boolean tryAcquire(final int index, final long shared) {
+            long current = this.used.get(index);
+            while ((current >>> RESERVED_SHIFT) < this.reserved.get(index)) {
+                if (this.used.compareAndSet(index, current, current + RESERVED_ONE)) {
+                    return true;
+                }
+                current = this.used.get(index);
+            }
+
+            while (true) {
+                final long borrowedSlots = this.borrowed.get();
+                if (borrowedSlots >= shared) {
+                    return false;
+                }
+                if (this.borrowed.compareAndSet(borrowedSlots, borrowedSlots + 1)) {
+                    break;
+                }
+            }
+            this.used.incrementAndGet(index);
+
+            // a car of the class left meanwhile: move to its reserved slot and give the borrowed one back
+            current = this.used.get(index);
+            while ((current >>> RESERVED_SHIFT) < this.reserved.get(index) && (current & BORROWED_MASK) != 0) {
+                if (this.used.compareAndSet(index, current, current + RESERVED_ONE - 1)) {
+                    this.borrowed.decrementAndGet();
+                    break;
+                }
+                current = this.used.get(index);
+            }
+            return true;
+        }
+
+        /**
+         * Give a slot of a class back, a borrowed one first so the surplus is free for the other classes.
+         *
+         * @param index
+         *         ordinal of the class
+         */
+        private void release(final int index) {
+            while (true) {
+                final long current = this.used.get(index);
+                if ((current & BORROWED_MASK) != 0) {
+                    if (this.used.compareAndSet(index, current, current - 1)) {
+                        this.borrowed.decrementAndGet();
+                        return;
+                    }
+                } else if (this.used.compareAndSet(index, current, current - RESERVED_ONE)) {
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package fr.avenard.parking.admission;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+import lombok.Synchronized;
+
+/**
+ * Limit of the entries in flight, adapted to their latency (gradient algorithm): while the latency stays close to
+ * the lowest latency observed, the limit grows by its square root; when the entries queue for the parking lock, the
+ * latency rises and the limit shrinks in proportion.
+ * <p>
+ * The lowest latency is taken over the current and the previous windows of 30 seconds, so that the limit stays
+ * reduced during an entry storm, and follows a parking that got slower for good after a minute at most.
+ */
+class ConcurrencyLimit {
+    private static final int MIN_LIMIT = 1;
+    private static final double SMOOTHING = 0.2;
+    private static final double TOLERANCE = 2; // latency ratio tolerated before shrinking
+    private static final long MIN_LATENCY_WINDOW = TimeUnit.SECONDS.toNanos(30);
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final int maxLimit;
+    private final LongSupplier nanoTime;
+    private volatile int limit;
+    private double estimatedLimit; // guarded by the lock
+    private long minLatency = Long.MAX_VALUE; // of the current and previous windows, nanoseconds, guarded by the lock
+    private long windowMinLatency = Long.MAX_VALUE; // of the current window, nanoseconds, guarded by the lock
+    private long windowStart; // System#nanoTime, guarded by the lock
+    private double latency; // smoothed, nanoseconds, guarded by the lock
+
+    /**
+     * Create a limit.
+     *
+     * @param initialLimit
+     *         limit until latencies are observed
+     * @param maxLimit
+     *         highest limit
+     * @param nanoTime
+     *         time source, like {@link System#nanoTime()}
+     */
+    ConcurrencyLimit(final int initialLimit, final int maxLimit, final LongSupplier nanoTime) {
+        this.maxLimit = maxLimit;
+        this.nanoTime = nanoTime;
+        this.windowStart = nanoTime.getAsLong();
+        this.limit = initialLimit;
+        this.estimatedLimit = initialLimit;
+    }
+
+    /**
+     * Acquire a slot for an entry if the limit is not reached. Release it with {@link #release(long)}.
+     *
+     * @return true if acquired
+     */
+    boolean tryAcquire() {
+        int current;
+        do {
+            current = this.inFlight.get();
+            if (current >= this.limit) {
+                return false;
+            }
+        } while (!this.inFlight.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    /**
+     * Release the slot of an entry, and adapt the limit to its latency.
+     *
+     * @param latencyNanos
+     *         time the entry took
+     */
+    void release(final long latencyNanos) {
+        final int inFlight = this.inFlight.getAndDecrement();
+        this.update(Math.max(1, latencyNanos), inFlight);
+    }
+
+    @Synchronized
+    private void update(final long latencyNanos, final int inFlight) {
+        final long now = this.nanoTime.getAsLong();
+        if (now - this.windowStart >= MIN_LATENCY_WINDOW) {
+            this.minLatency = this.windowMinLatency; // forget the latencies older than the previous window
+            this.windowMinLatency = Long.MAX_VALUE;
+            this.windowStart = now;
+        }
+        this.windowMinLatency = Math.min(this.windowMinLatency, latencyNanos);
+        this.minLatency = Math.min(this.minLatency, latencyNanos);
+        this.latency = this.latency == 0 ? latencyNanos : this.latency + SMOOTHING * (latencyNanos - this.latency);
+
+        final double gradient = Math.max(0.5, Math.min(1, TOLERANCE * this.minLatency / this.latency));
+        if (gradient == 1 && inFlight < this.estimatedLimit / 2) {
+            return; // not limited by the limit: do not grow it
+        }
+        final double target = gradient * this.estimatedLimit + Math.sqrt(this.estimatedLimit);
+        this.estimatedLimit = Math.max(MIN_LIMIT, Math.min(this.maxLimit,
+                this.estimatedLimit + SMOOTHING * (target - this.estimatedLimit)));
+        this.limit = (int) this.estimatedLimit;
+    }
+
+    /**
+     * @return the current limit
+     */
+    int getLimit() {
+        return this.limit;
+    }
+
+    /**
+     * @return the number of entries in flight
+     */
+    int getInFlight() {
+        return this.inFlight.get();
+    }
+}
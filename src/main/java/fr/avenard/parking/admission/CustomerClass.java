@@ -0,0 +1,21 @@
+package fr.avenard.parking.admission;
+
+/**
+ * The customer classes sharing the slots of a parking lot, each entering through its own lane.
+ *
+ * @see CapacityQuotas
+ */
+public enum CustomerClass {
+    /**
+     * Subscribers holding a parking permit
+     */
+    PERMIT_HOLDER,
+    /**
+     * Priority customers (disabled drivers, staff, emergency vehicles...)
+     */
+    PRIORITY,
+    /**
+     * Customers without a permit, paying for their stay
+     */
+    WALK_IN
+}
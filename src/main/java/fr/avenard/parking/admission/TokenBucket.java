@@ -0,0 +1,56 @@
+package fr.avenard.parking.admission;
+
+import java.util.concurrent.TimeUnit;
+
+import lombok.Synchronized;
+
+/**
+ * Token bucket of a gate: each entry takes a token, the tokens are refilled at a constant rate up to the burst size.
+ * A gate only contends with itself for its bucket.
+ */
+class TokenBucket {
+    private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final double tokensPerNano;
+    private final double burst;
+    private double tokens; // guarded by the lock
+    private long refilledAt; // guarded by the lock
+
+    /**
+     * Create a full bucket.
+     *
+     * @param ratePerSecond
+     *         tokens refilled per second
+     * @param burst
+     *         capacity of the bucket
+     * @param nanoTime
+     *         the current time, from {@link System#nanoTime()}
+     */
+    TokenBucket(final double ratePerSecond, final int burst, final long nanoTime) {
+        this.tokensPerNano = ratePerSecond / NANOS_PER_SECOND;
+        this.burst = burst;
+        this.tokens = burst;
+        this.refilledAt = nanoTime;
+    }
+
+    /**
+     * Take a token if there is one.
+     *
+     * @param nanoTime
+     *         the current time, from {@link System#nanoTime()}
+     *
+     * @return true if a token was taken
+     */
+    @Synchronized
+    boolean tryTake(final long nanoTime) {
+        if (nanoTime > this.refilledAt) {
+            this.tokens = Math.min(this.burst, this.tokens + (nanoTime - this.refilledAt) * this.tokensPerNano);
+            this.refilledAt = nanoTime;
+        }
+        if (this.tokens < 1) {
+            return false;
+        }
+        this.tokens--;
+        return true;
+    }
+}
@@ -0,0 +1,55 @@
+package fr.avenard.parking.energy;
+
+import java.math.BigDecimal;
+
+import lombok.Getter;
+
+/**
+ * Energy delivered to a car while it was parked on a charging slot.
+ */
+@Getter
+public class ChargeSession {
+    private static final BigDecimal WATT_HOURS_PER_KWH = BigDecimal.valueOf(1000);
+
+    private final int slotIndex;
+    private final int circuit;
+    /**
+     * Energy delivered, in watt-hours
+     */
+    private final long wattHours;
+    /**
+     * Highest power sampled, in watts
+     */
+    private final long peakWatts;
+    /**
+     * Number of meter samples aggregated
+     */
+    private final long samples;
+
+    ChargeSession(final int slotIndex, final int circuit, final long wattHours, final long peakWatts,
+            final long samples) {
+        this.slotIndex = slotIndex;
+        this.circuit = circuit;
+        this.wattHours = wattHours;
+        this.peakWatts = peakWatts;
+        this.samples = samples;
+    }
+
+    /**
+     * @return the energy delivered, in kilowatt-hours
+     */
+    public BigDecimal getKilowattHours() {
+        return BigDecimal.valueOf(this.wattHours).divide(WATT_HOURS_PER_KWH);
+    }
+
+    @Override
+    public String toString() {
+        return "ChargeSession{" +
+                "slotIndex=" + slotIndex +
+                ", circuit=" + circuit +
+                ", wattHours=" + wattHours +
+                ", peakWatts=" + peakWatts +
+                ", samples=" + samples +
+                '}';
+    }
+}
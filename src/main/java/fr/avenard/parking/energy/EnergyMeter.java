@@ -0,0 +1,20 @@
+package fr.avenard.parking.energy;
+
+/**
+ * Feed of the energy meters of the charging slots.
+ * Implementations read the meters of the parking lot (Modbus, OCPP, etc), they must answer quickly as the meters are
+ * sampled at high frequency.
+ */
+@FunctionalInterface
+public interface EnergyMeter {
+
+    /**
+     * Read the energy register of the meter of a slot: the energy delivered since the meter was installed.
+     *
+     * @param slotIndex
+     *         index of the slot in its parking
+     *
+     * @return the energy register, in watt-hours
+     */
+    long readWattHours(int slotIndex);
+}
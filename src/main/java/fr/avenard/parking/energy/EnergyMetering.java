@@ -0,0 +1,392 @@
+package fr.avenard.parking.energy;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.validation.constraints.Positive;
+
+import fr.avenard.parking.Car;
+import fr.avenard.parking.event.ParkingEvent;
+import fr.avenard.parking.event.ParkingListener;
+import lombok.NonNull;
+import lombok.Synchronized;
+
+/**
+ * Energy metering of the charging slots, registered as a listener on the parking.
+ * <p>
+ * A charge starts when a car parks on a metered slot and ends when it leaves. While it charges, the meter of its slot
+ * is sampled ({@link #sample()}, at high frequency): each sample is aggregated at once into the charge (energy, peak
+ * power), and only the last samples of each slot are kept, in a ring buffer of primitives, to compute the current
+ * power. Once the car left, its {@link ChargeSession} is kept until the car is billed (see
+ * {@link fr.avenard.parking.policy.ChargingPolicy}).
+ * <p>
+ * The gate events never read the meters: the first sample of a charge takes its start reading, and a charge ends with
+ * its last sample. The meters are read without the lock the gate events take, so a slow meter never holds a gate.
+ * <p>
+ * The slots are wired to electrical circuits: the power and the energy of each circuit are available at any time,
+ * without lock, for load management.
+ */
+public class EnergyMetering implements ParkingListener {
+    private static final int DEFAULT_WINDOW = 16;
+    private static final long NANOS_PER_HOUR = TimeUnit.HOURS.toNanos(1);
+
+    private final EnergyMeter meter;
+    private final int[] circuitOfSlot; // -1 for the slots without meter
+    private final int window;
+    private final BitSet charging; // slots charging a car, guarded by the lock
+    private final BitSet starting; // slots charging a car not sampled yet, guarded by the lock
+    private final long[] generation; // charges started or ended on each slot, guarded by the lock
+
+    // aggregates of the current charge of each slot, guarded by the lock
+    private final long[] startWattHours;
+    private final long[] lastWattHours;
+    private final long[] powerWatts;
+    private final long[] peakWatts;
+    private final long[] samples;
+
+    // last samples of each slot (window per slot), guarded by the lock
+    private final long[] ringWattHours;
+    private final long[] ringNanos;
+    private final int[] ringHead;
+    private final int[] ringSize;
+
+    // slots being sampled, their generation and their meter reading, guarded by the sampling lock
+    private final Object samplingLock = new Object();
+    private final int[] sampledSlots;
+    private final long[] sampledGenerations;
+    private final long[] readings;
+
+    private final AtomicLongArray circuitPower; // watts
+    private final AtomicLongArray circuitEnergy; // watt-hours delivered since the metering started
+    private final Map<Car, ChargeSession> charges = new ConcurrentHashMap<>(); // cars not billed yet
+
+    /**
+     * Create the metering of a parking.
+     *
+     * @param meter
+     *         the meters feed
+     * @param circuitOfSlot
+     *         circuit of each slot by slot index, -1 for the slots without meter
+     * @param window
+     *         number of samples kept per slot to compute its power
+     */
+    public EnergyMetering(@NonNull final EnergyMeter meter, @NonNull final int[] circuitOfSlot,
+            @Positive final int window) {
+        if (window < 2) {
+            throw new IllegalArgumentException("The power is computed from 2 samples at least");
+        }
+        this.meter = meter;
+        this.circuitOfSlot = circuitOfSlot.clone();
+        this.window = window;
+        final int slots = circuitOfSlot.length;
+        this.charging = new BitSet(slots);
+        this.starting = new BitSet(slots);
+        this.generation = new long[slots];
+        this.startWattHours = new long[slots];
+        this.lastWattHours = new long[slots];
+        this.powerWatts = new long[slots];
+        this.peakWatts = new long[slots];
+        this.samples = new long[slots];
+        this.ringWattHours = new long[slots * window];
+        this.ringNanos = new long[slots * window];
+        this.ringHead = new int[slots];
+        this.ringSize = new int[slots];
+        this.sampledSlots = new int[slots];
+        this.sampledGenerations = new long[slots];
+        this.readings = new long[slots];
+        final int circuits = Arrays.stream(circuitOfSlot).max().orElse(-1) + 1;
+        this.circuitPower = new AtomicLongArray(circuits);
+        this.circuitEnergy = new AtomicLongArray(circuits);
+    }
+
+    /**
+     * Create the metering of a parking, computing the power from the last 16 samples.
+     *
+     * @param meter
+     *         the meters feed
+     * @param circuitOfSlot
+     *         circuit of each slot by slot index, -1 for the slots without meter
+     */
+    public EnergyMetering(@NonNull final EnergyMeter meter, @NonNull final int[] circuitOfSlot) {
+        this(meter, circuitOfSlot, DEFAULT_WINDOW);
+    }
+
+    /**
+     * Start a charge when a car parks on a metered slot, end it when the car leaves, without reading the meter.
+     *
+     * @param event
+     *         a parking event
+     */
+    @Override
+    @Synchronized
+    public void onEvent(@NonNull final ParkingEvent event) {
+        switch (event.getType()) {
+            case ENTER:
+                final int slot = event.getSlot().getIndex();
+                if (this.isMetered(slot)) {
+                    this.start(slot);
+                }
+                break;
+            case LEAVE:
+                final int left = event.getSlot().getIndex();
+                if (this.isMetered(left) && this.charging.get(left)) {
+                    this.charges.put(event.getCar(), this.stop(left));
+                }
+                break;
+            case BILL:
+                this.charges.remove(event.getCar());
+                break;
+            default:
+        }
+    }
+
+    /**
+     * Sample the meters of the slots charging a car.
+     */
+    public void sample() {
+        this.sample(System.nanoTime());
+    }
+
+    /**
+     * Sample the meters of the slots charging a car. The meters are read without the lock of the gate events.
+     *
+     * @param nanoTime
+     *         time of the samples, from {@link System#nanoTime()}
+     */
+    @Synchronized("samplingLock")
+    void sample(final long nanoTime) {
+        final int count = this.collect();
+        for (int i = 0; i < count; i++) {
+            this.readings[i] = this.meter.readWattHours(this.sampledSlots[i]);
+        }
+        this.aggregate(count, nanoTime);
+    }
+
+    /**
+     * Sample the meters periodically.
+     *
+     * @param scheduler
+     *         the scheduler running the sampling
+     * @param period
+     *         the time between two samples
+     *
+     * @return the scheduled sampling, cancel it to stop
+     */
+    public ScheduledFuture<?> sampleEvery(@NonNull final ScheduledExecutorService scheduler,
+            @NonNull final Duration period) {
+        return scheduler.scheduleAtFixedRate(this::sample, 0, period.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Get the charge of a car that left a charging slot and was not billed yet.
+     *
+     * @param car
+     *         a car
+     *
+     * @return the charge, null if the car did not charge
+     */
+    public ChargeSession chargeOf(@NonNull final Car car) {
+        return this.charges.get(car);
+    }
+
+    /**
+     * Get the energy delivered to the car charging on a slot.
+     *
+     * @param slotIndex
+     *         index of the slot
+     *
+     * @return the energy delivered, in watt-hours, 0 if no car charges
+     */
+    @Synchronized
+    public long getWattHours(final int slotIndex) {
+        return this.isMetered(slotIndex) && this.charging.get(slotIndex) && !this.starting.get(slotIndex)
+                ? this.lastWattHours[slotIndex] - this.startWattHours[slotIndex] : 0;
+    }
+
+    /**
+     * Get the power delivered to the car charging on a slot, over the last samples.
+     *
+     * @param slotIndex
+     *         index of the slot
+     *
+     * @return the power, in watts, 0 if no car charges
+     */
+    @Synchronized
+    public long getPowerWatts(final int slotIndex) {
+        return this.isMetered(slotIndex) ? this.powerWatts[slotIndex] : 0;
+    }
+
+    /**
+     * Get the power delivered by a circuit, as of the last samples.
+     *
+     * @param circuit
+     *         a circuit
+     *
+     * @return the power, in watts
+     */
+    public long getCircuitPowerWatts(final int circuit) {
+        return this.circuitPower.get(circuit);
+    }
+
+    /**
+     * Get the energy delivered by a circuit since the metering started.
+     *
+     * @param circuit
+     *         a circuit
+     *
+     * @return the energy, in watt-hours
+     */
+    public long getCircuitWattHours(final int circuit) {
+        return this.circuitEnergy.get(circuit);
+    }
+
+    /**
+     * @return the number of circuits
+     */
+    public int getNumberOfCircuits() {
+        return this.circuitPower.length();
+    }
+
+    private boolean isMetered(final int slot) {
+        return slot >= 0 && slot < this.circuitOfSlot.length && this.circuitOfSlot[slot] >= 0;
+    }
+
+    /**
+     * Start the charge of a slot, its start reading is taken by the next sample.
+     * It must be called with the lock held.
+     *
+     * @param slot
+     *         index of the slot
+     */
+    private void start(final int slot) {
+        if (this.charging.get(slot)) {
+            this.stop(slot); // missed leave, not expected
+        }
+        this.peakWatts[slot] = 0;
+        this.samples[slot] = 0;
+        this.charging.set(slot);
+        this.starting.set(slot);
+        this.generation[slot]++;
+    }
+
+    /**
+     * End the charge of a slot, as of its last sample.
+     * It must be called with the lock held.
+     *
+     * @param slot
+     *         index of the slot
+     *
+     * @return the charge
+     */
+    private ChargeSession stop(final int slot) {
+        final int circuit = this.circuitOfSlot[slot];
+        this.circuitPower.addAndGet(circuit, -this.powerWatts[slot]);
+        this.powerWatts[slot] = 0;
+        final long wattHours = this.starting.get(slot) ? 0 : this.lastWattHours[slot] - this.startWattHours[slot];
+        this.charging.clear(slot);
+        this.starting.clear(slot);
+        this.generation[slot]++;
+        return new ChargeSession(slot, circuit, wattHours, this.peakWatts[slot], this.samples[slot]);
+    }
+
+    /**
+     * Collect the slots to sample.
+     *
+     * @return the number of slots charging a car
+     */
+    @Synchronized
+    private int collect() {
+        int count = 0;
+        for (int slot = this.charging.nextSetBit(0); slot >= 0; slot = this.charging.nextSetBit(slot + 1)) {
+            this.sampledSlots[count] = slot;
+            this.sampledGenerations[count++] = this.generation[slot];
+        }
+        return count;
+    }
+
+    /**
+     * Aggregate the readings of the sampled slots, but those whose car left meanwhile.
+     *
+     * @param count
+     *         the number of slots sampled
+     * @param nanoTime
+     *         time of the samples, from {@link System#nanoTime()}
+     */
+    @Synchronized
+    private void aggregate(final int count, final long nanoTime) {
+        for (int i = 0; i < count; i++) {
+            final int slot = this.sampledSlots[i];
+            if (this.generation[slot] != this.sampledGenerations[i]) {
+                continue; // another charge
+            }
+            if (this.starting.get(slot)) {
+                this.startWattHours[slot] = this.readings[i];
+                this.lastWattHours[slot] = this.readings[i];
+                this.samples[slot] = 1;
+                this.ringHead[slot] = 0;
+                this.ringSize[slot] = 0;
+                this.push(slot, nanoTime, this.readings[i]);
+                this.starting.clear(slot);
+            } else {
+                this.aggregate(slot, nanoTime, this.readings[i]);
+            }
+        }
+    }
+
+    /**
+     * Aggregate a sample of the meter of a slot into its charge and its circuit.
+     * It must be called with the lock held.
+     *
+     * @param slot
+     *         index of the slot
+     * @param nanoTime
+     *         time of the sample, from {@link System#nanoTime()}
+     * @param reading
+     *         energy register of the meter
+     */
+    private void aggregate(final int slot, final long nanoTime, final long reading) {
+        final long wattHours = Math.max(reading, this.lastWattHours[slot]);
+        final int circuit = this.circuitOfSlot[slot];
+        this.circuitEnergy.addAndGet(circuit, wattHours - this.lastWattHours[slot]);
+        this.lastWattHours[slot] = wattHours;
+        this.samples[slot]++;
+
+        // power over the window: from the oldest sample kept to this one
+        final int oldest = slot * this.window
+                + (this.ringSize[slot] < this.window ? 0 : this.ringHead[slot]);
+        final long elapsed = nanoTime - this.ringNanos[oldest];
+        final long power = elapsed <= 0 ? this.powerWatts[slot]
+                : (wattHours - this.ringWattHours[oldest]) * NANOS_PER_HOUR / elapsed;
+        this.push(slot, nanoTime, wattHours);
+
+        this.circuitPower.addAndGet(circuit, power - this.powerWatts[slot]);
+        this.powerWatts[slot] = power;
+        this.peakWatts[slot] = Math.max(this.peakWatts[slot], power);
+    }
+
+    /**
+     * Add a sample to the ring buffer of a slot, replacing the oldest one once full.
+     * It must be called with the lock held.
+     *
+     * @param slot
+     *         index of the slot
+     * @param nanoTime
+     *         time of the sample, from {@link System#nanoTime()}
+     * @param wattHours
+     *         energy register of the meter
+     */
+    private void push(final int slot, final long nanoTime, final long wattHours) {
+        final int index = slot * this.window + this.ringHead[slot];
+        this.ringNanos[index] = nanoTime;
+        this.ringWattHours[index] = wattHours;
+        this.ringHead[slot] = (this.ringHead[slot] + 1) % this.window;
+        this.ringSize[slot] = Math.min(this.ringSize[slot] + 1, this.window);
+    }
+}
@@ -0,0 +1,128 @@
+package fr.avenard.parking.event;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import fr.avenard.parking.Car;
+import fr.avenard.parking.ParkingSlot;
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * Immutable event published by a {@link fr.avenard.parking.Parking} for each step of a parking session.
+ * Events of a parking are numbered with a strictly increasing {@link #sequence}.
+ */
+@Getter
+public class ParkingEvent {
+    /**
+     * The session step
+     */
+    private final ParkingEventType type;
+    /**
+     * Order of the event in the parking lot, slot events are numbered in the order they were applied
+     */
+    private final long sequence;
+    /**
+     * The car of the session
+     */
+    private final Car car;
+    /**
+     * The parking slot the car entered or left, null for {@link ParkingEventType#BILL} events
+     */
+    private final ParkingSlot slot;
+    /**
+     * The bill the car must pay, null unless {@link ParkingEventType#BILL} events
+     */
+    private final BigDecimal fare;
+    /**
+     * When the event occurred
+     */
+    private final LocalDateTime time;
+
+    private ParkingEvent(final ParkingEventType type, final long sequence, final Car car, final ParkingSlot slot,
+            final BigDecimal fare, final LocalDateTime time) {
+        this.type = type;
+        this.sequence = sequence;
+        this.car = car;
+        this.slot = slot;
+        this.fare = fare;
+        this.time = time;
+    }
+
+    /**
+     * Create the event of a car parking on a slot.
+     *
+     * @param sequence
+     *         order of the event in the parking lot
+     * @param slot
+     *         the slot where the car is parked
+     *
+     * @return the event
+     */
+    public static ParkingEvent enter(final long sequence, @NonNull final ParkingSlot slot) {
+        return new ParkingEvent(ParkingEventType.ENTER, sequence, slot.getCar(), slot, null,
+                slot.getCar().getParkedAt());
+    }
+
+    /**
+     * Create the event of a car leaving its slot.
+     *
+     * @param sequence
+     *         order of the event in the parking lot
+     * @param slot
+     *         the slot the car left
+     * @param car
+     *         the car that left the slot
+     *
+     * @return the event
+     */
+    public static ParkingEvent leave(final long sequence, @NonNull final ParkingSlot slot, @NonNull final Car car) {
+        return new ParkingEvent(ParkingEventType.LEAVE, sequence, car, slot, null, car.getLeftAt());
+    }
+
+    /**
+     * Create the event of a car getting its bill.
+     *
+     * @param sequence
+     *         order of the event in the parking lot
+     * @param car
+     *         the car that left the parking lot
+     * @param fare
+     *         the bill the car must pay
+     *
+     * @return the event
+     */
+    public static ParkingEvent bill(final long sequence, @NonNull final Car car, @NonNull final BigDecimal fare) {
+        return bill(sequence, car, fare, LocalDateTime.now());
+    }
+
+    /**
+     * Create the event of a car getting its bill at the provided time.
+     *
+     * @param sequence
+     *         order of the event in the parking lot
+     * @param car
+     *         the car that left the parking lot
+     * @param fare
+     *         the bill the car must pay
+     * @param time
+     *         when the bill was created
+     *
+     * @return the event
+     */
+    public static ParkingEvent bill(final long sequence, @NonNull final Car car, @NonNull final BigDecimal fare,
+            @NonNull final LocalDateTime time) {
+        return new ParkingEvent(ParkingEventType.BILL, sequence, car, null, fare, time);
+    }
+
+    @Override
+    public String toString() {
+        return "ParkingEvent{" +
+                "type=" + type +
+                ", sequence=" + sequence +
+                ", car=" + car +
+                ", fare=" + fare +
+                ", time=" + time +
+                '}';
+    }
+}
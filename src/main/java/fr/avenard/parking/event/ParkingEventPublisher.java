@@ -0,0 +1,201 @@
+package fr.avenard.parking.event;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import lombok.NonNull;
+
+/**
+ * Publish the events of a {@link fr.avenard.parking.Parking} to {@link Flow.Subscriber}s (payment terminals,
+ * signage, analytics, etc).
+ * <p>
+ * Register the publisher as a {@link ParkingListener} of the parking:
+ * <p>
+ * {@code parking.addListener(publisher); publisher.subscribe(subscriber);}
+ * <p>
+ * Each subscriber has its own bounded lock-free {@link RingBuffer}: the gate threads only add the event to the
+ * buffers and never wait for a subscriber. The events are delivered by the {@link Executor}, in batches as large
+ * as the subscriber demand. A subscriber that is too slow to keep up fills its buffer: it is then completed with
+ * an {@link IllegalStateException} once the buffered events are delivered, because it missed some events.
+ */
+public class ParkingEventPublisher implements Flow.Publisher<ParkingEvent>, ParkingListener, AutoCloseable {
+    private final Executor executor;
+    private final int bufferCapacity;
+    private final List<EventSubscription> subscriptions = new CopyOnWriteArrayList<>();
+    private volatile boolean closed;
+
+    /**
+     * Create a publisher that delivers the events with the provided executor.
+     *
+     * @param executor
+     *         executor delivering the events to the subscribers
+     * @param bufferCapacity
+     *         maximum number of events buffered per subscriber, rounded up to the next power of two
+     */
+    public ParkingEventPublisher(@NonNull final Executor executor, final int bufferCapacity) {
+        if (bufferCapacity <= 0) {
+            throw new IllegalArgumentException("Buffer capacity must be strictly positive");
+        }
+        this.executor = executor;
+        this.bufferCapacity = bufferCapacity;
+    }
+
+    /**
+     * Create a publisher that delivers the events with the common pool, and buffers at most
+     * {@link Flow#defaultBufferSize()} events per subscriber.
+     */
+    public ParkingEventPublisher() {
+        this(ForkJoinPool.commonPool(), Flow.defaultBufferSize());
+    }
+
+    @Override
+    public void subscribe(@NonNull final Flow.Subscriber<? super ParkingEvent> subscriber) {
+        final EventSubscription subscription = new EventSubscription(subscriber);
+        subscriber.onSubscribe(subscription);
+        if (this.closed) {
+            subscription.complete();
+        } else {
+            this.subscriptions.add(subscription);
+        }
+    }
+
+    /**
+     * Buffer the event for each subscriber, without waiting.
+     *
+     * @param event
+     *         the published event
+     */
+    @Override
+    public void onEvent(@NonNull final ParkingEvent event) {
+        for (EventSubscription subscription : this.subscriptions) {
+            subscription.offer(event);
+        }
+    }
+
+    /**
+     * @return the number of current subscribers
+     */
+    public int getNumberOfSubscribers() {
+        return this.subscriptions.size();
+    }
+
+    /**
+     * Complete every subscriber once its buffered events are delivered. Later subscribers are completed immediately.
+     */
+    @Override
+    public void close() {
+        this.closed = true;
+        for (EventSubscription subscription : this.subscriptions) {
+            subscription.complete();
+        }
+    }
+
+    /**
+     * Subscription of one subscriber, with its own buffer and demand.
+     * The events are delivered by a single drain task at a time (work-in-progress counter) so that
+     * the subscriber signals are never concurrent.
+     */
+    private class EventSubscription implements Flow.Subscription, Runnable {
+        private final Flow.Subscriber<? super ParkingEvent> subscriber;
+        private final RingBuffer<ParkingEvent> buffer;
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger workInProgress = new AtomicInteger();
+        private volatile boolean cancelled;
+        private volatile boolean completed;
+        private volatile boolean overflowed;
+        private volatile Throwable error;
+
+        private EventSubscription(final Flow.Subscriber<? super ParkingEvent> subscriber) {
+            this.subscriber = subscriber;
+            this.buffer = new RingBuffer<>(ParkingEventPublisher.this.bufferCapacity);
+        }
+
+        private void offer(final ParkingEvent event) {
+            if (!this.buffer.offer(event)) {
+                this.overflowed = true;
+                ParkingEventPublisher.this.subscriptions.remove(this); // stop buffering, the subscriber missed events
+            }
+            this.drain();
+        }
+
+        private void complete() {
+            this.completed = true;
+            this.drain();
+        }
+
+        @Override
+        public void request(final long n) {
+            if (n <= 0) {
+                this.error = new IllegalArgumentException("Subscribers must request a positive number of events");
+            } else {
+                // add the demand, capped to Long.MAX_VALUE (unbounded)
+                this.demand.getAndUpdate(current -> current + n < 0 ? Long.MAX_VALUE : current + n);
+            }
+            this.drain();
+        }
+
+        @Override
+        public void cancel() {
+            this.cancelled = true;
+            ParkingEventPublisher.this.subscriptions.remove(this);
+        }
+
+        /**
+         * Schedule the drain task unless it is already running.
+         */
+        private void drain() {
+            if (this.workInProgress.getAndIncrement() == 0) {
+                ParkingEventPublisher.this.executor.execute(this);
+            }
+        }
+
+        /**
+         * Deliver as many buffered events as requested, then the terminal signal if any.
+         */
+        @Override
+        public void run() {
+            int missed = 1;
+            do {
+                if (this.cancelled) {
+                    return;
+                }
+                if (this.error != null) {
+                    this.terminate(this.error);
+                    return;
+                }
+
+                final long requested = this.demand.get();
+                long delivered = 0;
+                ParkingEvent event;
+                while (delivered != requested && !this.cancelled && (event = this.buffer.poll()) != null) {
+                    this.subscriber.onNext(event);
+                    delivered++;
+                }
+                if (delivered != 0 && requested != Long.MAX_VALUE) {
+                    this.demand.addAndGet(-delivered);
+                }
+
+                if (this.buffer.isEmpty() && this.overflowed) {
+                    this.terminate(new IllegalStateException("Subscriber is too slow, events buffer overflowed"));
+                    return;
+                }
+                if (this.buffer.isEmpty() && this.completed) {
+                    this.cancel();
+                    this.subscriber.onComplete();
+                    return;
+                }
+                missed = this.workInProgress.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void terminate(final Throwable throwable) {
+            this.cancel();
+            this.subscriber.onError(throwable);
+        }
+    }
+}
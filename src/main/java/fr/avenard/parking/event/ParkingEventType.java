@@ -0,0 +1,19 @@
+package fr.avenard.parking.event;
+
+/**
+ * The steps of a parking session that are published as {@link ParkingEvent}.
+ */
+public enum ParkingEventType {
+    /**
+     * A car parked on a parking slot
+     */
+    ENTER,
+    /**
+     * A car left its parking slot
+     */
+    LEAVE,
+    /**
+     * A car got the bill to pay
+     */
+    BILL
+}
@@ -0,0 +1,28 @@
+package fr.avenard.parking.event;
+
+import lombok.NonNull;
+
+/**
+ * Listener notified synchronously by a {@link fr.avenard.parking.Parking} for each step of a parking session.
+ * <p>
+ * Listeners are called by the gate threads, ENTER and LEAVE events while the lock of the slot type is held:
+ * implementations must be fast and must not call the parking back. Entering or leaving a car of another type from a
+ * listener takes a second lock, out of the {@link fr.avenard.parking.CarType} order the batches and the snapshots lock
+ * the slot types in, and can deadlock with them. The events of different slot types are published concurrently, so
+ * implementations must be thread-safe. Use a {@link ParkingEventPublisher} to process the events asynchronously,
+ * and call the parking back from there.
+ * <p>
+ * The listeners are the only code of the users the parking runs with a lock held: the futures of
+ * {@link fr.avenard.parking.Parking#enterAsync} are completed once the locks are released.
+ */
+@FunctionalInterface
+public interface ParkingListener {
+
+    /**
+     * Called once the parking session step is done.
+     *
+     * @param event
+     *         the published event
+     */
+    void onEvent(@NonNull ParkingEvent event);
+}
@@ -0,0 +1,112 @@
+package fr.avenard.parking.event;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded lock-free ring buffer.
+ * Any thread can offer and poll elements: each cell has a sequence number telling whether it can be written
+ * or read for the current lap (Dmitry Vyukov's bounded queue), so no lock is ever taken.
+ *
+ * @param <E>
+ *         type of the elements
+ */
+class RingBuffer<E> {
+    private final AtomicReferenceArray<E> elements;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong head = new AtomicLong(); // next position to read
+    private final AtomicLong tail = new AtomicLong(); // next position to write
+
+    /**
+     * Create a ring buffer that holds at least the provided number of elements.
+     *
+     * @param capacity
+     *         strictly positive capacity, rounded up to the next power of two
+     */
+    RingBuffer(final int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be strictly positive");
+        }
+        final int size = Integer.highestOneBit(capacity) == capacity ? capacity : Integer.highestOneBit(capacity) << 1;
+        this.elements = new AtomicReferenceArray<>(size);
+        this.sequences = new AtomicLongArray(size);
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) {
+            this.sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Add an element at the end of the buffer, without waiting.
+     *
+     * @param element
+     *         a non-null element
+     *
+     * @return true if added, false if the buffer is full
+     */
+    boolean offer(final E element) {
+        long position = this.tail.get();
+        int index;
+        while (true) {
+            index = (int) (position & this.mask);
+            final long difference = this.sequences.get(index) - position;
+            if (difference == 0) {
+                if (this.tail.compareAndSet(position, position + 1)) {
+                    break;
+                }
+                position = this.tail.get();
+            } else if (difference < 0) {
+                return false; // the cell of the previous lap was not read yet
+            } else {
+                position = this.tail.get(); // another thread wrote this cell
+            }
+        }
+        this.elements.set(index, element);
+        this.sequences.set(index, position + 1); // publish the element to the readers
+        return true;
+    }
+
+    /**
+     * Remove the first element of the buffer, without waiting.
+     *
+     * @return the first element, or null if the buffer is empty
+     */
+    E poll() {
+        long position = this.head.get();
+        int index;
+        while (true) {
+            index = (int) (position & this.mask);
+            final long difference = this.sequences.get(index) - (position + 1);
+            if (difference == 0) {
+                if (this.head.compareAndSet(position, position + 1)) {
+                    break;
+                }
+                position = this.head.get();
+            } else if (difference < 0) {
+                return null; // the cell was not written yet
+            } else {
+                position = this.head.get(); // another thread read this cell
+            }
+        }
+        final E element = this.elements.get(index);
+        this.elements.set(index, null);
+        this.sequences.set(index, position + this.mask + 1); // free the cell for the next lap
+        return element;
+    }
+
+    /**
+     * @return true if there is no element to poll
+     */
+    boolean isEmpty() {
+        return this.head.get() >= this.tail.get();
+    }
+
+    /**
+     * @return the number of elements the buffer can hold
+     */
+    int capacity() {
+        return this.mask + 1;
+    }
+}
@@ -0,0 +1,23 @@
+package fr.avenard.parking.exception;
+
+/**
+ * Thrown when a car is not admitted to enter the parking lot: its gate sent too many entries, or the parking is
+ * overloaded. The gate may retry later.
+ */
+public class AdmissionRejectedException extends ParkingException {
+    private static final long serialVersionUID = -4157395460232851932L;
+
+    /**
+     * Constructs a new exception with the specified detail message.  The
+     * cause is not initialized, and may subsequently be initialized by
+     * a call to {@link #initCause}.
+     *
+     * @param message
+     *         the detail message. The detail message is saved for
+     *         later retrieval by the {@link #getMessage()} method.
+     */
+    public AdmissionRejectedException(final String message) {
+        super(message);
+    }
+
+}
@@ -0,0 +1,23 @@
+package fr.avenard.parking.exception;
+
+/**
+ * Thrown when a car cannot enter the parking lot because the slots left for its type are reserved to other customer
+ * classes.
+ */
+public class QuotaExceededException extends SlotNotFoundException {
+    private static final long serialVersionUID = -2365718439054125063L;
+
+    /**
+     * Constructs a new exception with the specified detail message.  The
+     * cause is not initialized, and may subsequently be initialized by
+     * a call to {@link #initCause}.
+     *
+     * @param message
+     *         the detail message. The detail message is saved for
+     *         later retrieval by the {@link #getMessage()} method.
+     */
+    public QuotaExceededException(final String message) {
+        super(message);
+    }
+
+}
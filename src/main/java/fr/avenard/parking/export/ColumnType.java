@@ -0,0 +1,32 @@
+package fr.avenard.parking.export;
+
+/**
+ * Primitive type of a column exported by a {@link ColumnarWriter}.
+ */
+public enum ColumnType {
+    /**
+     * Signed byte, e.g. an enum ordinal
+     */
+    BYTE(Byte.BYTES),
+    /**
+     * Signed 32 bits integer
+     */
+    INT(Integer.BYTES),
+    /**
+     * Signed 64 bits integer, stored as deltas from the previous row so that times compress well
+     */
+    LONG(Long.BYTES);
+
+    private final int width;
+
+    ColumnType(final int width) {
+        this.width = width;
+    }
+
+    /**
+     * @return the size of a value, in bytes
+     */
+    int width() {
+        return this.width;
+    }
+}
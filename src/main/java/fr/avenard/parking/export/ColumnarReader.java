@@ -0,0 +1,190 @@
+package fr.avenard.parking.export;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import lombok.NonNull;
+
+/**
+ * Reader of a columnar table written by a {@link ColumnarWriter}, one row group at a time.
+ * Not thread-safe.
+ */
+public class ColumnarReader {
+    private final ReadableByteChannel channel;
+    private final String[] names;
+    private final ColumnType[] types;
+    private final Inflater inflater = new Inflater();
+    private long[][] values; // by column, then by row of the group
+    private ByteBuffer raw = ByteBuffer.allocate(0);
+    private int rows;
+
+    /**
+     * Open a table.
+     *
+     * @param channel
+     *         channel to read the table from, it is not closed
+     *
+     * @throws IOException
+     *         if the header cannot be read or it is not a table
+     */
+    public ColumnarReader(@NonNull final ReadableByteChannel channel) throws IOException {
+        this.channel = channel;
+        final ByteBuffer header = this.read(Integer.BYTES + 2 * Short.BYTES);
+        if (header.getInt() != ColumnarWriter.MAGIC || header.getShort() != ColumnarWriter.VERSION) {
+            throw new StreamCorruptedException("Not a columnar table");
+        }
+        final int columns = header.getShort();
+        this.names = new String[columns];
+        this.types = new ColumnType[columns];
+        for (int column = 0; column < columns; column++) {
+            final ByteBuffer description = this.read(1 + Short.BYTES);
+            final int type = description.get();
+            if (type < 0 || type >= ColumnType.values().length) {
+                throw new StreamCorruptedException("Unknown column type " + type);
+            }
+            this.types[column] = ColumnType.values()[type];
+            final ByteBuffer name = this.read(description.getShort());
+            this.names[column] = new String(name.array(), 0, name.limit(), StandardCharsets.UTF_8);
+        }
+        this.values = new long[columns][0];
+    }
+
+    /**
+     * @return the name of each column
+     */
+    public String[] getNames() {
+        return this.names.clone();
+    }
+
+    /**
+     * @return the type of each column
+     */
+    public ColumnType[] getTypes() {
+        return this.types.clone();
+    }
+
+    /**
+     * Read the next row group.
+     *
+     * @return the number of rows of the group, 0 at the end of the table
+     *
+     * @throws IOException
+     *         if the table cannot be read or is corrupted
+     */
+    public int nextRowGroup() throws IOException {
+        this.rows = this.read(Integer.BYTES).getInt();
+        if (this.rows < 0) {
+            throw new StreamCorruptedException("Corrupted row group");
+        }
+        if (this.rows == 0) {
+            return 0; // end of the table
+        }
+        for (int column = 0; column < this.types.length; column++) {
+            final ByteBuffer compressed = this.read(this.read(Integer.BYTES).getInt());
+            this.decode(column, compressed);
+        }
+        return this.rows;
+    }
+
+    /**
+     * Get a value of the current row group.
+     *
+     * @param column
+     *         index of the column
+     * @param row
+     *         index of the row in the group
+     *
+     * @return the value
+     */
+    public long get(final int column, final int row) {
+        if (row >= this.rows) {
+            throw new IndexOutOfBoundsException("No row " + row + " in the row group");
+        }
+        return this.values[column][row];
+    }
+
+    /**
+     * Decompress and decode the values of a column.
+     *
+     * @param column
+     *         index of the column
+     * @param compressed
+     *         the compressed values
+     *
+     * @throws IOException
+     *         if the values are corrupted
+     */
+    private void decode(final int column, final ByteBuffer compressed) throws IOException {
+        final ColumnType type = this.types[column];
+        final int length = this.rows * type.width();
+        if (this.raw.capacity() < length) {
+            this.raw = ByteBuffer.allocate(length);
+        }
+        this.raw.clear().limit(length);
+        this.inflater.reset();
+        this.inflater.setInput(compressed);
+        try {
+            while (this.raw.hasRemaining() && !this.inflater.finished()) {
+                if (this.inflater.inflate(this.raw) == 0 && (this.inflater.needsInput()
+                        || this.inflater.needsDictionary())) {
+                    break;
+                }
+            }
+        } catch (DataFormatException e) {
+            throw new StreamCorruptedException("Corrupted column " + this.names[column] + ": " + e.getMessage());
+        }
+        if (this.raw.hasRemaining()) {
+            throw new StreamCorruptedException("Truncated column " + this.names[column]);
+        }
+        this.raw.flip();
+
+        if (this.values[column].length < this.rows) {
+            this.values[column] = new long[this.rows];
+        }
+        final long[] decoded = this.values[column];
+        long previous = 0;
+        for (int row = 0; row < this.rows; row++) {
+            switch (type) {
+                case BYTE:
+                    decoded[row] = this.raw.get();
+                    break;
+                case INT:
+                    decoded[row] = this.raw.getInt();
+                    break;
+                default:
+                    previous += this.raw.getLong();
+                    decoded[row] = previous;
+            }
+        }
+    }
+
+    /**
+     * Read bytes of the table.
+     *
+     * @param length
+     *         number of bytes
+     *
+     * @return the bytes, in a buffer ready to be read
+     *
+     * @throws IOException
+     *         if the table is truncated
+     */
+    private ByteBuffer read(final int length) throws IOException {
+        if (length < 0) {
+            throw new StreamCorruptedException("Corrupted columnar table");
+        }
+        final ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (this.channel.read(buffer) < 0) {
+                throw new EOFException("Truncated columnar table");
+            }
+        }
+        return buffer.flip();
+    }
+}
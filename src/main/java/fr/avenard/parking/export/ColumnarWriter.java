@@ -0,0 +1,236 @@
+package fr.avenard.parking.export;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
+import javax.validation.constraints.Positive;
+
+import lombok.NonNull;
+
+/**
+ * Streaming writer of a columnar table, in bounded memory: rows are buffered by groups, then each column of the group
+ * is written as its own compressed block of primitives.
+ * <ul>
+ * <li>header: magic number "PCOL" (int), format version (short), number of columns (short), then for each column:
+ * type ordinal (byte), name length (short) and UTF-8 name</li>
+ * <li>each row group: number of rows (int), then for each column: compressed length (int) and the deflated values,
+ * big-endian, {@link ColumnType#LONG} values as deltas from the previous row of the group</li>
+ * <li>end of the table: a row group of 0 rows</li>
+ * </ul>
+ * Not thread-safe.
+ */
+public class ColumnarWriter implements Closeable {
+    static final int MAGIC = 0x50434F4C; // "PCOL"
+    static final short VERSION = 1;
+    private static final int BUFFER_SIZE = 256 * 1024;
+
+    private final WritableByteChannel channel;
+    private final ColumnType[] types;
+    private final long[][] values; // by column, then by row of the group
+    private final ByteBuffer raw; // values of a column being compressed
+    private byte[] compressed = new byte[1024];
+    private final ByteBuffer output = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private int rows; // rows of the group
+    private long totalRows;
+    private boolean closed;
+
+    /**
+     * Start a table.
+     *
+     * @param channel
+     *         channel to write the table to, it is not closed
+     * @param rowGroupSize
+     *         number of rows buffered before they are written
+     * @param names
+     *         name of each column
+     * @param types
+     *         type of each column
+     *
+     * @throws IOException
+     *         if the header cannot be written
+     */
+    public ColumnarWriter(@NonNull final WritableByteChannel channel, @Positive final int rowGroupSize,
+            @NonNull final String[] names, @NonNull final ColumnType[] types) throws IOException {
+        if (rowGroupSize <= 0) {
+            throw new IllegalArgumentException("The row group size must be positive");
+        }
+        if (names.length != types.length || names.length == 0) {
+            throw new IllegalArgumentException("Each column needs a name and a type");
+        }
+        this.channel = channel;
+        this.types = types.clone();
+        this.values = new long[types.length][rowGroupSize];
+        this.raw = ByteBuffer.allocate(rowGroupSize * Long.BYTES);
+
+        this.output.putInt(MAGIC).putShort(VERSION).putShort((short) types.length);
+        for (int column = 0; column < types.length; column++) {
+            final byte[] name = names[column].getBytes(StandardCharsets.UTF_8);
+            this.output.put((byte) types[column].ordinal()).putShort((short) name.length).put(name);
+        }
+    }
+
+    /**
+     * Set a value of the current row.
+     *
+     * @param column
+     *         index of the column
+     * @param value
+     *         the value, in the range of the column type
+     *
+     * @return this to chain calls (fluent interface)
+     */
+    public ColumnarWriter set(final int column, final long value) {
+        this.values[column][this.rows] = value;
+        return this;
+    }
+
+    /**
+     * End the current row: the next values are set on a new row.
+     *
+     * @throws IOException
+     *         if the row group, once full, cannot be written
+     */
+    public void endRow() throws IOException {
+        this.totalRows++;
+        if (++this.rows == this.values[0].length) {
+            this.writeRowGroup();
+        }
+    }
+
+    /**
+     * @return the number of rows ended
+     */
+    public long getRows() {
+        return this.totalRows;
+    }
+
+    /**
+     * Write the rows buffered and the end of the table, then flush it to the channel.
+     *
+     * @throws IOException
+     *         if the table cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+        try {
+            if (this.rows > 0) {
+                this.writeRowGroup();
+            }
+            this.reserve(Integer.BYTES);
+            this.output.putInt(0);
+            this.flush();
+        } finally {
+            this.deflater.end();
+        }
+    }
+
+    /**
+     * Compress and write each column of the buffered rows.
+     *
+     * @throws IOException
+     *         if the rows cannot be written
+     */
+    private void writeRowGroup() throws IOException {
+        this.reserve(Integer.BYTES);
+        this.output.putInt(this.rows);
+        for (int column = 0; column < this.types.length; column++) {
+            this.encode(this.types[column], this.values[column]);
+            final int length = this.compress();
+            this.reserve(Integer.BYTES);
+            this.output.putInt(length);
+            this.write(ByteBuffer.wrap(this.compressed, 0, length));
+        }
+        this.rows = 0;
+    }
+
+    /**
+     * Encode the values of a column into the raw buffer.
+     *
+     * @param type
+     *         type of the column
+     * @param column
+     *         values of the column
+     */
+    private void encode(final ColumnType type, final long[] column) {
+        this.raw.clear();
+        long previous = 0;
+        for (int row = 0; row < this.rows; row++) {
+            switch (type) {
+                case BYTE:
+                    this.raw.put((byte) column[row]);
+                    break;
+                case INT:
+                    this.raw.putInt((int) column[row]);
+                    break;
+                default:
+                    this.raw.putLong(column[row] - previous);
+                    previous = column[row];
+            }
+        }
+        this.raw.flip();
+    }
+
+    /**
+     * Compress the raw buffer.
+     *
+     * @return the compressed length, in {@link #compressed}
+     */
+    private int compress() {
+        this.deflater.reset();
+        this.deflater.setInput(this.raw);
+        this.deflater.finish();
+        int length = 0;
+        while (!this.deflater.finished()) {
+            if (length == this.compressed.length) {
+                this.compressed = Arrays.copyOf(this.compressed, length * 2);
+            }
+            length += this.deflater.deflate(this.compressed, length, this.compressed.length - length);
+        }
+        return length;
+    }
+
+    /**
+     * Buffer bytes, writing the buffered bytes to the channel when the buffer is full.
+     *
+     * @param bytes
+     *         bytes to write
+     *
+     * @throws IOException
+     *         if the channel cannot be written
+     */
+    private void write(final ByteBuffer bytes) throws IOException {
+        while (bytes.hasRemaining()) {
+            if (!this.output.hasRemaining()) {
+                this.flush();
+            }
+            final int length = Math.min(bytes.remaining(), this.output.remaining());
+            final int limit = bytes.limit();
+            this.output.put(bytes.limit(bytes.position() + length));
+            bytes.limit(limit);
+        }
+    }
+
+    private void reserve(final int length) throws IOException {
+        if (this.output.remaining() < length) {
+            this.flush();
+        }
+    }
+
+    private void flush() throws IOException {
+        this.output.flip();
+        while (this.output.hasRemaining()) {
+            this.channel.write(this.output);
+        }
+        this.output.clear();
+    }
+}
@@ -0,0 +1,144 @@
+package fr.avenard.parking.export;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.validation.constraints.Positive;
+
+import fr.avenard.parking.CarType;
+import fr.avenard.parking.OccupancySnapshot;
+import fr.avenard.parking.Parking;
+import lombok.NonNull;
+import lombok.Synchronized;
+
+/**
+ * Export the occupancy of a parking per {@link CarType} over time as a columnar table (see {@link ColumnarWriter}),
+ * a row per car type and sample:
+ * <ul>
+ * <li>{@value #TIME}: epoch milliseconds of the sample, its local time converted with the zone of the parking clock,
+ * {@link ColumnType#LONG}</li>
+ * <li>{@value #TYPE}: {@link CarType} ordinal, {@link ColumnType#BYTE}</li>
+ * <li>{@value #OCCUPIED} and {@value #TOTAL}: occupied and total slots of the type, {@link ColumnType#INT}</li>
+ * </ul>
+ * The samples are read from the {@link Parking#occupancy() occupancy snapshots}, without blocking the gates.
+ */
+public class OccupancyExporter implements Closeable {
+    public static final String TIME = "time";
+    public static final String TYPE = "type";
+    public static final String OCCUPIED = "occupied";
+    public static final String TOTAL = "total";
+    private static final Logger LOGGER = Logger.getLogger(OccupancyExporter.class.getName());
+    private static final int DEFAULT_ROW_GROUP_SIZE = 16 * 1024;
+
+    private final Parking parking;
+    private final ColumnarWriter writer; // guarded by the lock
+
+    /**
+     * Start an export.
+     *
+     * @param parking
+     *         the parking to sample
+     * @param channel
+     *         channel to write the table to, it is not closed
+     *
+     * @throws IOException
+     *         if the header cannot be written
+     */
+    public OccupancyExporter(@NonNull final Parking parking, @NonNull final WritableByteChannel channel) throws
+            IOException {
+        this(parking, channel, DEFAULT_ROW_GROUP_SIZE);
+    }
+
+    /**
+     * Start an export.
+     *
+     * @param parking
+     *         the parking to sample
+     * @param channel
+     *         channel to write the table to, it is not closed
+     * @param rowGroupSize
+     *         number of rows buffered before they are written
+     *
+     * @throws IOException
+     *         if the header cannot be written
+     */
+    public OccupancyExporter(@NonNull final Parking parking, @NonNull final WritableByteChannel channel,
+            @Positive final int rowGroupSize) throws IOException {
+        this.parking = parking;
+        this.writer = new ColumnarWriter(channel, rowGroupSize, new String[] {TIME, TYPE, OCCUPIED, TOTAL},
+                new ColumnType[] {ColumnType.LONG, ColumnType.BYTE, ColumnType.INT, ColumnType.INT});
+    }
+
+    /**
+     * Sample the occupancy now, at the time of the parking clock.
+     *
+     * @throws IOException
+     *         if the samples cannot be written
+     */
+    public void sample() throws IOException {
+        this.sample(LocalDateTime.now(this.parking.getClock()));
+    }
+
+    /**
+     * Sample the occupancy.
+     *
+     * @param time
+     *         local time of the sample, in the zone of the parking clock
+     *
+     * @throws IOException
+     *         if the samples cannot be written
+     */
+    @Synchronized
+    public void sample(@NonNull final LocalDateTime time) throws IOException {
+        final OccupancySnapshot occupancy = this.parking.occupancy();
+        final long epochMilli = time.atZone(this.parking.getClock().getZone()).toInstant().toEpochMilli();
+        for (CarType carType : CarType.values()) {
+            this.writer.set(0, epochMilli)
+                    .set(1, carType.ordinal())
+                    .set(2, occupancy.occupiedSlots(carType))
+                    .set(3, this.parking.totalSlots(carType))
+                    .endRow();
+        }
+    }
+
+    /**
+     * Sample the occupancy periodically.
+     *
+     * @param scheduler
+     *         the scheduler running the sampling
+     * @param period
+     *         the time between two samples
+     *
+     * @return the scheduled sampling, cancel it to stop
+     */
+    public ScheduledFuture<?> sampleEvery(@NonNull final ScheduledExecutorService scheduler,
+            @NonNull final Duration period) {
+        return scheduler.scheduleAtFixedRate(() -> {
+            try {
+                this.sample();
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Cannot export the occupancy", e);
+            }
+        }, 0, period.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Write the samples buffered and the end of the table.
+     *
+     * @throws IOException
+     *         if the samples cannot be written
+     */
+    @Override
+    @Synchronized
+    public void close() throws IOException {
+        this.writer.close();
+    }
+}
@@ -0,0 +1,206 @@
+package fr.avenard.parking.export;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.channels.WritableByteChannel;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.validation.constraints.Positive;
+
+import fr.avenard.parking.Car;
+import fr.avenard.parking.CarType;
+import fr.avenard.parking.event.ParkingEvent;
+import fr.avenard.parking.event.ParkingEventType;
+import fr.avenard.parking.event.ParkingListener;
+import fr.avenard.parking.session.ParkingSession;
+import fr.avenard.parking.session.SessionStore;
+import lombok.NonNull;
+import lombok.Synchronized;
+
+/**
+ * Export the completed sessions as a columnar table (see {@link ColumnarWriter}) for BI tools:
+ * <ul>
+ * <li>{@value #TYPE}: {@link CarType} ordinal, {@link ColumnType#BYTE}</li>
+ * <li>{@value #PARKED_AT} and {@value #LEFT_AT}: epoch milliseconds, the local times of the parking converted with
+ * the zone of its clock, {@link ColumnType#LONG}</li>
+ * <li>{@value #FARE}: fare in minor units (cents), {@link ColumnType#LONG}</li>
+ * </ul>
+ * The sessions are streamed: registered on a parking, the exporter writes the sessions as they are billed; it also
+ * exports the history of a {@link SessionStore}. The memory used is bounded by the row group size. A session that
+ * cannot be written is logged, never failing the billing; once closed, the exporter ignores the sessions billed.
+ */
+public class SessionExporter implements ParkingListener, Closeable {
+    public static final String TYPE = "type";
+    public static final String PARKED_AT = "parked_at";
+    public static final String LEFT_AT = "left_at";
+    public static final String FARE = "fare";
+    private static final int DEFAULT_ROW_GROUP_SIZE = 64 * 1024;
+    private static final int DEFAULT_FRACTION_DIGITS = 2;
+    private static final Logger LOGGER = Logger.getLogger(SessionExporter.class.getName());
+
+    private final ColumnarWriter writer; // guarded by the lock
+    private final ZoneId zone;
+    private final int fractionDigits;
+    private boolean closed; // guarded by the lock
+
+    /**
+     * Start an export of the sessions of a parking in the default time-zone, by groups of 64K sessions, with fares in
+     * cents.
+     *
+     * @param channel
+     *         channel to write the table to, it is not closed
+     *
+     * @throws IOException
+     *         if the header cannot be written
+     */
+    public SessionExporter(@NonNull final WritableByteChannel channel) throws IOException {
+        this(channel, ZoneId.systemDefault(), DEFAULT_ROW_GROUP_SIZE, DEFAULT_FRACTION_DIGITS);
+    }
+
+    /**
+     * Start an export of the sessions of a parking in the default time-zone.
+     *
+     * @param channel
+     *         channel to write the table to, it is not closed
+     * @param rowGroupSize
+     *         number of sessions buffered before they are written
+     * @param fractionDigits
+     *         number of digits of the minor unit of the currency, the fares are rounded half up to it
+     *
+     * @throws IOException
+     *         if the header cannot be written
+     */
+    public SessionExporter(@NonNull final WritableByteChannel channel, @Positive final int rowGroupSize,
+            final int fractionDigits) throws IOException {
+        this(channel, ZoneId.systemDefault(), rowGroupSize, fractionDigits);
+    }
+
+    /**
+     * Start an export.
+     *
+     * @param channel
+     *         channel to write the table to, it is not closed
+     * @param zone
+     *         time-zone of the clock of the parking, to convert its local times
+     * @param rowGroupSize
+     *         number of sessions buffered before they are written
+     * @param fractionDigits
+     *         number of digits of the minor unit of the currency, the fares are rounded half up to it
+     *
+     * @throws IOException
+     *         if the header cannot be written
+     */
+    public SessionExporter(@NonNull final WritableByteChannel channel, @NonNull final ZoneId zone,
+            @Positive final int rowGroupSize, final int fractionDigits) throws IOException {
+        this.writer = new ColumnarWriter(channel, rowGroupSize, new String[] {TYPE, PARKED_AT, LEFT_AT, FARE},
+                new ColumnType[] {ColumnType.BYTE, ColumnType.LONG, ColumnType.LONG, ColumnType.LONG});
+        this.zone = zone;
+        this.fractionDigits = fractionDigits;
+    }
+
+    /**
+     * Export the sessions of the parking the exporter listens to, as they are billed, until the exporter is closed.
+     *
+     * @param event
+     *         a parking event
+     */
+    @Override
+    @Synchronized
+    public void onEvent(@NonNull final ParkingEvent event) {
+        final Car car = event.getCar();
+        if (event.getType() == ParkingEventType.BILL && car.getParkedAt() != null && car.getLeftAt() != null
+                && !this.closed) {
+            try {
+                this.export(car.getType(), car.getParkedAt(), car.getLeftAt(), event.getFare());
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Cannot export the session of " + car, e);
+            }
+        }
+    }
+
+    /**
+     * Export the billed sessions of a store overlapping a time range.
+     *
+     * @param store
+     *         the session store
+     * @param from
+     *         start of the range, inclusive
+     * @param to
+     *         end of the range, exclusive
+     *
+     * @return the number of sessions exported
+     *
+     * @throws IOException
+     *         if the store cannot be read or the sessions cannot be written
+     */
+    public long export(@NonNull final SessionStore store, @NonNull final LocalDateTime from,
+            @NonNull final LocalDateTime to) throws IOException {
+        final long[] exported = new long[1];
+        try {
+            store.forEachBilled(from, to, session -> {
+                try {
+                    this.export(session);
+                    exported[0]++;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return exported[0];
+    }
+
+    /**
+     * Export a completed session.
+     *
+     * @param session
+     *         a billed session
+     *
+     * @throws IOException
+     *         if the sessions cannot be written, or the exporter is closed
+     */
+    public void export(@NonNull final ParkingSession session) throws IOException {
+        this.export(session.getType(), session.getParkedAt(), session.getLeftAt(), session.getFare());
+    }
+
+    /**
+     * @return the number of sessions exported
+     */
+    @Synchronized
+    public long getExported() {
+        return this.writer.getRows();
+    }
+
+    /**
+     * Write the sessions buffered and the end of the table.
+     *
+     * @throws IOException
+     *         if the sessions cannot be written
+     */
+    @Override
+    @Synchronized
+    public void close() throws IOException {
+        this.closed = true;
+        this.writer.close();
+    }
+
+    @Synchronized
+    private void export(@NonNull final CarType type, @NonNull final LocalDateTime parkedAt,
+            @NonNull final LocalDateTime leftAt, @NonNull final BigDecimal fare) throws IOException {
+        if (this.closed) {
+            throw new IOException("The export is closed");
+        }
+        this.writer.set(0, type.ordinal())
+                .set(1, parkedAt.atZone(this.zone).toInstant().toEpochMilli())
+                .set(2, leftAt.atZone(this.zone).toInstant().toEpochMilli())
+                .set(3, fare.movePointRight(this.fractionDigits).setScale(0, RoundingMode.HALF_UP).longValueExact())
+                .endRow();
+    }
+}
@@ -0,0 +1,63 @@
+package fr.avenard.parking.policy;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+import fr.avenard.parking.Car;
+import fr.avenard.parking.energy.ChargeSession;
+import fr.avenard.parking.energy.EnergyMetering;
+import fr.avenard.parking.exception.PolicyException;
+import lombok.NonNull;
+
+/**
+ * Charging policy: the parking fare of another policy, plus the energy delivered to the car, metered by an
+ * {@link EnergyMetering}, at a price per kWh. The energy is rounded to the cent.
+ */
+public class ChargingPolicy implements PricingPolicy {
+    private final PricingPolicy parkingPolicy;
+    private final EnergyMetering metering;
+    private final BigDecimal pricePerKilowattHour;
+
+    /**
+     * Create the policy.
+     *
+     * @param parkingPolicy
+     *         the policy charging the parking time
+     * @param metering
+     *         the metering of the charging slots, registered on the parking
+     * @param pricePerKilowattHour
+     *         a non null positive amount
+     */
+    public ChargingPolicy(@NonNull final PricingPolicy parkingPolicy, @NonNull final EnergyMetering metering,
+            @NonNull final BigDecimal pricePerKilowattHour) {
+        this.parkingPolicy = parkingPolicy;
+        this.metering = metering;
+        this.pricePerKilowattHour = pricePerKilowattHour;
+    }
+
+    /**
+     * What The Fare is it?
+     * Based on the arrival time the car took the parking slot and the car information,
+     * it computes the fare amount the user will have to pay.
+     * <p>
+     * The parking fare plus the energy charged, if the car charged.
+     *
+     * @param car
+     *         car information required to create the bill
+     *
+     * @return the fare amount
+     *
+     * @throws PolicyException
+     *         if the parking policy cannot compute the parking fare
+     */
+    @Override
+    public BigDecimal computeFare(@NonNull final Car car) throws PolicyException {
+        final BigDecimal fare = this.parkingPolicy.computeFare(car);
+        final ChargeSession charge = this.metering.chargeOf(car);
+        if (charge == null) {
+            return fare;
+        }
+        return fare.add(charge.getKilowattHours().multiply(this.pricePerKilowattHour)
+                .setScale(2, RoundingMode.HALF_UP));
+    }
+}
@@ -0,0 +1,199 @@
+package fr.avenard.parking.policy;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import fr.avenard.parking.Car;
+import fr.avenard.parking.event.ParkingEvent;
+import fr.avenard.parking.event.ParkingListener;
+import fr.avenard.parking.exception.CarNotFoundException;
+import fr.avenard.parking.exception.PolicyException;
+import lombok.NonNull;
+import lombok.Synchronized;
+
+/**
+ * Running fares of the parked cars under a {@link TimeOfDayPolicy}, to show the customers the amount owed so far.
+ * <p>
+ * The accrual is both the pricing policy and a listener of the parking: each car entering starts a fare accumulator,
+ * rolled over to the next rate on the rate boundaries by a timer wheel ({@link #tick()}), and closed when the car
+ * leaves. The amount owed so far by any parked car is read in O(1) with {@link #currentFare(Car)}, and billing a car
+ * only reads its closed accumulator instead of computing the fare again.
+ * <p>
+ * {@code FareAccrual accrual = new FareAccrual(policy); new Parking(accrual).withSlots(...).addListener(accrual)}
+ * <p>
+ * The cars parked before the accrual listened to the parking are billed by the policy.
+ */
+public class FareAccrual implements PricingPolicy, ParkingListener {
+    private static final long TICK_SECONDS = 60;
+    private static final int NUMBER_OF_BUCKETS = 1024; // a turn of the wheel every 17 hours
+
+    private final TimeOfDayPolicy policy;
+    private final Clock clock;
+    private final Map<Car, FareAccumulator> sessions = new ConcurrentHashMap<>(); // by plate id
+    private final TimerWheel<FareAccumulator> wheel; // guarded by the lock
+
+    /**
+     * Create an accrual reading the current time from the system clock.
+     *
+     * @param policy
+     *         the rates
+     */
+    public FareAccrual(@NonNull final TimeOfDayPolicy policy) {
+        this(policy, Clock.systemDefaultZone());
+    }
+
+    /**
+     * Create an accrual.
+     *
+     * @param policy
+     *         the rates
+     * @param clock
+     *         the clock of the parking, giving the current time
+     */
+    public FareAccrual(@NonNull final TimeOfDayPolicy policy, @NonNull final Clock clock) {
+        this.policy = policy;
+        this.clock = clock;
+        this.wheel = new TimerWheel<>(TICK_SECONDS, NUMBER_OF_BUCKETS, epochSecond(LocalDateTime.now(clock)));
+    }
+
+    /**
+     * Start, close or bill the accumulator of a parking session.
+     *
+     * @param event
+     *         a parking event
+     */
+    @Override
+    public void onEvent(@NonNull final ParkingEvent event) {
+        final Car car = event.getCar();
+        switch (event.getType()) {
+            case ENTER:
+                final FareAccumulator accumulator = new FareAccumulator(this.policy, car,
+                        epochSecond(car.getParkedAt()));
+                this.sessions.put(car, accumulator);
+                this.schedule(accumulator);
+                break;
+            case LEAVE:
+                final FareAccumulator left = this.sessions.get(car);
+                if (left != null && car.getLeftAt() != null) {
+                    left.close(epochSecond(car.getLeftAt()));
+                }
+                break;
+            default:
+                // the accumulator is removed when the fare is computed
+        }
+    }
+
+    /**
+     * Get the amount owed so far by a parked car, in O(1).
+     *
+     * @param car
+     *         a parked car
+     *
+     * @return the fare if the car left now
+     *
+     * @throws CarNotFoundException
+     *         if the car is not parked, or parked before the accrual listened to the parking
+     */
+    public BigDecimal currentFare(@NonNull final Car car) throws CarNotFoundException {
+        final FareAccumulator accumulator = this.sessions.get(car);
+        if (accumulator == null) {
+            throw new CarNotFoundException("No running fare for " + car);
+        }
+        return this.policy.toFare(accumulator.accruedAt(epochSecond(LocalDateTime.now(this.clock))));
+    }
+
+    /**
+     * Bill a car that left: the fare is read from its closed accumulator, or computed by the policy if none.
+     *
+     * @param car
+     *         car with parking information
+     *
+     * @return the fare amount
+     *
+     * @throws PolicyException
+     *         if the car did not leave and has no closed accumulator
+     */
+    @Override
+    public BigDecimal computeFare(@NonNull final Car car) throws PolicyException {
+        final FareAccumulator accumulator = this.sessions.get(car);
+        if (accumulator != null && accumulator.isClosed() && this.sessions.remove(car, accumulator)) {
+            return this.policy.toFare(accumulator.accruedAt(Long.MAX_VALUE));
+        }
+        return this.policy.computeFare(car);
+    }
+
+    /**
+     * Roll the accumulators over the rate boundaries crossed until now.
+     *
+     * @return the number of accumulators rolled over
+     */
+    public int tick() {
+        return this.tick(LocalDateTime.now(this.clock));
+    }
+
+    /**
+     * Roll the accumulators over the rate boundaries crossed until a time.
+     * Only the accumulators due are visited: the others wait in the timer wheel.
+     *
+     * @param now
+     *         the current time
+     *
+     * @return the number of accumulators rolled over
+     */
+    @Synchronized
+    public int tick(@NonNull final LocalDateTime now) {
+        final long epochSecond = epochSecond(now);
+        final int[] rolled = new int[1];
+        this.wheel.advance(epochSecond, accumulator -> {
+            if (accumulator.isClosed() || this.sessions.get(accumulator.getCar()) != accumulator) {
+                return; // left or billed meanwhile
+            }
+            accumulator.roll(epochSecond);
+            this.schedule(accumulator);
+            rolled[0]++;
+        });
+        return rolled[0];
+    }
+
+    /**
+     * Tick periodically, for instance every minute.
+     *
+     * @param scheduler
+     *         the scheduler running the ticks
+     * @param period
+     *         the time between two ticks
+     *
+     * @return the scheduled ticks, cancel it to stop
+     */
+    public ScheduledFuture<?> tickEvery(@NonNull final ScheduledExecutorService scheduler,
+            @NonNull final Duration period) {
+        return scheduler.scheduleAtFixedRate(this::tick, 0, period.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return the number of sessions with a running or closed accumulator
+     */
+    public int getSessions() {
+        return this.sessions.size();
+    }
+
+    @Synchronized
+    private void schedule(final FareAccumulator accumulator) {
+        final long nextBoundary = accumulator.getNextBoundary();
+        if (nextBoundary != Long.MAX_VALUE) {
+            this.wheel.schedule(accumulator, nextBoundary);
+        }
+    }
+
+    private static long epochSecond(final LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,99 @@
+package fr.avenard.parking.policy;
+
+import fr.avenard.parking.Car;
+import lombok.Getter;
+import lombok.Synchronized;
+
+/**
+ * Running fare of a parking session under a {@link TimeOfDayPolicy}: the amount of the periods already crossed, plus
+ * the current period accrued at its rate. The fare so far is read in O(1); the accumulator is rolled over to the next
+ * period on the rate boundaries, and closed when the car leaves.
+ */
+class FareAccumulator {
+    @Getter
+    private final Car car;
+    private final TimeOfDayPolicy policy;
+    // guarded by the lock
+    private long accrued; // amount of the periods crossed, in minor units per hour
+    private long periodStart; // epoch second the current period started for the session
+    private long hourlyMinor; // rate of the current period
+    private long nextBoundary; // epoch second the next period starts
+    private boolean closed;
+    private long closedAt; // departure epoch second, once closed
+
+    /**
+     * Start accruing a session.
+     *
+     * @param policy
+     *         the rates
+     * @param car
+     *         the parked car
+     * @param parkedAt
+     *         the arrival epoch second
+     */
+    FareAccumulator(final TimeOfDayPolicy policy, final Car car, final long parkedAt) {
+        this.car = car;
+        this.policy = policy;
+        this.periodStart = parkedAt;
+        this.hourlyMinor = policy.hourlyMinorAt(parkedAt);
+        this.nextBoundary = policy.nextBoundary(parkedAt);
+    }
+
+    /**
+     * Roll the accumulator over the rate boundaries crossed before a time.
+     *
+     * @param now
+     *         the current epoch second
+     */
+    @Synchronized
+    void roll(final long now) {
+        final long until = this.closed ? Math.min(now, this.closedAt) : now;
+        while (this.nextBoundary <= until) {
+            this.accrued += this.hourlyMinor * (this.nextBoundary - this.periodStart);
+            this.periodStart = this.nextBoundary;
+            this.hourlyMinor = this.policy.hourlyMinorAt(this.periodStart);
+            this.nextBoundary = this.policy.nextBoundary(this.periodStart);
+        }
+    }
+
+    /**
+     * Get the amount accrued until a time, or until the departure once closed.
+     *
+     * @param now
+     *         the current epoch second
+     *
+     * @return the amount in minor units per hour
+     */
+    @Synchronized
+    long accruedAt(final long now) {
+        this.roll(now); // no-op when the boundaries are ticked in time
+        final long until = this.closed ? Math.min(now, this.closedAt) : now;
+        return this.accrued + this.hourlyMinor * Math.max(0, until - this.periodStart);
+    }
+
+    /**
+     * Close the session.
+     *
+     * @param leftAt
+     *         the departure epoch second
+     */
+    @Synchronized
+    void close(final long leftAt) {
+        this.roll(leftAt);
+        this.closed = true;
+        this.closedAt = leftAt;
+    }
+
+    @Synchronized
+    boolean isClosed() {
+        return this.closed;
+    }
+
+    /**
+     * @return the epoch second the next period starts, {@link Long#MAX_VALUE} if the rate never changes
+     */
+    @Synchronized
+    long getNextBoundary() {
+        return this.nextBoundary;
+    }
+}
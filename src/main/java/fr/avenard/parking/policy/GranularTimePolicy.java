@@ -0,0 +1,253 @@
+package fr.avenard.parking.policy;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+import fr.avenard.parking.Car;
+import fr.avenard.parking.exception.PolicyException;
+import lombok.NonNull;
+
+/**
+ * Granular time policy allows the {@link fr.avenard.parking.Parking} to charge the users per time unit
+ * (every minute, every 15 minutes, etc).
+ * <p>
+ * The parking duration is divided in units, rounded with the {@link RoundingMode} of the policy
+ * ({@link RoundingMode#UP} charges every unit started). Stays no longer than the grace period are free, and the fare
+ * of each day (24 hours) spent in the parking can be capped. A fixed amount is added to any charged stay.
+ * <p>
+ * The fare is computed on epoch seconds, nanoseconds and minor units (cents) stored as {@code long}: only the
+ * returned amount is allocated. Any fraction of a second counts, so a stay one nanosecond longer than the grace
+ * period is charged. Use the {@code with*} methods to configure the policy:
+ * <p>
+ * {@code GranularTimePolicy.perMinute(new BigDecimal("0.05")).withGracePeriod(Duration.ofMinutes(10))}
+ */
+public class GranularTimePolicy implements PricingPolicy {
+    private static final long SECONDS_PER_DAY = 86_400;
+    private static final int NANOS_PER_SECOND = 1_000_000_000;
+
+    private final BigDecimal fixedFare;
+    private final BigDecimal unitFare;
+    private final long unitSeconds;
+    private final long graceSeconds;
+    private final RoundingMode roundingMode;
+    private final BigDecimal dailyCap; // null when not capped
+
+    // amounts in minor units at the largest scale of the amounts
+    private final int scale;
+    private final long fixedMinor;
+    private final long unitMinor;
+    private final long dailyCapMinor; // Long.MAX_VALUE when not capped
+
+    /**
+     * Create a policy charging every unit started, with no grace period and no daily cap.
+     *
+     * @param fixedFare
+     *         a non null amount charged for any stay
+     * @param unitFare
+     *         the price of each unit spent in the parking
+     * @param unit
+     *         the time unit, a strictly positive number of seconds
+     */
+    public GranularTimePolicy(@NonNull final BigDecimal fixedFare, @NonNull final BigDecimal unitFare,
+            @NonNull final Duration unit) {
+        this(fixedFare, unitFare, unit.getSeconds(), 0, RoundingMode.UP, null);
+        if (unit.getNano() != 0) {
+            throw new IllegalArgumentException("The time unit must be a whole number of seconds");
+        }
+    }
+
+    private GranularTimePolicy(final BigDecimal fixedFare, final BigDecimal unitFare, final long unitSeconds,
+            final long graceSeconds, final RoundingMode roundingMode, final BigDecimal dailyCap) {
+        if (unitSeconds <= 0) {
+            throw new IllegalArgumentException("The time unit must be strictly positive");
+        }
+        if (graceSeconds < 0) {
+            throw new IllegalArgumentException("The grace period must be positive");
+        }
+        this.fixedFare = fixedFare;
+        this.unitFare = unitFare;
+        this.unitSeconds = unitSeconds;
+        this.graceSeconds = graceSeconds;
+        this.roundingMode = roundingMode;
+        this.dailyCap = dailyCap;
+
+        this.scale = Math.max(0, Math.max(Math.max(fixedFare.scale(), unitFare.scale()),
+                dailyCap == null ? 0 : dailyCap.scale()));
+        this.fixedMinor = fixedFare.setScale(this.scale).unscaledValue().longValueExact();
+        this.unitMinor = unitFare.setScale(this.scale).unscaledValue().longValueExact();
+        this.dailyCapMinor = dailyCap == null ? Long.MAX_VALUE
+                : dailyCap.setScale(this.scale).unscaledValue().longValueExact();
+    }
+
+    /**
+     * @param minuteFare
+     *         the price of each minute started in the parking
+     *
+     * @return a policy charging every minute started
+     */
+    public static GranularTimePolicy perMinute(@NonNull final BigDecimal minuteFare) {
+        return new GranularTimePolicy(BigDecimal.ZERO, minuteFare, Duration.ofMinutes(1));
+    }
+
+    /**
+     * @param quarterFare
+     *         the price of each quarter of an hour started in the parking
+     *
+     * @return a policy charging every 15 minutes started
+     */
+    public static GranularTimePolicy perQuarterHour(@NonNull final BigDecimal quarterFare) {
+        return new GranularTimePolicy(BigDecimal.ZERO, quarterFare, Duration.ofMinutes(15));
+    }
+
+    /**
+     * @param gracePeriod
+     *         the longest stay that is not charged at all, a whole number of seconds
+     *
+     * @return a copy of this policy with the provided grace period
+     */
+    public GranularTimePolicy withGracePeriod(@NonNull final Duration gracePeriod) {
+        return new GranularTimePolicy(this.fixedFare, this.unitFare, this.unitSeconds, gracePeriod.getSeconds(),
+                this.roundingMode, this.dailyCap);
+    }
+
+    /**
+     * @param roundingMode
+     *         how the parking duration is rounded to a number of units
+     *
+     * @return a copy of this policy with the provided rounding mode
+     */
+    public GranularTimePolicy withRoundingMode(@NonNull final RoundingMode roundingMode) {
+        return new GranularTimePolicy(this.fixedFare, this.unitFare, this.unitSeconds, this.graceSeconds,
+                roundingMode, this.dailyCap);
+    }
+
+    /**
+     * @param dailyCap
+     *         the maximum time fare for each day (24 hours) spent in the parking
+     *
+     * @return a copy of this policy with the provided daily cap
+     */
+    public GranularTimePolicy withDailyCap(@NonNull final BigDecimal dailyCap) {
+        return new GranularTimePolicy(this.fixedFare, this.unitFare, this.unitSeconds, this.graceSeconds,
+                this.roundingMode, dailyCap);
+    }
+
+    /**
+     * @param fixedFare
+     *         the amount charged for any stay longer than the grace period
+     *
+     * @return a copy of this policy with the provided fixed fare
+     */
+    public GranularTimePolicy withFixedFare(@NonNull final BigDecimal fixedFare) {
+        return new GranularTimePolicy(fixedFare, this.unitFare, this.unitSeconds, this.graceSeconds,
+                this.roundingMode, this.dailyCap);
+    }
+
+    /**
+     * What The Fare is it?
+     * Based on the arrival time the car took the parking slot and the time it left,
+     * it computes the fare amount the user will have to pay.
+     * Each day is charged up to the daily cap, then the units of the last started day are charged up to the cap.
+     *
+     * @param car
+     *         used to get arrival time and determine parking duration
+     *
+     * @return the created bill
+     */
+    @Override
+    public BigDecimal computeFare(@NonNull final Car car) throws PolicyException {
+        final LocalDateTime parkedAt = car.getParkedAt();
+        final LocalDateTime leftAt = car.getLeftAt();
+        if (parkedAt == null) {
+            throw new PolicyException("Car never entered the parking lot, unable to create the bill");
+        }
+        if (leftAt == null) {
+            throw new PolicyException("Car may have not left the parking slot correctly: No end time registered");
+        }
+        long seconds = leftAt.toEpochSecond(ZoneOffset.UTC) - parkedAt.toEpochSecond(ZoneOffset.UTC);
+        int nanos = leftAt.getNano() - parkedAt.getNano();
+        if (nanos < 0) {
+            seconds--;
+            nanos += NANOS_PER_SECOND;
+        }
+        return BigDecimal.valueOf(this.computeMinorFare(seconds, nanos), this.scale);
+    }
+
+    /**
+     * Compute the fare in minor units (1 / 10^scale).
+     *
+     * @param seconds
+     *         parking duration in seconds
+     * @param nanos
+     *         the nanoseconds of the parking duration, from 0 to 999,999,999
+     *
+     * @return the fare in minor units
+     *
+     * @throws PolicyException
+     *         if the car left before it parked, the fare overflows, or the duration is not a whole number of units
+     *         with {@link RoundingMode#UNNECESSARY}
+     */
+    long computeMinorFare(final long seconds, final int nanos) throws PolicyException {
+        if (seconds < 0) {
+            throw new PolicyException("Car left the parking slot before it parked");
+        }
+        if (seconds < this.graceSeconds || seconds == this.graceSeconds && nanos == 0) {
+            return 0;
+        }
+
+        try {
+            if (this.dailyCapMinor == Long.MAX_VALUE) { // no cap, no need to split the days
+                return Math.addExact(this.fixedMinor, this.unitFare(seconds, nanos));
+            }
+            final long days = seconds / SECONDS_PER_DAY;
+            final long dayFare = days == 0 ? 0 : Math.min(this.unitFare(SECONDS_PER_DAY, 0), this.dailyCapMinor);
+            final long lastDayFare = Math.min(this.unitFare(seconds % SECONDS_PER_DAY, nanos), this.dailyCapMinor);
+            return Math.addExact(Math.addExact(this.fixedMinor, Math.multiplyExact(days, dayFare)), lastDayFare);
+        } catch (ArithmeticException e) {
+            throw new PolicyException("The fare of " + seconds + " seconds overflows");
+        }
+    }
+
+    /**
+     * @param seconds
+     *         a duration
+     * @param nanos
+     *         the nanoseconds of the duration
+     *
+     * @return the fare of the rounded number of units in the duration, in minor units
+     */
+    private long unitFare(final long seconds, final int nanos) throws PolicyException {
+        final long units = seconds / this.unitSeconds;
+        final long remainder = seconds % this.unitSeconds;
+        return Math.multiplyExact(this.unitMinor, this.roundUp(units, remainder, nanos) ? units + 1 : units);
+    }
+
+    private boolean roundUp(final long units, final long remainder, final int nanos) throws PolicyException {
+        if (remainder == 0 && nanos == 0) {
+            return false;
+        }
+        // twice the remainder against the unit, the nanoseconds breaking the ties
+        final long twice = 2 * remainder + (2L * nanos) / NANOS_PER_SECOND;
+        final int half = twice != this.unitSeconds ? Long.compare(twice, this.unitSeconds)
+                : (2L * nanos) % NANOS_PER_SECOND == 0 ? 0 : 1;
+        switch (this.roundingMode) {
+            case UP:
+            case CEILING:
+                return true;
+            case DOWN:
+            case FLOOR:
+                return false;
+            case HALF_UP:
+                return half >= 0;
+            case HALF_DOWN:
+                return half > 0;
+            case HALF_EVEN:
+                return half > 0 || (half == 0 && units % 2 == 1);
+            default:
+                throw new PolicyException("Parking duration is not a whole number of units");
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package fr.avenard.parking.policy;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import fr.avenard.parking.Car;
+import fr.avenard.parking.CarType;
+import fr.avenard.parking.Parking;
+import fr.avenard.parking.exception.PolicyException;
+import lombok.NonNull;
+
+/**
+ * Occupancy pricing policy allows the {@link Parking} to raise the prices as the parking lot fills, and lower them
+ * when it is empty. Every hour started in the parking is charged completely, like the {@link PerHourPolicy}.
+ * <p>
+ * The hour fare is read from a {@link PriceCurve} depending on the car type, the hour the car left the parking slot
+ * and the occupancy of the slots of its type. The occupancy is sampled on a fixed tick ({@link #sampleEvery}), and the
+ * curve is precomputed for every hour and occupancy percentage: billing a car is a constant time lookup.
+ */
+public class OccupancyPricingPolicy implements PricingPolicy {
+    private static final int HOURS = 24;
+    private static final int PERCENTS = 101;
+
+    private final BigDecimal fixedFare;
+    private final AtomicIntegerArray occupancy = new AtomicIntegerArray(CarType.values().length); // percentages
+    private volatile BigDecimal[][][] hourFares; // car type ordinal, hour of day, occupancy percentage
+
+    /**
+     * Create an occupancy pricing policy with a fixed amount (independent from the duration) and a price curve.
+     *
+     * @param fixedFare
+     *         a non null big decimal amount
+     * @param curve
+     *         the price of each hour spent in the parking
+     */
+    public OccupancyPricingPolicy(@NonNull final BigDecimal fixedFare, @NonNull final PriceCurve curve) {
+        this.fixedFare = fixedFare;
+        this.setCurve(curve);
+    }
+
+    /**
+     * Replace the price curve. The curve is precomputed, then swapped atomically: a bill uses either the previous
+     * curve or the new one.
+     *
+     * @param curve
+     *         the price of each hour spent in the parking
+     */
+    public void setCurve(@NonNull final PriceCurve curve) {
+        final CarType[] carTypes = CarType.values();
+        final BigDecimal[][][] fares = new BigDecimal[carTypes.length][HOURS][PERCENTS];
+        for (CarType carType : carTypes) {
+            for (int hour = 0; hour < HOURS; hour++) {
+                for (int percent = 0; percent < PERCENTS; percent++) {
+                    fares[carType.ordinal()][hour][percent] = curve.hourFare(carType, hour, percent);
+                }
+            }
+        }
+        this.hourFares = fares;
+    }
+
+    /**
+     * Sample the occupancy of each slot type of the parking.
+     *
+     * @param parking
+     *         the parking using this policy
+     */
+    public void sample(@NonNull final Parking parking) {
+        for (CarType carType : CarType.values()) {
+            final long total = parking.totalSlots(carType);
+            final long occupied = total - parking.remainingFreeSlots(carType);
+            this.occupancy.set(carType.ordinal(), total == 0 ? 0 : (int) (occupied * 100 / total));
+        }
+    }
+
+    /**
+     * Sample the occupancy of the parking periodically.
+     *
+     * @param parking
+     *         the parking using this policy
+     * @param scheduler
+     *         the scheduler running the sampling
+     * @param period
+     *         the time between two samples
+     *
+     * @return the scheduled sampling, cancel it to stop sampling
+     */
+    public ScheduledFuture<?> sampleEvery(@NonNull final Parking parking,
+            @NonNull final ScheduledExecutorService scheduler, @NonNull final Duration period) {
+        return scheduler.scheduleAtFixedRate(() -> this.sample(parking), 0, period.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @param carType
+     *         a supported {@link CarType}
+     *
+     * @return the percentage of occupied slots of this type at the last sample
+     */
+    public int getOccupancy(@NonNull final CarType carType) {
+        return this.occupancy.get(carType.ordinal());
+    }
+
+    /**
+     * What The Fare is it?
+     * Every hour started in the parking is charged with the hour fare of the curve for the hour the car left its
+     * slot and the last sampled occupancy, then added to the fixed amount.
+     *
+     * @param car
+     *         used to get its type and the parking duration
+     *
+     * @return the created bill
+     */
+    @Override
+    public BigDecimal computeFare(@NonNull final Car car) throws PolicyException {
+        final long startedHours = PerHourPolicy.startedHours(car);
+        final int ordinal = car.getType().ordinal();
+        final BigDecimal hourFare = this.hourFares[ordinal][car.getLeftAt().getHour()][this.occupancy.get(ordinal)];
+        return this.fixedFare.add(hourFare.multiply(BigDecimal.valueOf(startedHours)));
+    }
+}
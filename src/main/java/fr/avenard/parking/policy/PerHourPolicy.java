@@ -57,6 +57,25 @@ public class PerHourPolicy implements PricingPolicy {
      */
     @Override
     public BigDecimal computeFare(final @NonNull Car car) throws PolicyException {
+        // divide the seconds by an hour to get the number of hours spent in the parking
+        BigDecimal spentTimeFare = this.hourFare.multiply(BigDecimal.valueOf(startedHours(car)));
+
+        // add the fixed fare
+        return fixedFare.add(spentTimeFare);
+    }
+
+    /**
+     * Count the hours started in the parking: every hour started is charged completely.
+     *
+     * @param car
+     *         used to get arrival time and determine parking duration
+     *
+     * @return a strictly positive number of hours
+     *
+     * @throws PolicyException
+     *         if the car parkedAt or leftAt date times are not defined
+     */
+    static long startedHours(final @NonNull Car car) throws PolicyException {
         if (car.getParkedAt() == null) {
             throw new PolicyException("Car never entered the parking lot, unable to create the bill");
         }
@@ -67,11 +86,10 @@ public class PerHourPolicy implements PricingPolicy {
 
         // compute the duration between the time the car entered the parking slot and the time it left the parking slot
         final Duration duration = Duration.between(car.getParkedAt(), car.getLeftAt());
-
-        // divide the seconds by an hour to get the number of hours spent in the parking
-        BigDecimal spentTimeFare = this.hourFare.multiply(BigDecimal.valueOf(duration.toHours() + 1));
-
-        // add the fixed fare
-        return fixedFare.add(spentTimeFare);
+        final long hours = duration.toHours();
+        if (hours > 0 && duration.equals(Duration.ofHours(hours))) {
+            return hours; // exact hours: no other hour was started
+        }
+        return hours + 1;
     }
 }
@@ -0,0 +1,29 @@
+package fr.avenard.parking.policy;
+
+import java.math.BigDecimal;
+
+import fr.avenard.parking.CarType;
+import lombok.NonNull;
+
+/**
+ * Price curve of an {@link OccupancyPricingPolicy}: the hour fare depending on the time of day and the occupancy of
+ * the parking slots.
+ * The curve is evaluated for each combination when it is set, never when a car is billed.
+ */
+@FunctionalInterface
+public interface PriceCurve {
+
+    /**
+     * Compute the price of an hour spent in the parking.
+     *
+     * @param carType
+     *         the type of the car, and of its parking slot
+     * @param hourOfDay
+     *         the hour the car left the parking slot, from 0 to 23
+     * @param occupancy
+     *         the percentage of occupied slots of this type, from 0 to 100
+     *
+     * @return the hour fare, non null
+     */
+    BigDecimal hourFare(@NonNull CarType carType, int hourOfDay, int occupancy);
+}
@@ -0,0 +1,186 @@
+package fr.avenard.parking.policy;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+
+import fr.avenard.parking.Car;
+import fr.avenard.parking.exception.PolicyException;
+import lombok.NonNull;
+
+/**
+ * Time of day policy charges the users an hourly rate that depends on the time of day (day rate, night rate...).
+ * <p>
+ * A stay crossing a rate boundary is split across the periods: each period is charged at its own rate, prorated to
+ * the second. The amounts are accrued in minor units per hour (cents x seconds) stored as {@code long}, and the fare
+ * is rounded up to the minor unit once, at the end. Use the {@code with*} methods to configure the policy:
+ * <p>
+ * {@code new TimeOfDayPolicy(new BigDecimal("2.00")).withRate(LocalTime.of(20, 0), new BigDecimal("0.50"))
+ * .withRate(LocalTime.of(8, 0), new BigDecimal("2.00"))}
+ * <p>
+ * Use a {@link FareAccrual} to query the amount owed so far by the parked cars.
+ */
+public class TimeOfDayPolicy implements PricingPolicy {
+    static final long SECONDS_PER_HOUR = 3_600;
+    private static final long SECONDS_PER_DAY = 86_400;
+
+    private final int[] starts; // second of the day each period starts, sorted, the first one at midnight
+    private final BigDecimal[] hourlyRates; // of each period
+
+    // amounts in minor units at the largest scale of the rates
+    private final int scale;
+    private final long[] hourlyMinor; // of each period
+
+    /**
+     * Create a policy charging the same hourly rate all day long.
+     *
+     * @param hourlyRate
+     *         the price of an hour spent in the parking
+     */
+    public TimeOfDayPolicy(@NonNull final BigDecimal hourlyRate) {
+        this(new int[] {0}, new BigDecimal[] {hourlyRate});
+    }
+
+    private TimeOfDayPolicy(final int[] starts, final BigDecimal[] hourlyRates) {
+        for (BigDecimal hourlyRate : hourlyRates) {
+            if (hourlyRate.signum() < 0) {
+                throw new IllegalArgumentException("The hourly rates must be positive");
+            }
+        }
+        this.starts = starts;
+        this.hourlyRates = hourlyRates;
+        this.scale = Math.max(0, Arrays.stream(hourlyRates).mapToInt(BigDecimal::scale).max().orElse(0));
+        this.hourlyMinor = new long[hourlyRates.length];
+        for (int period = 0; period < hourlyRates.length; period++) {
+            this.hourlyMinor[period] = hourlyRates[period].setScale(this.scale).unscaledValue().longValueExact();
+        }
+    }
+
+    /**
+     * @param from
+     *         the time of day the rate starts, until the start of the next rate, a whole number of seconds
+     * @param hourlyRate
+     *         the price of an hour spent in the parking during the period
+     *
+     * @return a copy of this policy with the provided rate, replacing the rate starting at the same time if any
+     */
+    public TimeOfDayPolicy withRate(@NonNull final LocalTime from, @NonNull final BigDecimal hourlyRate) {
+        if (from.getNano() != 0) {
+            throw new IllegalArgumentException("The rates must start on a whole second");
+        }
+        final int start = from.toSecondOfDay();
+        int period = Arrays.binarySearch(this.starts, start);
+        if (period >= 0) {
+            final BigDecimal[] hourlyRates = this.hourlyRates.clone();
+            hourlyRates[period] = hourlyRate;
+            return new TimeOfDayPolicy(this.starts, hourlyRates);
+        }
+        period = -period - 1;
+        final int[] starts = new int[this.starts.length + 1];
+        final BigDecimal[] hourlyRates = new BigDecimal[this.hourlyRates.length + 1];
+        System.arraycopy(this.starts, 0, starts, 0, period);
+        System.arraycopy(this.hourlyRates, 0, hourlyRates, 0, period);
+        starts[period] = start;
+        hourlyRates[period] = hourlyRate;
+        System.arraycopy(this.starts, period, starts, period + 1, this.starts.length - period);
+        System.arraycopy(this.hourlyRates, period, hourlyRates, period + 1, this.hourlyRates.length - period);
+        return new TimeOfDayPolicy(starts, hourlyRates);
+    }
+
+    /**
+     * What The Fare is it?
+     * Based on the arrival time the car took the parking slot and the time it left,
+     * it computes the fare amount the user will have to pay, each period at its own rate.
+     *
+     * @param car
+     *         used to get arrival time and determine parking duration
+     *
+     * @return the created bill
+     */
+    @Override
+    public BigDecimal computeFare(@NonNull final Car car) throws PolicyException {
+        final LocalDateTime parkedAt = car.getParkedAt();
+        final LocalDateTime leftAt = car.getLeftAt();
+        if (parkedAt == null) {
+            throw new PolicyException("Car never entered the parking lot, unable to create the bill");
+        }
+        if (leftAt == null) {
+            throw new PolicyException("Car may have not left the parking slot correctly: No end time registered");
+        }
+        final long from = parkedAt.toEpochSecond(ZoneOffset.UTC);
+        final long to = leftAt.toEpochSecond(ZoneOffset.UTC);
+        if (to < from) {
+            throw new PolicyException("Car left the parking slot before it parked");
+        }
+        return this.toFare(this.accrue(from, to));
+    }
+
+    /**
+     * Accrue the amount of a stay, period by period.
+     *
+     * @param from
+     *         arrival epoch second
+     * @param to
+     *         departure epoch second
+     *
+     * @return the amount in minor units per hour
+     */
+    long accrue(final long from, final long to) {
+        long accrued = 0;
+        long start = from;
+        while (start < to) {
+            final long end = Math.min(this.nextBoundary(start), to);
+            accrued += this.hourlyMinorAt(start) * (end - start);
+            start = end;
+        }
+        return accrued;
+    }
+
+    /**
+     * Convert an accrued amount to a fare, rounded up to the minor unit.
+     *
+     * @param accrued
+     *         the amount in minor units per hour
+     *
+     * @return the fare
+     */
+    BigDecimal toFare(final long accrued) {
+        return BigDecimal.valueOf(Math.floorDiv(accrued + SECONDS_PER_HOUR - 1, SECONDS_PER_HOUR), this.scale);
+    }
+
+    /**
+     * Get the hourly rate at a time.
+     *
+     * @param epochSecond
+     *         a time, in epoch seconds
+     *
+     * @return the hourly rate in minor units
+     */
+    long hourlyMinorAt(final long epochSecond) {
+        return this.hourlyMinor[this.periodAt((int) Math.floorMod(epochSecond, SECONDS_PER_DAY))];
+    }
+
+    /**
+     * Get the first rate boundary after a time.
+     *
+     * @param epochSecond
+     *         a time, in epoch seconds
+     *
+     * @return the epoch second the next period starts, {@link Long#MAX_VALUE} if the rate never changes
+     */
+    long nextBoundary(final long epochSecond) {
+        if (this.starts.length == 1) {
+            return Long.MAX_VALUE;
+        }
+        final long day = epochSecond - Math.floorMod(epochSecond, SECONDS_PER_DAY);
+        final int next = this.periodAt((int) (epochSecond - day)) + 1;
+        return next == this.starts.length ? day + SECONDS_PER_DAY : day + this.starts[next];
+    }
+
+    private int periodAt(final int secondOfDay) {
+        final int period = Arrays.binarySearch(this.starts, secondOfDay);
+        return period >= 0 ? period : -period - 2; // the first period starts at midnight
+    }
+}
@@ -0,0 +1,114 @@
+package fr.avenard.parking.policy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Hashed timer wheel: the timers are dropped in a bucket per tick, the wheel turning over its buckets as the time
+ * advances. Scheduling a timer is O(1), and advancing the wheel only visits the buckets of the elapsed ticks.
+ * A timer due in more than a turn of the wheel waits in its bucket for the following turns.
+ * Not thread-safe.
+ *
+ * @param <T>
+ *         type of the timer elements
+ */
+class TimerWheel<T> {
+    private final long tickSeconds;
+    private final List<Timer<T>>[] buckets;
+    private final int mask;
+    private long currentTick; // last tick expired
+    private int size;
+
+    /**
+     * Create a wheel.
+     *
+     * @param tickSeconds
+     *         strictly positive duration of a tick, in seconds
+     * @param numberOfBuckets
+     *         strictly positive number of buckets, rounded up to the next power of two
+     * @param now
+     *         the current epoch second
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    TimerWheel(final long tickSeconds, final int numberOfBuckets, final long now) {
+        if (tickSeconds <= 0 || numberOfBuckets <= 0) {
+            throw new IllegalArgumentException("The tick and the number of buckets must be strictly positive");
+        }
+        final int length = Integer.highestOneBit(numberOfBuckets) == numberOfBuckets ? numberOfBuckets
+                : Integer.highestOneBit(numberOfBuckets) << 1;
+        this.tickSeconds = tickSeconds;
+        this.buckets = new List[length];
+        for (int bucket = 0; bucket < length; bucket++) {
+            this.buckets[bucket] = new ArrayList<>();
+        }
+        this.mask = length - 1;
+        this.currentTick = Math.floorDiv(now, tickSeconds);
+    }
+
+    /**
+     * Schedule a timer. A timer already due expires on the next {@link #advance}.
+     *
+     * @param element
+     *         the element of the timer
+     * @param deadline
+     *         the epoch second the timer is due
+     */
+    void schedule(final T element, final long deadline) {
+        final long tick = Math.max(Math.floorDiv(deadline, this.tickSeconds), this.currentTick + 1);
+        this.buckets[(int) (tick & this.mask)].add(new Timer<>(element, tick));
+        this.size++;
+    }
+
+    /**
+     * Advance the wheel, expiring the timers due.
+     *
+     * @param now
+     *         the current epoch second
+     * @param expired
+     *         called with the element of each timer due, it may schedule new timers
+     *
+     * @return the number of timers expired
+     */
+    int advance(final long now, final Consumer<T> expired) {
+        final long nowTick = Math.floorDiv(now, this.tickSeconds);
+        if (nowTick <= this.currentTick) {
+            return 0;
+        }
+        final long steps = Math.min(nowTick - this.currentTick, this.buckets.length);
+        final List<T> due = new ArrayList<>();
+        for (long step = 1; step <= steps; step++) {
+            final List<Timer<T>> bucket = this.buckets[(int) ((this.currentTick + step) & this.mask)];
+            int kept = 0;
+            for (Timer<T> timer : bucket) {
+                if (timer.tick <= nowTick) {
+                    due.add(timer.element);
+                } else {
+                    bucket.set(kept++, timer); // due on a later turn of the wheel
+                }
+            }
+            bucket.subList(kept, bucket.size()).clear();
+        }
+        this.currentTick = nowTick;
+        this.size -= due.size();
+        due.forEach(expired);
+        return due.size();
+    }
+
+    /**
+     * @return the number of timers scheduled
+     */
+    int size() {
+        return this.size;
+    }
+
+    private static class Timer<T> {
+        private final T element;
+        private final long tick;
+
+        private Timer(final T element, final long tick) {
+            this.element = element;
+            this.tick = tick;
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package fr.avenard.parking.registry;
+
+import fr.avenard.parking.Parking;
+import fr.avenard.parking.exception.ParkingException;
+import lombok.NonNull;
+
+/**
+ * Operation executed on a parking lot of a {@link ParkingRegistry}.
+ *
+ * @param <T>
+ *         type of the operation result
+ */
+@FunctionalInterface
+public interface LotOperation<T> {
+
+    /**
+     * Execute the operation while the parking lot is loaded.
+     *
+     * @param parking
+     *         the parking lot
+     *
+     * @return the operation result
+     *
+     * @throws ParkingException
+     *         any parking issue
+     */
+    T execute(@NonNull Parking parking) throws ParkingException;
+}
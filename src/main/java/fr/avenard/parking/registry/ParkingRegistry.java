@@ -0,0 +1,267 @@
+package fr.avenard.parking.registry;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import fr.avenard.parking.CarType;
+import fr.avenard.parking.Parking;
+import fr.avenard.parking.event.ParkingEvent;
+import fr.avenard.parking.event.ParkingEventType;
+import fr.avenard.parking.event.ParkingListener;
+import fr.avenard.parking.exception.ParkingException;
+import fr.avenard.parking.policy.PricingPolicy;
+import lombok.NonNull;
+
+/**
+ * Registry hosting many parking lots in the same JVM, identified by a lot id and grouped by region (city, etc).
+ * <p>
+ * Parking lots are used through {@link #execute(String, LotOperation)}. A lot that is not used for a while can be
+ * evicted with {@link #evictIdle(Duration)}: it is then kept as a compressed snapshot (a few dozen bytes for a lot
+ * with no car) and restored the next time it is used.
+ * <p>
+ * The registry keeps the number of free slots per region and {@link CarType} up to date, so that
+ * {@link #remainingFreeSlots(String, CarType)} never iterates over the parking lots.
+ * The listeners and the clock of a parking lot are kept when it is evicted, and given back to the restored parking:
+ * the listeners receive no event while the lot is evicted. The parking and its slots are only valid during an
+ * operation.
+ */
+public class ParkingRegistry {
+    private final Map<String, Lot> lots = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLongArray> freeSlotsByRegion = new ConcurrentHashMap<>();
+
+    /**
+     * Add a parking lot to the registry.
+     *
+     * @param lotId
+     *         unique id of the parking lot
+     * @param region
+     *         region of the parking lot, used to aggregate the free slots
+     * @param parking
+     *         the parking lot, with all its slots defined
+     * @param policy
+     *         the pricing policy of the parking lot, to restore it once evicted
+     *
+     * @throws ParkingException
+     *         if a parking lot is already registered with this id
+     */
+    public void register(@NonNull final String lotId, @NonNull final String region, @NonNull final Parking parking,
+            @NonNull final PricingPolicy policy) throws ParkingException {
+        final AtomicLongArray regionFreeSlots = this.freeSlotsByRegion.computeIfAbsent(region,
+                r -> new AtomicLongArray(CarType.values().length));
+        final Lot lot = new Lot(regionFreeSlots, policy);
+        // count the free slots and listen with the gates paused, so that no event is missed or counted twice
+        parking.batch(() -> {
+            lot.load(parking);
+            addFreeSlots(regionFreeSlots, parking, 1);
+        });
+        if (this.lots.putIfAbsent(lotId, lot) != null) {
+            parking.batch(() -> {
+                parking.removeListener(lot);
+                addFreeSlots(regionFreeSlots, parking, -1);
+            });
+            throw new ParkingException("A parking lot is already registered with id " + lotId);
+        }
+    }
+
+    private static void addFreeSlots(final AtomicLongArray regionFreeSlots, final Parking parking, final int sign) {
+        for (CarType carType : CarType.values()) {
+            regionFreeSlots.addAndGet(carType.ordinal(), sign * parking.remainingFreeSlots(carType));
+        }
+    }
+
+    /**
+     * Execute an operation on a parking lot, restoring it first if it was evicted.
+     * The parking lot cannot be evicted during the operation. The {@link Parking} and the
+     * {@link fr.avenard.parking.ParkingSlot}s of the operation must not outlive it: once evicted, the lot is restored as
+     * another parking, which rejects the slots of the previous one. Leave with the car instead of the slot.
+     *
+     * @param lotId
+     *         id of a registered parking lot
+     * @param operation
+     *         the operation to execute
+     * @param <T>
+     *         type of the operation result
+     *
+     * @return the operation result
+     *
+     * @throws ParkingException
+     *         if the parking lot is not registered, or any issue of the operation
+     */
+    public <T> T execute(@NonNull final String lotId, @NonNull final LotOperation<T> operation) throws
+            ParkingException {
+        final Lot lot = this.lots.get(lotId);
+        if (lot == null) {
+            throw new ParkingException("No parking lot registered with id " + lotId);
+        }
+
+        final Parking parking;
+        synchronized (lot) {
+            parking = lot.acquire();
+        }
+        try {
+            return operation.execute(parking);
+        } finally {
+            synchronized (lot) {
+                lot.release();
+            }
+        }
+    }
+
+    /**
+     * Returns how many parking slots of the provided type are free in all the parking lots of a region.
+     *
+     * @param region
+     *         a region
+     * @param slotsType
+     *         a supported {@link CarType}
+     *
+     * @return a positive number, zero if the region is unknown
+     */
+    public long remainingFreeSlots(@NonNull final String region, @NonNull final CarType slotsType) {
+        final AtomicLongArray regionFreeSlots = this.freeSlotsByRegion.get(region);
+        return regionFreeSlots == null ? 0 : regionFreeSlots.get(slotsType.ordinal());
+    }
+
+    /**
+     * Evict the parking lots that were not used for the provided duration: they are compressed into a snapshot.
+     * Parking lots in use or with cars waiting for a slot are never evicted.
+     *
+     * @param idleDuration
+     *         minimum duration since the last use
+     *
+     * @return the number of evicted parking lots
+     */
+    public int evictIdle(@NonNull final Duration idleDuration) {
+        final long idleSince = System.nanoTime() - idleDuration.toNanos();
+        int evicted = 0;
+        for (Lot lot : this.lots.values()) {
+            synchronized (lot) {
+                if (lot.evictIfIdle(idleSince)) {
+                    evicted++;
+                }
+            }
+        }
+        return evicted;
+    }
+
+    /**
+     * @param lotId
+     *         id of a registered parking lot
+     *
+     * @return true if the parking lot is loaded, false if it is evicted or not registered
+     */
+    public boolean isLoaded(@NonNull final String lotId) {
+        final Lot lot = this.lots.get(lotId);
+        if (lot == null) {
+            return false;
+        }
+        synchronized (lot) {
+            return lot.parking != null;
+        }
+    }
+
+    /**
+     * @return the number of registered parking lots
+     */
+    public int size() {
+        return this.lots.size();
+    }
+
+    /**
+     * A registered parking lot: either loaded, or evicted as a compressed snapshot.
+     * Its state is guarded by its monitor.
+     */
+    private static class Lot implements ParkingListener {
+        private final AtomicLongArray regionFreeSlots;
+        private final PricingPolicy policy;
+        private Parking parking; // null once evicted
+        private byte[] image; // compressed snapshot, null while loaded
+        private Clock clock; // of the evicted parking
+        private List<ParkingListener> listeners = List.of(); // of the evicted parking, except this lot
+        private int users; // number of operations in progress
+        private long lastUse; // System#nanoTime of the last use
+
+        private Lot(final AtomicLongArray regionFreeSlots, final PricingPolicy policy) {
+            this.regionFreeSlots = regionFreeSlots;
+            this.policy = policy;
+        }
+
+        /**
+         * Keep the region free slots up to date.
+         */
+        @Override
+        public void onEvent(@NonNull final ParkingEvent event) {
+            if (event.getType() == ParkingEventType.ENTER) {
+                this.regionFreeSlots.decrementAndGet(event.getSlot().getSlotType().ordinal());
+            } else if (event.getType() == ParkingEventType.LEAVE) {
+                this.regionFreeSlots.incrementAndGet(event.getSlot().getSlotType().ordinal());
+            }
+        }
+
+        private void load(final Parking parking) {
+            this.listeners.forEach(parking::addListener);
+            this.parking = parking.addListener(this);
+            this.image = null;
+            this.clock = null;
+            this.listeners = List.of();
+            this.lastUse = System.nanoTime();
+        }
+
+        private Parking acquire() {
+            if (this.parking == null) {
+                try (InflaterInputStream input = new InflaterInputStream(new ByteArrayInputStream(this.image))) {
+                    this.load(Parking.restore(Channels.newChannel(input), this.policy, this.clock));
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Unable to restore an evicted parking lot", e);
+                }
+            }
+            this.users++;
+            this.lastUse = System.nanoTime();
+            return this.parking;
+        }
+
+        private void release() {
+            this.users--;
+            this.lastUse = System.nanoTime();
+        }
+
+        private boolean evictIfIdle(final long idleSince) {
+            if (this.parking == null || this.users > 0 || this.lastUse - idleSince > 0 || hasWaitingCars()) {
+                return false;
+            }
+
+            final ByteArrayOutputStream image = new ByteArrayOutputStream(64);
+            try (DeflaterOutputStream output = new DeflaterOutputStream(image)) {
+                this.parking.snapshot(Channels.newChannel(output));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Unable to evict a parking lot", e); // cannot occur in memory
+            }
+            this.parking.removeListener(this);
+            this.listeners = List.copyOf(this.parking.getListeners());
+            this.clock = this.parking.getClock();
+            this.parking = null;
+            this.image = image.toByteArray();
+            return true;
+        }
+
+        private boolean hasWaitingCars() {
+            for (CarType carType : CarType.values()) {
+                if (this.parking.waitingCars(carType) > 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
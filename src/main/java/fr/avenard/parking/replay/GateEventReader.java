@@ -0,0 +1,129 @@
+package fr.avenard.parking.replay;
+
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+import fr.avenard.parking.CarType;
+import fr.avenard.parking.Plate;
+import fr.avenard.parking.PlateRegistry;
+import fr.avenard.parking.event.ParkingEventType;
+import lombok.NonNull;
+
+/**
+ * Read an event log written by a {@link GateEventRecorder}, in batches of events decoded once for every scenario.
+ * The plates are interned by the {@link PlateRegistry#getDefault() default registry}. An event partially written
+ * at the end of the log is ignored.
+ */
+class GateEventReader {
+    private static final int BUFFER_SIZE = 256 * 1024;
+    private static final ParkingEventType[] EVENT_TYPES = ParkingEventType.values();
+    private static final CarType[] CAR_TYPES = CarType.values();
+
+    private final ReadableByteChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE); // in read mode
+    private boolean endOfLog;
+
+    /**
+     * Open an event log.
+     *
+     * @param channel
+     *         channel to read the log from, it is not closed
+     *
+     * @throws IOException
+     *         if the log cannot be read or is not an event log
+     */
+    GateEventReader(@NonNull final ReadableByteChannel channel) throws IOException {
+        this.channel = channel;
+        this.buffer.flip();
+        if (!this.fill(GateEventRecorder.HEADER_SIZE) || this.buffer.getInt() != GateEventRecorder.MAGIC
+                || this.buffer.getShort() != GateEventRecorder.VERSION) {
+            throw new StreamCorruptedException("Not a gate event log");
+        }
+    }
+
+    /**
+     * Decode the next events of the log.
+     *
+     * @param batch
+     *         batch receiving the events, cleared first
+     *
+     * @return the number of events decoded, 0 at the end of the log
+     *
+     * @throws IOException
+     *         if the log cannot be read or is corrupted
+     */
+    int read(@NonNull final Batch batch) throws IOException {
+        batch.size = 0;
+        while (batch.size < batch.times.length && this.fill(GateEventRecorder.EVENT_HEADER_SIZE)) {
+            final int position = this.buffer.position();
+            final int type = this.buffer.get(position);
+            final int carType = this.buffer.get(position + 1);
+            final int length = this.buffer.getShort(position + 2 + Long.BYTES);
+            if (type < 0 || type >= EVENT_TYPES.length || carType < 0 || carType >= CAR_TYPES.length
+                    || length < 0 || length > GateEventRecorder.MAX_PLATE_SIZE) {
+                throw new StreamCorruptedException("Corrupted gate event at offset " + position);
+            }
+            if (!this.fill(GateEventRecorder.EVENT_HEADER_SIZE + length)) {
+                break; // partially written
+            }
+
+            final int event = batch.size++;
+            batch.types[event] = EVENT_TYPES[type];
+            batch.carTypes[event] = CAR_TYPES[carType];
+            this.buffer.position(this.buffer.position() + 2);
+            batch.times[event] = this.buffer.getLong();
+            this.buffer.position(this.buffer.position() + Short.BYTES);
+            batch.plates[event] = PlateRegistry.getDefault().intern(new String(this.buffer.array(),
+                    this.buffer.arrayOffset() + this.buffer.position(), length, StandardCharsets.UTF_8));
+            this.buffer.position(this.buffer.position() + length);
+        }
+        return batch.size;
+    }
+
+    /**
+     * Read from the channel until the provided number of bytes are buffered, or the end of the log.
+     *
+     * @param length
+     *         number of bytes needed
+     *
+     * @return true if the bytes are buffered, false at the end of the log
+     *
+     * @throws IOException
+     *         if the log cannot be read
+     */
+    private boolean fill(final int length) throws IOException {
+        if (this.buffer.remaining() >= length) {
+            return true;
+        }
+        this.buffer.compact();
+        try {
+            while (!this.endOfLog && this.buffer.position() < length) {
+                this.endOfLog = this.channel.read(this.buffer) < 0;
+            }
+        } finally {
+            this.buffer.flip();
+        }
+        return this.buffer.remaining() >= length;
+    }
+
+    /**
+     * Events decoded from the log, in columns.
+     */
+    static class Batch {
+        final ParkingEventType[] types;
+        final CarType[] carTypes;
+        final long[] times; // epoch millisecond
+        final Plate[] plates;
+        int size;
+
+        Batch(final int capacity) {
+            this.types = new ParkingEventType[capacity];
+            this.carTypes = new CarType[capacity];
+            this.times = new long[capacity];
+            this.plates = new Plate[capacity];
+        }
+    }
+}
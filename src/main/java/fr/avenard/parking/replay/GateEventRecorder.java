@@ -0,0 +1,119 @@
+package fr.avenard.parking.replay;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+import fr.avenard.parking.Car;
+import fr.avenard.parking.CarType;
+import fr.avenard.parking.event.ParkingEvent;
+import fr.avenard.parking.event.ParkingEventType;
+import fr.avenard.parking.event.ParkingListener;
+import lombok.NonNull;
+import lombok.Synchronized;
+
+/**
+ * Record the gate events of a parking into a binary event log, replayed later by a {@link ReplayEngine}.
+ * Registered as a listener, it records the cars that entered, left and were billed; the gates also record the entries
+ * the parking rejected with {@link #record}, so that the replay of another slot mix can accept them.
+ * <ul>
+ * <li>header: magic number "PGEL" (int), format version (short)</li>
+ * <li>each event: event type ordinal (byte), car type ordinal (byte), time (epoch millisecond UTC as long), plate
+ * length (short) and UTF-8 plate</li>
+ * </ul>
+ * The events are buffered: {@link #flush()} writes them to the channel.
+ */
+public class GateEventRecorder implements ParkingListener, Flushable {
+    static final int MAGIC = 0x5047454C; // "PGEL"
+    static final short VERSION = 1;
+    static final int HEADER_SIZE = Integer.BYTES + Short.BYTES;
+    static final int EVENT_HEADER_SIZE = 2 + Long.BYTES + Short.BYTES;
+    static final int MAX_PLATE_SIZE = 1024;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE); // guarded by the lock
+
+    /**
+     * Start an event log.
+     *
+     * @param channel
+     *         channel to write the log to, it is not closed
+     *
+     * @throws IOException
+     *         if the header cannot be written
+     */
+    public GateEventRecorder(@NonNull final WritableByteChannel channel) throws IOException {
+        this.channel = channel;
+        this.buffer.putInt(MAGIC).putShort(VERSION);
+        this.flush();
+    }
+
+    /**
+     * Record the events of the parking the recorder listens to.
+     *
+     * @param event
+     *         a parking event
+     */
+    @Override
+    public void onEvent(@NonNull final ParkingEvent event) {
+        try {
+            this.record(event.getType(), event.getTime(), event.getCar().getPlate(), event.getCar().getType());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Record a gate event.
+     *
+     * @param type
+     *         the event type
+     * @param time
+     *         when the event occurred
+     * @param plate
+     *         plate of the car
+     * @param carType
+     *         type of the car
+     *
+     * @throws IOException
+     *         if the buffered events cannot be written
+     */
+    @Synchronized
+    public void record(@NonNull final ParkingEventType type, @NonNull final LocalDateTime time,
+            @NonNull final String plate, @NonNull final CarType carType) throws IOException {
+        final byte[] text = plate.getBytes(StandardCharsets.UTF_8);
+        if (text.length > MAX_PLATE_SIZE) {
+            throw new IllegalArgumentException("Plate too long: " + plate);
+        }
+        if (this.buffer.remaining() < EVENT_HEADER_SIZE + text.length) {
+            this.flush();
+        }
+        this.buffer.put((byte) type.ordinal())
+                .put((byte) carType.ordinal())
+                .putLong(time.toInstant(ZoneOffset.UTC).toEpochMilli())
+                .putShort((short) text.length)
+                .put(text);
+    }
+
+    /**
+     * Write the buffered events to the channel.
+     *
+     * @throws IOException
+     *         if the events cannot be written
+     */
+    @Override
+    @Synchronized
+    public void flush() throws IOException {
+        this.buffer.flip();
+        while (this.buffer.hasRemaining()) {
+            this.channel.write(this.buffer);
+        }
+        this.buffer.clear();
+    }
+}
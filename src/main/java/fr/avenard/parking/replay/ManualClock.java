@@ -0,0 +1,84 @@
+package fr.avenard.parking.replay;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.concurrent.atomic.AtomicLong;
+
+import lombok.NonNull;
+
+/**
+ * Clock set by hand, to run a {@link fr.avenard.parking.Parking} in simulated time: the time only moves when it is
+ * {@link #set(long) set} or {@link #advance(Duration) advanced}. Its precision is the millisecond.
+ * <p>
+ * The copies created by {@link #withZone(ZoneId)} share the time of this clock.
+ */
+public class ManualClock extends Clock {
+    private final AtomicLong millis; // epoch millisecond, shared with the copies
+    private final ZoneId zone;
+
+    /**
+     * Create a clock in the UTC zone.
+     *
+     * @param start
+     *         the initial time
+     */
+    public ManualClock(@NonNull final Instant start) {
+        this(new AtomicLong(start.toEpochMilli()), ZoneOffset.UTC);
+    }
+
+    private ManualClock(final AtomicLong millis, final ZoneId zone) {
+        this.millis = millis;
+        this.zone = zone;
+    }
+
+    /**
+     * Set the time.
+     *
+     * @param epochMilli
+     *         the time, in milliseconds from the epoch
+     */
+    public void set(final long epochMilli) {
+        this.millis.set(epochMilli);
+    }
+
+    /**
+     * Move the time forward (or backward with a negative duration).
+     *
+     * @param duration
+     *         the duration to add
+     */
+    public void advance(@NonNull final Duration duration) {
+        this.millis.addAndGet(duration.toMillis());
+    }
+
+    @Override
+    public ZoneId getZone() {
+        return this.zone;
+    }
+
+    @Override
+    public Clock withZone(@NonNull final ZoneId zone) {
+        return zone.equals(this.zone) ? this : new ManualClock(this.millis, zone);
+    }
+
+    @Override
+    public long millis() {
+        return this.millis.get();
+    }
+
+    @Override
+    public Instant instant() {
+        return Instant.ofEpochMilli(this.millis.get());
+    }
+
+    @Override
+    public String toString() {
+        return "ManualClock{" +
+                "instant=" + instant() +
+                ", zone=" + zone +
+                '}';
+    }
+}
@@ -0,0 +1,133 @@
+package fr.avenard.parking.replay;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.stream.Collectors;
+
+import javax.validation.constraints.Positive;
+
+import lombok.NonNull;
+
+/**
+ * Replay an event log recorded by a {@link GateEventRecorder} against alternative configurations of the parking, to
+ * plan its capacity: how many cars each slot mix rejects, how much revenue each pricing policy makes.
+ * <p>
+ * The log is read in a single pass: each batch of events is decoded once, then applied to every scenario in
+ * parallel, while the next batch is decoded. Each scenario runs in simulated time, so a day of events is replayed
+ * as fast as its parking can apply them.
+ */
+public class ReplayEngine {
+    private static final int DEFAULT_BATCH_SIZE = 16 * 1024;
+
+    private final Executor executor;
+    private final int batchSize;
+
+    /**
+     * Create a replay engine.
+     *
+     * @param executor
+     *         executor applying the events to the scenarios, one task per scenario and batch
+     * @param batchSize
+     *         number of events decoded at once
+     */
+    public ReplayEngine(@NonNull final Executor executor, @Positive final int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("The batch size must be positive");
+        }
+        this.executor = executor;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Create a replay engine decoding the events by batches of 16K.
+     *
+     * @param executor
+     *         executor applying the events to the scenarios, one task per scenario and batch
+     */
+    public ReplayEngine(@NonNull final Executor executor) {
+        this(executor, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Replay an event log file.
+     *
+     * @param log
+     *         the event log
+     * @param scenarios
+     *         the scenarios to evaluate, not replayed yet
+     *
+     * @return the result of each scenario, in the order of the scenarios
+     *
+     * @throws IOException
+     *         if the log cannot be read or is corrupted
+     */
+    public List<ReplayResult> replay(@NonNull final Path log, @NonNull final List<ReplayScenario> scenarios) throws
+            IOException {
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.READ)) {
+            return this.replay(channel, scenarios);
+        }
+    }
+
+    /**
+     * Replay an event log.
+     *
+     * @param channel
+     *         channel to read the log from, it is not closed
+     * @param scenarios
+     *         the scenarios to evaluate, not replayed yet
+     *
+     * @return the result of each scenario, in the order of the scenarios
+     *
+     * @throws IOException
+     *         if the log cannot be read or is corrupted
+     */
+    public List<ReplayResult> replay(@NonNull final ReadableByteChannel channel,
+            @NonNull final List<ReplayScenario> scenarios) throws IOException {
+        final GateEventReader reader = new GateEventReader(channel);
+        GateEventReader.Batch batch = new GateEventReader.Batch(this.batchSize);
+        GateEventReader.Batch next = new GateEventReader.Batch(this.batchSize);
+        reader.read(batch);
+        while (batch.size > 0) {
+            final GateEventReader.Batch current = batch;
+            final CompletableFuture<?>[] applied = scenarios.stream()
+                    .map(scenario -> CompletableFuture.runAsync(() -> scenario.apply(current), this.executor))
+                    .toArray(CompletableFuture[]::new);
+            try {
+                reader.read(next); // decode the next events meanwhile
+            } finally {
+                await(applied);
+            }
+            batch = next;
+            next = current;
+        }
+        return scenarios.stream().map(ReplayScenario::result).collect(Collectors.toList());
+    }
+
+    /**
+     * Wait for the scenarios to apply a batch: each scenario is applied by one thread at a time, and sees the
+     * updates of the previous batches.
+     *
+     * @param applied
+     *         the tasks applying the batch
+     */
+    private static void await(final CompletableFuture<?>[] applied) {
+        try {
+            CompletableFuture.allOf(applied).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+}
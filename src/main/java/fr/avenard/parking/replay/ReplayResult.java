@@ -0,0 +1,80 @@
+package fr.avenard.parking.replay;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+import fr.avenard.parking.CarType;
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * Outcomes of the replay of an event log against a {@link ReplayScenario}.
+ */
+@Getter
+public class ReplayResult {
+    private final String name;
+    /**
+     * Number of cars that parked
+     */
+    private final long entered;
+    private final long[] rejected; // by car type
+    /**
+     * Number of cars that left their slot
+     */
+    private final long left;
+    /**
+     * Number of cars billed
+     */
+    private final long billed;
+    /**
+     * Number of recorded events the scenario could not apply, e.g. the departure of a car it rejected
+     */
+    private final long ignored;
+    /**
+     * Sum of the fares billed
+     */
+    private final BigDecimal revenue;
+
+    ReplayResult(final String name, final long entered, final long[] rejected, final long left, final long billed,
+            final long ignored, final BigDecimal revenue) {
+        this.name = name;
+        this.entered = entered;
+        this.rejected = rejected;
+        this.left = left;
+        this.billed = billed;
+        this.ignored = ignored;
+        this.revenue = revenue;
+    }
+
+    /**
+     * @return the number of cars rejected because no slot was free
+     */
+    public long getRejected() {
+        return Arrays.stream(this.rejected).sum();
+    }
+
+    /**
+     * Get the number of cars of a type rejected because no slot was free.
+     *
+     * @param carType
+     *         a car type
+     *
+     * @return the number of rejected cars
+     */
+    public long getRejected(@NonNull final CarType carType) {
+        return this.rejected[carType.ordinal()];
+    }
+
+    @Override
+    public String toString() {
+        return "ReplayResult{" +
+                "name='" + name + '\'' +
+                ", entered=" + entered +
+                ", rejected=" + Arrays.toString(rejected) +
+                ", left=" + left +
+                ", billed=" + billed +
+                ", ignored=" + ignored +
+                ", revenue=" + revenue +
+                '}';
+    }
+}
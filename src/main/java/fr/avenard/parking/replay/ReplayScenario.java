@@ -0,0 +1,121 @@
+package fr.avenard.parking.replay;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.validation.constraints.Positive;
+
+import fr.avenard.parking.Car;
+import fr.avenard.parking.CarType;
+import fr.avenard.parking.Parking;
+import fr.avenard.parking.exception.ParkingException;
+import fr.avenard.parking.exception.SlotNotFoundException;
+import fr.avenard.parking.policy.PricingPolicy;
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * An alternative configuration of the parking (slot mix, pricing policy) evaluated by a {@link ReplayEngine}.
+ * The scenario runs its own parking in simulated time: its clock is set to the time of each recorded event.
+ * <p>
+ * Recorded events the scenario cannot apply are ignored, for instance the departure of a car it rejected.
+ * A scenario is replayed once.
+ */
+public class ReplayScenario {
+    @Getter
+    private final String name;
+    private final ManualClock clock = new ManualClock(Instant.EPOCH);
+    private final Parking parking;
+    private final Map<Car, Car> leftCars = new HashMap<>(); // cars that left and were not billed yet
+
+    // outcomes of the replay, updated by a single thread at a time
+    private long entered;
+    private final long[] rejected = new long[CarType.values().length];
+    private long left;
+    private long billed;
+    private long ignored;
+    private BigDecimal revenue = BigDecimal.ZERO;
+
+    /**
+     * Create a scenario without slots.
+     *
+     * @param name
+     *         name of the scenario in the results
+     * @param policy
+     *         the pricing policy of the scenario
+     */
+    public ReplayScenario(@NonNull final String name, @NonNull final PricingPolicy policy) {
+        this.name = name;
+        this.parking = new Parking(policy, this.clock);
+    }
+
+    /**
+     * Define slots of a specific type in the parking of the scenario, see {@link Parking#withSlots(CarType, Integer)}.
+     *
+     * @param slotsType
+     *         a supported slot type
+     * @param numberOfSlots
+     *         strictly positive non null number
+     *
+     * @return this to chain calls (fluent interface)
+     *
+     * @throws ParkingException
+     *         if the scenario already has this slot type
+     */
+    public ReplayScenario withSlots(@NonNull final CarType slotsType, @NonNull @Positive final Integer numberOfSlots)
+            throws ParkingException {
+        this.parking.withSlots(slotsType, numberOfSlots);
+        return this;
+    }
+
+    /**
+     * Apply recorded events to the parking of the scenario.
+     *
+     * @param batch
+     *         the events, in the recorded order
+     */
+    void apply(@NonNull final GateEventReader.Batch batch) {
+        for (int event = 0; event < batch.size; event++) {
+            this.clock.set(batch.times[event]);
+            final Car car = new Car(batch.plates[event], batch.carTypes[event]);
+            try {
+                switch (batch.types[event]) {
+                    case ENTER:
+                        this.parking.enter(car);
+                        this.entered++;
+                        break;
+                    case LEAVE:
+                        final Car leftCar = this.parking.leave(car);
+                        this.leftCars.put(leftCar, leftCar);
+                        this.left++;
+                        break;
+                    case BILL:
+                        final Car billedCar = this.leftCars.remove(car);
+                        if (billedCar == null) {
+                            this.ignored++;
+                            break;
+                        }
+                        this.revenue = this.revenue.add(this.parking.bill(billedCar));
+                        this.billed++;
+                        break;
+                    default:
+                        this.ignored++;
+                }
+            } catch (SlotNotFoundException e) {
+                this.rejected[car.getType().ordinal()]++;
+            } catch (ParkingException e) {
+                this.ignored++;
+            }
+        }
+    }
+
+    /**
+     * @return the outcomes of the events applied so far
+     */
+    ReplayResult result() {
+        return new ReplayResult(this.name, this.entered, this.rejected.clone(), this.left, this.billed, this.ignored,
+                this.revenue);
+    }
+}
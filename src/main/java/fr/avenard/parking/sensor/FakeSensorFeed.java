@@ -0,0 +1,46 @@
+package fr.avenard.parking.sensor;
+
+import java.util.Arrays;
+
+import lombok.NonNull;
+import lombok.Synchronized;
+
+/**
+ * Sensor feed set by hand, to run a {@link SlotReconciler} without sensors: in tests, simulations or while the
+ * sensors of a lot are being installed.
+ */
+public class FakeSensorFeed implements SensorFeed {
+    private long[] occupied = new long[0]; // guarded by the lock
+
+    /**
+     * Set the occupancy detected on a slot.
+     *
+     * @param index
+     *         index of the slot
+     * @param detected
+     *         true if a car is detected on the slot
+     *
+     * @return this to chain calls (fluent interface)
+     */
+    @Synchronized
+    public FakeSensorFeed set(final int index, final boolean detected) {
+        if (index < 0) {
+            throw new IndexOutOfBoundsException("No slot " + index);
+        }
+        if ((index >> 6) >= this.occupied.length) {
+            this.occupied = Arrays.copyOf(this.occupied, (index >> 6) + 1);
+        }
+        if (detected) {
+            this.occupied[index >> 6] |= 1L << index;
+        } else {
+            this.occupied[index >> 6] &= ~(1L << index);
+        }
+        return this;
+    }
+
+    @Override
+    @Synchronized
+    public void read(@NonNull final long[] occupied) {
+        System.arraycopy(this.occupied, 0, occupied, 0, Math.min(this.occupied.length, occupied.length));
+    }
+}
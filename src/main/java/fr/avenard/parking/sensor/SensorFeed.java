@@ -0,0 +1,27 @@
+package fr.avenard.parking.sensor;
+
+import java.io.IOException;
+
+import lombok.NonNull;
+
+/**
+ * Occupancy reported by the sensors of the parking slots, for instance the ground loops or the cameras of the lot,
+ * compared with the parking by a {@link SlotReconciler}.
+ * <p>
+ * The occupancy is read as a bitmap, a bit per slot index (bit {@code index & 63} of the long {@code index >> 6}), so
+ * that it is compared with the parking a word of 64 slots at a time.
+ */
+@FunctionalInterface
+public interface SensorFeed {
+
+    /**
+     * Read the occupancy reported by the sensors.
+     *
+     * @param occupied
+     *         bitmap to fill, cleared: set the bit of each slot where a car is detected
+     *
+     * @throws IOException
+     *         if the sensors cannot be read
+     */
+    void read(@NonNull long[] occupied) throws IOException;
+}
@@ -0,0 +1,76 @@
+package fr.avenard.parking.sensor;
+
+import java.time.LocalDateTime;
+
+import fr.avenard.parking.Car;
+import fr.avenard.parking.CarType;
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * An anomaly flagged by a {@link SlotReconciler}.
+ */
+@Getter
+public class SlotAnomaly {
+    /**
+     * The kind of anomaly
+     */
+    private final Type type;
+    /**
+     * Index of the slot, -1 for a {@link Type#LONG_SESSION}
+     */
+    private final int index;
+    /**
+     * Type of the slot, or of the car for a {@link Type#LONG_SESSION}
+     */
+    private final CarType slotType;
+    /**
+     * The car parked for too long, null unless {@link Type#LONG_SESSION}
+     */
+    private final Car car;
+    /**
+     * When the anomaly was first seen: the first check that found the mismatch, or the arrival time of the car
+     */
+    private final LocalDateTime since;
+
+    private SlotAnomaly(final Type type, final int index, final CarType slotType, final Car car,
+            final LocalDateTime since) {
+        this.type = type;
+        this.index = index;
+        this.slotType = slotType;
+        this.car = car;
+        this.since = since;
+    }
+
+    static SlotAnomaly mismatch(@NonNull final Type type, final int index, @NonNull final CarType slotType,
+            @NonNull final LocalDateTime since) {
+        return new SlotAnomaly(type, index, slotType, null, since);
+    }
+
+    static SlotAnomaly longSession(@NonNull final Car car) {
+        return new SlotAnomaly(Type.LONG_SESSION, -1, car.getType(), car, car.getParkedAt());
+    }
+
+    @Override
+    public String toString() {
+        return this.type + (this.car == null ? " on slot " + this.index : " of " + this.car) + " since " + this.since;
+    }
+
+    /**
+     * Kinds of anomalies
+     */
+    public enum Type {
+        /**
+         * The parking counts a car the sensor does not detect: a stuck slot, the car left without exiting
+         */
+        GHOST_OCCUPANCY,
+        /**
+         * The sensor detects a car the parking does not count: the car parked without entering, or a failed sensor
+         */
+        UNRECORDED_CAR,
+        /**
+         * A car parked for longer than the maximum session
+         */
+        LONG_SESSION
+    }
+}
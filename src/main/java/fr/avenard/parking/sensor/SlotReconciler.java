@@ -0,0 +1,199 @@
+package fr.avenard.parking.sensor;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import fr.avenard.parking.OccupancySnapshot;
+import fr.avenard.parking.OverstayWatch;
+import fr.avenard.parking.Parking;
+import lombok.NonNull;
+import lombok.Synchronized;
+
+/**
+ * Background reconciliation of the parking slots with the sensors of the lot: stuck slots and unrecorded cars make
+ * {@link Parking#remainingFreeSlots} drift, and cost revenue.
+ * <p>
+ * Each check compares the occupancy bitmap of the parking with the bitmap read from the {@link SensorFeed}, 64 slots
+ * at a time. The parking bitmap is updated incrementally from the {@link Parking#occupancy() occupancy snapshots}:
+ * only the chunks of slots updated since the previous check are read again, never the slot objects.
+ * A mismatch is flagged once it lasted for a grace period (sensor latency, a car manoeuvring), then not again until
+ * it is resolved. The cars parked for longer than the maximum session are flagged too.
+ */
+public class SlotReconciler {
+    private static final Logger LOGGER = Logger.getLogger(SlotReconciler.class.getName());
+
+    private final Parking parking;
+    private final SensorFeed feed;
+    private final Duration grace;
+    private final Consumer<SlotAnomaly> listener;
+    private final OverstayWatch longSessions;
+    // guarded by the lock
+    private OccupancySnapshot occupancy; // the snapshot the parking bitmap was last updated from
+    private long[] occupied; // parking bitmap
+    private long[] detected = new long[0]; // sensors bitmap
+    private final Map<Integer, Mismatch> mismatches = new HashMap<>(); // by slot index
+
+    /**
+     * Create a reconciler, call {@link #check()} periodically or schedule it with {@link #checkEvery}.
+     *
+     * @param parking
+     *         the parking to reconcile
+     * @param feed
+     *         the sensors of the parking slots
+     * @param grace
+     *         how long a mismatch lasts before it is flagged
+     * @param maxSession
+     *         the parking duration from which a session is flagged as suspicious
+     * @param listener
+     *         called with each anomaly, by the checking thread
+     */
+    public SlotReconciler(@NonNull final Parking parking, @NonNull final SensorFeed feed, @NonNull final Duration grace,
+            @NonNull final Duration maxSession, @NonNull final Consumer<SlotAnomaly> listener) {
+        this.parking = parking;
+        this.feed = feed;
+        this.grace = grace;
+        this.listener = listener;
+        this.longSessions = parking.watchOverstays(maxSession, car -> listener.accept(SlotAnomaly.longSession(car)));
+    }
+
+    /**
+     * Compare the parking with the sensors now, at the time of the parking clock.
+     *
+     * @return the number of anomalies flagged
+     *
+     * @throws IOException
+     *         if the sensors cannot be read
+     */
+    public int check() throws IOException {
+        return this.check(LocalDateTime.now(this.parking.getClock()));
+    }
+
+    /**
+     * Compare the parking with the sensors.
+     *
+     * @param now
+     *         the current time
+     *
+     * @return the number of anomalies flagged
+     *
+     * @throws IOException
+     *         if the sensors cannot be read
+     */
+    @Synchronized
+    public int check(@NonNull final LocalDateTime now) throws IOException {
+        final OccupancySnapshot snapshot = this.parking.occupancy();
+        if (snapshot != this.occupancy) {
+            this.occupied = snapshot.updateBitmap(this.occupancy, this.occupied);
+            this.occupancy = snapshot;
+        }
+        if (this.detected.length != this.occupied.length) {
+            this.detected = new long[this.occupied.length];
+        } else {
+            Arrays.fill(this.detected, 0);
+        }
+        this.feed.read(this.detected);
+
+        // the mismatches resolved since the previous check
+        final Iterator<Map.Entry<Integer, Mismatch>> iterator = this.mismatches.entrySet().iterator();
+        while (iterator.hasNext()) {
+            final Map.Entry<Integer, Mismatch> entry = iterator.next();
+            final int index = entry.getKey();
+            if (index >= snapshot.size() || this.state(index) != entry.getValue().type) {
+                iterator.remove();
+            }
+        }
+
+        int flagged = 0;
+        for (int word = 0; word < this.occupied.length; word++) {
+            long differences = this.occupied[word] ^ this.detected[word];
+            while (differences != 0) {
+                final int index = (word << 6) + Long.numberOfTrailingZeros(differences);
+                differences &= differences - 1;
+                if (index >= snapshot.size()) {
+                    break; // the sensors report more slots than the parking has
+                }
+                final Mismatch mismatch = this.mismatches.computeIfAbsent(index,
+                        i -> new Mismatch(this.state(i), now));
+                if (!mismatch.flagged && !now.isBefore(mismatch.since.plus(this.grace))) {
+                    mismatch.flagged = true;
+                    this.listener.accept(SlotAnomaly.mismatch(mismatch.type, index, snapshot.getSlotType(index),
+                            mismatch.since));
+                    flagged++;
+                }
+            }
+        }
+        return flagged + this.longSessions.check(now);
+    }
+
+    /**
+     * Check periodically.
+     *
+     * @param scheduler
+     *         the scheduler running the checks
+     * @param period
+     *         the time between two checks
+     *
+     * @return the scheduled checks, cancel it to stop reconciling
+     */
+    public ScheduledFuture<?> checkEvery(@NonNull final ScheduledExecutorService scheduler,
+            @NonNull final Duration period) {
+        return scheduler.scheduleAtFixedRate(() -> {
+            try {
+                this.check();
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Cannot read the slot sensors", e);
+            }
+        }, 0, period.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return the number of slots whose parking and sensor occupancy differed at the last check, flagged or not
+     */
+    @Synchronized
+    public int getMismatches() {
+        return this.mismatches.size();
+    }
+
+    /**
+     * Get the kind of mismatch of a slot.
+     * It must be called with the lock held.
+     *
+     * @param index
+     *         index of the slot
+     *
+     * @return the kind of mismatch, null if the parking and the sensor agree
+     */
+    private SlotAnomaly.Type state(final int index) {
+        final boolean occupiedBit = (this.occupied[index >> 6] & (1L << index)) != 0;
+        final boolean detectedBit = (this.detected[index >> 6] & (1L << index)) != 0;
+        if (occupiedBit == detectedBit) {
+            return null;
+        }
+        return occupiedBit ? SlotAnomaly.Type.GHOST_OCCUPANCY : SlotAnomaly.Type.UNRECORDED_CAR;
+    }
+
+    /**
+     * A slot whose parking and sensor occupancy differ.
+     */
+    private static class Mismatch {
+        private final SlotAnomaly.Type type;
+        private final LocalDateTime since;
+        private boolean flagged;
+
+        private Mismatch(final SlotAnomaly.Type type, final LocalDateTime since) {
+            this.type = type;
+            this.since = since;
+        }
+    }
+}
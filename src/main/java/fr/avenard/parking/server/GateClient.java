@@ -0,0 +1,213 @@
+package fr.avenard.parking.server;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import fr.avenard.parking.CarType;
+import lombok.NonNull;
+import lombok.Synchronized;
+
+/**
+ * Client of a {@link GateServer}, for the gate controllers.
+ * <p>
+ * Requests are pipelined: each call sends its request and returns at once, without waiting for the previous
+ * responses. The returned future completes when the response arrives, or fails with the {@link
+ * fr.avenard.parking.exception.ParkingException} thrown by the parking.
+ */
+public class GateClient implements AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(GateClient.class.getName());
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final SocketChannel channel;
+    private final ByteBuffer output = ByteBuffer.allocate(GateProtocol.MAX_FRAME_SIZE + Integer.BYTES);
+    private final Map<Integer, Pending<?>> pending = new ConcurrentHashMap<>();
+    private final Thread receiver;
+    private int nextId; // guarded by the lock
+
+    private GateClient(final SocketChannel channel) {
+        this.channel = channel;
+        this.receiver = new Thread(this::receive, "parking-gate-client");
+        this.receiver.setDaemon(true);
+        this.receiver.start();
+    }
+
+    /**
+     * Connect to a gate server.
+     *
+     * @param address
+     *         address of the server
+     *
+     * @return the connected client
+     *
+     * @throws IOException
+     *         if the server cannot be reached
+     */
+    public static GateClient connect(@NonNull final InetSocketAddress address) throws IOException {
+        final SocketChannel channel = SocketChannel.open(address);
+        channel.socket().setTcpNoDelay(true);
+        return new GateClient(channel);
+    }
+
+    /**
+     * Park a car.
+     *
+     * @param plate
+     *         license plate of the car
+     * @param type
+     *         type of the car
+     *
+     * @return the index of the slot where the car is parked
+     */
+    public CompletableFuture<Integer> enter(@NonNull final String plate, @NonNull final CarType type) {
+        return this.send(GateProtocol.ENTER, type, plate, ByteBuffer::getInt);
+    }
+
+    /**
+     * Free the slot of a car.
+     *
+     * @param plate
+     *         license plate of the car
+     * @param type
+     *         type of the car
+     *
+     * @return the time the car left its slot
+     */
+    public CompletableFuture<LocalDateTime> leave(@NonNull final String plate, @NonNull final CarType type) {
+        return this.send(GateProtocol.LEAVE, type, plate,
+                response -> LocalDateTime.ofEpochSecond(response.getLong(), response.getInt(), ZoneOffset.UTC));
+    }
+
+    /**
+     * Bill a car that left the parking.
+     *
+     * @param plate
+     *         license plate of the car
+     * @param type
+     *         type of the car
+     *
+     * @return the fare charged
+     */
+    public CompletableFuture<BigDecimal> bill(@NonNull final String plate, @NonNull final CarType type) {
+        return this.send(GateProtocol.BILL, type, plate, response -> new BigDecimal(GateProtocol.getString(response)));
+    }
+
+    /**
+     * Count the free slots of a type.
+     *
+     * @param type
+     *         type of slot
+     *
+     * @return the number of free slots
+     */
+    public CompletableFuture<Long> remainingFreeSlots(@NonNull final CarType type) {
+        return this.send(GateProtocol.FREE_SLOTS, type, "", ByteBuffer::getLong);
+    }
+
+    /**
+     * Disconnect from the server, failing the requests without a response.
+     *
+     * @throws IOException
+     *         if the connection cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        this.channel.close();
+        try {
+            this.receiver.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Synchronized
+    private <T> CompletableFuture<T> send(final byte operation, final CarType type, final String plate,
+            final Function<ByteBuffer, T> decoder) {
+        final Pending<T> request = new Pending<>(decoder);
+        final int id = this.nextId++;
+        this.pending.put(id, request);
+        try {
+            this.output.clear().putInt(0).putInt(id).put(operation).put((byte) type.ordinal());
+            GateProtocol.putString(this.output, plate);
+            this.output.putInt(0, this.output.position() - Integer.BYTES).flip();
+            while (this.output.hasRemaining()) {
+                this.channel.write(this.output);
+            }
+        } catch (IOException | RuntimeException e) {
+            this.pending.remove(id);
+            request.future.completeExceptionally(e);
+        }
+        return request.future;
+    }
+
+    private void receive() {
+        final ByteBuffer input = ByteBuffer.allocate(BUFFER_SIZE);
+        try {
+            while (true) {
+                if (this.channel.read(input) < 0) {
+                    throw new EOFException("Gate server closed the connection");
+                }
+                input.flip();
+                while (input.remaining() >= Integer.BYTES
+                        && input.remaining() >= Integer.BYTES + input.getInt(input.position())) {
+                    final int length = input.getInt();
+                    final int end = input.position() + length;
+                    final Pending<?> request = this.pending.remove(input.getInt());
+                    if (request == null) {
+                        throw new StreamCorruptedException("Response to an unknown request");
+                    }
+                    final byte status = input.get();
+                    if (status == GateProtocol.OK) {
+                        request.complete(input);
+                    } else {
+                        request.future.completeExceptionally(GateProtocol.failureOf(status,
+                                GateProtocol.getString(input)));
+                    }
+                    input.position(end);
+                }
+                input.compact();
+            }
+        } catch (IOException e) {
+            if (this.channel.isOpen()) {
+                LOGGER.log(Level.WARNING, "Gate server disconnected", e);
+            }
+        } finally {
+            try {
+                this.channel.close();
+            } catch (IOException e) {
+                LOGGER.log(Level.FINE, "Unable to close the gate connection", e);
+            }
+            final IOException closed = new IOException("Gate client closed");
+            this.pending.values().forEach(request -> request.future.completeExceptionally(closed));
+            this.pending.clear();
+        }
+    }
+
+    /**
+     * A request waiting for its response.
+     */
+    private static class Pending<T> {
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+        private final Function<ByteBuffer, T> decoder;
+
+        private Pending(final Function<ByteBuffer, T> decoder) {
+            this.decoder = decoder;
+        }
+
+        private void complete(final ByteBuffer response) {
+            this.future.complete(this.decoder.apply(response));
+        }
+    }
+}
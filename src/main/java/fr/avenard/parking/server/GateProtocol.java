@@ -0,0 +1,94 @@
+package fr.avenard.parking.server;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import fr.avenard.parking.exception.CarNotFoundException;
+import fr.avenard.parking.exception.NoCarParkedException;
+import fr.avenard.parking.exception.ParkingException;
+import fr.avenard.parking.exception.SlotNotFoundException;
+
+/**
+ * Binary protocol between the gates and the {@link GateServer}. Every message is a frame: its length (int), then the
+ * id of the request (int), chosen by the client to match the responses, as requests are pipelined.
+ * <ul>
+ * <li>request: operation (byte), car type ordinal (byte), plate length (short) and UTF-8 plate, empty to count the
+ * free slots</li>
+ * <li>response: status (byte), then for a success the slot index (int) on enter, the departure time on leave
+ * (epoch second UTC as long, nano as int), the fare on bill (short length and plain string), the number of free slots
+ * (long); for a failure the message (short length and UTF-8 string)</li>
+ * </ul>
+ * The responses of a connection are sent in the order of its requests.
+ */
+final class GateProtocol {
+    static final byte ENTER = 1;
+    static final byte LEAVE = 2;
+    static final byte BILL = 3;
+    static final byte FREE_SLOTS = 4;
+
+    static final byte OK = 0;
+    static final byte NO_SLOT = 1;
+    static final byte NOT_FOUND = 2;
+    static final byte REJECTED = 3;
+    static final byte ERROR = 4;
+
+    /**
+     * Largest frame accepted, without its length
+     */
+    static final int MAX_FRAME_SIZE = 4 * 1024;
+
+    private GateProtocol() {
+    }
+
+    /**
+     * Get the status of a failed operation.
+     *
+     * @param e
+     *         the failure
+     *
+     * @return the status
+     */
+    static byte statusOf(final ParkingException e) {
+        if (e instanceof SlotNotFoundException) {
+            return NO_SLOT;
+        }
+        if (e instanceof CarNotFoundException || e instanceof NoCarParkedException) {
+            return NOT_FOUND;
+        }
+        return REJECTED;
+    }
+
+    /**
+     * Get the failure of a status, as thrown by the parking.
+     *
+     * @param status
+     *         a failure status
+     * @param message
+     *         the failure message
+     *
+     * @return the failure
+     */
+    static Exception failureOf(final byte status, final String message) {
+        switch (status) {
+            case NO_SLOT:
+                return new SlotNotFoundException(message);
+            case NOT_FOUND:
+                return new CarNotFoundException(message);
+            case REJECTED:
+                return new ParkingException(message);
+            default:
+                return new IllegalStateException(message);
+        }
+    }
+
+    static void putString(final ByteBuffer buffer, final String value) {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        buffer.putShort((short) bytes.length).put(bytes);
+    }
+
+    static String getString(final ByteBuffer buffer) {
+        final byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
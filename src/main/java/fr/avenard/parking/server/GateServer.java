@@ -0,0 +1,367 @@
+package fr.avenard.parking.server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import fr.avenard.parking.Car;
+import fr.avenard.parking.CarType;
+import fr.avenard.parking.Parking;
+import fr.avenard.parking.ParkingSlot;
+import fr.avenard.parking.exception.CarNotFoundException;
+import fr.avenard.parking.exception.ParkingException;
+import lombok.NonNull;
+
+/**
+ * Network service of the gates on top of a {@link Parking}, with the {@link GateProtocol}.
+ * <p>
+ * A single thread serves every connection with a NIO selector. The gates pipeline their requests: all the requests
+ * received in a round of the selector, from every connection, are applied with the locks of every slot pool of the
+ * parking held once (see {@link Parking#batch}), then the responses are written back. No thread per request, no lock
+ * contention between the requests of a batch. A gate that does not read its responses is not read either, once they exceed
+ * {@value #MAX_PENDING_OUTPUT} bytes, so that a connection never buffers more than a round of responses beyond it.
+ * <p>
+ * The server keeps the cars that left the parking until they are billed, as the gates only know their plate.
+ * Entering never waits: a car is rejected when the parking is full.
+ */
+public class GateServer implements AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(GateServer.class.getName());
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_PENDING_OUTPUT = BUFFER_SIZE; // responses not written before reading again
+    private static final int REQUEST_HEADER_SIZE = Integer.BYTES + 2 * Byte.BYTES + Short.BYTES; // before the plate
+    private static final int RESPONSE_HEADER_SIZE = 2 * Integer.BYTES + Byte.BYTES; // with the frame length
+
+    private final Parking parking;
+    private final ServerSocketChannel serverChannel;
+    private final Selector selector;
+    private final Thread selectorThread;
+    private final Map<String, Car> leftCars = new ConcurrentHashMap<>(); // cars to bill, by plate
+    private final List<Request> batch = new ArrayList<>(); // requests of the current round, selector thread only
+
+    /**
+     * Start serving the gates on the provided address.
+     *
+     * @param parking
+     *         the parking
+     * @param address
+     *         the address to listen to, use port 0 to get an ephemeral port
+     *
+     * @throws IOException
+     *         if the address cannot be bound
+     */
+    public GateServer(@NonNull final Parking parking, @NonNull final InetSocketAddress address) throws IOException {
+        this.parking = parking;
+        this.selector = Selector.open();
+        try {
+            this.serverChannel = ServerSocketChannel.open().bind(address);
+            this.serverChannel.configureBlocking(false).register(this.selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            this.selector.close();
+            throw e;
+        }
+        this.selectorThread = new Thread(this::serve, "parking-gate-server");
+        this.selectorThread.setDaemon(true);
+        this.selectorThread.start();
+    }
+
+    /**
+     * @return the address the gates connect to
+     *
+     * @throws IOException
+     *         if the server is closed
+     */
+    public InetSocketAddress getAddress() throws IOException {
+        return (InetSocketAddress) this.serverChannel.getLocalAddress();
+    }
+
+    /**
+     * Stop serving the gates and disconnect them.
+     *
+     * @throws IOException
+     *         if the server socket cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        this.serverChannel.close();
+        this.selector.close(); // the selector thread stops, closing the connections
+        try {
+            this.selectorThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void serve() {
+        try {
+            while (this.selector.isOpen()) {
+                this.selector.select();
+                final Iterator<SelectionKey> keys = this.selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    final SelectionKey key = keys.next();
+                    keys.remove();
+                    try {
+                        if (key.isAcceptable()) {
+                            this.accept();
+                        } else {
+                            if (key.isReadable()) {
+                                ((Connection) key.attachment()).read();
+                            }
+                            if (key.isValid() && key.isWritable()) {
+                                ((Connection) key.attachment()).write();
+                            }
+                        }
+                    } catch (IOException e) {
+                        if (key.attachment() instanceof Connection) {
+                            LOGGER.log(Level.FINE, "Gate disconnected", e);
+                            ((Connection) key.attachment()).close();
+                        } else {
+                            LOGGER.log(Level.WARNING, "Unable to accept a gate", e);
+                        }
+                    }
+                }
+                this.execute();
+            }
+        } catch (ClosedSelectorException e) {
+            // closed
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Gate server stopped", e);
+        } finally {
+            for (SelectionKey key : this.selectorKeys()) {
+                if (key.attachment() instanceof Connection) {
+                    ((Connection) key.attachment()).close();
+                }
+            }
+        }
+    }
+
+    private Iterable<SelectionKey> selectorKeys() {
+        try {
+            return new ArrayList<>(this.selector.keys());
+        } catch (ClosedSelectorException e) {
+            return new ArrayList<>();
+        }
+    }
+
+    private void accept() throws IOException {
+        final SocketChannel channel = this.serverChannel.accept();
+        if (channel != null) {
+            channel.configureBlocking(false);
+            final SelectionKey key = channel.register(this.selector, SelectionKey.OP_READ);
+            key.attach(new Connection(channel, key));
+        }
+    }
+
+    /**
+     * Apply the requests of the round in a single batch, then send the responses.
+     */
+    private void execute() {
+        if (this.batch.isEmpty()) {
+            return;
+        }
+        this.parking.batch(() -> {
+            for (Request request : this.batch) {
+                request.execute();
+            }
+        });
+        // the requests of a connection are read at once, so they follow each other in the batch
+        for (int i = 0; i < this.batch.size(); i++) {
+            final Connection connection = this.batch.get(i).connection;
+            if (i + 1 == this.batch.size() || this.batch.get(i + 1).connection != connection) {
+                connection.flush();
+            }
+        }
+        this.batch.clear();
+    }
+
+    /**
+     * Connection of a gate: frames being read, responses being written.
+     */
+    private class Connection {
+        private final SocketChannel channel;
+        private final SelectionKey key;
+        private final ByteBuffer input = ByteBuffer.allocate(BUFFER_SIZE);
+        private ByteBuffer output = ByteBuffer.allocate(BUFFER_SIZE); // in write mode
+
+        private Connection(final SocketChannel channel, final SelectionKey key) {
+            this.channel = channel;
+            this.key = key;
+        }
+
+        private void read() throws IOException {
+            if (this.channel.read(this.input) < 0) {
+                throw new IOException("Gate closed the connection");
+            }
+            this.input.flip();
+            while (this.input.remaining() >= Integer.BYTES) {
+                final int length = this.input.getInt(this.input.position());
+                if (length < REQUEST_HEADER_SIZE || length > GateProtocol.MAX_FRAME_SIZE) {
+                    throw new IOException("Invalid frame length " + length);
+                }
+                if (this.input.remaining() < Integer.BYTES + length) {
+                    break; // wait for the end of the frame
+                }
+                this.input.getInt();
+                final int id = this.input.getInt();
+                final byte operation = this.input.get();
+                final int type = this.input.get();
+                if (type < 0 || type >= CarType.values().length) {
+                    throw new IOException("Invalid car type " + type);
+                }
+                if ((this.input.getShort(this.input.position()) & 0xFFFF) != length - REQUEST_HEADER_SIZE) {
+                    throw new IOException("Invalid plate length in frame of length " + length);
+                }
+                final String plate = GateProtocol.getString(this.input);
+                GateServer.this.batch.add(new Request(this, id, operation, CarType.values()[type], plate));
+            }
+            this.input.compact();
+        }
+
+        /**
+         * Reserve room in the output buffer for a response.
+         *
+         * @param size
+         *         the size of the response
+         *
+         * @return the output buffer
+         */
+        private ByteBuffer reserve(final int size) {
+            if (this.output.remaining() < size) {
+                final ByteBuffer larger = ByteBuffer.allocate(Math.max(this.output.capacity() * 2,
+                        this.output.position() + size));
+                this.output.flip();
+                this.output = larger.put(this.output);
+            }
+            return this.output;
+        }
+
+        private void flush() {
+            try {
+                this.write();
+            } catch (IOException e) {
+                LOGGER.log(Level.FINE, "Gate disconnected", e);
+                this.close();
+            }
+        }
+
+        /**
+         * Write the pending responses, and read the next requests only while few responses are pending.
+         *
+         * @throws IOException
+         *         if the responses cannot be written
+         */
+        private void write() throws IOException {
+            this.output.flip();
+            this.channel.write(this.output);
+            final int pending = this.output.remaining();
+            this.output.compact();
+            if (this.key.isValid()) {
+                this.key.interestOps((pending < MAX_PENDING_OUTPUT ? SelectionKey.OP_READ : 0)
+                        | (pending > 0 ? SelectionKey.OP_WRITE : 0));
+            }
+        }
+
+        private void close() {
+            this.key.cancel();
+            try {
+                this.channel.close();
+            } catch (IOException e) {
+                LOGGER.log(Level.FINE, "Unable to close the gate connection", e);
+            }
+        }
+    }
+
+    /**
+     * A request of a gate, applied with the locks of the parking held.
+     */
+    private class Request {
+        private final Connection connection;
+        private final int id;
+        private final byte operation;
+        private final CarType type;
+        private final String plate;
+
+        private Request(final Connection connection, final int id, final byte operation, final CarType type,
+                final String plate) {
+            this.connection = connection;
+            this.id = id;
+            this.operation = operation;
+            this.type = type;
+            this.plate = plate;
+        }
+
+        private void execute() {
+            try {
+                switch (this.operation) {
+                    case GateProtocol.ENTER:
+                        final ParkingSlot slot = GateServer.this.parking.enter(new Car(this.plate, this.type));
+                        this.respond(GateProtocol.OK, Integer.BYTES).putInt(slot.getIndex());
+                        break;
+                    case GateProtocol.LEAVE:
+                        final Car car = GateServer.this.parking.leave(new Car(this.plate, this.type));
+                        GateServer.this.leftCars.put(this.plate, car);
+                        final LocalDateTime leftAt = car.getLeftAt();
+                        this.respond(GateProtocol.OK, Long.BYTES + Integer.BYTES)
+                                .putLong(leftAt.toEpochSecond(ZoneOffset.UTC)).putInt(leftAt.getNano());
+                        break;
+                    case GateProtocol.BILL:
+                        final Car left = GateServer.this.leftCars.remove(this.plate);
+                        if (left == null) {
+                            throw new CarNotFoundException("No car left the parking with the plate " + this.plate);
+                        }
+                        final String fare = GateServer.this.parking.bill(left).toPlainString(); // ASCII
+                        GateProtocol.putString(this.respond(GateProtocol.OK, Short.BYTES + fare.length()), fare);
+                        break;
+                    case GateProtocol.FREE_SLOTS:
+                        final long freeSlots = GateServer.this.parking.remainingFreeSlots(this.type);
+                        this.respond(GateProtocol.OK, Long.BYTES).putLong(freeSlots);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown operation " + this.operation);
+                }
+            } catch (ParkingException e) {
+                this.fail(GateProtocol.statusOf(e), e.getMessage());
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Unable to serve a gate request", e);
+                this.fail(GateProtocol.ERROR, String.valueOf(e.getMessage()));
+            }
+        }
+
+        /**
+         * Start the response, in room reserved for it in the output buffer.
+         *
+         * @param status
+         *         status of the response
+         * @param size
+         *         size of the response after its status
+         *
+         * @return the output buffer, to put the rest of the response
+         */
+        private ByteBuffer respond(final byte status, final int size) {
+            return this.connection.reserve(RESPONSE_HEADER_SIZE + size)
+                    .putInt(RESPONSE_HEADER_SIZE - Integer.BYTES + size)
+                    .putInt(this.id)
+                    .put(status);
+        }
+
+        private void fail(final byte status, final String message) {
+            final byte[] bytes = message.getBytes(StandardCharsets.UTF_8);
+            final int length = Math.min(bytes.length, GateProtocol.MAX_FRAME_SIZE / 2);
+            this.respond(status, Short.BYTES + length).putShort((short) length).put(bytes, 0, length);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package fr.avenard.parking.session;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import fr.avenard.parking.Car;
+import fr.avenard.parking.CarType;
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * A parking session of a car: its arrival, its departure and its fare once billed.
+ */
+@Getter
+public class ParkingSession {
+    private final String plate;
+    private final CarType type;
+    private final LocalDateTime parkedAt;
+    /**
+     * Departure time, null while the car is parked
+     */
+    private final LocalDateTime leftAt;
+    /**
+     * Fare charged, null until the car is billed
+     */
+    private final BigDecimal fare;
+
+    ParkingSession(@NonNull final String plate, @NonNull final CarType type, @NonNull final LocalDateTime parkedAt,
+            final LocalDateTime leftAt, final BigDecimal fare) {
+        this.plate = plate;
+        this.type = type;
+        this.parkedAt = parkedAt;
+        this.leftAt = leftAt;
+        this.fare = fare;
+    }
+
+    /**
+     * Get the current session of a car.
+     *
+     * @param car
+     *         a car that entered a parking
+     * @param fare
+     *         the fare charged, null if not billed yet
+     *
+     * @return the session
+     */
+    static ParkingSession of(@NonNull final Car car, final BigDecimal fare) {
+        return new ParkingSession(car.getPlate(), car.getType(), car.getParkedAt(), car.getLeftAt(), fare);
+    }
+
+    /**
+     * Check the session is closed, i.e. the car was billed.
+     *
+     * @return true if closed
+     */
+    public boolean isClosed() {
+        return this.fare != null;
+    }
+
+    /**
+     * Check the car was parked during a time range.
+     *
+     * @param from
+     *         start of the range, inclusive
+     * @param to
+     *         end of the range, exclusive
+     *
+     * @return true if the session overlaps the range
+     */
+    public boolean overlaps(@NonNull final LocalDateTime from, @NonNull final LocalDateTime to) {
+        return this.parkedAt.isBefore(to) && (this.leftAt == null || !this.leftAt.isBefore(from));
+    }
+
+    @Override
+    public String toString() {
+        return "ParkingSession{" +
+                "plate='" + plate + '\'' +
+                ", type=" + type +
+                ", parkedAt=" + parkedAt +
+                ", leftAt=" + leftAt +
+                ", fare=" + fare +
+                '}';
+    }
+}
@@ -0,0 +1,262 @@
+package fr.avenard.parking.session;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import fr.avenard.parking.CarType;
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * Block of closed sessions, sorted by departure time and compressed.
+ * <p>
+ * The times are stored as variable length deltas: the departure from the previous departure, the arrival from the
+ * departure. The block header (time range and a bloom filter of the plates) is kept uncompressed, so most blocks are
+ * skipped by lookups without being decompressed. The bloom filter has 10 bits and 7 hashes per session, about 1% of
+ * false positives.
+ */
+@Getter
+class SessionBlock {
+    private static final int BLOOM_BITS_PER_SESSION = 10;
+    private static final int BLOOM_HASHES = 7;
+
+    private final long id;
+    /**
+     * Earliest arrival of the block, in epoch seconds (UTC)
+     */
+    private final long minParkedAt;
+    /**
+     * Latest departure of the block, in epoch seconds (UTC)
+     */
+    private final long maxLeftAt;
+    private final int count;
+    private final long[] bloom;
+    /**
+     * The compressed sessions, null for a block of the cold tier not loaded
+     */
+    private final byte[] data;
+
+    SessionBlock(final long id, final long minParkedAt, final long maxLeftAt, final int count,
+            @NonNull final long[] bloom, final byte[] data) {
+        this.id = id;
+        this.minParkedAt = minParkedAt;
+        this.maxLeftAt = maxLeftAt;
+        this.count = count;
+        this.bloom = bloom;
+        this.data = data;
+    }
+
+    /**
+     * Compress closed sessions into a block.
+     *
+     * @param id
+     *         unique id of the block in its store
+     * @param sessions
+     *         closed sessions, not empty
+     *
+     * @return the block
+     */
+    static SessionBlock encode(final long id, @NonNull final List<ParkingSession> sessions) {
+        final List<ParkingSession> sorted = new ArrayList<>(sessions);
+        sorted.sort(Comparator.comparing(ParkingSession::getLeftAt));
+
+        long minParkedAt = Long.MAX_VALUE;
+        long previous = epochSecond(sorted.get(0).getLeftAt());
+        final long[] bloom = new long[bloomWords(sorted.size())];
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(sorted.size() * 16);
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(
+                new DeflaterOutputStream(bytes)))) {
+            writeVarLong(output, previous);
+            for (ParkingSession session : sorted) {
+                final long leftAt = epochSecond(session.getLeftAt());
+                final long parkedAt = epochSecond(session.getParkedAt());
+                writeVarLong(output, leftAt - previous);
+                writeVarLong(output, session.getLeftAt().getNano());
+                writeVarLong(output, zigZag(leftAt - parkedAt));
+                writeVarLong(output, session.getParkedAt().getNano());
+                output.writeByte(session.getType().ordinal());
+                final byte[] plate = session.getPlate().getBytes(StandardCharsets.UTF_8);
+                writeVarLong(output, plate.length);
+                output.write(plate);
+                final byte[] fare = session.getFare().unscaledValue().toByteArray();
+                writeVarLong(output, zigZag(session.getFare().scale()));
+                writeVarLong(output, fare.length);
+                output.write(fare);
+
+                previous = leftAt;
+                minParkedAt = Math.min(minParkedAt, parkedAt);
+                addToBloom(bloom, session.getPlate());
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot compress in memory", e); // not expected
+        }
+        return new SessionBlock(id, minParkedAt, previous, sorted.size(), bloom, bytes.toByteArray());
+    }
+
+    /**
+     * Decompress the sessions of the block.
+     *
+     * @return the sessions, by departure time
+     *
+     * @throws IOException
+     *         if the block data is corrupted
+     */
+    List<ParkingSession> decode() throws IOException {
+        final List<ParkingSession> sessions = new ArrayList<>(this.count);
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new InflaterInputStream(
+                new ByteArrayInputStream(this.data))))) {
+            long leftAt = readVarLong(input);
+            for (int i = 0; i < this.count; i++) {
+                leftAt += readVarLong(input);
+                final int leftAtNano = (int) readVarLong(input);
+                final long parkedAt = leftAt - unZigZag(readVarLong(input));
+                final int parkedAtNano = (int) readVarLong(input);
+                final CarType type = CarType.values()[input.readUnsignedByte()];
+                final byte[] plate = new byte[(int) readVarLong(input)];
+                input.readFully(plate);
+                final int scale = (int) unZigZag(readVarLong(input));
+                final byte[] fare = new byte[(int) readVarLong(input)];
+                input.readFully(fare);
+
+                sessions.add(new ParkingSession(new String(plate, StandardCharsets.UTF_8), type,
+                        LocalDateTime.ofEpochSecond(parkedAt, parkedAtNano, ZoneOffset.UTC),
+                        LocalDateTime.ofEpochSecond(leftAt, leftAtNano, ZoneOffset.UTC),
+                        new BigDecimal(new BigInteger(fare), scale)));
+            }
+        }
+        return sessions;
+    }
+
+    /**
+     * Check the block may hold sessions of a plate during a time range.
+     *
+     * @param plate
+     *         the plate, null for any plate
+     * @param from
+     *         start of the range in epoch seconds, inclusive
+     * @param to
+     *         end of the range in epoch seconds, inclusive
+     *
+     * @return false if the block holds no such session, true if it may
+     */
+    boolean mightContain(final String plate, final long from, final long to) {
+        if (this.minParkedAt > to || this.maxLeftAt < from) {
+            return false;
+        }
+        if (plate == null) {
+            return true;
+        }
+        final long hash = hash(plate);
+        final int bits = this.bloom.length * Long.SIZE;
+        for (int i = 0; i < BLOOM_HASHES; i++) {
+            final int bit = bloomBit(hash, i, bits);
+            if ((this.bloom[bit >>> 6] & 1L << bit) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Get the same block without its data, once written to the cold tier.
+     *
+     * @return the block header
+     */
+    SessionBlock header() {
+        return new SessionBlock(this.id, this.minParkedAt, this.maxLeftAt, this.count, this.bloom, null);
+    }
+
+    /**
+     * Get the same block with its data, loaded from the cold tier.
+     *
+     * @param data
+     *         the compressed sessions
+     *
+     * @return the loaded block
+     */
+    SessionBlock withData(@NonNull final byte[] data) {
+        return new SessionBlock(this.id, this.minParkedAt, this.maxLeftAt, this.count, this.bloom, data);
+    }
+
+    static long epochSecond(@NonNull final LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    /**
+     * @param count
+     *         number of sessions of a block
+     *
+     * @return the number of words of the bloom filter of the block
+     */
+    static int bloomWords(final int count) {
+        return Math.max(1, (count * BLOOM_BITS_PER_SESSION + Long.SIZE - 1) / Long.SIZE);
+    }
+
+    private static void addToBloom(final long[] bloom, final String plate) {
+        final long hash = hash(plate);
+        final int bits = bloom.length * Long.SIZE;
+        for (int i = 0; i < BLOOM_HASHES; i++) {
+            final int bit = bloomBit(hash, i, bits);
+            bloom[bit >>> 6] |= 1L << bit;
+        }
+    }
+
+    private static long hash(final String plate) {
+        return plate.hashCode() * 0x9E3779B97F4A7C15L; // spread over 64 bits (Fibonacci hashing)
+    }
+
+    /**
+     * Bit of the i-th hash of a plate (double hashing: the high half of its hash stepped by the low half).
+     */
+    private static int bloomBit(final long hash, final int i, final int bits) {
+        return Math.floorMod((int) (hash >>> 32) + i * ((int) hash | 1), bits);
+    }
+
+    private static long zigZag(final long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(final long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeVarLong(final OutputStream output, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            output.write((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        output.write((int) value);
+    }
+
+    private static long readVarLong(final InputStream input) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < Long.SIZE; shift += 7) {
+            final int b = input.read();
+            if (b < 0) {
+                throw new IOException("Truncated session block");
+            }
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Corrupted session block");
+    }
+}
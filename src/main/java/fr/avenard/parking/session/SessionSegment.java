@@ -0,0 +1,197 @@
+package fr.avenard.parking.session;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * Segment file of the cold tier: a header followed by session blocks appended one after the other.
+ * <ul>
+ * <li>header: magic number "PSSG" (int), format version (short)</li>
+ * <li>each block: frame length (int), id (long), earliest arrival (long), latest departure (long), number of sessions
+ * (int), number of words of the bloom filter (int), bloom filter (longs), compressed sessions</li>
+ * </ul>
+ * A block partially written (crash while appending) is dropped when the segment is opened.
+ */
+class SessionSegment implements Closeable {
+    private static final int MAGIC = 0x50535347; // "PSSG"
+    private static final short VERSION = 2;
+    private static final int HEADER_SIZE = Integer.BYTES + Short.BYTES;
+    private static final int BLOCK_HEADER_SIZE = 3 * Long.BYTES + 2 * Integer.BYTES; // without the bloom filter
+
+    @Getter
+    private final Path path;
+    private final FileChannel channel;
+    @Getter
+    private long size; // end of the last complete block, guarded by the store
+
+    private SessionSegment(final Path path, final FileChannel channel, final long size) {
+        this.path = path;
+        this.channel = channel;
+        this.size = size;
+    }
+
+    /**
+     * Open a segment file, creating it if needed, and index its blocks.
+     *
+     * @param path
+     *         the segment file
+     * @param index
+     *         list receiving the blocks of the segment
+     *
+     * @return the opened segment
+     *
+     * @throws IOException
+     *         if the file cannot be read or is not a segment
+     */
+    static SessionSegment open(@NonNull final Path path, @NonNull final List<Entry> index) throws IOException {
+        final FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            if (channel.size() == 0) {
+                final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putShort(VERSION).flip();
+                writeFully(channel, header, 0);
+                return new SessionSegment(path, channel, HEADER_SIZE);
+            }
+
+            final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            readFully(channel, header, 0);
+            if (header.getInt() != MAGIC || header.getShort() != VERSION) {
+                throw new StreamCorruptedException("Not a session segment: " + path);
+            }
+            final SessionSegment segment = new SessionSegment(path, channel, HEADER_SIZE);
+            final ByteBuffer blockHeader = ByteBuffer.allocate(Integer.BYTES + BLOCK_HEADER_SIZE);
+            while (segment.size + blockHeader.capacity() <= channel.size()) {
+                readFully(channel, blockHeader.clear(), segment.size);
+                final int length = blockHeader.getInt();
+                if (length < BLOCK_HEADER_SIZE || segment.size + Integer.BYTES + length > channel.size()) {
+                    break; // partially written
+                }
+                final long id = blockHeader.getLong();
+                final long minParkedAt = blockHeader.getLong();
+                final long maxLeftAt = blockHeader.getLong();
+                final int count = blockHeader.getInt();
+                final int bloomWords = blockHeader.getInt();
+                if (bloomWords < 0 || bloomWords > (length - BLOCK_HEADER_SIZE) / Long.BYTES) {
+                    break; // partially written
+                }
+                final int bloomSize = bloomWords * Long.BYTES;
+                final ByteBuffer bloomBuffer = ByteBuffer.allocate(bloomSize);
+                readFully(channel, bloomBuffer, segment.size + blockHeader.capacity());
+                final long[] bloom = new long[bloomWords];
+                bloomBuffer.asLongBuffer().get(bloom);
+                index.add(new Entry(segment, segment.size + blockHeader.capacity() + bloomSize,
+                        length - BLOCK_HEADER_SIZE - bloomSize,
+                        new SessionBlock(id, minParkedAt, maxLeftAt, count, bloom, null)));
+                segment.size += Integer.BYTES + length;
+            }
+            channel.truncate(segment.size);
+            return segment;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Append a block to the segment, and force it to the disk.
+     *
+     * @param block
+     *         a block with its data
+     *
+     * @return the entry to read the block back
+     *
+     * @throws IOException
+     *         if the block cannot be written
+     */
+    Entry append(@NonNull final SessionBlock block) throws IOException {
+        final byte[] data = block.getData();
+        final int headerSize = BLOCK_HEADER_SIZE + block.getBloom().length * Long.BYTES;
+        final ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES + headerSize + data.length)
+                .putInt(headerSize + data.length)
+                .putLong(block.getId())
+                .putLong(block.getMinParkedAt())
+                .putLong(block.getMaxLeftAt())
+                .putInt(block.getCount())
+                .putInt(block.getBloom().length);
+        for (long word : block.getBloom()) {
+            buffer.putLong(word);
+        }
+        buffer.put(data).flip();
+        writeFully(this.channel, buffer, this.size);
+        this.channel.force(false);
+
+        final Entry entry = new Entry(this, this.size + Integer.BYTES + headerSize, data.length,
+                block.header());
+        this.size += buffer.capacity();
+        return entry;
+    }
+
+    /**
+     * Read a block of the segment.
+     *
+     * @param entry
+     *         entry of the block
+     *
+     * @return the block with its data
+     *
+     * @throws IOException
+     *         if the block cannot be read
+     */
+    SessionBlock read(@NonNull final Entry entry) throws IOException {
+        final ByteBuffer data = ByteBuffer.allocate(entry.length);
+        readFully(this.channel, data, entry.offset);
+        return entry.header.withData(data.array());
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.channel.close();
+    }
+
+    private static void writeFully(final FileChannel channel, final ByteBuffer buffer, long position) throws
+            IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private static void readFully(final FileChannel channel, final ByteBuffer buffer, long position) throws
+            IOException {
+        while (buffer.hasRemaining()) {
+            final int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new EOFException("Truncated session segment");
+            }
+            position += read;
+        }
+        buffer.flip();
+    }
+
+    /**
+     * A block of the cold tier: its header, kept in memory, and where to read its data.
+     */
+    @Getter
+    static class Entry {
+        private final SessionSegment segment;
+        private final long offset;
+        private final int length;
+        private final SessionBlock header;
+
+        Entry(final SessionSegment segment, final long offset, final int length, final SessionBlock header) {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+            this.header = header;
+        }
+    }
+}
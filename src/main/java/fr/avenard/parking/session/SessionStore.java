@@ -0,0 +1,502 @@
+package fr.avenard.parking.session;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.validation.constraints.Positive;
+
+import fr.avenard.parking.Car;
+import fr.avenard.parking.event.ParkingEvent;
+import fr.avenard.parking.event.ParkingListener;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.Synchronized;
+
+/**
+ * Store of the parking sessions, registered as a listener on the parkings, in three tiers:
+ * <ul>
+ * <li>hot: the sessions not billed yet, in memory</li>
+ * <li>warm: the sessions billed recently, in compressed blocks in memory</li>
+ * <li>cold: the older sessions, in segment files on disk, only their block headers in memory</li>
+ * </ul>
+ * Billed sessions are grouped in blocks of {@code blockSize} sessions. {@link #maintain()} moves the blocks older
+ * than the warm retention to the cold tier; the cold tier is indexed again when the store is opened.
+ * <p>
+ * A session is opened by the ENTER event of the car and closed by its first BILL event: a duplicate bill, or the
+ * bill of a car that entered before the store was registered, is not archived. {@link #maintain()} also evicts the
+ * sessions of the cars that left without being billed within the unbilled timeout.
+ * Lookups by plate and time range search every tier, skipping the blocks out of the range or without the plate.
+ */
+public class SessionStore implements ParkingListener, AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(SessionStore.class.getName());
+    private static final int DEFAULT_BLOCK_SIZE = 512;
+    private static final Duration DEFAULT_UNBILLED_TIMEOUT = Duration.ofDays(1);
+    private static final long SEGMENT_SIZE = 64L << 20;
+    private static final String SEGMENT_PREFIX = "sessions-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    private final Path directory;
+    @Getter
+    private final Duration warmRetention;
+    private final int blockSize;
+    private final Clock clock;
+    @Getter
+    private Duration unbilledTimeout = DEFAULT_UNBILLED_TIMEOUT;
+    private final AtomicLong unbilled = new AtomicLong();
+    private final Map<String, Car> hot = new ConcurrentHashMap<>(); // by plate
+    private final List<ParkingSession> billed = new ArrayList<>(); // block being filled, guarded by the lock
+    private final List<SessionBlock> warm = new CopyOnWriteArrayList<>();
+    private final List<SessionSegment.Entry> cold = new CopyOnWriteArrayList<>();
+    private final List<SessionSegment> segments = new ArrayList<>(); // guarded by the lock
+    private long nextBlockId; // guarded by the lock
+
+    /**
+     * Open a session store, indexing the cold tier already in the directory.
+     *
+     * @param directory
+     *         directory of the cold tier segment files
+     * @param warmRetention
+     *         how long billed sessions stay in memory, e.g. the dispute period
+     *
+     * @throws IOException
+     *         if the segment files cannot be read
+     */
+    public SessionStore(@NonNull final Path directory, @NonNull final Duration warmRetention) throws IOException {
+        this(directory, warmRetention, DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * Open a session store, indexing the cold tier already in the directory.
+     *
+     * @param directory
+     *         directory of the cold tier segment files
+     * @param warmRetention
+     *         how long billed sessions stay in memory, e.g. the dispute period
+     * @param blockSize
+     *         number of sessions compressed together
+     *
+     * @throws IOException
+     *         if the segment files cannot be read
+     */
+    public SessionStore(@NonNull final Path directory, @NonNull final Duration warmRetention,
+            @Positive final int blockSize) throws IOException {
+        this(directory, warmRetention, blockSize, Clock.systemDefaultZone());
+    }
+
+    /**
+     * Open a session store, indexing the cold tier already in the directory.
+     *
+     * @param directory
+     *         directory of the cold tier segment files
+     * @param warmRetention
+     *         how long billed sessions stay in memory, e.g. the dispute period
+     * @param blockSize
+     *         number of sessions compressed together
+     * @param clock
+     *         the clock of the parkings, giving the current time of {@link #maintain()}
+     *
+     * @throws IOException
+     *         if the segment files cannot be read
+     */
+    public SessionStore(@NonNull final Path directory, @NonNull final Duration warmRetention,
+            @Positive final int blockSize, @NonNull final Clock clock) throws IOException {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("The block size must be positive");
+        }
+        this.directory = Files.createDirectories(directory);
+        this.warmRetention = warmRetention;
+        this.blockSize = blockSize;
+        this.clock = clock;
+
+        final List<Path> paths = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory,
+                SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            files.forEach(paths::add);
+        }
+        paths.sort(Comparator.naturalOrder());
+        final List<SessionSegment.Entry> index = new ArrayList<>();
+        try {
+            for (Path path : paths) {
+                this.segments.add(SessionSegment.open(path, index));
+            }
+        } catch (IOException e) {
+            this.close();
+            throw e;
+        }
+        this.cold.addAll(index);
+        this.nextBlockId = index.stream().mapToLong(entry -> entry.getHeader().getId() + 1).max().orElse(0);
+    }
+
+    /**
+     * Set how long the session of a car that left stays in the hot tier, waiting for its bill.
+     *
+     * @param unbilledTimeout
+     *         the time after which {@link #maintain()} evicts the session, one day by default
+     *
+     * @return this session store
+     */
+    public SessionStore withUnbilledTimeout(@NonNull final Duration unbilledTimeout) {
+        if (unbilledTimeout.isNegative()) {
+            throw new IllegalArgumentException("The unbilled timeout must not be negative");
+        }
+        this.unbilledTimeout = unbilledTimeout;
+        return this;
+    }
+
+    /**
+     * Track the sessions of the parking: open on enter, closed on the first bill.
+     *
+     * @param event
+     *         a parking event
+     */
+    @Override
+    public void onEvent(@NonNull final ParkingEvent event) {
+        final Car car = event.getCar();
+        switch (event.getType()) {
+            case ENTER:
+                this.hot.put(car.getPlate(), car);
+                break;
+            case BILL:
+                if (car.getParkedAt() != null && car.getLeftAt() != null) {
+                    this.close(ParkingSession.of(car, event.getFare()));
+                }
+                break;
+            default: // LEAVE
+                // the departure time of the session, when the car was restored from a snapshot since it entered
+                this.hot.computeIfPresent(car.getPlate(),
+                        (plate, open) -> car.getParkedAt() != null && car.getParkedAt().equals(open.getParkedAt())
+                                ? car : open);
+        }
+    }
+
+    /**
+     * Move a billed session from the hot tier to the warm tier, if it is still open: a session is archived once,
+     * whatever the number of bills, identified by its plate and arrival time.
+     *
+     * @param session
+     *         the billed session
+     */
+    @Synchronized
+    private void close(@NonNull final ParkingSession session) {
+        final boolean[] open = new boolean[1];
+        this.hot.computeIfPresent(session.getPlate(), (plate, car) -> {
+            open[0] = session.getParkedAt().equals(car.getParkedAt());
+            return open[0] ? null : car;
+        });
+        if (!open[0]) {
+            return; // already billed, or not tracked
+        }
+        this.billed.add(session);
+        if (this.billed.size() >= this.blockSize) {
+            this.warm.add(SessionBlock.encode(this.nextBlockId++, this.billed));
+            this.billed.clear();
+        }
+    }
+
+    /**
+     * Find the sessions of a plate during a time range, in every tier.
+     *
+     * @param plate
+     *         license plate of the car
+     * @param from
+     *         start of the range, inclusive
+     * @param to
+     *         end of the range, exclusive
+     *
+     * @return the sessions overlapping the range, by arrival time
+     *
+     * @throws IOException
+     *         if the cold tier cannot be read
+     */
+    public List<ParkingSession> find(@NonNull final String plate, @NonNull final LocalDateTime from,
+            @NonNull final LocalDateTime to) throws IOException {
+        final List<ParkingSession> sessions = new ArrayList<>();
+        final Car car = this.hot.get(plate);
+        if (car != null && car.getParkedAt() != null) {
+            final ParkingSession session = ParkingSession.of(car, null);
+            if (session.overlaps(from, to)) {
+                sessions.add(session);
+            }
+        }
+
+        final long fromSecond = SessionBlock.epochSecond(from);
+        final long toSecond = SessionBlock.epochSecond(to);
+        final List<ParkingSession> billed = new ArrayList<>();
+        final List<SessionBlock> warm = this.warmTier(billed);
+        for (ParkingSession session : billed) {
+            if (session.getPlate().equals(plate) && session.overlaps(from, to)) {
+                sessions.add(session);
+            }
+        }
+        // warm first: a block moved to the cold tier meanwhile is found twice, and searched once
+        final Set<Long> searched = new HashSet<>();
+        for (SessionBlock block : warm) {
+            if (block.mightContain(plate, fromSecond, toSecond) && searched.add(block.getId())) {
+                collect(block, plate, from, to, sessions);
+            }
+        }
+        for (SessionSegment.Entry entry : this.cold) {
+            if (entry.getHeader().mightContain(plate, fromSecond, toSecond) && searched.add(entry.getHeader().getId())) {
+                collect(entry.getSegment().read(entry), plate, from, to, sessions);
+            }
+        }
+        sessions.sort(Comparator.comparing(ParkingSession::getParkedAt));
+        return sessions;
+    }
+
+    /**
+     * Read the billed sessions overlapping a time range, in every tier, one block at a time: the sessions are not
+     * all loaded at once, for instance to export them.
+     *
+     * @param from
+     *         start of the range, inclusive
+     * @param to
+     *         end of the range, exclusive
+     * @param consumer
+     *         receives the sessions, in no particular order
+     *
+     * @throws IOException
+     *         if the cold tier cannot be read
+     */
+    public void forEachBilled(@NonNull final LocalDateTime from, @NonNull final LocalDateTime to,
+            @NonNull final Consumer<ParkingSession> consumer) throws IOException {
+        final long fromSecond = SessionBlock.epochSecond(from);
+        final long toSecond = SessionBlock.epochSecond(to);
+        final List<ParkingSession> billed = new ArrayList<>();
+        final List<SessionBlock> warm = this.warmTier(billed);
+        for (ParkingSession session : billed) {
+            if (session.overlaps(from, to)) {
+                consumer.accept(session);
+            }
+        }
+        // warm first: a block moved to the cold tier meanwhile is found twice, and read once
+        final Set<Long> read = new HashSet<>();
+        for (SessionBlock block : warm) {
+            if (block.mightContain(null, fromSecond, toSecond) && read.add(block.getId())) {
+                forEach(block, from, to, consumer);
+            }
+        }
+        for (SessionSegment.Entry entry : this.cold) {
+            if (entry.getHeader().mightContain(null, fromSecond, toSecond) && read.add(entry.getHeader().getId())) {
+                forEach(entry.getSegment().read(entry), from, to, consumer);
+            }
+        }
+    }
+
+    /**
+     * Move the blocks of sessions older than the warm retention to the cold tier, and evict the sessions of the cars
+     * that left without being billed within the unbilled timeout.
+     *
+     * @return the number of sessions moved
+     *
+     * @throws IOException
+     *         if the cold tier cannot be written
+     */
+    public int maintain() throws IOException {
+        return this.maintain(LocalDateTime.now(this.clock));
+    }
+
+    /**
+     * Move the blocks of sessions older than the warm retention at the provided time to the cold tier, and evict the
+     * sessions of the cars that left without being billed within the unbilled timeout.
+     *
+     * @param now
+     *         the current time
+     *
+     * @return the number of sessions moved
+     *
+     * @throws IOException
+     *         if the cold tier cannot be written
+     */
+    @Synchronized
+    public int maintain(@NonNull final LocalDateTime now) throws IOException {
+        final LocalDateTime unbilledLimit = now.minus(this.unbilledTimeout);
+        int evicted = 0;
+        for (Map.Entry<String, Car> entry : this.hot.entrySet()) {
+            if (isUnbilled(entry.getValue(), unbilledLimit) && this.hot.remove(entry.getKey(), entry.getValue())) {
+                evicted++;
+            }
+        }
+        if (evicted > 0) {
+            this.unbilled.addAndGet(evicted);
+            LOGGER.log(Level.WARNING, "{0} sessions evicted without bill", evicted);
+        }
+
+        final long limit = SessionBlock.epochSecond(now.minus(this.warmRetention));
+        if (!this.billed.isEmpty() && this.billed.stream()
+                .anyMatch(session -> SessionBlock.epochSecond(session.getLeftAt()) < limit)) {
+            this.warm.add(SessionBlock.encode(this.nextBlockId++, this.billed)); // not filled in time
+            this.billed.clear();
+        }
+
+        int moved = 0;
+        for (SessionBlock block : this.warm) {
+            if (block.getMaxLeftAt() < limit) {
+                this.cold.add(this.segment().append(block));
+                this.warm.remove(block);
+                moved += block.getCount();
+            }
+        }
+        return moved;
+    }
+
+    /**
+     * Move the old sessions to the cold tier periodically.
+     *
+     * @param scheduler
+     *         the scheduler running the maintenance
+     * @param period
+     *         the time between two maintenances
+     *
+     * @return the scheduled maintenance, cancel it to stop
+     */
+    public ScheduledFuture<?> maintainEvery(@NonNull final ScheduledExecutorService scheduler,
+            @NonNull final Duration period) {
+        return scheduler.scheduleAtFixedRate(() -> {
+            try {
+                this.maintain();
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Cannot move the sessions to the cold tier", e);
+            }
+        }, period.toNanos(), period.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return the number of sessions not billed yet
+     */
+    public int hotSessions() {
+        return this.hot.size();
+    }
+
+    /**
+     * @return the number of sessions evicted from the hot tier without being billed
+     */
+    public long unbilledSessions() {
+        return this.unbilled.get();
+    }
+
+    /**
+     * @return the number of billed sessions in memory
+     */
+    @Synchronized
+    public int warmSessions() {
+        return this.billed.size() + this.warm.stream().mapToInt(SessionBlock::getCount).sum();
+    }
+
+    /**
+     * @return the number of sessions on disk
+     */
+    public int coldSessions() {
+        return this.cold.stream().mapToInt(entry -> entry.getHeader().getCount()).sum();
+    }
+
+    /**
+     * Write the billed sessions still in memory to the cold tier, so that they are kept, and close the segments.
+     * The sessions not billed yet are not kept.
+     *
+     * @throws IOException
+     *         if the cold tier cannot be written
+     */
+    @Override
+    @Synchronized
+    public void close() throws IOException {
+        try {
+            if (!this.billed.isEmpty()) {
+                this.warm.add(SessionBlock.encode(this.nextBlockId++, this.billed));
+                this.billed.clear();
+            }
+            for (SessionBlock block : this.warm) {
+                this.cold.add(this.segment().append(block));
+                this.warm.remove(block);
+            }
+        } finally {
+            for (SessionSegment segment : this.segments) {
+                segment.close();
+            }
+        }
+    }
+
+    /**
+     * Read the warm tier at once: the block being filled and the compressed blocks.
+     *
+     * @param billed
+     *         list receiving the sessions of the block being filled
+     *
+     * @return the compressed blocks
+     */
+    @Synchronized
+    private List<SessionBlock> warmTier(final List<ParkingSession> billed) {
+        billed.addAll(this.billed);
+        return new ArrayList<>(this.warm);
+    }
+
+    /**
+     * Get the segment to append blocks to, a new one once the last one is full.
+     * It must be called with the lock held.
+     *
+     * @return the last segment
+     *
+     * @throws IOException
+     *         if a new segment cannot be created
+     */
+    private SessionSegment segment() throws IOException {
+        if (this.segments.isEmpty() || this.segments.get(this.segments.size() - 1).getSize() >= SEGMENT_SIZE) {
+            final Path path = this.directory.resolve(String.format("%s%06d%s", SEGMENT_PREFIX, this.segments.size(),
+                    SEGMENT_SUFFIX));
+            this.segments.add(SessionSegment.open(path, new ArrayList<>()));
+        }
+        return this.segments.get(this.segments.size() - 1);
+    }
+
+    /**
+     * @param car
+     *         a car of the hot tier
+     * @param limit
+     *         the departure time before which an unbilled car is evicted
+     *
+     * @return true if the car left before the limit, and has not entered again since
+     */
+    private static boolean isUnbilled(final Car car, final LocalDateTime limit) {
+        final LocalDateTime parkedAt = car.getParkedAt();
+        final LocalDateTime leftAt = car.getLeftAt();
+        return parkedAt != null && leftAt != null && !leftAt.isBefore(parkedAt) && leftAt.isBefore(limit);
+    }
+
+    private static void forEach(final SessionBlock block, final LocalDateTime from, final LocalDateTime to,
+            final Consumer<ParkingSession> consumer) throws IOException {
+        for (ParkingSession session : block.decode()) {
+            if (session.overlaps(from, to)) {
+                consumer.accept(session);
+            }
+        }
+    }
+
+    private static void collect(final SessionBlock block, final String plate, final LocalDateTime from,
+            final LocalDateTime to, final List<ParkingSession> sessions) throws IOException {
+        for (ParkingSession session : block.decode()) {
+            if (session.getPlate().equals(plate) && session.overlaps(from, to)) {
+                sessions.add(session);
+            }
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package fr.avenard.parking;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.math.BigDecimal;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import fr.avenard.parking.exception.ParkingException;
+
+/**
+ * Unit tests for {@link LotLayout}, and the parkings built from a layout.
+ */
+public class LotLayoutTest {
+
+    @Rule
+    public ExpectedException exceptionRule = ExpectedException.none();
+
+    LotLayout layout;
+
+    @Before
+    public void setUp() throws Exception {
+        layout = new LotLayout()
+                .withZone("level-0", "A", CarType.SEDAN, 100)
+                .withZone("level-0", "B", CarType.ELECTRIC_50KW, 10)
+                .withZone("level-1", "A", CarType.SEDAN, 200)
+                .withZone("level-1", "B", CarType.ELECTRIC_20KW, 20);
+    }
+
+    @Test
+    public void testParkingFromLayout() throws ParkingException {
+        final Parking parking = new Parking(car -> BigDecimal.ONE, layout);
+        Assert.assertEquals(330, parking.slots().count());
+        Assert.assertEquals(300, parking.totalSlots(CarType.SEDAN));
+        Assert.assertEquals(300, parking.remainingFreeSlots(CarType.SEDAN));
+        Assert.assertEquals(20, parking.totalSlots(CarType.ELECTRIC_20KW));
+        Assert.assertEquals(10, parking.remainingFreeSlots(CarType.ELECTRIC_50KW));
+
+        final ParkingSlot sedan = parking.enter(new Car("SEDAN", CarType.SEDAN));
+        Assert.assertEquals("level-0/A", layout.zoneOf(sedan).toString());
+        final ParkingSlot electric = parking.enter(new Car("ELECTRIC", CarType.ELECTRIC_20KW));
+        Assert.assertEquals(310, electric.getIndex());
+        Assert.assertEquals("level-1", layout.zoneOf(electric).getFloor());
+        Assert.assertEquals("B", layout.zoneOf(electric).getName());
+        Assert.assertEquals(299, parking.remainingFreeSlots(CarType.SEDAN));
+
+        exceptionRule.expect(ParkingException.class);
+        exceptionRule.expectMessage("This parking already contains " + CarType.SEDAN + " slots");
+        parking.withSlots(CarType.SEDAN, 1);
+    }
+
+    @Test
+    public void testLayoutImage() throws IOException {
+        final ByteArrayOutputStream image = new ByteArrayOutputStream();
+        layout.write(Channels.newChannel(image));
+
+        final LotLayout read = LotLayout.read(Channels.newChannel(new ByteArrayInputStream(image.toByteArray())));
+        Assert.assertEquals(layout.getSize(), read.getSize());
+        Assert.assertEquals(4, read.getZones().size());
+        for (int i = 0; i < 4; i++) {
+            final LotLayout.Zone expected = layout.getZones().get(i);
+            final LotLayout.Zone zone = read.getZones().get(i);
+            Assert.assertEquals(expected.toString(), zone.toString());
+            Assert.assertEquals(expected.getSlotType(), zone.getSlotType());
+            Assert.assertEquals(expected.getSlots(), zone.getSlots());
+            Assert.assertEquals(expected.getFirstIndex(), zone.getFirstIndex());
+        }
+    }
+
+    @Test
+    public void testLargeLot() throws ParkingException {
+        final LotLayout venue = new LotLayout();
+        for (int floor = 0; floor < 10; floor++) {
+            for (int zone = 0; zone < 50; zone++) {
+                venue.withZone("level-" + floor, "zone-" + zone, CarType.values()[zone % 3], 1_000);
+            }
+        }
+        final Parking parking = new Parking(car -> BigDecimal.ONE, venue);
+        Assert.assertEquals(500_000, parking.slots().count());
+        Assert.assertEquals(venue.totalSlots(CarType.SEDAN), parking.remainingFreeSlots(CarType.SEDAN));
+        Assert.assertTrue(parking.slots().allMatch(slot -> venue.zoneOf(slot).getSlotType() == slot.getSlotType()));
+        Assert.assertEquals("first slot of level-0/zone-2", 2_000,
+                parking.enter(new Car("E", CarType.ELECTRIC_50KW)).getIndex());
+    }
+
+    @Test
+    public void testDuplicateZone() throws ParkingException {
+        exceptionRule.expect(ParkingException.class);
+        exceptionRule.expectMessage("The floor level-1 already contains the zone A");
+        layout.withZone("level-1", "A", CarType.ELECTRIC_20KW, 1);
+    }
+
+    @Test
+    public void testTruncatedImage() throws IOException {
+        final ByteArrayOutputStream image = new ByteArrayOutputStream();
+        layout.write(Channels.newChannel(image));
+
+        exceptionRule.expect(EOFException.class);
+        LotLayout.read(Channels.newChannel(new ByteArrayInputStream(Arrays.copyOf(image.toByteArray(),
+                image.size() - 1))));
+    }
+
+    @Test
+    public void testNotALayout() throws IOException {
+        exceptionRule.expect(StreamCorruptedException.class);
+        LotLayout.read(Channels.newChannel(new ByteArrayInputStream(new byte[16])));
+    }
+}
@@ -0,0 +1,125 @@
+package fr.avenard.parking;
+
+import java.math.BigDecimal;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import fr.avenard.parking.exception.ParkingException;
+import fr.avenard.parking.policy.PricingPolicy;
+
+/**
+ * Unit tests for {@link OccupancySnapshot}, through {@link Parking#occupancy}.
+ */
+public class OccupancySnapshotTest {
+
+    @Rule
+    public ExpectedException exceptionRule = ExpectedException.none();
+
+    PricingPolicy policy = car -> BigDecimal.ONE;
+    Parking parking;
+
+    @Before
+    public void setUp() throws Exception {
+        parking = new Parking(policy)
+                .withSlots(CarType.SEDAN, OccupancySnapshot.CHUNK_SIZE)
+                .withSlots(CarType.ELECTRIC_20KW, 10);
+    }
+
+    @Test
+    public void testOccupancy() throws ParkingException {
+        Car sedan = new Car("SEDAN", CarType.SEDAN);
+        Car electric = new Car("ELECTRIC", CarType.ELECTRIC_20KW);
+        parking.enter(sedan);
+        parking.enter(electric);
+
+        final OccupancySnapshot occupancy = parking.occupancy();
+        Assert.assertEquals(2, occupancy.getSequence());
+        Assert.assertEquals(OccupancySnapshot.CHUNK_SIZE + 10, occupancy.size());
+        Assert.assertTrue(occupancy.isOccupied(0));
+        Assert.assertEquals(sedan.getParkedAt(), occupancy.getParkedAt(0));
+        Assert.assertFalse(occupancy.isOccupied(1));
+        Assert.assertEquals(CarType.ELECTRIC_20KW, occupancy.getSlotType(OccupancySnapshot.CHUNK_SIZE));
+        Assert.assertTrue(occupancy.isOccupied(OccupancySnapshot.CHUNK_SIZE));
+        Assert.assertEquals(1, occupancy.occupiedSlots(CarType.SEDAN));
+        Assert.assertEquals(1, occupancy.occupiedSlots(CarType.ELECTRIC_20KW));
+        Assert.assertEquals(0, occupancy.occupiedSlots(CarType.ELECTRIC_50KW));
+
+        parking.leave(sedan);
+        Assert.assertTrue("the snapshot is immutable", occupancy.isOccupied(0));
+        Assert.assertFalse(parking.occupancy().isOccupied(0));
+        Assert.assertEquals(0, parking.occupancy().occupiedSlots(CarType.SEDAN));
+    }
+
+    @Test
+    public void testUnchangedSnapshotIsReused() throws ParkingException {
+        parking.enter(new Car("SEDAN", CarType.SEDAN));
+
+        final OccupancySnapshot occupancy = parking.occupancy();
+        Assert.assertSame(occupancy, parking.occupancy());
+    }
+
+    @Test
+    public void testUnchangedChunksAreShared() throws ParkingException {
+        parking.enter(new Car("SEDAN", CarType.SEDAN));
+        final OccupancySnapshot before = parking.occupancy();
+
+        parking.enter(new Car("ELECTRIC", CarType.ELECTRIC_20KW));
+        final OccupancySnapshot after = parking.occupancy();
+        Assert.assertTrue(after.sharesChunk(before, 0));
+        Assert.assertFalse(after.sharesChunk(before, OccupancySnapshot.CHUNK_SIZE));
+        Assert.assertEquals(1, after.occupiedSlots(CarType.SEDAN));
+        Assert.assertEquals(1, after.occupiedSlots(CarType.ELECTRIC_20KW));
+    }
+
+    @Test
+    public void testAddedSlots() throws ParkingException {
+        final OccupancySnapshot before = parking.occupancy();
+        parking.withSlots(CarType.ELECTRIC_50KW, 2);
+        parking.enter(new Car("ELECTRIC", CarType.ELECTRIC_50KW));
+
+        final OccupancySnapshot after = parking.occupancy();
+        Assert.assertEquals(before.size() + 2, after.size());
+        Assert.assertTrue(after.sharesChunk(before, 0));
+        Assert.assertTrue(after.isOccupied(OccupancySnapshot.CHUNK_SIZE + 10));
+        Assert.assertEquals(1, after.occupiedSlots(CarType.ELECTRIC_50KW));
+    }
+
+    @Test
+    public void testSnapshotWhileUpdating() throws Exception {
+        final Thread gate = new Thread(() -> {
+            try {
+                for (int i = 0; i < 200; i++) {
+                    Car car = new Car("CAR" + i, CarType.SEDAN);
+                    parking.enter(car);
+                    if (i % 2 == 0) {
+                        parking.leave(car);
+                    }
+                }
+            } catch (ParkingException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        gate.start();
+        while (gate.isAlive()) {
+            final OccupancySnapshot occupancy = parking.occupancy();
+            final long sequence = occupancy.getSequence();
+            // each car enters, then every other car leaves: the sequence tells how many are parked
+            final long expected = sequence / 3 + (sequence % 3 == 1 ? 1 : 0);
+            Assert.assertEquals(expected, occupancy.occupiedSlots(CarType.SEDAN));
+            Thread.yield();
+        }
+        gate.join();
+        Assert.assertEquals(100, parking.occupancy().occupiedSlots(CarType.SEDAN));
+    }
+
+    @Test
+    public void testUnknownSlot() {
+        exceptionRule.expect(IndexOutOfBoundsException.class);
+        exceptionRule.expectMessage("No slot -1 in the parking");
+        parking.occupancy().getParkedAt(-1);
+    }
+}
@@ -0,0 +1,103 @@
+package fr.avenard.parking;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.channels.Channels;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import fr.avenard.parking.exception.ParkingException;
+import fr.avenard.parking.replay.ManualClock;
+
+/**
+ * Unit tests for {@link OverstayWatch} and the overstay queries of {@link Parking}
+ */
+public class OverstayWatchTest {
+
+    Parking parking;
+    Car first;
+    Car second;
+    Car third;
+
+    @Before
+    public void setUp() throws Exception {
+        parking = new Parking(car -> BigDecimal.ZERO)
+                .withSlots(CarType.SEDAN, 3)
+                .withSlots(CarType.ELECTRIC_20KW, 1);
+        first = new Car("FIRST", CarType.SEDAN);
+        second = new Car("SECOND", CarType.ELECTRIC_20KW);
+        third = new Car("THIRD", CarType.SEDAN);
+        // distinct arrival times
+        parking.enter(first);
+        TimeUnit.MILLISECONDS.sleep(2);
+        parking.enter(second);
+        TimeUnit.MILLISECONDS.sleep(2);
+        parking.enter(third);
+    }
+
+    @Test
+    public void testParkedBefore() throws ParkingException {
+        Assert.assertEquals("longest parked first", List.of(first, second),
+                parking.parkedBefore(third.getParkedAt()));
+        Assert.assertEquals(List.of(first, second, third), parking.overstays(Duration.ZERO.minusHours(1)));
+        Assert.assertTrue(parking.overstays(Duration.ofHours(1)).isEmpty());
+
+        parking.leave(second);
+        Assert.assertEquals("left cars are removed", List.of(first, third),
+                parking.parkedBefore(LocalDateTime.now().plusSeconds(1)));
+    }
+
+    @Test
+    public void testWatchNotifiesOnce() throws ParkingException {
+        final List<Car> notified = new ArrayList<>();
+        final OverstayWatch watch = parking.watchOverstays(Duration.ofHours(2), notified::add);
+        final LocalDateTime now = LocalDateTime.now();
+
+        Assert.assertEquals(0, watch.check(now));
+        Assert.assertEquals("every car crossed the threshold", 3, watch.check(now.plusHours(3)));
+        Assert.assertEquals(List.of(first, second, third), notified);
+        Assert.assertEquals("already notified", 0, watch.check(now.plusHours(4)));
+
+        // a new session is notified once it crosses the threshold
+        parking.leave(first);
+        parking.enter(first);
+        Assert.assertEquals(0, watch.check(first.getParkedAt().plusHours(1)));
+        Assert.assertEquals(1, watch.check(first.getParkedAt().plusHours(2).plusSeconds(1)));
+        Assert.assertEquals(4, notified.size());
+        Assert.assertEquals(first, notified.get(3));
+    }
+
+    @Test
+    public void testSimulatedTime() throws ParkingException, IOException {
+        final ManualClock clock = new ManualClock(Instant.parse("2020-01-01T10:00:00Z"));
+        final Parking simulated = new Parking(car -> BigDecimal.ZERO, clock).withSlots(CarType.SEDAN, 2);
+        final Car car = new Car("SIMULATED", CarType.SEDAN);
+        simulated.enter(car);
+        final List<Car> notified = new ArrayList<>();
+        final OverstayWatch watch = simulated.watchOverstays(Duration.ofHours(2), notified::add);
+
+        clock.advance(Duration.ofHours(3));
+        Assert.assertEquals(List.of(car), simulated.overstays(Duration.ofHours(2)));
+        Assert.assertEquals("the watch reads the parking clock", 1, watch.check());
+        Assert.assertEquals(List.of(car), notified);
+
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        simulated.snapshot(Channels.newChannel(output));
+        final Parking restored = Parking.restore(Channels.newChannel(new ByteArrayInputStream(output.toByteArray())),
+                parked -> BigDecimal.ZERO, clock);
+        Assert.assertSame(clock, restored.getClock());
+        Assert.assertEquals(List.of(car), restored.overstays(Duration.ofHours(2)));
+        Assert.assertTrue(restored.overstays(Duration.ofHours(4)).isEmpty());
+        Assert.assertEquals(LocalDateTime.of(2020, 1, 1, 13, 0), restored.leave(car).getLeftAt());
+    }
+}
@@ -0,0 +1,104 @@
+package fr.avenard.parking;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import fr.avenard.parking.exception.ParkingException;
+import fr.avenard.parking.policy.PricingPolicy;
+
+/**
+ * Unit tests for {@link ParkingReplicator} and {@link ParkingReplica}, replicating through the loopback interface.
+ */
+public class ParkingReplicaTest {
+
+    PricingPolicy policy = car -> BigDecimal.TEN;
+    Parking primary;
+    ParkingReplicator replicator;
+
+    @Before
+    public void setUp() throws Exception {
+        primary = new Parking(policy)
+                .withSlots(CarType.SEDAN, 3)
+                .withSlots(CarType.ELECTRIC_50KW, 1);
+        replicator = new ParkingReplicator(primary, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        replicator.close();
+    }
+
+    @Test
+    public void testReplication() throws ParkingException, IOException, InterruptedException {
+        Car sedan = new Car("SEDAN", CarType.SEDAN);
+        primary.enter(sedan);
+
+        try (ParkingReplica replica = ParkingReplica.connect(replicator.getAddress(), policy)) {
+            // the snapshot is applied on connection
+            Assert.assertTrue(replica.isConnected());
+            Assert.assertEquals(2, replica.remainingFreeSlots(CarType.SEDAN));
+
+            // the next updates are streamed
+            Car electric = new Car("ELECTRIC", CarType.ELECTRIC_50KW);
+            primary.enter(electric);
+            primary.enter(new Car("OTHER", CarType.SEDAN));
+            primary.leave(sedan);
+            primary.bill(sedan);
+            awaitSequence(replica, primary.getSequence() - 1); // bills are not replicated
+
+            Assert.assertFalse(replica.hasFreeSlot(CarType.ELECTRIC_50KW));
+            Assert.assertEquals(2, replica.remainingFreeSlots(CarType.SEDAN));
+            Assert.assertEquals(1, replicator.getNumberOfReplicas());
+        }
+    }
+
+    /**
+     * The promoted replica manages the cars parked on the primary parking.
+     */
+    @Test
+    public void testPromote() throws ParkingException, IOException, InterruptedException {
+        final ParkingReplica replica = ParkingReplica.connect(replicator.getAddress(), policy);
+        Car electric = new Car("ELECTRIC", CarType.ELECTRIC_50KW);
+        final ParkingSlot primarySlot = primary.enter(electric);
+        awaitSequence(replica, primary.getSequence());
+
+        final Parking promoted = replica.promote();
+        Assert.assertFalse(replica.isConnected());
+
+        final ParkingSlot slot = promoted.slots().skip(primarySlot.getIndex()).findFirst().orElseThrow();
+        Assert.assertEquals("ELECTRIC", slot.getCar().getPlate());
+        Assert.assertEquals(electric.getParkedAt(), slot.getCar().getParkedAt());
+
+        final Car car = promoted.leave(slot);
+        Assert.assertEquals(BigDecimal.TEN, promoted.bill(car));
+        Assert.assertTrue(promoted.hasFreeSlot(CarType.ELECTRIC_50KW));
+    }
+
+    @Test
+    public void testReplicatorClosed() throws IOException, InterruptedException {
+        final ParkingReplica replica = ParkingReplica.connect(replicator.getAddress(), policy);
+        replicator.close();
+
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (replica.isConnected() && System.nanoTime() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        Assert.assertFalse("replica is disconnected", replica.isConnected());
+    }
+
+    private static void awaitSequence(final ParkingReplica replica, final long sequence) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (replica.getSequence() < sequence && System.nanoTime() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        Assert.assertEquals("replica is up to date", sequence, replica.getSequence());
+    }
+}
@@ -0,0 +1,188 @@
+package fr.avenard.parking;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import fr.avenard.parking.exception.ParkingException;
+import fr.avenard.parking.policy.PricingPolicy;
+
+/**
+ * Unit tests for {@link ParkingSnapshot}, through {@link Parking#snapshot} and {@link Parking#restore}.
+ */
+public class ParkingSnapshotTest {
+
+    @Rule
+    public ExpectedException exceptionRule = ExpectedException.none();
+
+    PricingPolicy policy = car -> BigDecimal.ONE;
+    Parking parking;
+
+    @Before
+    public void setUp() throws Exception {
+        parking = new Parking(policy)
+                .withSlots(CarType.SEDAN, 3)
+                .withSlots(CarType.ELECTRIC_20KW, 2);
+    }
+
+    @Test
+    public void testSnapshotThenRestore() throws ParkingException, IOException {
+        Car sedan = new Car("SEDAN", CarType.SEDAN);
+        Car electric = new Car("ÉLECTRIQUE", CarType.ELECTRIC_20KW);
+        parking.enter(new Car("LEFT", CarType.SEDAN));
+        parking.enter(sedan);
+        parking.enter(electric);
+        parking.leave(parking.slots().findFirst().orElseThrow());
+
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final long sequence = parking.snapshot(Channels.newChannel(output));
+        Assert.assertEquals("3 enter + 1 leave", 4, sequence);
+
+        final Parking restored = Parking.restore(Channels.newChannel(new ByteArrayInputStream(output.toByteArray())),
+                policy);
+        final ParkingSlot[] slots = restored.slots().toArray(ParkingSlot[]::new);
+        Assert.assertEquals(5, slots.length);
+        Assert.assertTrue(slots[0].isFree());
+        Assert.assertEquals("SEDAN", slots[1].getCar().getPlate());
+        Assert.assertEquals(sedan.getParkedAt(), slots[1].getCar().getParkedAt());
+        Assert.assertEquals("ÉLECTRIQUE", slots[3].getCar().getPlate());
+        Assert.assertEquals(CarType.ELECTRIC_20KW, slots[3].getSlotType());
+        Assert.assertEquals(2, restored.remainingFreeSlots(CarType.SEDAN));
+        Assert.assertEquals(1, restored.remainingFreeSlots(CarType.ELECTRIC_20KW));
+
+        // the restored parking is fully functional
+        final Car car = restored.leave(slots[1]);
+        Assert.assertEquals(BigDecimal.ONE, restored.bill(car));
+    }
+
+    /**
+     * Slots updated while the snapshot is written are saved as they were when the snapshot started.
+     */
+    @Test
+    public void testSnapshotIsConsistent() throws ParkingException, IOException {
+        Car parked = new Car("PARKED", CarType.SEDAN);
+        parking.enter(parked);
+        final SlotCapture capture = parking.openCapture();
+
+        // the gates keep running
+        parking.leave(parked);
+        parking.enter(new Car("NEW", CarType.SEDAN));
+        parking.enter(new Car("OTHER", CarType.ELECTRIC_20KW));
+        parking.enter(parked);
+
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ParkingSnapshot.write(capture, Channels.newChannel(output));
+        final ParkingSnapshot snapshot = ParkingSnapshot.read(
+                Channels.newChannel(new ByteArrayInputStream(output.toByteArray())));
+
+        Assert.assertEquals(1, snapshot.getSequence());
+        Assert.assertEquals("PARKED", snapshot.getSlots()[0].getCar().getPlate());
+        Assert.assertEquals("only one car was parked", 1,
+                Arrays.stream(snapshot.getSlots()).filter(slot -> !slot.isFree()).count());
+    }
+
+    /**
+     * A large parking is written with a single byte per free slot.
+     */
+    @Test
+    public void testLargeParking() throws ParkingException, IOException {
+        final Parking large = new Parking(policy).withSlots(CarType.SEDAN, 100_000);
+        for (int i = 0; i < 1_000; i++) {
+            large.enter(new Car("CAR-" + i, CarType.SEDAN));
+        }
+
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        large.snapshot(Channels.newChannel(output));
+        Assert.assertTrue(output.size() < 100_000 + 1_000 * 24 + 18);
+
+        final Parking restored = Parking.restore(Channels.newChannel(new ByteArrayInputStream(output.toByteArray())),
+                policy);
+        Assert.assertEquals(99_000, restored.remainingFreeSlots(CarType.SEDAN));
+    }
+
+    @Test
+    public void testNotASnapshot() throws IOException {
+        exceptionRule.expect(StreamCorruptedException.class);
+        exceptionRule.expectMessage("Not a parking snapshot");
+        Parking.restore(Channels.newChannel(new ByteArrayInputStream(new byte[18])), policy);
+    }
+
+    @Test
+    public void testTruncatedSnapshot() throws IOException {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        parking.snapshot(Channels.newChannel(output));
+
+        exceptionRule.expect(EOFException.class);
+        Parking.restore(Channels.newChannel(new ByteArrayInputStream(output.toByteArray(), 0, output.size() - 1)),
+                policy);
+    }
+
+    @Test
+    public void testManySlotsFewWrites() throws ParkingException, IOException {
+        final Parking large = new Parking(policy).withSlots(CarType.SEDAN, 1_000);
+        for (int i = 0; i < 1_000; i++) {
+            large.enter(new Car("WRITE-" + i, CarType.SEDAN));
+        }
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final WritableByteChannel target = Channels.newChannel(output);
+        final int[] writes = new int[1];
+        large.snapshot(new WritableByteChannel() {
+            @Override
+            public int write(final ByteBuffer src) throws IOException {
+                writes[0]++;
+                return target.write(src);
+            }
+
+            @Override
+            public boolean isOpen() {
+                return true;
+            }
+
+            @Override
+            public void close() {
+                // the output stays open
+            }
+        });
+        Assert.assertTrue("the buffer is flushed when full, not after each slot: " + writes[0], writes[0] <= 2);
+        Assert.assertEquals(0, Parking.restore(Channels.newChannel(new ByteArrayInputStream(output.toByteArray())),
+                policy).remainingFreeSlots(CarType.SEDAN));
+    }
+
+    @Test
+    public void testLongestPlate() throws ParkingException, IOException {
+        final char[] plate = new char[0xFFFF];
+        Arrays.fill(plate, 'L');
+        parking.enter(new Car(new String(plate), CarType.SEDAN));
+        parking.enter(new Car("NEXT", CarType.SEDAN));
+
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        parking.snapshot(Channels.newChannel(output));
+        final Parking restored = Parking.restore(Channels.newChannel(new ByteArrayInputStream(output.toByteArray())),
+                policy);
+        final ParkingSlot[] slots = restored.slots().toArray(ParkingSlot[]::new);
+        Assert.assertEquals(0xFFFF, slots[0].getCar().getPlate().length());
+        Assert.assertEquals("NEXT", slots[1].getCar().getPlate());
+    }
+
+    @Test
+    public void testOversizedPlateRejected() throws ParkingException {
+        final char[] plate = new char[70_000];
+        Arrays.fill(plate, 'O');
+        exceptionRule.expect(ParkingException.class);
+        exceptionRule.expectMessage("Plate too long");
+        parking.enter(new Car(new String(plate), CarType.SEDAN));
+    }
+}
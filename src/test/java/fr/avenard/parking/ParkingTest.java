@@ -1,6 +1,11 @@
 package fr.avenard.parking;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
 import org.hamcrest.Matchers;
@@ -91,8 +96,8 @@ public class ParkingTest {
         Assert.assertEquals("car must be parked on a slot of its type", carOne.getType(), psOne.getSlotType());
 
         // two new cars arrive
-        Car carTwo = new Car("SEDAN", CarType.SEDAN);
-        Car carThree = new Car("SEDAN", CarType.SEDAN);
+        Car carTwo = new Car("SEDAN-2", CarType.SEDAN);
+        Car carThree = new Car("SEDAN-3", CarType.SEDAN);
 
         parking.enter(carTwo);
         parking.enter(carThree);
@@ -128,13 +133,27 @@ public class ParkingTest {
         parking.enter(carOne);
     }
 
+    @Test
+    public void testSamePlateIsSameCar() throws ParkingException {
+        parking.enter(new Car("50-ELECTRIC-KW", CarType.ELECTRIC_50KW));
+
+        // the car is identified by its plate, whatever the instance
+        final Car car = parking.leave(new Car("50-ELECTRIC-KW", CarType.ELECTRIC_50KW));
+        Assert.assertNotNull(car.getLeftAt());
+
+        parking.enter(new Car("50-ELECTRIC-KW", CarType.ELECTRIC_50KW));
+        exceptionRule.expect(ParkingException.class);
+        exceptionRule.expectMessage("Car is already parked in the parking");
+        parking.enter(new Car("50-ELECTRIC-KW", CarType.ELECTRIC_50KW));
+    }
+
     @Test
     public void testParkingOnlyForSedan() throws ParkingException {
         Parking sedanParking = new Parking(car -> BigDecimal.ZERO).withSlots(CarType.SEDAN, 2);
 
         Car carOne = new Car("SEDAN", CarType.SEDAN);
-        Car carTwo = new Car("SEDAN", CarType.SEDAN);
-        Car carThree = new Car("SEDAN", CarType.SEDAN);
+        Car carTwo = new Car("SEDAN-2", CarType.SEDAN);
+        Car carThree = new Car("SEDAN-3", CarType.SEDAN);
 
         Assert.assertTrue(sedanParking.hasFreeSlot(carOne.getType())); // slot available
         sedanParking.enter(carOne);
@@ -260,4 +279,183 @@ public class ParkingTest {
 
         Assert.assertFalse("no slot remaining", parking.hasFreeSlot(CarType.ELECTRIC_20KW));
     }
+
+    /**
+     * A car waiting for a slot gets the slot freed by another car.
+     */
+    @Test
+    public void testEnterWaitsForFreedSlot() throws ParkingException, InterruptedException {
+        Car carOne = new Car("50-ELECTRIC-KW", CarType.ELECTRIC_50KW);
+        Car carTwo = new Car("50-ELECTRIC-KW-2", CarType.ELECTRIC_50KW);
+        final ParkingSlot parkingSlot = parking.enter(carOne);
+
+        Thread leaving = new Thread(() -> {
+            try {
+                TimeUnit.MILLISECONDS.sleep(100);
+                parking.leave(carOne);
+            } catch (InterruptedException | ParkingException e) {
+                Assert.fail("exception occurred when carOne tried to leave the parking");
+            }
+        });
+        leaving.start();
+
+        Assert.assertSame("slot handed over", parkingSlot, parking.enter(carTwo, 5, TimeUnit.SECONDS));
+        Assert.assertEquals(carTwo, parkingSlot.getCar());
+        Assert.assertNotNull(carTwo.getParkedAt());
+        Assert.assertFalse("slot never went back to the free slots", parking.hasFreeSlot(CarType.ELECTRIC_50KW));
+        leaving.join();
+    }
+
+    @Test
+    public void testEnterTimeout() throws ParkingException, InterruptedException {
+        parking.enter(new Car("50-ELECTRIC-KW", CarType.ELECTRIC_50KW));
+        Car car = new Car("50-ELECTRIC-KW-2", CarType.ELECTRIC_50KW);
+
+        try {
+            parking.enter(car, 10, TimeUnit.MILLISECONDS);
+            Assert.fail("no slot should be found");
+        } catch (SlotNotFoundException e) {
+            Assert.assertThat(e.getMessage(), Matchers.containsString("No Slot freed in time for"));
+        }
+
+        // the car does not wait anymore, it can try again
+        Assert.assertFalse(parking.enterAsync(car).isDone());
+    }
+
+    /**
+     * Waiting cars are served in arrival order, cancelled ones are skipped.
+     */
+    @Test
+    public void testEnterAsyncFifo() throws ParkingException {
+        Car carOne = new Car("50-ELECTRIC-KW", CarType.ELECTRIC_50KW);
+        final ParkingSlot parkingSlot = parking.enterAsync(carOne).join();
+
+        final CompletableFuture<ParkingSlot> second = parking.enterAsync(new Car("SECOND", CarType.ELECTRIC_50KW));
+        final CompletableFuture<ParkingSlot> third = parking.enterAsync(new Car("THIRD", CarType.ELECTRIC_50KW));
+        final CompletableFuture<ParkingSlot> fourth = parking.enterAsync(new Car("FOURTH", CarType.ELECTRIC_50KW));
+        Assert.assertFalse(second.isDone());
+        Assert.assertTrue(second.cancel(false));
+
+        parking.leave(parkingSlot);
+        Assert.assertSame("first car still waiting gets the slot", parkingSlot, third.join());
+        Assert.assertFalse(fourth.isDone());
+
+        parking.leave(parkingSlot);
+        Assert.assertSame(parkingSlot, fourth.join());
+    }
+
+    @Test
+    public void testEnterAsyncCancelThenEnterAgain() throws ParkingException {
+        final ParkingSlot parkingSlot = parking.enter(new Car("50-ELECTRIC-KW", CarType.ELECTRIC_50KW));
+        final Car car = new Car("CANCELLED", CarType.ELECTRIC_50KW);
+        Assert.assertTrue(parking.enterAsync(car).cancel(true));
+        Assert.assertEquals("cancelling removes the car from the queue", 0,
+                parking.waitingCars(CarType.ELECTRIC_50KW));
+
+        final CompletableFuture<ParkingSlot> again = parking.enterAsync(car);
+        Assert.assertFalse(again.isDone());
+        Assert.assertEquals(1, parking.waitingCars(CarType.ELECTRIC_50KW));
+        parking.leave(parkingSlot);
+        Assert.assertSame(parkingSlot, again.join());
+    }
+
+    @Test
+    public void testEnterAsyncChainedStage() throws ParkingException {
+        final List<String> events = new ArrayList<>();
+        parking.addListener(event -> events.add(event.getType() + " " + event.getCar().getPlate()));
+        final ParkingSlot parkingSlot = parking.enter(new Car("FIRST", CarType.ELECTRIC_50KW));
+        final CompletableFuture<Car> second = parking.enterAsync(new Car("SECOND", CarType.ELECTRIC_50KW))
+                .thenApply(slot -> {
+                    try {
+                        return parking.leave(slot); // the stage runs once the slot is handed over
+                    } catch (ParkingException e) {
+                        throw new IllegalStateException(e);
+                    }
+                });
+
+        Assert.assertEquals("FIRST", parking.leave(parkingSlot).getPlate());
+        Assert.assertEquals("SECOND", second.join().getPlate());
+        Assert.assertEquals(Arrays.asList("ENTER FIRST", "LEAVE FIRST", "ENTER SECOND", "LEAVE SECOND"), events);
+        Assert.assertEquals(1, parking.remainingFreeSlots(CarType.ELECTRIC_50KW));
+    }
+
+    @Test
+    public void testEnterAsyncStageOutOfBatch() throws Exception {
+        final ParkingSlot parkingSlot = parking.enter(new Car("FIRST", CarType.ELECTRIC_50KW));
+        final CompletableFuture<ParkingSlot> sedan = parking.enterAsync(new Car("SECOND", CarType.ELECTRIC_50KW))
+                .thenApply(slot -> {
+                    try {
+                        return parking.enter(new Car("SEDAN", CarType.SEDAN)); // another pool
+                    } catch (ParkingException e) {
+                        throw new IllegalStateException(e);
+                    }
+                });
+
+        parking.batch(() -> {
+            try {
+                parking.leave(parkingSlot);
+            } catch (ParkingException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        Assert.assertEquals(CarType.SEDAN, sedan.get(5, TimeUnit.SECONDS).getSlotType());
+    }
+
+    @Test
+    public void testEnterAsyncRejected() throws ParkingException {
+        Parking sedanParking = new Parking(car -> BigDecimal.ZERO).withSlots(CarType.SEDAN, 1);
+        Car car = new Car("SEDAN", CarType.SEDAN);
+        sedanParking.enter(car);
+
+        final CompletableFuture<ParkingSlot> parked = sedanParking.enterAsync(car);
+        Assert.assertTrue(parked.isCompletedExceptionally());
+
+        final CompletableFuture<ParkingSlot> noSlot = sedanParking.enterAsync(new Car("E", CarType.ELECTRIC_20KW));
+        exceptionRule.expectCause(Matchers.instanceOf(SlotNotFoundException.class));
+        noSlot.join();
+    }
+
+    @Test
+    public void testCarTypesDoNotContend() throws InterruptedException, ParkingException {
+        final CountDownLatch entering = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        parking.addListener(event -> {
+            if (event.getCar().getType() == CarType.SEDAN) {
+                entering.countDown();
+                try {
+                    release.await(); // hold the lock of the sedan slots
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        final CompletableFuture<ParkingSlot> sedan = CompletableFuture.supplyAsync(() -> {
+            try {
+                return parking.enter(new Car("SEDAN", CarType.SEDAN));
+            } catch (ParkingException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        Assert.assertTrue(entering.await(5, TimeUnit.SECONDS));
+
+        try {
+            final Car electric = new Car("ELECTRIC", CarType.ELECTRIC_20KW);
+            Assert.assertEquals(CarType.ELECTRIC_20KW, parking.enter(electric).getSlotType());
+            parking.leave(electric);
+            Assert.assertEquals(3, parking.totalSlots(CarType.SEDAN));
+            Assert.assertFalse(sedan.isDone());
+        } finally {
+            release.countDown();
+        }
+        Assert.assertEquals(CarType.SEDAN, sedan.join().getSlotType());
+    }
+
+    @Test
+    public void testSamePlateOtherType() throws ParkingException {
+        parking.enter(new Car("PLATE", CarType.SEDAN));
+
+        exceptionRule.expect(ParkingException.class);
+        exceptionRule.expectMessage("Car is already parked in the parking");
+        parking.enter(new Car("PLATE", CarType.ELECTRIC_50KW));
+    }
 }
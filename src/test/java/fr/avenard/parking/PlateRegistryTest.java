@@ -0,0 +1,66 @@
+package fr.avenard.parking;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+/**
+ * Unit tests for {@link PlateRegistry}.
+ */
+public class PlateRegistryTest {
+
+    @Rule
+    public ExpectedException exceptionRule = ExpectedException.none();
+
+    @Test
+    public void testIntern() {
+        final PlateRegistry registry = new PlateRegistry(16);
+        final Plate plate = registry.intern("AB-123-CD");
+
+        Assert.assertSame(plate, registry.intern(new String("AB-123-CD")));
+        Assert.assertEquals("AB-123-CD", plate.getText());
+        Assert.assertNotEquals(plate.getId(), registry.intern("EF-456-GH").getId());
+        Assert.assertEquals(2, registry.size());
+    }
+
+    @Test
+    public void testCarIdentity() {
+        final PlateRegistry registry = new PlateRegistry(16);
+        final Car car = new Car(registry.intern("AB-123-CD"), CarType.SEDAN);
+
+        Assert.assertEquals(car, new Car(registry.intern("AB-123-CD"), CarType.SEDAN));
+        Assert.assertEquals(car.hashCode(), new Car(registry.intern("AB-123-CD"), CarType.SEDAN).hashCode());
+        Assert.assertNotEquals(car, new Car(registry.intern("EF-456-GH"), CarType.SEDAN));
+        Assert.assertEquals(car.getPlateId(), registry.intern("AB-123-CD").getId());
+    }
+
+    @Test
+    public void testEviction() throws InterruptedException {
+        final PlateRegistry registry = new PlateRegistry(4);
+        final Car parked = new Car(registry.intern("PARKED"), CarType.SEDAN);
+
+        final List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            ids.add(registry.intern("VISITOR-" + i).getId());
+            if (i % 1000 == 0) {
+                System.gc();
+                Thread.sleep(1);
+            }
+        }
+        Assert.assertTrue("the table is bounded", registry.size() < 10_000);
+        Assert.assertTrue("the ids of evicted plates are reused", ids.stream().distinct().count() < 10_000);
+        Assert.assertEquals("a plate referenced by a car is never evicted", registry.intern("PARKED").getId(),
+                parked.getPlateId());
+    }
+
+    @Test
+    public void testInvalidCapacity() {
+        exceptionRule.expect(IllegalArgumentException.class);
+        exceptionRule.expectMessage("The registry capacity must be positive");
+        new PlateRegistry(0);
+    }
+}
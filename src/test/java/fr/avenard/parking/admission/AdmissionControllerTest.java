@@ -0,0 +1,165 @@
+package fr.avenard.parking.admission;
+
+import java.math.BigDecimal;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import fr.avenard.parking.Car;
+import fr.avenard.parking.CarType;
+import fr.avenard.parking.Parking;
+import fr.avenard.parking.event.ParkingEventType;
+import fr.avenard.parking.exception.AdmissionRejectedException;
+import fr.avenard.parking.exception.ParkingException;
+import fr.avenard.parking.exception.SlotNotFoundException;
+
+/**
+ * Unit tests for {@link AdmissionController}.
+ */
+public class AdmissionControllerTest {
+
+    @Rule
+    public ExpectedException exceptionRule = ExpectedException.none();
+
+    private final AtomicLong nanoTime = new AtomicLong();
+    private Parking parking;
+
+    @Before
+    public void setUp() throws ParkingException {
+        parking = new Parking(car -> BigDecimal.ONE).withSlots(CarType.SEDAN, 10).withSlots(CarType.ELECTRIC_20KW, 1);
+    }
+
+    @Test
+    public void testFastRejectWhenFull() throws ParkingException {
+        final AdmissionController controller = new AdmissionController(parking, 1, 1, 16, nanoTime::get);
+        controller.enter("north", new Car("ADMIT-EV-1", CarType.ELECTRIC_20KW));
+        try {
+            controller.enter("south", new Car("ADMIT-EV-2", CarType.ELECTRIC_20KW));
+            Assert.fail("no free slot");
+        } catch (SlotNotFoundException e) {
+            Assert.assertEquals(1, controller.getNoSlotRejections());
+        }
+        Assert.assertEquals("the full lot did not take a token of the gate", 0, controller.getRateRejections());
+    }
+
+    @Test
+    public void testRateLimitPerGate() throws ParkingException {
+        final AdmissionController controller = new AdmissionController(parking, 1, 2, 16, nanoTime::get);
+        controller.enter("north", new Car("ADMIT-1", CarType.SEDAN));
+        controller.enter("north", new Car("ADMIT-2", CarType.SEDAN));
+        controller.enter("south", new Car("ADMIT-3", CarType.SEDAN));
+        try {
+            controller.enter("north", new Car("ADMIT-4", CarType.SEDAN));
+            Assert.fail("burst of the gate exceeded");
+        } catch (AdmissionRejectedException e) {
+            Assert.assertEquals(1, controller.getRateRejections());
+        }
+
+        nanoTime.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        controller.enter("north", new Car("ADMIT-4", CarType.SEDAN));
+        Assert.assertEquals(6, parking.remainingFreeSlots(CarType.SEDAN));
+    }
+
+    @Test
+    public void testConcurrencyLimit() throws Exception {
+        final CountDownLatch entering = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        parking.addListener(event -> {
+            if (event.getType() == ParkingEventType.ENTER && event.getCar().getPlate().equals("ADMIT-SLOW")) {
+                entering.countDown();
+                try {
+                    release.await(); // the entry is stuck in the parking
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        final AdmissionController controller = new AdmissionController(parking, 1000, 1000, 1);
+        final CompletableFuture<Void> slow = CompletableFuture.runAsync(() -> {
+            try {
+                controller.enter("north", new Car("ADMIT-SLOW", CarType.SEDAN));
+            } catch (ParkingException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        entering.await();
+        Assert.assertEquals(1, controller.getEntriesInFlight());
+        try {
+            controller.enter("south", new Car("ADMIT-FAST", CarType.SEDAN));
+            Assert.fail("limit reached");
+        } catch (AdmissionRejectedException e) {
+            Assert.assertEquals(1, controller.getOverloadRejections());
+        }
+        release.countDown();
+        slow.get(10, TimeUnit.SECONDS);
+        Assert.assertEquals(0, controller.getEntriesInFlight());
+        controller.enter("south", new Car("ADMIT-FAST", CarType.SEDAN));
+    }
+
+    @Test
+    public void testLimitAdaptsToLatency() {
+        final ConcurrencyLimit limit = new ConcurrencyLimit(16, 64, nanoTime::get);
+        for (int i = 0; i < 100; i++) {
+            for (int j = limit.getLimit(); j > 0; j--) {
+                Assert.assertTrue(limit.tryAcquire());
+            }
+            Assert.assertFalse(limit.tryAcquire());
+            for (int j = limit.getInFlight(); j > 0; j--) {
+                limit.release(1_000); // busy and fast: grows
+            }
+        }
+        Assert.assertEquals(64, limit.getLimit());
+
+        for (int i = 0; i < 100; i++) {
+            Assert.assertTrue(limit.tryAcquire());
+            limit.release(100_000); // queueing: shrinks
+        }
+        Assert.assertTrue("limit " + limit.getLimit(), limit.getLimit() < 16);
+    }
+
+    @Test
+    public void testLimitStaysReducedDuringStorm() {
+        final ConcurrencyLimit limit = new ConcurrencyLimit(64, 64, nanoTime::get);
+        for (int i = 0; i < 1_000; i++) {
+            Assert.assertTrue(limit.tryAcquire());
+            nanoTime.addAndGet(TimeUnit.MILLISECONDS.toNanos(1));
+            limit.release(10_000); // calm
+        }
+        Assert.assertEquals(64, limit.getLimit());
+
+        for (int i = 0; i < 20_000; i++) { // 20 seconds of entries 10 times slower
+            if (limit.tryAcquire()) {
+                nanoTime.addAndGet(TimeUnit.MILLISECONDS.toNanos(1));
+                limit.release(100_000);
+            }
+        }
+        Assert.assertTrue("the storm did not become the baseline, limit " + limit.getLimit(),
+                limit.getLimit() < 16);
+
+        for (int i = 0; i < 70_000; i++) { // slower for good, the gates busy
+            int acquired = 0;
+            while (limit.tryAcquire()) {
+                acquired++;
+            }
+            nanoTime.addAndGet(TimeUnit.MILLISECONDS.toNanos(1));
+            for (int j = 0; j < acquired; j++) {
+                limit.release(100_000);
+            }
+        }
+        Assert.assertEquals("the limit follows a parking that got slower for good", 64, limit.getLimit());
+    }
+
+    @Test
+    public void testInvalidRate() {
+        exceptionRule.expect(IllegalArgumentException.class);
+        exceptionRule.expectMessage("The rate, the burst and the concurrency must be positive");
+        new AdmissionController(parking, 0, 1);
+    }
+}
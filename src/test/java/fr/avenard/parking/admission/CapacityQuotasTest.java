@@ -0,0 +1,194 @@
+package fr.avenard.parking.admission;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import fr.avenard.parking.Car;
+import fr.avenard.parking.CarType;
+import fr.avenard.parking.Parking;
+import fr.avenard.parking.ParkingSlot;
+import fr.avenard.parking.exception.ParkingException;
+import fr.avenard.parking.exception.QuotaExceededException;
+
+/**
+ * Unit tests for {@link CapacityQuotas}.
+ */
+public class CapacityQuotasTest {
+
+    @Rule
+    public ExpectedException exceptionRule = ExpectedException.none();
+
+    private Parking parking;
+    private CapacityQuotas quotas;
+
+    @Before
+    public void setUp() throws ParkingException {
+        parking = new Parking(car -> BigDecimal.ONE).withSlots(CarType.SEDAN, 10).withSlots(CarType.ELECTRIC_20KW, 2);
+        quotas = new CapacityQuotas(parking)
+                .withReserved(CarType.SEDAN, CustomerClass.PERMIT_HOLDER, 4)
+                .withReserved(CarType.SEDAN, CustomerClass.PRIORITY, 1);
+    }
+
+    @Test
+    public void testReservedSlotsGuaranteed() throws ParkingException {
+        for (int i = 0; i < 5; i++) {
+            quotas.enter(new Car("WALK-IN-" + i, CarType.SEDAN), CustomerClass.WALK_IN);
+        }
+        Assert.assertEquals(0, quotas.freeSlots(CarType.SEDAN, CustomerClass.WALK_IN));
+        Assert.assertEquals(4, quotas.freeSlots(CarType.SEDAN, CustomerClass.PERMIT_HOLDER));
+        Assert.assertEquals(1, quotas.freeSlots(CarType.SEDAN, CustomerClass.PRIORITY));
+        try {
+            quotas.enter(new Car("WALK-IN-5", CarType.SEDAN), CustomerClass.WALK_IN);
+            Assert.fail("the slots left are reserved");
+        } catch (QuotaExceededException e) {
+            Assert.assertEquals(1, quotas.getQuotaRejections());
+        }
+        Assert.assertEquals(5, parking.remainingFreeSlots(CarType.SEDAN));
+
+        for (int i = 0; i < 4; i++) {
+            quotas.enter(new Car("PERMIT-" + i, CarType.SEDAN), CustomerClass.PERMIT_HOLDER);
+        }
+        quotas.enter(new Car("PRIORITY-0", CarType.SEDAN), CustomerClass.PRIORITY);
+        Assert.assertEquals(0, parking.remainingFreeSlots(CarType.SEDAN));
+        Assert.assertEquals(5, quotas.occupiedSlots(CarType.SEDAN, CustomerClass.WALK_IN));
+        Assert.assertEquals(4, quotas.occupiedSlots(CarType.SEDAN, CustomerClass.PERMIT_HOLDER));
+    }
+
+    @Test
+    public void testBorrowSurplus() throws ParkingException {
+        for (int i = 0; i < 9; i++) {
+            quotas.enter(new Car("PERMIT-" + i, CarType.SEDAN), CustomerClass.PERMIT_HOLDER);
+        }
+        Assert.assertEquals("4 reserved and 5 borrowed", 9,
+                quotas.occupiedSlots(CarType.SEDAN, CustomerClass.PERMIT_HOLDER));
+        Assert.assertEquals(0, quotas.freeSlots(CarType.SEDAN, CustomerClass.PERMIT_HOLDER));
+        Assert.assertEquals(0, quotas.freeSlots(CarType.SEDAN, CustomerClass.WALK_IN));
+        Assert.assertEquals("the reserved slot of the priority lane", 1,
+                quotas.freeSlots(CarType.SEDAN, CustomerClass.PRIORITY));
+
+        parking.leave(new Car("PERMIT-0", CarType.SEDAN));
+        Assert.assertEquals("the borrowed slot is given back first", 1,
+                quotas.freeSlots(CarType.SEDAN, CustomerClass.WALK_IN));
+        quotas.enter(new Car("WALK-IN-0", CarType.SEDAN), CustomerClass.WALK_IN);
+        quotas.enter(new Car("PRIORITY-0", CarType.SEDAN), CustomerClass.PRIORITY);
+        Assert.assertEquals(0, parking.remainingFreeSlots(CarType.SEDAN));
+    }
+
+    @Test
+    public void testLeaveReleasesQuota() throws ParkingException {
+        final ParkingSlot slot = quotas.enter(new Car("EV-0", CarType.ELECTRIC_20KW), CustomerClass.WALK_IN);
+        quotas.enter(new Car("EV-1", CarType.ELECTRIC_20KW), CustomerClass.PRIORITY);
+        Assert.assertEquals(0, quotas.freeSlots(CarType.ELECTRIC_20KW, CustomerClass.PERMIT_HOLDER));
+
+        parking.leave(slot); // released by an operator
+        Assert.assertEquals(1, quotas.freeSlots(CarType.ELECTRIC_20KW, CustomerClass.PERMIT_HOLDER));
+        Assert.assertEquals(0, quotas.occupiedSlots(CarType.ELECTRIC_20KW, CustomerClass.WALK_IN));
+    }
+
+    @Test
+    public void testDirectEntryRejected() throws Exception {
+        quotas.enter(new Car("WALK-IN-0", CarType.SEDAN), CustomerClass.WALK_IN);
+        try {
+            parking.enter(new Car("DIRECT", CarType.SEDAN));
+            Assert.fail("the sedan slots have reservations");
+        } catch (QuotaExceededException e) {
+            Assert.assertEquals("Cars must enter through the capacity quotas: " + new Car("DIRECT", CarType.SEDAN),
+                    e.getMessage());
+        }
+        try {
+            parking.enterAsync(new Car("WAITING", CarType.SEDAN)).join();
+            Assert.fail("the waiting entries are checked too");
+        } catch (CompletionException e) {
+            Assert.assertTrue(e.getCause() instanceof QuotaExceededException);
+        }
+        Assert.assertEquals(2, quotas.getQuotaRejections());
+        Assert.assertEquals(9, parking.remainingFreeSlots(CarType.SEDAN));
+        Assert.assertEquals(4, quotas.freeSlots(CarType.SEDAN, CustomerClass.WALK_IN));
+
+        parking.enter(new Car("DIRECT", CarType.ELECTRIC_20KW)); // no reservation of electric slots
+        Assert.assertEquals(1, parking.remainingFreeSlots(CarType.ELECTRIC_20KW));
+    }
+
+    @Test
+    public void testFailedEntryReleasesQuota() throws ParkingException {
+        parking.enter(new Car("DIRECT", CarType.ELECTRIC_20KW));
+        quotas.enter(new Car("EV-0", CarType.ELECTRIC_20KW), CustomerClass.WALK_IN);
+        Assert.assertEquals("the quotas do not see the car parked directly", 1,
+                quotas.freeSlots(CarType.ELECTRIC_20KW, CustomerClass.WALK_IN));
+        try {
+            quotas.enter(new Car("EV-1", CarType.ELECTRIC_20KW), CustomerClass.WALK_IN);
+            Assert.fail("the car parked directly took the slot");
+        } catch (QuotaExceededException e) {
+            Assert.fail("the quota was not exceeded");
+        } catch (ParkingException e) {
+            Assert.assertEquals(1, quotas.occupiedSlots(CarType.ELECTRIC_20KW, CustomerClass.WALK_IN));
+        }
+
+        exceptionRule.expect(ParkingException.class);
+        exceptionRule.expectMessage("already parked");
+        quotas.enter(new Car("EV-0", CarType.ELECTRIC_20KW), CustomerClass.PERMIT_HOLDER);
+    }
+
+    @Test
+    public void testReservationsExceedSlots() throws ParkingException {
+        exceptionRule.expect(ParkingException.class);
+        exceptionRule.expectMessage("Cannot reserve 11 slots");
+        quotas.withReserved(CarType.SEDAN, CustomerClass.WALK_IN, 6);
+    }
+
+    @Test
+    public void testNoOverAdmissionUnderConcurrentEntries() throws Exception {
+        final Parking venue = new Parking(car -> BigDecimal.ONE).withSlots(CarType.SEDAN, 1_000);
+        final CapacityQuotas venueQuotas = new CapacityQuotas(venue)
+                .withReserved(CarType.SEDAN, CustomerClass.PERMIT_HOLDER, 300)
+                .withReserved(CarType.SEDAN, CustomerClass.PRIORITY, 100);
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            final List<Callable<Integer>> gates = new ArrayList<>();
+            for (int gate = 0; gate < 8; gate++) {
+                final int gateId = gate;
+                gates.add(() -> {
+                    int admitted = 0;
+                    for (int i = 0; i < 500; i++) {
+                        try {
+                            venueQuotas.enter(new Car("WALK-IN-" + gateId + "-" + i, CarType.SEDAN),
+                                    CustomerClass.WALK_IN);
+                            admitted++;
+                        } catch (QuotaExceededException e) {
+                            // the surplus is exhausted
+                        }
+                    }
+                    return admitted;
+                });
+            }
+            int admitted = 0;
+            for (Future<Integer> result : executor.invokeAll(gates)) {
+                admitted += result.get();
+            }
+            Assert.assertEquals("exactly the surplus", 600, admitted);
+            Assert.assertEquals(400, venue.remainingFreeSlots(CarType.SEDAN));
+        } finally {
+            executor.shutdownNow();
+        }
+
+        for (int i = 0; i < 300; i++) {
+            venueQuotas.enter(new Car("PERMIT-" + i, CarType.SEDAN), CustomerClass.PERMIT_HOLDER);
+        }
+        for (int i = 0; i < 100; i++) {
+            venueQuotas.enter(new Car("PRIORITY-" + i, CarType.SEDAN), CustomerClass.PRIORITY);
+        }
+        Assert.assertEquals(0, venue.remainingFreeSlots(CarType.SEDAN));
+    }
+}
@@ -0,0 +1,161 @@
+package fr.avenard.parking.allocation;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import fr.avenard.parking.Car;
+import fr.avenard.parking.CarType;
+import fr.avenard.parking.Parking;
+import fr.avenard.parking.ParkingSlot;
+import fr.avenard.parking.exception.ParkingException;
+import fr.avenard.parking.policy.ElectricFriendlyPolicy;
+import fr.avenard.parking.policy.FakeCar;
+import fr.avenard.parking.policy.GranularTimePolicy;
+import fr.avenard.parking.policy.PerHourPolicy;
+import fr.avenard.parking.policy.PricingPolicy;
+import fr.avenard.parking.policy.TimeOfDayPolicy;
+
+/**
+ * Allocation budgets of the hot paths of the gates: each test fails when an operation allocates more bytes than its
+ * budget, over all the operations of a round. The results are written to {@code target/allocation-result.json}, next
+ * to the JMH results.
+ * <p>
+ * The budgets are the highest measures of several runs of the whole suite plus about 10%, as the JIT does not always
+ * remove the same allocations. Raise a budget only for an allocation the feature needs.
+ */
+public class AllocationBudgetTest {
+    private static final int SLOTS = 1_000;
+
+    private static AllocationMeter meter;
+
+    private Parking parking;
+    private Car[] cars;
+    private ParkingSlot[] slots;
+
+    @BeforeClass
+    public static void setUpMeter() {
+        meter = new AllocationMeter();
+        Assume.assumeTrue("Allocation counters not supported by the JVM", meter.isSupported());
+    }
+
+    @AfterClass
+    public static void writeResults() throws IOException {
+        meter.write(Paths.get("target", "allocation-result.json"));
+    }
+
+    @Before
+    public void setUp() throws ParkingException {
+        parking = new Parking(new PerHourPolicy(BigDecimal.ONE)).withSlots(CarType.SEDAN, SLOTS);
+        cars = new Car[SLOTS];
+        slots = new ParkingSlot[SLOTS];
+        for (int i = 0; i < SLOTS; i++) {
+            cars[i] = new Car("ALLOC-" + i, CarType.SEDAN);
+        }
+    }
+
+    @Test
+    public void testEnter() throws Exception {
+        assertBudget("Parking.enter", 272, i -> slots[i] = parking.enter(cars[i]), round -> leaveAll());
+    }
+
+    @Test
+    public void testEnterWithListener() throws Exception {
+        parking.addListener(event -> {
+        });
+        assertBudget("Parking.enter with a listener", 336, i -> slots[i] = parking.enter(cars[i]),
+                round -> leaveAll());
+    }
+
+    @Test
+    public void testLeaveCar() throws Exception {
+        enterAll();
+        assertBudget("Parking.leave(Car)", 184, i -> parking.leave(cars[i]), round -> enterAll());
+    }
+
+    @Test
+    public void testLeaveSlot() throws Exception {
+        enterAll();
+        assertBudget("Parking.leave(ParkingSlot)", 184, i -> parking.leave(slots[i]), round -> enterAll());
+    }
+
+    @Test
+    public void testBill() throws Exception {
+        enterAll();
+        leaveAll();
+        assertBudget("Parking.bill", 32, i -> parking.bill(cars[i]), round -> {
+        });
+    }
+
+    @Test
+    public void testFreeSlots() throws Exception {
+        final long[] free = new long[1];
+        assertBudget("Parking.remainingFreeSlots", 0, i -> free[0] += parking.remainingFreeSlots(CarType.SEDAN)
+                + parking.totalSlots(CarType.SEDAN) + (parking.hasFreeSlot(CarType.ELECTRIC_20KW) ? 1 : 0),
+                round -> {
+                });
+        Assert.assertTrue(free[0] > 0);
+    }
+
+    @Test
+    public void testPerHourPolicy() throws Exception {
+        assertPolicyBudget("PerHourPolicy.computeFare", 184, new PerHourPolicy(BigDecimal.TEN, BigDecimal.ONE));
+    }
+
+    @Test
+    public void testGranularTimePolicy() throws Exception {
+        assertPolicyBudget("GranularTimePolicy.computeFare", 48,
+                GranularTimePolicy.perQuarterHour(BigDecimal.ONE).withGracePeriod(Duration.ofMinutes(10))
+                        .withDailyCap(BigDecimal.valueOf(20)));
+    }
+
+    @Test
+    public void testTimeOfDayPolicy() throws Exception {
+        assertPolicyBudget("TimeOfDayPolicy.computeFare", 48, new TimeOfDayPolicy(new BigDecimal("2.00"))
+                .withRate(LocalTime.of(20, 0), new BigDecimal("0.50"))
+                .withRate(LocalTime.of(8, 0), new BigDecimal("2.00")));
+    }
+
+    @Test
+    public void testElectricFriendlyPolicy() throws Exception {
+        assertPolicyBudget("ElectricFriendlyPolicy.computeFare", 0, new ElectricFriendlyPolicy(BigDecimal.TEN));
+    }
+
+    private void assertPolicyBudget(final String name, final long budget, final PricingPolicy policy)
+            throws Exception {
+        final FakeCar car = new FakeCar("ALLOC", CarType.SEDAN);
+        car.setParkedAt(LocalDateTime.of(2020, 1, 1, 10, 0));
+        car.setLeftAt(LocalDateTime.of(2020, 1, 2, 13, 17, 42));
+        assertBudget(name, budget, i -> policy.computeFare(car), round -> {
+        });
+    }
+
+    private static void assertBudget(final String name, final long budget, final AllocationMeter.Operation operation,
+            final AllocationMeter.Operation afterRound) throws Exception {
+        final long allocated = meter.measure(name, budget, SLOTS, operation, afterRound);
+        Assert.assertTrue(name + " allocates " + allocated + " bytes in " + SLOTS + " operations, over its budget of "
+                + budget + " bytes per operation", allocated <= budget * SLOTS);
+    }
+
+    private void enterAll() throws ParkingException {
+        for (int i = 0; i < SLOTS; i++) {
+            slots[i] = parking.enter(cars[i]);
+        }
+    }
+
+    private void leaveAll() throws ParkingException {
+        for (int i = 0; i < SLOTS; i++) {
+            parking.leave(cars[i]);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package fr.avenard.parking.allocation;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Measure the bytes allocated by an operation with the allocation counter of the current thread
+ * ({@link com.sun.management.ThreadMXBean#getThreadAllocatedBytes(long)}), and keep the results to publish them.
+ * <p>
+ * An operation is run in rounds: the first rounds warm the JIT up, then the lowest allocation of the measured rounds
+ * is kept, so that a class loaded or a method compiled during a round does not count.
+ */
+class AllocationMeter {
+    private static final int WARMUP_ROUNDS = 20;
+    private static final int MEASURED_ROUNDS = 5;
+
+    private final com.sun.management.ThreadMXBean threads;
+    private final long overhead; // bytes allocated by reading the counter
+    private final Map<String, long[]> results = new LinkedHashMap<>(); // by operation: bytes per operation, budget
+
+    /**
+     * An operation run in a round.
+     */
+    @FunctionalInterface
+    interface Operation {
+        /**
+         * @param i
+         *         index of the operation in its round
+         *
+         * @throws Exception
+         *         fails the measure
+         */
+        void run(int i) throws Exception;
+    }
+
+    AllocationMeter() {
+        this.threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long overhead = Long.MAX_VALUE;
+        for (int round = 0; round < WARMUP_ROUNDS; round++) {
+            final long start = this.allocatedBytes();
+            overhead = Math.min(overhead, this.allocatedBytes() - start);
+        }
+        this.overhead = overhead;
+    }
+
+    /**
+     * @return true if the JVM counts the bytes allocated by each thread
+     */
+    boolean isSupported() {
+        return this.threads.isThreadAllocatedMemorySupported() && this.threads.isThreadAllocatedMemoryEnabled();
+    }
+
+    /**
+     * Measure the bytes allocated by an operation.
+     *
+     * @param name
+     *         name of the operation in the results
+     * @param budget
+     *         the bytes per operation allowed, kept in the results
+     * @param operations
+     *         number of operations of a round
+     * @param operation
+     *         the operation
+     * @param afterRound
+     *         run after each round, not measured (to reset the state of the operation)
+     *
+     * @return the bytes allocated by the operations of a round, the lowest of the measured rounds
+     *
+     * @throws Exception
+     *         if an operation failed
+     */
+    long measure(final String name, final long budget, final int operations, final Operation operation,
+            final Operation afterRound) throws Exception {
+        long lowest = Long.MAX_VALUE;
+        for (int round = 0; round < WARMUP_ROUNDS + MEASURED_ROUNDS; round++) {
+            final long start = this.allocatedBytes();
+            for (int i = 0; i < operations; i++) {
+                operation.run(i);
+            }
+            final long allocated = this.allocatedBytes() - start - this.overhead;
+            afterRound.run(round);
+            if (round >= WARMUP_ROUNDS) {
+                lowest = Math.min(lowest, Math.max(0, allocated));
+            }
+        }
+        // rounded up: a few bytes over the budget in a round are not hidden by the division
+        this.results.put(name, new long[] {(lowest + operations - 1) / operations, budget});
+        return lowest;
+    }
+
+    /**
+     * Write the results as JSON, next to the JMH results.
+     *
+     * @param path
+     *         the result file
+     *
+     * @throws IOException
+     *         if the file cannot be written
+     */
+    void write(final Path path) throws IOException {
+        final StringBuilder json = new StringBuilder("[\n");
+        for (Map.Entry<String, long[]> result : this.results.entrySet()) {
+            if (json.length() > 2) {
+                json.append(",\n");
+            }
+            json.append("    {\"operation\": \"").append(result.getKey())
+                    .append("\", \"bytesPerOperation\": ").append(result.getValue()[0])
+                    .append(", \"budget\": ").append(result.getValue()[1]).append('}');
+        }
+        json.append("\n]\n");
+        Files.createDirectories(path.getParent());
+        Files.write(path, json.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private long allocatedBytes() {
+        return this.threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
@@ -0,0 +1,71 @@
+package fr.avenard.parking.benchmark;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fr.avenard.parking.CarType;
+import fr.avenard.parking.exception.PolicyException;
+import fr.avenard.parking.policy.FakeCar;
+import fr.avenard.parking.policy.GranularTimePolicy;
+import fr.avenard.parking.policy.PerHourPolicy;
+import fr.avenard.parking.policy.PricingPolicy;
+
+/**
+ * Compare the cost of billing a car with the time based pricing policies.
+ * <p>
+ * Run with {@code mvn test-compile exec:exec -Pbenchmark -Dbenchmark.includes=PricingPolicyBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PricingPolicyBenchmark {
+
+    private PricingPolicy perHourPolicy;
+    private PricingPolicy perMinutePolicy;
+    private PricingPolicy cappedQuarterPolicy;
+    private FakeCar car;
+
+    @Setup
+    public void setUp() {
+        perHourPolicy = new PerHourPolicy(BigDecimal.TEN, BigDecimal.ONE);
+        perMinutePolicy = GranularTimePolicy.perMinute(new BigDecimal("0.05")).withFixedFare(BigDecimal.TEN);
+        cappedQuarterPolicy = GranularTimePolicy.perQuarterHour(BigDecimal.ONE)
+                .withGracePeriod(Duration.ofMinutes(10))
+                .withDailyCap(BigDecimal.valueOf(20));
+
+        car = new FakeCar("BENCHMARK", CarType.SEDAN);
+        car.setParkedAt(LocalDateTime.of(2020, 1, 1, 10, 0));
+        car.setLeftAt(LocalDateTime.of(2020, 1, 2, 13, 17, 42));
+    }
+
+    @Benchmark
+    public BigDecimal perHour() throws PolicyException {
+        return perHourPolicy.computeFare(car);
+    }
+
+    @Benchmark
+    public BigDecimal perMinute() throws PolicyException {
+        return perMinutePolicy.computeFare(car);
+    }
+
+    @Benchmark
+    public BigDecimal cappedQuarterHour() throws PolicyException {
+        return cappedQuarterPolicy.computeFare(car);
+    }
+}
@@ -0,0 +1,145 @@
+package fr.avenard.parking.energy;
+
+import java.math.BigDecimal;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import fr.avenard.parking.Car;
+import fr.avenard.parking.CarType;
+import fr.avenard.parking.Parking;
+import fr.avenard.parking.ParkingSlot;
+import fr.avenard.parking.exception.ParkingException;
+import fr.avenard.parking.policy.ChargingPolicy;
+
+/**
+ * Unit tests for {@link EnergyMetering} and {@link fr.avenard.parking.policy.ChargingPolicy}.
+ */
+public class EnergyMeteringTest {
+
+    @Rule
+    public ExpectedException exceptionRule = ExpectedException.none();
+
+    FakeEnergyMeter meter;
+    EnergyMetering metering;
+    Parking parking;
+
+    @Before
+    public void setUp() throws Exception {
+        meter = new FakeEnergyMeter(6);
+        // sedan slots without meter, then a circuit per electric slot type
+        metering = new EnergyMetering(meter, new int[] {-1, -1, 0, 0, 1, 1});
+        parking = new Parking(new ChargingPolicy(car -> BigDecimal.ONE, metering, new BigDecimal("0.30")))
+                .withSlots(CarType.SEDAN, 2)
+                .withSlots(CarType.ELECTRIC_20KW, 2)
+                .withSlots(CarType.ELECTRIC_50KW, 2)
+                .addListener(metering);
+    }
+
+    @Test
+    public void testChargeIsBilled() throws ParkingException {
+        final Car car = new Car("EV", CarType.ELECTRIC_20KW);
+        final ParkingSlot slot = parking.enter(car);
+        metering.sample(); // start reading
+
+        meter.deliver(slot.getIndex(), 12_500);
+        metering.sample();
+        Assert.assertEquals(12_500, metering.getWattHours(slot.getIndex()));
+        meter.deliver(slot.getIndex(), 2_500);
+        metering.sample();
+
+        parking.leave(car);
+        final ChargeSession charge = metering.chargeOf(car);
+        Assert.assertEquals(15_000, charge.getWattHours());
+        Assert.assertEquals(0, charge.getCircuit());
+        Assert.assertEquals(3, charge.getSamples());
+        Assert.assertEquals(0, metering.getWattHours(slot.getIndex()));
+
+        Assert.assertEquals("1 + 15 kWh at 0.30", new BigDecimal("5.50"), parking.bill(car));
+        Assert.assertNull("forgotten once billed", metering.chargeOf(car));
+    }
+
+    @Test
+    public void testNoMeter() throws ParkingException {
+        final Car car = new Car("SEDAN", CarType.SEDAN);
+        parking.enter(car);
+        parking.leave(car);
+        Assert.assertNull(metering.chargeOf(car));
+        Assert.assertEquals(BigDecimal.ONE, parking.bill(car));
+    }
+
+    @Test
+    public void testCircuitTotals() throws ParkingException {
+        final ParkingSlot firstSlot = parking.enter(new Car("EV-1", CarType.ELECTRIC_50KW));
+        final int first = firstSlot.getIndex();
+        final int second = parking.enter(new Car("EV-2", CarType.ELECTRIC_50KW)).getIndex();
+        parking.enter(new Car("EV-3", CarType.ELECTRIC_20KW));
+        final long start = System.nanoTime();
+        metering.sample(start);
+
+        // one hour later: 50 kWh delivered to the first car, 20 kWh to the second
+        meter.deliver(first, 50_000);
+        meter.deliver(second, 20_000);
+        metering.sample(start + TimeUnit.HOURS.toNanos(1));
+
+        Assert.assertEquals(2, metering.getNumberOfCircuits());
+        Assert.assertEquals(70_000, metering.getCircuitWattHours(1));
+        Assert.assertEquals(0, metering.getCircuitWattHours(0));
+        Assert.assertEquals(50_000, metering.getPowerWatts(first), 10);
+        Assert.assertEquals(70_000, metering.getCircuitPowerWatts(1), 10);
+        Assert.assertEquals(0, metering.getCircuitPowerWatts(0));
+
+        parking.leave(firstSlot);
+        Assert.assertEquals("the power of the car that left is not delivered anymore", 20_000,
+                metering.getCircuitPowerWatts(1), 10);
+        Assert.assertEquals(70_000, metering.getCircuitWattHours(1));
+    }
+
+    @Test
+    public void testGatesDoNotReadMeters() throws Exception {
+        final CountDownLatch reading = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final EnergyMetering slowMetering = new EnergyMetering(slot -> {
+            reading.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return 0;
+        }, new int[] {0, 0});
+        final Parking slowParking = new Parking(car -> BigDecimal.ONE).withSlots(CarType.ELECTRIC_20KW, 2)
+                .addListener(slowMetering);
+        slowParking.enter(new Car("EV-1", CarType.ELECTRIC_20KW));
+
+        final CompletableFuture<Void> sampling = CompletableFuture.runAsync(slowMetering::sample);
+        try {
+            Assert.assertTrue(reading.await(5, TimeUnit.SECONDS));
+            CompletableFuture.runAsync(() -> {
+                try {
+                    final Car car = new Car("EV-2", CarType.ELECTRIC_20KW);
+                    slowParking.enter(car);
+                    slowParking.leave(car);
+                } catch (ParkingException e) {
+                    throw new IllegalStateException(e);
+                }
+            }).get(5, TimeUnit.SECONDS); // not held by the meter being read
+        } finally {
+            release.countDown();
+        }
+        sampling.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testInvalidWindow() {
+        exceptionRule.expect(IllegalArgumentException.class);
+        exceptionRule.expectMessage("The power is computed from 2 samples at least");
+        new EnergyMetering(meter, new int[] {0}, 1);
+    }
+}
@@ -0,0 +1,31 @@
+package fr.avenard.parking.energy;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Local fake of the meters feed: the tests set the energy delivered to each slot.
+ */
+public class FakeEnergyMeter implements EnergyMeter {
+    private final AtomicLongArray registers;
+
+    public FakeEnergyMeter(final int slots) {
+        this.registers = new AtomicLongArray(slots);
+    }
+
+    /**
+     * Deliver energy to a slot.
+     *
+     * @param slotIndex
+     *         index of the slot
+     * @param wattHours
+     *         energy delivered
+     */
+    public void deliver(final int slotIndex, final long wattHours) {
+        this.registers.addAndGet(slotIndex, wattHours);
+    }
+
+    @Override
+    public long readWattHours(final int slotIndex) {
+        return this.registers.get(slotIndex);
+    }
+}
@@ -0,0 +1,153 @@
+package fr.avenard.parking.event;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Flow;
+
+import org.hamcrest.Matchers;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import fr.avenard.parking.Car;
+import fr.avenard.parking.CarType;
+import fr.avenard.parking.Parking;
+import fr.avenard.parking.ParkingSlot;
+import fr.avenard.parking.exception.ParkingException;
+
+/**
+ * Unit tests for {@link ParkingEventPublisher}
+ */
+public class ParkingEventPublisherTest {
+
+    Parking parking;
+
+    @Before
+    public void setUp() throws Exception {
+        parking = new Parking(car -> BigDecimal.ONE).withSlots(CarType.SEDAN, 2);
+    }
+
+    /**
+     * A subscriber gets the enter, leave and bill events in order.
+     */
+    @Test
+    public void testSessionEvents() throws ParkingException {
+        final ParkingEventPublisher publisher = new ParkingEventPublisher(Runnable::run, 16);
+        final RecordingSubscriber subscriber = new RecordingSubscriber(Long.MAX_VALUE);
+        parking.addListener(publisher);
+        publisher.subscribe(subscriber);
+
+        Car car = new Car("SEDAN", CarType.SEDAN);
+        final ParkingSlot parkingSlot = parking.enter(car);
+        parking.leave(car);
+        parking.bill(car);
+
+        Assert.assertEquals(3, subscriber.events.size());
+        Assert.assertEquals(ParkingEventType.ENTER, subscriber.events.get(0).getType());
+        Assert.assertSame(parkingSlot, subscriber.events.get(0).getSlot());
+        Assert.assertEquals(car.getParkedAt(), subscriber.events.get(0).getTime());
+        Assert.assertEquals(ParkingEventType.LEAVE, subscriber.events.get(1).getType());
+        Assert.assertEquals(car.getLeftAt(), subscriber.events.get(1).getTime());
+        Assert.assertEquals(ParkingEventType.BILL, subscriber.events.get(2).getType());
+        Assert.assertEquals(BigDecimal.ONE, subscriber.events.get(2).getFare());
+        Assert.assertTrue("events are numbered in order",
+                subscriber.events.get(0).getSequence() < subscriber.events.get(1).getSequence());
+
+        publisher.close();
+        Assert.assertTrue(subscriber.completed);
+        Assert.assertEquals(0, publisher.getNumberOfSubscribers());
+    }
+
+    /**
+     * Events are delivered only when requested, the gate never waits.
+     */
+    @Test
+    public void testBackpressure() throws ParkingException {
+        final ParkingEventPublisher publisher = new ParkingEventPublisher(Runnable::run, 4);
+        final RecordingSubscriber subscriber = new RecordingSubscriber(1);
+        parking.addListener(publisher);
+        publisher.subscribe(subscriber);
+
+        parking.enter(new Car("ONE", CarType.SEDAN));
+        parking.enter(new Car("TWO", CarType.SEDAN));
+        Assert.assertEquals("only one event requested", 1, subscriber.events.size());
+
+        subscriber.subscription.request(5);
+        Assert.assertEquals("the buffered event is delivered", 2, subscriber.events.size());
+        Assert.assertNull(subscriber.error);
+    }
+
+    /**
+     * A subscriber that does not request events overflows its buffer and is dropped.
+     */
+    @Test
+    public void testSlowSubscriberOverflow() throws ParkingException {
+        final ParkingEventPublisher publisher = new ParkingEventPublisher(Runnable::run, 2);
+        final RecordingSubscriber slow = new RecordingSubscriber(0);
+        final RecordingSubscriber fast = new RecordingSubscriber(Long.MAX_VALUE);
+        parking.addListener(publisher);
+        publisher.subscribe(slow);
+        publisher.subscribe(fast);
+
+        Car car = new Car("SEDAN", CarType.SEDAN);
+        for (int i = 0; i < 3; i++) {
+            parking.enter(car);
+            parking.leave(car);
+        }
+        Assert.assertEquals("the fast subscriber is not impacted", 6, fast.events.size());
+        Assert.assertEquals(1, publisher.getNumberOfSubscribers());
+
+        slow.subscription.request(Long.MAX_VALUE);
+        Assert.assertEquals("buffered events are delivered first", 2, slow.events.size());
+        Assert.assertThat(slow.error, Matchers.instanceOf(IllegalStateException.class));
+    }
+
+    @Test
+    public void testInvalidRequest() {
+        final ParkingEventPublisher publisher = new ParkingEventPublisher(Runnable::run, 2);
+        final RecordingSubscriber subscriber = new RecordingSubscriber(0);
+        publisher.subscribe(subscriber);
+
+        subscriber.subscription.request(0);
+        Assert.assertThat(subscriber.error, Matchers.instanceOf(IllegalArgumentException.class));
+    }
+
+    /**
+     * Subscriber that records the events, requesting a fixed number of events on subscription.
+     */
+    private static class RecordingSubscriber implements Flow.Subscriber<ParkingEvent> {
+        private final long initialRequest;
+        private final List<ParkingEvent> events = new ArrayList<>();
+        private Flow.Subscription subscription;
+        private Throwable error;
+        private boolean completed;
+
+        private RecordingSubscriber(final long initialRequest) {
+            this.initialRequest = initialRequest;
+        }
+
+        @Override
+        public void onSubscribe(final Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (initialRequest > 0) {
+                subscription.request(initialRequest);
+            }
+        }
+
+        @Override
+        public void onNext(final ParkingEvent item) {
+            events.add(item);
+        }
+
+        @Override
+        public void onError(final Throwable throwable) {
+            error = throwable;
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package fr.avenard.parking.event;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link RingBuffer}
+ */
+public class RingBufferTest {
+
+    @Test
+    public void testOfferThenPoll() {
+        final RingBuffer<Integer> buffer = new RingBuffer<>(3);
+        Assert.assertEquals("rounded to a power of two", 4, buffer.capacity());
+        Assert.assertTrue(buffer.isEmpty());
+        Assert.assertNull(buffer.poll());
+
+        for (int i = 0; i < 4; i++) {
+            Assert.assertTrue(buffer.offer(i));
+        }
+        Assert.assertFalse("buffer is full", buffer.offer(4));
+
+        Assert.assertEquals(Integer.valueOf(0), buffer.poll());
+        Assert.assertTrue("a cell is free again", buffer.offer(4));
+        for (int i = 1; i <= 4; i++) {
+            Assert.assertEquals(Integer.valueOf(i), buffer.poll());
+        }
+        Assert.assertTrue(buffer.isEmpty());
+    }
+
+    /**
+     * Many producers offer while a consumer polls: no element is lost or duplicated.
+     */
+    @Test
+    public void testMultipleProducers() throws InterruptedException {
+        final RingBuffer<Integer> buffer = new RingBuffer<>(64);
+        final int producers = 4;
+        final int perProducer = 10_000;
+
+        final List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            final int offset = p * perProducer;
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    while (!buffer.offer(offset + i)) {
+                        Thread.yield();
+                    }
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+
+        final List<Integer> polled = new ArrayList<>();
+        while (polled.size() < producers * perProducer) {
+            final Integer element = buffer.poll();
+            if (element != null) {
+                polled.add(element);
+            } else {
+                Thread.yield();
+            }
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        Collections.sort(polled);
+        for (int i = 0; i < polled.size(); i++) {
+            Assert.assertEquals(Integer.valueOf(i), polled.get(i));
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package fr.avenard.parking.export;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.math.BigDecimal;
+import java.nio.channels.Channels;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+import fr.avenard.parking.Car;
+import fr.avenard.parking.CarType;
+import fr.avenard.parking.Parking;
+import fr.avenard.parking.exception.ParkingException;
+import fr.avenard.parking.replay.ManualClock;
+import fr.avenard.parking.session.SessionStore;
+
+/**
+ * Unit tests for {@link SessionExporter}, {@link OccupancyExporter} and the columnar tables they write.
+ */
+public class ColumnarExportTest {
+
+    @Rule
+    public ExpectedException exceptionRule = ExpectedException.none();
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final Instant START = Instant.parse("2020-01-01T08:00:00Z");
+    private static final ZoneId PARIS = ZoneId.of("Europe/Paris");
+
+    private final ManualClock clock = new ManualClock(START);
+
+    @Test
+    public void testBilledSessions() throws ParkingException, IOException {
+        final ByteArrayOutputStream table = new ByteArrayOutputStream();
+        final SessionExporter exporter = new SessionExporter(Channels.newChannel(table), PARIS, 4, 2);
+        final Parking parking = new Parking(car -> new BigDecimal("2.505"), clock.withZone(PARIS))
+                .withSlots(CarType.SEDAN, 5)
+                .withSlots(CarType.ELECTRIC_50KW, 5)
+                .addListener(exporter);
+        visit(parking, 10);
+        exporter.close();
+        Assert.assertEquals(10, exporter.getExported());
+
+        final ColumnarReader reader = new ColumnarReader(Channels.newChannel(new ByteArrayInputStream(
+                table.toByteArray())));
+        Assert.assertArrayEquals(new String[] {SessionExporter.TYPE, SessionExporter.PARKED_AT,
+                SessionExporter.LEFT_AT, SessionExporter.FARE}, reader.getNames());
+        int sessions = 0;
+        int rows;
+        while ((rows = reader.nextRowGroup()) > 0) {
+            Assert.assertTrue("row groups of 4 sessions", rows <= 4);
+            for (int row = 0; row < rows; row++, sessions++) {
+                Assert.assertEquals((sessions % 2 == 0 ? CarType.SEDAN : CarType.ELECTRIC_50KW).ordinal(),
+                        reader.get(0, row));
+                Assert.assertEquals(START.toEpochMilli() + sessions * 60_000, reader.get(1, row));
+                Assert.assertEquals(START.toEpochMilli() + sessions * 60_000 + 30 * 60_000, reader.get(2, row));
+                Assert.assertEquals("cents, rounded half up", 251, reader.get(3, row));
+            }
+        }
+        Assert.assertEquals(10, sessions);
+    }
+
+    @Test
+    public void testSessionsBilledAfterClose() throws ParkingException, IOException {
+        final ByteArrayOutputStream table = new ByteArrayOutputStream();
+        final SessionExporter exporter = new SessionExporter(Channels.newChannel(table), 1, 2);
+        final Parking parking = new Parking(car -> BigDecimal.ONE, clock).withSlots(CarType.SEDAN, 5)
+                .withSlots(CarType.ELECTRIC_50KW, 5).addListener(exporter);
+        visit(parking, 2);
+        exporter.close();
+        final int length = table.size();
+
+        visit(parking, 4); // still billed, but not exported
+        Assert.assertEquals(2, exporter.getExported());
+        Assert.assertEquals(length, table.size());
+    }
+
+    @Test
+    public void testSessionStoreHistory() throws ParkingException, IOException {
+        final LocalDateTime now = LocalDateTime.now(clock);
+        try (SessionStore store = new SessionStore(folder.getRoot().toPath(), Duration.ofDays(30), 4)) {
+            visit(new Parking(car -> BigDecimal.ONE, clock).withSlots(CarType.SEDAN, 5)
+                    .withSlots(CarType.ELECTRIC_50KW, 5).addListener(store), 10);
+            store.maintain(now.plusDays(31)); // two blocks to the cold tier, the last sessions stay in memory
+
+            final ByteArrayOutputStream table = new ByteArrayOutputStream();
+            try (SessionExporter exporter = new SessionExporter(Channels.newChannel(table))) {
+                Assert.assertEquals("the first 5 visits", 5, exporter.export(store, now, now.plusMinutes(5)));
+            }
+
+            final ColumnarReader reader = new ColumnarReader(Channels.newChannel(new ByteArrayInputStream(
+                    table.toByteArray())));
+            Assert.assertEquals(5, reader.nextRowGroup());
+            Assert.assertEquals(0, reader.nextRowGroup());
+        }
+    }
+
+    @Test
+    public void testOccupancy() throws ParkingException, IOException {
+        final Parking parking = new Parking(car -> BigDecimal.ONE, clock.withZone(PARIS))
+                .withSlots(CarType.SEDAN, 3);
+        final ByteArrayOutputStream table = new ByteArrayOutputStream();
+        try (OccupancyExporter exporter = new OccupancyExporter(parking, Channels.newChannel(table))) {
+            exporter.sample();
+            parking.enter(new Car("EXPORT-1", CarType.SEDAN));
+            parking.enter(new Car("EXPORT-2", CarType.SEDAN));
+            exporter.sample(LocalDateTime.now(parking.getClock()).plusMinutes(1));
+        }
+
+        final ColumnarReader reader = new ColumnarReader(Channels.newChannel(new ByteArrayInputStream(
+                table.toByteArray())));
+        final int types = CarType.values().length;
+        Assert.assertEquals(2 * types, reader.nextRowGroup());
+        final int sedan = CarType.SEDAN.ordinal();
+        Assert.assertEquals(START.toEpochMilli(), reader.get(0, sedan));
+        Assert.assertEquals(0, reader.get(2, sedan));
+        Assert.assertEquals(3, reader.get(3, sedan));
+        Assert.assertEquals(START.toEpochMilli() + 60_000, reader.get(0, types + sedan));
+        Assert.assertEquals(CarType.SEDAN.ordinal(), reader.get(1, types + sedan));
+        Assert.assertEquals(2, reader.get(2, types + sedan));
+        Assert.assertEquals(0, reader.get(3, types + CarType.ELECTRIC_20KW.ordinal()));
+    }
+
+    @Test
+    public void testNotATable() throws IOException {
+        exceptionRule.expect(StreamCorruptedException.class);
+        new ColumnarReader(Channels.newChannel(new ByteArrayInputStream(new byte[8])));
+    }
+
+    /**
+     * Park cars one minute after the other, alternating sedan and electric, each for 30 minutes.
+     */
+    private void visit(final Parking parking, final int visits) throws ParkingException {
+        final Car[] cars = new Car[visits];
+        for (int i = 0; i < visits; i++) {
+            clock.set(START.toEpochMilli() + i * 60_000L);
+            cars[i] = new Car("EXPORT-" + i, i % 2 == 0 ? CarType.SEDAN : CarType.ELECTRIC_50KW);
+            parking.enter(cars[i]);
+        }
+        for (int i = 0; i < visits; i++) {
+            clock.set(START.toEpochMilli() + i * 60_000L + 30 * 60_000L);
+            parking.bill(parking.leave(cars[i]));
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package fr.avenard.parking.policy;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalTime;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import fr.avenard.parking.Car;
+import fr.avenard.parking.CarType;
+import fr.avenard.parking.Parking;
+import fr.avenard.parking.exception.CarNotFoundException;
+import fr.avenard.parking.exception.ParkingException;
+import fr.avenard.parking.replay.ManualClock;
+
+/**
+ * Unit tests for {@link FareAccrual}, and the {@link TimerWheel} rolling its accumulators over
+ */
+public class FareAccrualTest {
+
+    @Rule
+    public ExpectedException exceptionRule = ExpectedException.none();
+
+    private final ManualClock clock = new ManualClock(Instant.parse("2020-01-01T19:00:00Z"));
+    private final TimeOfDayPolicy policy = new TimeOfDayPolicy(new BigDecimal("2.00"))
+            .withRate(LocalTime.of(20, 0), new BigDecimal("0.50"))
+            .withRate(LocalTime.of(8, 0), new BigDecimal("2.00"))
+            .withRate(LocalTime.MIDNIGHT, new BigDecimal("0.50"));
+    private FareAccrual accrual;
+    private Parking parking;
+
+    @Before
+    public void setUp() throws Exception {
+        accrual = new FareAccrual(policy, clock);
+        parking = new Parking(accrual, clock).withSlots(CarType.SEDAN, 10).addListener(accrual);
+    }
+
+    @Test
+    public void testCurrentFare() throws ParkingException {
+        final Car car = new Car("OVERNIGHT", CarType.SEDAN);
+        parking.enter(car);
+        Assert.assertEquals(new BigDecimal("0.00"), accrual.currentFare(car));
+
+        clock.advance(Duration.ofMinutes(30));
+        Assert.assertEquals(new BigDecimal("1.00"), accrual.currentFare(car));
+
+        clock.advance(Duration.ofMinutes(90)); // 21:00
+        Assert.assertEquals("1 hour of day, then 1 hour of night", 1, accrual.tick());
+        Assert.assertEquals(new BigDecimal("2.50"), accrual.currentFare(car));
+
+        clock.advance(Duration.ofHours(11).plusMinutes(30)); // 08:30 the next day
+        Assert.assertEquals("midnight and 8:00", 1, accrual.tick());
+        Assert.assertEquals(new BigDecimal("9.00"), accrual.currentFare(car));
+
+        Assert.assertEquals(new BigDecimal("9.00"), parking.bill(parking.leave(car)));
+        Assert.assertEquals("closed accumulator removed once billed", 0, accrual.getSessions());
+    }
+
+    @Test
+    public void testCurrentFareWithoutTicks() throws ParkingException {
+        final Car car = new Car("NO-TICKS", CarType.SEDAN);
+        parking.enter(car);
+        clock.advance(Duration.ofDays(2));
+        Assert.assertEquals("rolled over when read", new BigDecimal("60.00"), accrual.currentFare(car));
+    }
+
+    @Test
+    public void testBillClosesTheAccumulator() throws ParkingException {
+        final Car car = new Car("LEFT", CarType.SEDAN);
+        parking.enter(car);
+        clock.advance(Duration.ofHours(2));
+        final Car left = parking.leave(car);
+        clock.advance(Duration.ofHours(5)); // paid later at the toll
+        Assert.assertEquals(policy.computeFare(left), parking.bill(left));
+        Assert.assertEquals(new BigDecimal("2.50"), policy.computeFare(left));
+        Assert.assertEquals(0, accrual.tick());
+    }
+
+    @Test
+    public void testNoRunningFare() throws CarNotFoundException {
+        exceptionRule.expect(CarNotFoundException.class);
+        accrual.currentFare(new Car("UNKNOWN", CarType.SEDAN));
+    }
+
+    @Test
+    public void testTimerWheel() {
+        final TimerWheel<String> wheel = new TimerWheel<>(60, 4, 0);
+        wheel.schedule("1 minute", 60);
+        wheel.schedule("2 minutes 30", 150);
+        wheel.schedule("10 minutes", 600); // after two turns of the wheel
+        wheel.schedule("already due", -60);
+        Assert.assertEquals(4, wheel.size());
+
+        final StringBuilder expired = new StringBuilder();
+        Assert.assertEquals(2, wheel.advance(60, expired::append));
+        Assert.assertEquals("1 minutealready due", expired.toString());
+        Assert.assertEquals(0, wheel.advance(119, expired::append));
+        Assert.assertEquals(1, wheel.advance(120, expired::append));
+        Assert.assertEquals(0, wheel.advance(599, expired::append));
+        Assert.assertEquals(1, wheel.advance(3_600, expired::append));
+        Assert.assertEquals(0, wheel.size());
+    }
+}
@@ -0,0 +1,153 @@
+package fr.avenard.parking.policy;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import fr.avenard.parking.CarType;
+import fr.avenard.parking.exception.PolicyException;
+
+/**
+ * Unit tests for {@link GranularTimePolicy} pricing policy implementation
+ */
+public class GranularTimePolicyTest {
+
+    private static final LocalDateTime ARRIVAL = LocalDateTime.of(2020, 1, 1, 10, 0);
+
+    @Rule
+    public ExpectedException exceptionRule = ExpectedException.none();
+
+    @Test
+    public void testPerMinute() throws PolicyException {
+        final GranularTimePolicy policy = GranularTimePolicy.perMinute(new BigDecimal("0.05"));
+
+        Assert.assertEquals(new BigDecimal("0.05"), policy.computeFare(stay(Duration.ofSeconds(1))));
+        Assert.assertEquals(new BigDecimal("0.50"), policy.computeFare(stay(Duration.ofMinutes(10))));
+        Assert.assertEquals("every started minute", new BigDecimal("0.55"),
+                policy.computeFare(stay(Duration.ofMinutes(10).plusSeconds(1))));
+        Assert.assertEquals(new BigDecimal("0.00"), policy.computeFare(stay(Duration.ZERO)));
+    }
+
+    @Test
+    public void testPerQuarterHourWithFixedFare() throws PolicyException {
+        final GranularTimePolicy policy = GranularTimePolicy.perQuarterHour(BigDecimal.ONE)
+                .withFixedFare(new BigDecimal("2.5"));
+
+        Assert.assertEquals(new BigDecimal("3.5"), policy.computeFare(stay(Duration.ofMinutes(15))));
+        Assert.assertEquals(new BigDecimal("4.5"), policy.computeFare(stay(Duration.ofMinutes(16))));
+        Assert.assertEquals(new BigDecimal("10.5"), policy.computeFare(stay(Duration.ofHours(2))));
+    }
+
+    @Test
+    public void testGracePeriod() throws PolicyException {
+        final GranularTimePolicy policy = GranularTimePolicy.perMinute(BigDecimal.ONE)
+                .withFixedFare(BigDecimal.TEN)
+                .withGracePeriod(Duration.ofMinutes(10));
+
+        Assert.assertEquals("free within the grace period", BigDecimal.ZERO,
+                policy.computeFare(stay(Duration.ofMinutes(10))));
+        Assert.assertEquals("fully charged after the grace period", BigDecimal.valueOf(21),
+                policy.computeFare(stay(Duration.ofMinutes(11))));
+    }
+
+    @Test
+    public void testRoundingModes() throws PolicyException {
+        final GranularTimePolicy policy = GranularTimePolicy.perQuarterHour(BigDecimal.ONE);
+        final Duration oneQuarterAndHalf = Duration.ofMinutes(22).plusSeconds(30); // 1.5 quarter
+
+        Assert.assertEquals(BigDecimal.valueOf(2), policy.computeFare(stay(oneQuarterAndHalf)));
+        Assert.assertEquals(BigDecimal.ONE,
+                policy.withRoundingMode(RoundingMode.DOWN).computeFare(stay(oneQuarterAndHalf)));
+        Assert.assertEquals(BigDecimal.valueOf(2),
+                policy.withRoundingMode(RoundingMode.HALF_UP).computeFare(stay(oneQuarterAndHalf)));
+        Assert.assertEquals(BigDecimal.ONE,
+                policy.withRoundingMode(RoundingMode.HALF_DOWN).computeFare(stay(oneQuarterAndHalf)));
+        Assert.assertEquals(BigDecimal.valueOf(2),
+                policy.withRoundingMode(RoundingMode.HALF_EVEN).computeFare(stay(oneQuarterAndHalf)));
+        Assert.assertEquals(BigDecimal.valueOf(2), policy.withRoundingMode(RoundingMode.HALF_EVEN)
+                .computeFare(stay(Duration.ofMinutes(37).plusSeconds(30)))); // 2.5 quarters
+    }
+
+    @Test
+    public void testDailyCap() throws PolicyException {
+        final GranularTimePolicy policy = GranularTimePolicy.perQuarterHour(BigDecimal.ONE)
+                .withDailyCap(BigDecimal.valueOf(20));
+
+        Assert.assertEquals(BigDecimal.valueOf(8), policy.computeFare(stay(Duration.ofHours(2))));
+        Assert.assertEquals("capped", BigDecimal.valueOf(20), policy.computeFare(stay(Duration.ofHours(10))));
+        Assert.assertEquals("two days capped and a started hour", BigDecimal.valueOf(44),
+                policy.computeFare(stay(Duration.ofDays(2).plusHours(1))));
+    }
+
+    @Test
+    public void testUnnecessaryRounding() throws PolicyException {
+        final GranularTimePolicy policy = GranularTimePolicy.perMinute(BigDecimal.ONE)
+                .withRoundingMode(RoundingMode.UNNECESSARY);
+        Assert.assertEquals(BigDecimal.valueOf(2), policy.computeFare(stay(Duration.ofMinutes(2))));
+
+        exceptionRule.expect(PolicyException.class);
+        exceptionRule.expectMessage("Parking duration is not a whole number of units");
+        policy.computeFare(stay(Duration.ofSeconds(90)));
+    }
+
+    @Test
+    public void testFractionOfSecond() throws PolicyException {
+        final GranularTimePolicy policy = GranularTimePolicy.perMinute(BigDecimal.ONE)
+                .withGracePeriod(Duration.ofMinutes(10));
+        Assert.assertEquals("a started minute after the grace period", BigDecimal.valueOf(11),
+                policy.computeFare(stay(Duration.ofMinutes(10).plusNanos(1))));
+        Assert.assertEquals(BigDecimal.ZERO, policy.computeFare(stay(Duration.ofMinutes(10))));
+
+        final FakeCar car = stay(Duration.ofMinutes(2)); // arrival and departure at different fractions of a second
+        car.setParkedAt(ARRIVAL.plusNanos(900_000_000));
+        car.setLeftAt(ARRIVAL.plusMinutes(20).plusNanos(100_000_000));
+        Assert.assertEquals("19 minutes and 59.2 seconds", BigDecimal.valueOf(20), policy.computeFare(car));
+
+        final GranularTimePolicy halfUp = GranularTimePolicy.perQuarterHour(BigDecimal.ONE)
+                .withRoundingMode(RoundingMode.HALF_UP);
+        Assert.assertEquals(BigDecimal.ONE, halfUp.computeFare(stay(Duration.ofMinutes(22).plusSeconds(30)
+                .minusNanos(1))));
+        Assert.assertEquals(BigDecimal.valueOf(2), halfUp.withRoundingMode(RoundingMode.HALF_DOWN)
+                .computeFare(stay(Duration.ofMinutes(22).plusSeconds(30).plusNanos(1))));
+    }
+
+    @Test
+    public void testFareOverflow() throws PolicyException {
+        final GranularTimePolicy policy = GranularTimePolicy.perMinute(new BigDecimal("1E15"))
+                .withFixedFare(new BigDecimal("0.01"));
+        Assert.assertEquals(new BigDecimal("1000000000000000.01"), policy.computeFare(stay(Duration.ofMinutes(1))));
+
+        exceptionRule.expect(PolicyException.class);
+        exceptionRule.expectMessage("overflows");
+        policy.computeFare(stay(Duration.ofDays(3650)));
+    }
+
+    @Test
+    public void testCarNeverLeft() throws PolicyException {
+        final FakeCar car = new FakeCar("PARKED", CarType.SEDAN);
+        car.setParkedAt(ARRIVAL);
+
+        exceptionRule.expect(PolicyException.class);
+        exceptionRule.expectMessage("Car may have not left the parking slot correctly: No end time registered");
+        GranularTimePolicy.perMinute(BigDecimal.ONE).computeFare(car);
+    }
+
+    @Test
+    public void testInvalidUnit() {
+        exceptionRule.expect(IllegalArgumentException.class);
+        new GranularTimePolicy(BigDecimal.ZERO, BigDecimal.ONE, Duration.ZERO);
+    }
+
+    private static FakeCar stay(final Duration duration) {
+        final FakeCar car = new FakeCar("STAY", CarType.SEDAN);
+        car.setParkedAt(ARRIVAL);
+        car.setLeftAt(ARRIVAL.plus(duration));
+        return car;
+    }
+}
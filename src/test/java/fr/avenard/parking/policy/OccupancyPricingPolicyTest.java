@@ -0,0 +1,104 @@
+package fr.avenard.parking.policy;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import fr.avenard.parking.Car;
+import fr.avenard.parking.CarType;
+import fr.avenard.parking.Parking;
+import fr.avenard.parking.exception.ParkingException;
+import fr.avenard.parking.exception.PolicyException;
+
+/**
+ * Unit tests for {@link OccupancyPricingPolicy} pricing policy implementation
+ */
+public class OccupancyPricingPolicyTest {
+
+    /**
+     * 1 per hour when less than half of the slots are occupied, 2 otherwise. Night hours are free.
+     */
+    PriceCurve curve = (carType, hourOfDay, occupancy) -> {
+        if (hourOfDay < 6) {
+            return BigDecimal.ZERO;
+        }
+        return occupancy < 50 ? BigDecimal.ONE : BigDecimal.valueOf(2);
+    };
+    OccupancyPricingPolicy policy;
+    Parking parking;
+
+    @Before
+    public void setUp() throws Exception {
+        policy = new OccupancyPricingPolicy(BigDecimal.TEN, curve);
+        parking = new Parking(policy)
+                .withSlots(CarType.SEDAN, 4)
+                .withSlots(CarType.ELECTRIC_20KW, 1);
+    }
+
+    @Test
+    public void testFareFollowsOccupancy() throws ParkingException {
+        final FakeCar car = twoHoursUntilNoon(CarType.SEDAN);
+        policy.sample(parking);
+        Assert.assertEquals(0, policy.getOccupancy(CarType.SEDAN));
+        Assert.assertEquals("empty parking, 3 hours at 1", BigDecimal.valueOf(13), policy.computeFare(car));
+
+        parking.enter(new Car("ONE", CarType.SEDAN));
+        parking.enter(new Car("TWO", CarType.SEDAN));
+        Assert.assertEquals("not sampled yet", BigDecimal.valueOf(13), policy.computeFare(car));
+
+        policy.sample(parking);
+        Assert.assertEquals(50, policy.getOccupancy(CarType.SEDAN));
+        Assert.assertEquals(0, policy.getOccupancy(CarType.ELECTRIC_20KW));
+        Assert.assertEquals("half full parking, 3 hours at 2", BigDecimal.valueOf(16), policy.computeFare(car));
+        Assert.assertEquals("other types are not impacted", BigDecimal.valueOf(13),
+                policy.computeFare(twoHoursUntilNoon(CarType.ELECTRIC_20KW)));
+    }
+
+    @Test
+    public void testFareFollowsTimeOfDay() throws PolicyException {
+        final FakeCar car = new FakeCar("NIGHT", CarType.SEDAN);
+        car.setParkedAt(LocalDateTime.of(2020, 1, 1, 1, 0));
+        car.setLeftAt(LocalDateTime.of(2020, 1, 1, 3, 30));
+        Assert.assertEquals("free at night, fixed fare only", BigDecimal.TEN, policy.computeFare(car));
+    }
+
+    @Test
+    public void testSetCurve() throws PolicyException {
+        final FakeCar car = twoHoursUntilNoon(CarType.SEDAN);
+        policy.setCurve((carType, hourOfDay, occupancy) -> BigDecimal.valueOf(5));
+        Assert.assertEquals(BigDecimal.valueOf(25), policy.computeFare(car));
+    }
+
+    @Test
+    public void testSampleEvery() throws ParkingException, InterruptedException {
+        final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        try {
+            parking.enter(new Car("ELECTRIC", CarType.ELECTRIC_20KW));
+            final ScheduledFuture<?> sampling = policy.sampleEvery(parking, scheduler, Duration.ofMillis(10));
+
+            final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (policy.getOccupancy(CarType.ELECTRIC_20KW) != 100 && System.nanoTime() < deadline) {
+                TimeUnit.MILLISECONDS.sleep(10);
+            }
+            Assert.assertEquals(100, policy.getOccupancy(CarType.ELECTRIC_20KW));
+            sampling.cancel(false);
+        } finally {
+            scheduler.shutdownNow();
+        }
+    }
+
+    private static FakeCar twoHoursUntilNoon(final CarType carType) {
+        final FakeCar car = new FakeCar("TWO-HOURS", carType);
+        car.setParkedAt(LocalDateTime.of(2020, 1, 1, 9, 30));
+        car.setLeftAt(LocalDateTime.of(2020, 1, 1, 12, 0));
+        return car;
+    }
+}
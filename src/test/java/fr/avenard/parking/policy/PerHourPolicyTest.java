@@ -70,6 +70,22 @@ public class PerHourPolicyTest {
         Assert.assertEquals("Test with decimal fare", BigDecimal.valueOf(3.9), decimalPolicy.computeFare(carFour));
     }
 
+    /**
+     * A stay of exactly two hours did not start a third hour.
+     */
+    @Test
+    public void testExactHours() throws PolicyException {
+        PricingPolicy perHourPolicy = new PerHourPolicy(BigDecimal.ONE);
+
+        FakeCar car = new FakeCar("02-HRS-00", CarType.SEDAN);
+        car.setParkedAt(LocalDateTime.of(2020, 1, 1, 10, 0));
+        car.setLeftAt(LocalDateTime.of(2020, 1, 1, 12, 0));
+        Assert.assertEquals("Fare must be 2 for 2 hours", BigDecimal.valueOf(2), perHourPolicy.computeFare(car));
+
+        car.setLeftAt(LocalDateTime.of(2020, 1, 1, 10, 0));
+        Assert.assertEquals("An hour is started on arrival", BigDecimal.ONE, perHourPolicy.computeFare(car));
+    }
+
     /**
      * The goal is to have a per hour fare policy that includes a fixed fare.
      */
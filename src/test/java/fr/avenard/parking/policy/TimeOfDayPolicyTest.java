@@ -0,0 +1,87 @@
+package fr.avenard.parking.policy;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import fr.avenard.parking.CarType;
+import fr.avenard.parking.exception.PolicyException;
+
+/**
+ * Unit tests for {@link TimeOfDayPolicy} pricing policy implementation
+ */
+public class TimeOfDayPolicyTest {
+
+    private static final TimeOfDayPolicy DAY_AND_NIGHT = new TimeOfDayPolicy(new BigDecimal("2.00"))
+            .withRate(LocalTime.of(20, 0), new BigDecimal("0.50"))
+            .withRate(LocalTime.of(8, 0), new BigDecimal("2.00"))
+            .withRate(LocalTime.MIDNIGHT, new BigDecimal("0.50"));
+
+    @Rule
+    public ExpectedException exceptionRule = ExpectedException.none();
+
+    @Test
+    public void testSingleRateProrated() throws PolicyException {
+        final TimeOfDayPolicy policy = new TimeOfDayPolicy(new BigDecimal("3"));
+
+        Assert.assertEquals(new BigDecimal("3"), policy.computeFare(stay(at(10, 0), Duration.ofHours(1))));
+        Assert.assertEquals("rounded up to the minor unit", new BigDecimal("2"),
+                policy.computeFare(stay(at(10, 0), Duration.ofMinutes(30))));
+        Assert.assertEquals(new BigDecimal("0"), policy.computeFare(stay(at(10, 0), Duration.ZERO)));
+    }
+
+    @Test
+    public void testDayRate() throws PolicyException {
+        Assert.assertEquals(new BigDecimal("1.00"), DAY_AND_NIGHT.computeFare(stay(at(10, 0), Duration.ofMinutes(30))));
+        Assert.assertEquals(new BigDecimal("0.04"), DAY_AND_NIGHT.computeFare(stay(at(10, 0), Duration.ofMinutes(1))));
+    }
+
+    @Test
+    public void testAcrossRateBoundaries() throws PolicyException {
+        // 19:00 to 21:00: an hour at the day rate, an hour at the night rate
+        Assert.assertEquals(new BigDecimal("2.50"), DAY_AND_NIGHT.computeFare(stay(at(19, 0), Duration.ofHours(2))));
+        // 19:30 to 08:30 the next day: 30 min day, 12 hours night, 30 min day
+        Assert.assertEquals(new BigDecimal("8.00"), DAY_AND_NIGHT.computeFare(stay(at(19, 30), Duration.ofHours(13))));
+        // three full days
+        Assert.assertEquals(new BigDecimal("90.00"), DAY_AND_NIGHT.computeFare(stay(at(10, 0), Duration.ofDays(3))));
+    }
+
+    @Test
+    public void testRateReplaced() throws PolicyException {
+        final TimeOfDayPolicy policy = DAY_AND_NIGHT.withRate(LocalTime.of(20, 0), BigDecimal.ONE);
+        Assert.assertEquals(new BigDecimal("3.00"), policy.computeFare(stay(at(19, 0), Duration.ofHours(2))));
+    }
+
+    @Test
+    public void testCarNeverLeft() throws PolicyException {
+        final FakeCar car = new FakeCar("NEVER-LEFT", CarType.SEDAN);
+        car.setParkedAt(at(10, 0));
+
+        exceptionRule.expect(PolicyException.class);
+        exceptionRule.expectMessage("No end time registered");
+        DAY_AND_NIGHT.computeFare(car);
+    }
+
+    @Test
+    public void testNegativeRate() {
+        exceptionRule.expect(IllegalArgumentException.class);
+        new TimeOfDayPolicy(BigDecimal.ONE.negate());
+    }
+
+    static LocalDateTime at(final int hour, final int minute) {
+        return LocalDateTime.of(2020, 1, 1, hour, minute);
+    }
+
+    static FakeCar stay(final LocalDateTime parkedAt, final Duration duration) {
+        final FakeCar car = new FakeCar("TIME-OF-DAY", CarType.SEDAN);
+        car.setParkedAt(parkedAt);
+        car.setLeftAt(parkedAt.plus(duration));
+        return car;
+    }
+}
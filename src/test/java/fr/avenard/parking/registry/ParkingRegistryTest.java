@@ -0,0 +1,160 @@
+package fr.avenard.parking.registry;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import fr.avenard.parking.Car;
+import fr.avenard.parking.CarType;
+import fr.avenard.parking.Parking;
+import fr.avenard.parking.ParkingSlot;
+import fr.avenard.parking.event.ParkingEvent;
+import fr.avenard.parking.exception.NoCarParkedException;
+import fr.avenard.parking.exception.ParkingException;
+import fr.avenard.parking.policy.PricingPolicy;
+import fr.avenard.parking.replay.ManualClock;
+
+/**
+ * Unit tests for {@link ParkingRegistry}
+ */
+public class ParkingRegistryTest {
+
+    @Rule
+    public ExpectedException exceptionRule = ExpectedException.none();
+
+    PricingPolicy policy = car -> BigDecimal.ONE;
+    ParkingRegistry registry;
+
+    @Before
+    public void setUp() throws Exception {
+        registry = new ParkingRegistry();
+        registry.register("paris-1", "Paris", new Parking(policy)
+                .withSlots(CarType.SEDAN, 10)
+                .withSlots(CarType.ELECTRIC_50KW, 2), policy);
+        registry.register("paris-2", "Paris", new Parking(policy)
+                .withSlots(CarType.ELECTRIC_50KW, 3), policy);
+        registry.register("lyon-1", "Lyon", new Parking(policy)
+                .withSlots(CarType.ELECTRIC_50KW, 4), policy);
+    }
+
+    /**
+     * Free slots are aggregated per region and kept up to date by the parking lots.
+     */
+    @Test
+    public void testRegionFreeSlots() throws ParkingException {
+        Assert.assertEquals(3, registry.size());
+        Assert.assertEquals(5, registry.remainingFreeSlots("Paris", CarType.ELECTRIC_50KW));
+        Assert.assertEquals(10, registry.remainingFreeSlots("Paris", CarType.SEDAN));
+        Assert.assertEquals(4, registry.remainingFreeSlots("Lyon", CarType.ELECTRIC_50KW));
+        Assert.assertEquals(0, registry.remainingFreeSlots("Nantes", CarType.ELECTRIC_50KW));
+
+        Car car = new Car("ELECTRIC", CarType.ELECTRIC_50KW);
+        registry.execute("paris-2", parking -> parking.enter(car));
+        Assert.assertEquals(4, registry.remainingFreeSlots("Paris", CarType.ELECTRIC_50KW));
+        Assert.assertEquals(4, registry.remainingFreeSlots("Lyon", CarType.ELECTRIC_50KW));
+
+        registry.execute("paris-2", parking -> parking.leave(car));
+        Assert.assertEquals(5, registry.remainingFreeSlots("Paris", CarType.ELECTRIC_50KW));
+    }
+
+    /**
+     * An evicted parking lot is restored with its parked cars when used again.
+     */
+    @Test
+    public void testEvictThenRestore() throws ParkingException {
+        Car car = new Car("SEDAN", CarType.SEDAN);
+        registry.execute("paris-1", parking -> parking.enter(car));
+
+        Assert.assertEquals("recently used lots are kept", 0, registry.evictIdle(Duration.ofHours(1)));
+        Assert.assertEquals(3, registry.evictIdle(Duration.ZERO));
+        Assert.assertFalse(registry.isLoaded("paris-1"));
+        Assert.assertEquals("free slots are kept", 9, registry.remainingFreeSlots("Paris", CarType.SEDAN));
+
+        Assert.assertEquals(Long.valueOf(9), registry.execute("paris-1",
+                parking -> parking.remainingFreeSlots(CarType.SEDAN)));
+        Assert.assertTrue(registry.isLoaded("paris-1"));
+
+        registry.execute("paris-1", parking -> parking.enter(new Car("OTHER", CarType.SEDAN)));
+        Assert.assertEquals("restored lots keep the free slots up to date", 8,
+                registry.remainingFreeSlots("Paris", CarType.SEDAN));
+    }
+
+    /**
+     * A parking lot in use is not evicted.
+     */
+    @Test
+    public void testSlotOfEvictedLot() throws ParkingException {
+        final Car car = new Car("SEDAN", CarType.SEDAN);
+        final ParkingSlot staleSlot = registry.execute("paris-1", parking -> parking.enter(car));
+        registry.evictIdle(Duration.ZERO);
+
+        try {
+            registry.execute("paris-1", parking -> parking.leave(staleSlot));
+            Assert.fail("the slot belongs to the evicted parking");
+        } catch (NoCarParkedException e) {
+            Assert.assertEquals(9, registry.remainingFreeSlots("Paris", CarType.SEDAN));
+        }
+        Assert.assertEquals(car, registry.execute("paris-1", parking -> parking.leave(car)));
+        Assert.assertEquals(10, registry.remainingFreeSlots("Paris", CarType.SEDAN));
+        Assert.assertEquals(Integer.valueOf(0), registry.execute("paris-1",
+                parking -> parking.occupancy().occupiedSlots(CarType.SEDAN)));
+    }
+
+    @Test
+    public void testNoEvictionInUse() throws ParkingException {
+        final int evicted = registry.execute("lyon-1", parking -> registry.evictIdle(Duration.ZERO));
+        Assert.assertEquals(2, evicted);
+        Assert.assertTrue(registry.isLoaded("lyon-1"));
+    }
+
+    /**
+     * The listeners and the clock of an evicted parking lot are given back to the restored parking.
+     */
+    @Test
+    public void testRestoreKeepsListenersAndClock() throws ParkingException {
+        final ManualClock clock = new ManualClock(Instant.parse("2020-01-01T10:00:00Z"));
+        final List<ParkingEvent> events = new ArrayList<>();
+        registry.register("nantes-1", "Nantes", new Parking(policy, clock)
+                .withSlots(CarType.SEDAN, 2)
+                .addListener(events::add), policy);
+        Assert.assertEquals(2, registry.remainingFreeSlots("Nantes", CarType.SEDAN));
+
+        registry.evictIdle(Duration.ZERO);
+        Assert.assertFalse(registry.isLoaded("nantes-1"));
+        clock.advance(Duration.ofHours(1));
+
+        final Car car = new Car("NANTES", CarType.SEDAN);
+        registry.execute("nantes-1", parking -> parking.enter(car));
+        Assert.assertEquals("the listener still receives the events", 1, events.size());
+        Assert.assertEquals(LocalDateTime.of(2020, 1, 1, 11, 0), car.getParkedAt());
+        Assert.assertEquals(1, registry.remainingFreeSlots("Nantes", CarType.SEDAN));
+    }
+
+    @Test
+    public void testDuplicateLot() throws ParkingException {
+        try {
+            registry.register("lyon-1", "Lyon", new Parking(policy).withSlots(CarType.ELECTRIC_50KW, 5), policy);
+            Assert.fail("the id is already registered");
+        } catch (ParkingException e) {
+            Assert.assertEquals("A parking lot is already registered with id lyon-1", e.getMessage());
+        }
+        Assert.assertEquals("the free slots of the rejected lot are not counted", 4,
+                registry.remainingFreeSlots("Lyon", CarType.ELECTRIC_50KW));
+    }
+
+    @Test
+    public void testUnknownLot() throws ParkingException {
+        exceptionRule.expect(ParkingException.class);
+        exceptionRule.expectMessage("No parking lot registered with id nantes-1");
+        registry.execute("nantes-1", parking -> parking.hasFreeSlot(CarType.SEDAN));
+    }
+}
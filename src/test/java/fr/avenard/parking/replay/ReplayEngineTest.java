@@ -0,0 +1,142 @@
+package fr.avenard.parking.replay;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.math.BigDecimal;
+import java.nio.channels.Channels;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import fr.avenard.parking.Car;
+import fr.avenard.parking.CarType;
+import fr.avenard.parking.Parking;
+import fr.avenard.parking.event.ParkingEventType;
+import fr.avenard.parking.exception.ParkingException;
+import fr.avenard.parking.exception.SlotNotFoundException;
+import fr.avenard.parking.policy.PerHourPolicy;
+import fr.avenard.parking.policy.PricingPolicy;
+
+/**
+ * Unit tests for {@link ReplayEngine}: a day recorded on a live parking, replayed against other configurations.
+ */
+public class ReplayEngineTest {
+
+    @Rule
+    public ExpectedException exceptionRule = ExpectedException.none();
+
+    private final PricingPolicy perHour = new PerHourPolicy(BigDecimal.valueOf(2));
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(2);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testReplay() throws Exception {
+        final byte[] log = record();
+
+        // a batch size smaller than the log to go through several batches
+        final List<ReplayResult> results = new ReplayEngine(executor, 3).replay(
+                Channels.newChannel(new ByteArrayInputStream(log)), Arrays.asList(
+                        new ReplayScenario("same", perHour).withSlots(CarType.SEDAN, 2),
+                        new ReplayScenario("more slots", perHour).withSlots(CarType.SEDAN, 3),
+                        new ReplayScenario("flat", car -> BigDecimal.TEN).withSlots(CarType.SEDAN, 2)));
+
+        final ReplayResult same = results.get(0);
+        Assert.assertEquals("same", same.getName());
+        Assert.assertEquals(2, same.getEntered());
+        Assert.assertEquals(1, same.getRejected(CarType.SEDAN));
+        Assert.assertEquals(2, same.getBilled());
+        Assert.assertEquals("leave and bill of the rejected car", 2, same.getIgnored());
+        Assert.assertEquals("1 hour and 3 hours, as recorded", BigDecimal.valueOf(8), same.getRevenue());
+
+        final ReplayResult moreSlots = results.get(1);
+        Assert.assertEquals(3, moreSlots.getEntered());
+        Assert.assertEquals(0, moreSlots.getRejected());
+        Assert.assertEquals(3, moreSlots.getBilled());
+        Assert.assertEquals("the third car stayed 2 hours", BigDecimal.valueOf(12), moreSlots.getRevenue());
+
+        Assert.assertEquals(BigDecimal.valueOf(20), results.get(2).getRevenue());
+    }
+
+    @Test
+    public void testNotALog() throws IOException {
+        exceptionRule.expect(StreamCorruptedException.class);
+        new ReplayEngine(executor).replay(Channels.newChannel(new ByteArrayInputStream(new byte[] {1, 2, 3})),
+                Arrays.asList(new ReplayScenario("empty", perHour)));
+    }
+
+    @Test
+    public void testPartialEventIgnored() throws Exception {
+        final byte[] log = record();
+        final List<ReplayResult> results = new ReplayEngine(executor).replay(
+                Channels.newChannel(new ByteArrayInputStream(Arrays.copyOf(log, log.length - 1))),
+                Arrays.asList(new ReplayScenario("same", perHour).withSlots(CarType.SEDAN, 2)));
+        Assert.assertEquals("the last bill was partially written", 1, results.get(0).getBilled());
+    }
+
+    @Test
+    public void testManualClock() {
+        final ManualClock clock = new ManualClock(Instant.EPOCH);
+        clock.advance(Duration.ofHours(1));
+        Assert.assertEquals(LocalDateTime.of(1970, 1, 1, 1, 0), LocalDateTime.now(clock));
+        clock.set(0);
+        Assert.assertEquals(Instant.EPOCH, clock.withZone(ZoneId.of("Europe/Paris")).instant());
+    }
+
+    /**
+     * Record a day on a parking of 2 sedan slots: the third car is rejected by the gate, it would have stayed
+     * 2 hours.
+     *
+     * @return the event log
+     */
+    private byte[] record() throws IOException, ParkingException {
+        final ManualClock clock = new ManualClock(Instant.parse("2020-01-01T08:00:00Z"));
+        final ByteArrayOutputStream log = new ByteArrayOutputStream();
+        final GateEventRecorder recorder = new GateEventRecorder(Channels.newChannel(log));
+        final Parking parking = new Parking(perHour, clock).withSlots(CarType.SEDAN, 2).addListener(recorder);
+
+        final Car first = new Car("REPLAY-1", CarType.SEDAN);
+        final Car second = new Car("REPLAY-2", CarType.SEDAN);
+        final Car third = new Car("REPLAY-3", CarType.SEDAN);
+        parking.enter(first);
+        parking.enter(second);
+        clock.advance(Duration.ofMinutes(10));
+        try {
+            parking.enter(third);
+            Assert.fail("the parking is full");
+        } catch (SlotNotFoundException e) {
+            recorder.record(ParkingEventType.ENTER, LocalDateTime.now(clock), third.getPlate(), third.getType());
+        }
+        clock.advance(Duration.ofMinutes(50));
+        parking.bill(parking.leave(first));
+        clock.advance(Duration.ofMinutes(70));
+        recorder.record(ParkingEventType.LEAVE, LocalDateTime.now(clock), third.getPlate(), third.getType());
+        recorder.record(ParkingEventType.BILL, LocalDateTime.now(clock), third.getPlate(), third.getType());
+        clock.advance(Duration.ofMinutes(50));
+        parking.bill(parking.leave(second));
+        recorder.flush();
+        return log.toByteArray();
+    }
+}
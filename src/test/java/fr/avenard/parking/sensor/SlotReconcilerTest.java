@@ -0,0 +1,127 @@
+package fr.avenard.parking.sensor;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import fr.avenard.parking.Car;
+import fr.avenard.parking.CarType;
+import fr.avenard.parking.LotLayout;
+import fr.avenard.parking.Parking;
+import fr.avenard.parking.ParkingSlot;
+import fr.avenard.parking.exception.ParkingException;
+
+/**
+ * Unit tests for {@link SlotReconciler}
+ */
+public class SlotReconcilerTest {
+
+    private static final Duration GRACE = Duration.ofSeconds(30);
+
+    private final List<SlotAnomaly> anomalies = new ArrayList<>();
+    private final FakeSensorFeed sensors = new FakeSensorFeed();
+    private Parking parking;
+    private SlotReconciler reconciler;
+    private LocalDateTime now;
+
+    @Before
+    public void setUp() throws Exception {
+        parking = new Parking(car -> BigDecimal.ONE)
+                .withSlots(CarType.SEDAN, 100)
+                .withSlots(CarType.ELECTRIC_20KW, 10);
+        reconciler = new SlotReconciler(parking, sensors, GRACE, Duration.ofHours(24), anomalies::add);
+        now = LocalDateTime.now();
+    }
+
+    @Test
+    public void testGhostOccupancy() throws ParkingException, IOException {
+        final ParkingSlot slot = parking.enter(new Car("GHOST", CarType.SEDAN));
+        sensors.set(slot.getIndex(), true);
+        Assert.assertEquals(0, reconciler.check(now));
+
+        sensors.set(slot.getIndex(), false); // the car left without exiting
+        Assert.assertEquals(0, reconciler.check(now));
+        Assert.assertEquals(1, reconciler.getMismatches());
+        Assert.assertEquals("flagged after the grace period", 1, reconciler.check(now.plus(GRACE)));
+        Assert.assertEquals("flagged once", 0, reconciler.check(now.plus(GRACE).plusMinutes(1)));
+
+        final SlotAnomaly anomaly = anomalies.get(0);
+        Assert.assertEquals(SlotAnomaly.Type.GHOST_OCCUPANCY, anomaly.getType());
+        Assert.assertEquals(slot.getIndex(), anomaly.getIndex());
+        Assert.assertEquals(CarType.SEDAN, anomaly.getSlotType());
+        Assert.assertEquals(now, anomaly.getSince());
+
+        parking.leave(slot); // released by an operator
+        Assert.assertEquals(0, reconciler.check(now.plusMinutes(5)));
+        Assert.assertEquals(0, reconciler.getMismatches());
+    }
+
+    @Test
+    public void testUnrecordedCar() throws IOException {
+        sensors.set(105, true);
+        Assert.assertEquals(0, reconciler.check(now));
+        Assert.assertEquals(1, reconciler.check(now.plusMinutes(1)));
+
+        final SlotAnomaly anomaly = anomalies.get(0);
+        Assert.assertEquals(SlotAnomaly.Type.UNRECORDED_CAR, anomaly.getType());
+        Assert.assertEquals(105, anomaly.getIndex());
+        Assert.assertEquals(CarType.ELECTRIC_20KW, anomaly.getSlotType());
+
+        sensors.set(105, false); // a car passing by
+        sensors.set(200, true); // no such slot
+        Assert.assertEquals(0, reconciler.check(now.plusMinutes(2)));
+        Assert.assertEquals(0, reconciler.getMismatches());
+    }
+
+    @Test
+    public void testShortMismatchNotFlagged() throws ParkingException, IOException {
+        final ParkingSlot slot = parking.enter(new Car("LATE-SENSOR", CarType.SEDAN));
+        Assert.assertEquals(0, reconciler.check(now));
+        sensors.set(slot.getIndex(), true);
+        Assert.assertEquals(0, reconciler.check(now.plus(GRACE)));
+        Assert.assertTrue(anomalies.isEmpty());
+    }
+
+    @Test
+    public void testLongSession() throws ParkingException, IOException {
+        final Car car = new Car("FOREVER", CarType.SEDAN);
+        sensors.set(parking.enter(car).getIndex(), true);
+        Assert.assertEquals(0, reconciler.check(now));
+        Assert.assertEquals(1, reconciler.check(now.plusDays(2)));
+
+        final SlotAnomaly anomaly = anomalies.get(0);
+        Assert.assertEquals(SlotAnomaly.Type.LONG_SESSION, anomaly.getType());
+        Assert.assertEquals(car, anomaly.getCar());
+        Assert.assertEquals(car.getParkedAt(), anomaly.getSince());
+    }
+
+    @Test
+    public void testIncrementalDiff() throws ParkingException, IOException {
+        final Parking venue = new Parking(car -> BigDecimal.ONE, new LotLayout()
+                .withZone("level-0", "A", CarType.SEDAN, 30_000)
+                .withZone("level-1", "A", CarType.ELECTRIC_20KW, 20_000));
+        final SlotReconciler venueReconciler = new SlotReconciler(venue, sensors, GRACE, Duration.ofDays(7),
+                anomalies::add);
+        for (int i = 0; i < 1_000; i++) {
+            final Car car = new Car("CAR-" + i, i % 2 == 0 ? CarType.SEDAN : CarType.ELECTRIC_20KW);
+            sensors.set(venue.enter(car).getIndex(), true);
+            if (i % 10 == 0) {
+                venueReconciler.check(now.plusMinutes(i));
+            }
+        }
+        Assert.assertEquals(0, venueReconciler.check(now.plusDays(1).minusMinutes(1)));
+
+        final ParkingSlot last = venue.enter(new Car("GHOST", CarType.ELECTRIC_20KW));
+        Assert.assertEquals(0, venueReconciler.check(now.plusDays(1)));
+        Assert.assertEquals(1, venueReconciler.check(now.plusDays(1).plus(GRACE)));
+        Assert.assertEquals(last.getIndex(), anomalies.get(0).getIndex());
+        Assert.assertEquals(SlotAnomaly.Type.GHOST_OCCUPANCY, anomalies.get(0).getType());
+    }
+}
@@ -0,0 +1,144 @@
+package fr.avenard.parking.server;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.hamcrest.Matchers;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import fr.avenard.parking.CarType;
+import fr.avenard.parking.Parking;
+import fr.avenard.parking.exception.CarNotFoundException;
+import fr.avenard.parking.exception.SlotNotFoundException;
+
+/**
+ * Unit tests for {@link GateServer} and {@link GateClient}, on localhost.
+ */
+public class GateServerTest {
+
+    @Rule
+    public ExpectedException exceptionRule = ExpectedException.none();
+
+    Parking parking;
+    GateServer server;
+    GateClient client;
+
+    @Before
+    public void setUp() throws Exception {
+        parking = new Parking(car -> new BigDecimal("3.20")).withSlots(CarType.SEDAN, 100);
+        server = new GateServer(parking, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        client = GateClient.connect(server.getAddress());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        client.close();
+        server.close();
+    }
+
+    @Test
+    public void testSession() throws Exception {
+        Assert.assertEquals(0, (int) client.enter("AB-123-CD", CarType.SEDAN).get(5, TimeUnit.SECONDS));
+        Assert.assertEquals(99L, (long) client.remainingFreeSlots(CarType.SEDAN).get(5, TimeUnit.SECONDS));
+
+        final LocalDateTime leftAt = client.leave("AB-123-CD", CarType.SEDAN).get(5, TimeUnit.SECONDS);
+        Assert.assertNotNull(leftAt);
+        Assert.assertEquals(new BigDecimal("3.20"), client.bill("AB-123-CD", CarType.SEDAN).get(5, TimeUnit.SECONDS));
+        Assert.assertEquals(100, parking.remainingFreeSlots(CarType.SEDAN));
+    }
+
+    @Test
+    public void testPipelinedRequests() throws Exception {
+        final List<CompletableFuture<?>> responses = new ArrayList<>();
+        for (int round = 0; round < 20; round++) {
+            for (int i = 0; i < 100; i++) {
+                responses.add(client.enter("CAR-" + i, CarType.SEDAN));
+            }
+            for (int i = 0; i < 100; i++) {
+                responses.add(client.leave("CAR-" + i, CarType.SEDAN));
+                responses.add(client.bill("CAR-" + i, CarType.SEDAN));
+            }
+        }
+        CompletableFuture.allOf(responses.toArray(new CompletableFuture<?>[0])).get(30, TimeUnit.SECONDS);
+        Assert.assertEquals(100, parking.remainingFreeSlots(CarType.SEDAN));
+    }
+
+    @Test
+    public void testGateReadingLate() throws Exception {
+        final int requests = 100_000;
+        try (SocketChannel gate = SocketChannel.open(server.getAddress())) {
+            final CompletableFuture<Void> sent = CompletableFuture.runAsync(() -> {
+                final ByteBuffer frames = ByteBuffer.allocate(1_000 * 12);
+                try {
+                    for (int id = 0; id < requests; id++) {
+                        frames.putInt(8).putInt(id).put(GateProtocol.FREE_SLOTS).put((byte) CarType.SEDAN.ordinal())
+                                .putShort((short) 0);
+                        if (!frames.hasRemaining()) {
+                            gate.write(frames.flip());
+                            frames.clear();
+                        }
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            Thread.sleep(200); // the responses pile up on the server, until it stops reading
+
+            final ByteBuffer response = ByteBuffer.allocate(17);
+            for (int id = 0; id < requests; id++) {
+                while (response.hasRemaining()) {
+                    gate.read(response);
+                }
+                response.flip();
+                Assert.assertEquals(13, response.getInt());
+                Assert.assertEquals(id, response.getInt());
+                Assert.assertEquals(GateProtocol.OK, response.get());
+                Assert.assertEquals(100L, response.getLong());
+                response.clear();
+            }
+            sent.get(5, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void testParkingFull() throws Exception {
+        for (int i = 0; i < 100; i++) {
+            client.enter("CAR-" + i, CarType.SEDAN);
+        }
+        exceptionRule.expect(ExecutionException.class);
+        exceptionRule.expectCause(Matchers.instanceOf(SlotNotFoundException.class));
+        client.enter("ONE-TOO-MANY", CarType.SEDAN).get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testUnknownCar() throws Exception {
+        exceptionRule.expect(ExecutionException.class);
+        exceptionRule.expectCause(Matchers.instanceOf(CarNotFoundException.class));
+        client.leave("UNKNOWN", CarType.SEDAN).get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testSeveralGates() throws Exception {
+        try (GateClient other = GateClient.connect(server.getAddress())) {
+            client.enter("ONE", CarType.SEDAN).get(5, TimeUnit.SECONDS);
+            other.enter("TWO", CarType.SEDAN).get(5, TimeUnit.SECONDS);
+            Assert.assertEquals(98L, (long) other.remainingFreeSlots(CarType.SEDAN).get(5, TimeUnit.SECONDS));
+        }
+    }
+}
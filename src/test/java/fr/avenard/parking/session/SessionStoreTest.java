@@ -0,0 +1,189 @@
+package fr.avenard.parking.session;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+import fr.avenard.parking.Car;
+import fr.avenard.parking.CarType;
+import fr.avenard.parking.Parking;
+import fr.avenard.parking.exception.ParkingException;
+
+/**
+ * Unit tests for {@link SessionStore}.
+ */
+public class SessionStoreTest {
+
+    @Rule
+    public ExpectedException exceptionRule = ExpectedException.none();
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final LocalDateTime EPOCH = LocalDateTime.of(2020, 1, 1, 0, 0);
+    private static final LocalDateTime FAR_FUTURE = LocalDateTime.of(2100, 1, 1, 0, 0);
+
+    Parking parking;
+    SessionStore store;
+
+    @Before
+    public void setUp() throws Exception {
+        store = new SessionStore(folder.getRoot().toPath(), Duration.ofDays(30), 4);
+        parking = new Parking(car -> new BigDecimal("2.50"))
+                .withSlots(CarType.SEDAN, 10)
+                .addListener(store);
+    }
+
+    @Test
+    public void testHotThenWarm() throws ParkingException, IOException {
+        final Car car = new Car("AB-123-CD", CarType.SEDAN);
+        parking.enter(car);
+        Assert.assertEquals(1, store.hotSessions());
+
+        List<ParkingSession> sessions = store.find("AB-123-CD", EPOCH, FAR_FUTURE);
+        Assert.assertEquals(1, sessions.size());
+        Assert.assertFalse(sessions.get(0).isClosed());
+        Assert.assertEquals(car.getParkedAt(), sessions.get(0).getParkedAt());
+
+        parking.leave(car);
+        parking.bill(car);
+        Assert.assertEquals(0, store.hotSessions());
+        Assert.assertEquals(1, store.warmSessions());
+
+        sessions = store.find("AB-123-CD", EPOCH, FAR_FUTURE);
+        Assert.assertEquals(1, sessions.size());
+        Assert.assertTrue(sessions.get(0).isClosed());
+        Assert.assertEquals(new BigDecimal("2.50"), sessions.get(0).getFare());
+        Assert.assertEquals(car.getLeftAt(), sessions.get(0).getLeftAt());
+    }
+
+    @Test
+    public void testDuplicateBill() throws ParkingException, IOException {
+        final Car car = new Car("AB-123-CD", CarType.SEDAN);
+        parking.enter(car);
+        parking.leave(car);
+        parking.bill(car);
+        parking.bill(car); // the customer asks for the bill again
+
+        Assert.assertEquals(1, store.warmSessions());
+        Assert.assertEquals(1, store.find("AB-123-CD", EPOCH, FAR_FUTURE).size());
+
+        parking.enter(car); // a new session of the same car
+        parking.leave(car);
+        parking.bill(car);
+        Assert.assertEquals(2, store.warmSessions());
+    }
+
+    @Test
+    public void testUnbilledSessionsEvicted() throws ParkingException, IOException {
+        final Car unbilled = new Car("AB-123-CD", CarType.SEDAN);
+        final Car parked = new Car("EF-456-GH", CarType.SEDAN);
+        parking.enter(unbilled);
+        parking.enter(parked);
+        parking.leave(unbilled);
+
+        store.withUnbilledTimeout(Duration.ofHours(2)).maintain(LocalDateTime.now().plusHours(1));
+        Assert.assertEquals(2, store.hotSessions());
+
+        store.maintain(LocalDateTime.now().plusHours(3));
+        Assert.assertEquals("the parked car stays", 1, store.hotSessions());
+        Assert.assertEquals(1, store.unbilledSessions());
+        Assert.assertEquals(1, store.find("EF-456-GH", EPOCH, FAR_FUTURE).size());
+
+        parking.bill(unbilled); // too late, the session is not archived
+        Assert.assertEquals(0, store.warmSessions());
+    }
+
+    @Test
+    public void testCompressedBlocks() throws ParkingException, IOException {
+        visit(10);
+        Assert.assertEquals(10, store.warmSessions());
+
+        final List<ParkingSession> sessions = store.find("CAR-7", EPOCH, FAR_FUTURE);
+        Assert.assertEquals(1, sessions.size());
+        Assert.assertEquals("CAR-7", sessions.get(0).getPlate());
+        Assert.assertEquals(CarType.SEDAN, sessions.get(0).getType());
+        Assert.assertTrue(store.find("CAR-7", EPOCH, EPOCH.plusDays(1)).isEmpty());
+    }
+
+    @Test
+    public void testColdTier() throws ParkingException, IOException {
+        visit(10);
+        Assert.assertEquals("nothing old enough", 0, store.maintain());
+
+        Assert.assertEquals(10, store.maintain(LocalDateTime.now().plusDays(31)));
+        Assert.assertEquals(0, store.warmSessions());
+        Assert.assertEquals(10, store.coldSessions());
+        Assert.assertEquals(1, store.find("CAR-2", EPOCH, FAR_FUTURE).size());
+        Assert.assertEquals(1, store.find("CAR-9", EPOCH, FAR_FUTURE).size());
+    }
+
+    @Test
+    public void testColdTierReopened() throws ParkingException, IOException {
+        visit(6);
+        store.close();
+
+        try (SessionStore reopened = new SessionStore(folder.getRoot().toPath(), Duration.ofDays(30), 4)) {
+            Assert.assertEquals(6, reopened.coldSessions());
+            final List<ParkingSession> sessions = reopened.find("CAR-5", EPOCH, FAR_FUTURE);
+            Assert.assertEquals(1, sessions.size());
+            Assert.assertEquals(new BigDecimal("2.50"), sessions.get(0).getFare());
+        }
+    }
+
+    @Test
+    public void testAbsentPlateSkipsBlocks() {
+        final List<SessionBlock> blocks = new ArrayList<>();
+        for (int block = 0; block < 20; block++) {
+            final List<ParkingSession> sessions = new ArrayList<>();
+            for (int i = 0; i < 512; i++) {
+                sessions.add(new ParkingSession("AB-" + block + "-" + i, CarType.SEDAN, EPOCH.plusMinutes(i),
+                        EPOCH.plusMinutes(i + 30), BigDecimal.ONE));
+            }
+            blocks.add(SessionBlock.encode(block, sessions));
+        }
+        Assert.assertTrue(blocks.get(3).mightContain("AB-3-42", Long.MIN_VALUE, Long.MAX_VALUE));
+
+        int searched = 0;
+        for (int plate = 0; plate < 1_000; plate++) {
+            for (SessionBlock block : blocks) {
+                if (block.mightContain("ZZ-" + plate, Long.MIN_VALUE, Long.MAX_VALUE)) {
+                    searched++;
+                }
+            }
+        }
+        Assert.assertTrue("absent plates searched " + searched + " blocks out of 20,000", searched < 400);
+    }
+
+    @Test
+    public void testNegativeUnbilledTimeout() {
+        exceptionRule.expect(IllegalArgumentException.class);
+        exceptionRule.expectMessage("The unbilled timeout must not be negative");
+        store.withUnbilledTimeout(Duration.ofHours(-1));
+    }
+
+    @Test
+    public void testInvalidBlockSize() throws IOException {
+        exceptionRule.expect(IllegalArgumentException.class);
+        exceptionRule.expectMessage("The block size must be positive");
+        new SessionStore(folder.getRoot().toPath(), Duration.ofDays(30), 0);
+    }
+
+    private void visit(final int cars) throws ParkingException {
+        for (int i = 0; i < cars; i++) {
+            final Car car = new Car("CAR-" + i, CarType.SEDAN);
+            parking.enter(car);
+            parking.leave(car);
+            parking.bill(car);
+        }
+    }
+}
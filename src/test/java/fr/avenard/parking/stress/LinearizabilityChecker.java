@@ -0,0 +1,117 @@
+package fr.avenard.parking.stress;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Linearizability checker (Wing and Gong search, with memoization of the visited configurations as in Lowe's variant).
+ * <p>
+ * A history is linearizable if its operations can be ordered so that each one takes effect at once between its
+ * invocation and its response, and the sequential model returns the recorded result for each of them.
+ * The model state is encoded as an int, and a history holds up to 64 operations.
+ */
+final class LinearizabilityChecker {
+
+    private LinearizabilityChecker() {
+    }
+
+    /**
+     * An operation of a history, applied to the sequential model.
+     */
+    interface Operation {
+        /**
+         * @return the logical time of the invocation
+         */
+        long getInvokedAt();
+
+        /**
+         * @return the logical time of the response
+         */
+        long getReturnedAt();
+
+        /**
+         * Apply the operation to the model.
+         *
+         * @param state
+         *         the model state
+         *
+         * @return the next state, or -1 if the model does not return the recorded result
+         */
+        int apply(int state);
+    }
+
+    /**
+     * Check a history against the sequential model.
+     *
+     * @param history
+     *         the operations, completed
+     * @param initialState
+     *         the model state before the first operation
+     *
+     * @return true if the history is linearizable
+     */
+    static boolean isLinearizable(final List<? extends Operation> history, final int initialState) {
+        if (history.size() > Long.SIZE) {
+            throw new IllegalArgumentException("Histories are limited to " + Long.SIZE + " operations");
+        }
+        final long all = history.size() == Long.SIZE ? -1L : (1L << history.size()) - 1;
+        return search(history, 0L, all, initialState, new HashSet<>());
+    }
+
+    private static boolean search(final List<? extends Operation> history, final long linearized, final long all,
+            final int state, final Set<Configuration> visited) {
+        if (linearized == all) {
+            return true;
+        }
+        if (!visited.add(new Configuration(linearized, state))) {
+            return false; // already explored, without success
+        }
+
+        // an operation can take effect first if it was invoked before every pending operation returned
+        long firstReturn = Long.MAX_VALUE;
+        for (int i = 0; i < history.size(); i++) {
+            if ((linearized & (1L << i)) == 0) {
+                firstReturn = Math.min(firstReturn, history.get(i).getReturnedAt());
+            }
+        }
+        for (int i = 0; i < history.size(); i++) {
+            final Operation operation = history.get(i);
+            if ((linearized & (1L << i)) != 0 || operation.getInvokedAt() > firstReturn) {
+                continue;
+            }
+            final int next = operation.apply(state);
+            if (next >= 0 && search(history, linearized | (1L << i), all, next, visited)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Operations already linearized and the model state they lead to.
+     */
+    private static final class Configuration {
+        private final long linearized;
+        private final int state;
+
+        Configuration(final long linearized, final int state) {
+            this.linearized = linearized;
+            this.state = state;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (!(o instanceof Configuration)) {
+                return false;
+            }
+            final Configuration that = (Configuration) o;
+            return this.linearized == that.linearized && this.state == that.state;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(this.linearized) * 31 + this.state;
+        }
+    }
+}
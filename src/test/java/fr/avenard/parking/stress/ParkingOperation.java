@@ -0,0 +1,231 @@
+package fr.avenard.parking.stress;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import fr.avenard.parking.Car;
+import fr.avenard.parking.CarType;
+import fr.avenard.parking.Parking;
+import fr.avenard.parking.ParkingSlot;
+import fr.avenard.parking.exception.CarNotFoundException;
+import fr.avenard.parking.exception.ParkingException;
+import fr.avenard.parking.exception.SlotNotFoundException;
+
+/**
+ * An operation on a {@link Parking} of sedan and electric slots, recorded with its result, and its sequential model.
+ * The even car numbers are sedans, the odd ones electric cars. The model state is the set of parked cars, as a
+ * bitmask of the car numbers.
+ * <p>
+ * An {@link Kind#ENTER_ASYNC} entry does not wait: it returns when its slot is handed over, and a stage chained on
+ * its future runs a follow-up operation, recorded as another operation of the history (see {@link #getStage()}).
+ */
+final class ParkingOperation implements LinearizabilityChecker.Operation {
+    private static final int SEDANS = 0x55555555; // bits of the even car numbers
+
+    enum Kind {
+        ENTER, ENTER_WAITING, ENTER_ASYNC, LEAVE, LEAVE_IN_BATCH, BILL, REMAINING_FREE_SLOTS
+    }
+
+    enum Outcome {
+        OK, NO_SLOT, ALREADY_PARKED, ALREADY_WAITING, NOT_FOUND, STILL_PARKED, UNEXPECTED
+    }
+
+    private final Kind kind;
+    private final int carNumber;
+    private final int slots;
+    private final ParkingOperation stage;
+    private volatile CompletableFuture<Void> staged; // the stage of an asynchronous entry
+    private volatile boolean stageRun;
+    private long invokedAt;
+    private long returnedAt;
+    private Outcome outcome;
+    private long freeSlots;
+
+    /**
+     * Create an operation.
+     *
+     * @param kind
+     *         the parking method called
+     * @param carNumber
+     *         number of the car, plate "CAR-{number}", its parity gives its type
+     * @param slots
+     *         number of slots of each type of the parking
+     * @param stage
+     *         the follow-up operation of an {@link Kind#ENTER_ASYNC} entry, not waiting, null otherwise
+     */
+    ParkingOperation(final Kind kind, final int carNumber, final int slots, final ParkingOperation stage) {
+        if ((kind == Kind.ENTER_ASYNC) != (stage != null)) {
+            throw new IllegalArgumentException("Only the asynchronous entries have a follow-up operation");
+        }
+        this.kind = kind;
+        this.carNumber = carNumber;
+        this.slots = slots;
+        this.stage = stage;
+    }
+
+    /**
+     * @param carNumber
+     *         number of a car
+     *
+     * @return the type of the car
+     */
+    static CarType typeOf(final int carNumber) {
+        return carNumber % 2 == 0 ? CarType.SEDAN : CarType.ELECTRIC_20KW;
+    }
+
+    /**
+     * Call the parking and record the result with the logical invocation and response times.
+     *
+     * @param parking
+     *         the parking under test
+     * @param clock
+     *         logical clock shared by the threads of the history
+     */
+    void run(final Parking parking, final AtomicLong clock) {
+        final Car car = new Car("CAR-" + this.carNumber, typeOf(this.carNumber));
+        this.invokedAt = clock.incrementAndGet();
+        try {
+            switch (this.kind) {
+                case ENTER:
+                    parking.enter(car);
+                    break;
+                case ENTER_WAITING:
+                    parking.enter(car, 1, TimeUnit.MILLISECONDS);
+                    break;
+                case ENTER_ASYNC:
+                    final CompletableFuture<ParkingSlot> slot = parking.enterAsync(car);
+                    if (slot.isCompletedExceptionally()) {
+                        slot.join();
+                    }
+                    this.staged = slot.handle((parkingSlot, e) -> {
+                        this.returnedAt = clock.incrementAndGet(); // the response of the entry
+                        if (e != null) {
+                            this.outcome = e instanceof ParkingException ? outcomeOf((ParkingException) e)
+                                    : Outcome.UNEXPECTED;
+                            return null;
+                        }
+                        this.outcome = Outcome.OK; // the car may have left already, when completed by the common pool
+                        this.stageRun = true;
+                        this.stage.run(parking, clock);
+                        return null;
+                    });
+                    return;
+                case LEAVE:
+                    parking.leave(car);
+                    break;
+                case LEAVE_IN_BATCH:
+                    final ParkingException[] failure = new ParkingException[1];
+                    parking.batch(() -> {
+                        try {
+                            parking.leave(car);
+                        } catch (ParkingException e) {
+                            failure[0] = e;
+                        }
+                    });
+                    if (failure[0] != null) {
+                        throw failure[0];
+                    }
+                    break;
+                case BILL:
+                    parking.bill(car);
+                    break;
+                default:
+                    this.freeSlots = parking.remainingFreeSlots(car.getType());
+            }
+            this.outcome = Outcome.OK;
+        } catch (CompletionException e) {
+            this.outcome = e.getCause() instanceof ParkingException ? outcomeOf((ParkingException) e.getCause())
+                    : Outcome.UNEXPECTED;
+        } catch (ParkingException e) {
+            this.outcome = outcomeOf(e);
+        } catch (InterruptedException | RuntimeException e) {
+            this.outcome = Outcome.UNEXPECTED;
+        }
+        this.returnedAt = clock.incrementAndGet();
+    }
+
+    private static Outcome outcomeOf(final ParkingException e) {
+        if (e instanceof SlotNotFoundException) {
+            return Outcome.NO_SLOT;
+        }
+        if (e instanceof CarNotFoundException) {
+            return Outcome.NOT_FOUND;
+        }
+        return e.getMessage().startsWith("Car is already parked") ? Outcome.ALREADY_PARKED
+                : e.getMessage().startsWith("Car is already waiting") ? Outcome.ALREADY_WAITING
+                : e.getMessage().startsWith("Cars must leave") ? Outcome.STILL_PARKED : Outcome.UNEXPECTED;
+    }
+
+    /**
+     * @return true if the operation is an asynchronous entry still waiting for a slot
+     */
+    boolean isPending() {
+        return this.staged != null && !this.staged.isDone();
+    }
+
+    /**
+     * @return the follow-up operation run by the stage of an asynchronous entry, null if it did not run
+     */
+    ParkingOperation getStage() {
+        return this.stageRun ? this.stage : null;
+    }
+
+    /**
+     * @return the outcome of the operation
+     */
+    Outcome getOutcome() {
+        return this.outcome;
+    }
+
+    @Override
+    public long getInvokedAt() {
+        return this.invokedAt;
+    }
+
+    @Override
+    public long getReturnedAt() {
+        return this.returnedAt;
+    }
+
+    @Override
+    public int apply(final int state) {
+        final int bit = 1 << this.carNumber;
+        final boolean parked = (state & bit) != 0;
+        final int sameType = this.carNumber % 2 == 0 ? SEDANS : ~SEDANS;
+        final boolean full = Integer.bitCount(state & sameType) == this.slots;
+        switch (this.kind) {
+            case ENTER:
+            case ENTER_WAITING:
+            case ENTER_ASYNC:
+                if (parked) {
+                    return this.outcome == Outcome.ALREADY_PARKED ? state : -1;
+                }
+                if (this.outcome == Outcome.ALREADY_WAITING) {
+                    return state; // an asynchronous entry of the car waits
+                }
+                if (full) {
+                    return this.outcome == Outcome.NO_SLOT && this.kind != Kind.ENTER_ASYNC ? state : -1;
+                }
+                return this.outcome == Outcome.OK ? state | bit : -1;
+            case LEAVE:
+            case LEAVE_IN_BATCH:
+                if (!parked) {
+                    return this.outcome == Outcome.NOT_FOUND ? state : -1;
+                }
+                return this.outcome == Outcome.OK ? state & ~bit : -1;
+            case BILL:
+                return this.outcome == (parked ? Outcome.STILL_PARKED : Outcome.OK) ? state : -1;
+            default:
+                return this.outcome == Outcome.OK
+                        && this.freeSlots == this.slots - Integer.bitCount(state & sameType) ? state : -1;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "[" + this.invokedAt + ", " + this.returnedAt + "] " + this.kind + " CAR-" + this.carNumber
+                + (this.kind == Kind.REMAINING_FREE_SLOTS ? " = " + this.freeSlots : "") + " -> " + this.outcome;
+    }
+}
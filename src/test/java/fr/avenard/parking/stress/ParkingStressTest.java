@@ -0,0 +1,245 @@
+package fr.avenard.parking.stress;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntUnaryOperator;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import fr.avenard.parking.Car;
+import fr.avenard.parking.CarType;
+import fr.avenard.parking.Parking;
+import fr.avenard.parking.ParkingSlot;
+import fr.avenard.parking.exception.ParkingException;
+import fr.avenard.parking.stress.ParkingOperation.Kind;
+
+/**
+ * Concurrency stress tests for {@link Parking}: histories recorded from many threads are checked against a
+ * sequential model with the {@link LinearizabilityChecker}. The cars of two types, entering with or without waiting,
+ * exercise the locks of two slot pools and the hand-over of the freed slots.
+ */
+public class ParkingStressTest {
+    private static final int SLOTS = 1; // of each type, so that the entries wait
+    private static final int CARS = 4;
+    private static final int THREADS = 4;
+    private static final int OPERATIONS_PER_THREAD = 4; // with the follow-ups and the drain, 64 operations at most
+    private static final int ROUNDS = 400;
+
+    @Test(timeout = 120_000) // a deadlock between the pools would hang
+    public void testHistoriesAreLinearizable() throws Exception {
+        final Random random = new Random(42);
+        for (int round = 0; round < ROUNDS; round++) {
+            final Parking parking = new Parking(car -> BigDecimal.ONE)
+                    .withSlots(CarType.SEDAN, SLOTS)
+                    .withSlots(CarType.ELECTRIC_20KW, SLOTS);
+            final List<List<ParkingOperation>> threads = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                final List<ParkingOperation> operations = new ArrayList<>();
+                for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                    operations.add(randomOperation(random, true));
+                }
+                threads.add(operations);
+            }
+
+            final List<ParkingOperation> history = record(parking, threads, random.nextLong());
+            Assert.assertTrue("Not linearizable: " + history, LinearizabilityChecker.isLinearizable(history, 0));
+        }
+    }
+
+    @Test(timeout = 120_000)
+    public void testNoSlotLost() throws Exception {
+        final Parking parking = new Parking(car -> BigDecimal.ONE)
+                .withSlots(CarType.SEDAN, SLOTS)
+                .withSlots(CarType.ELECTRIC_20KW, SLOTS);
+        final AtomicInteger failures = new AtomicInteger();
+        final CountDownLatch start = new CountDownLatch(1);
+        final Thread[] gates = new Thread[THREADS];
+        for (int t = 0; t < THREADS; t++) {
+            final int gate = t;
+            gates[t] = new Thread(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < 2_000; i++) {
+                        final Car car = new Car("GATE-" + gate + "-" + i, ParkingOperation.typeOf(i));
+                        try {
+                            if (i % 4 < 2) {
+                                parking.enter(car);
+                            } else if (i % 4 == 2) {
+                                parking.enter(car, 1, TimeUnit.MILLISECONDS);
+                            } else if (!enterAsync(parking, car)) {
+                                continue; // cancelled, or left at once if the slot was handed over meanwhile
+                            }
+                        } catch (ParkingException e) {
+                            continue; // the parking is full
+                        }
+                        Thread.yield();
+                        parking.leave(new Car(car.getPlate(), car.getType()));
+                        parking.bill(car);
+                    }
+                } catch (InterruptedException | ExecutionException | ParkingException e) {
+                    failures.incrementAndGet();
+                }
+            });
+            gates[t].start();
+        }
+        start.countDown();
+        for (Thread gate : gates) {
+            gate.join();
+        }
+
+        Assert.assertEquals(0, failures.get());
+        Assert.assertEquals(SLOTS, parking.remainingFreeSlots(CarType.SEDAN));
+        Assert.assertEquals(SLOTS, parking.remainingFreeSlots(CarType.ELECTRIC_20KW));
+    }
+
+    @Test
+    public void testCheckerRejectsStaleRead() {
+        // a register: write 1 returns before the read starts, but the read returns the initial value
+        final List<LinearizabilityChecker.Operation> history = Arrays.asList(
+                operation(1, 2, state -> 1),
+                operation(3, 4, state -> state == 0 ? 0 : -1));
+        Assert.assertFalse(LinearizabilityChecker.isLinearizable(history, 0));
+
+        // the same read, overlapping the write, may take effect before it
+        final List<LinearizabilityChecker.Operation> overlapping = Arrays.asList(
+                operation(1, 4, state -> 1),
+                operation(2, 3, state -> state == 0 ? 0 : -1));
+        Assert.assertTrue(LinearizabilityChecker.isLinearizable(overlapping, 0));
+    }
+
+    /**
+     * Enter a car asynchronously, waiting for its slot 1 ms at most.
+     *
+     * @param parking
+     *         the parking under test
+     * @param car
+     *         the car entering the parking
+     *
+     * @return true if the car parked, false if its entry was cancelled
+     */
+    private static boolean enterAsync(final Parking parking, final Car car) throws InterruptedException,
+            ExecutionException {
+        final CompletableFuture<ParkingSlot> slot = parking.enterAsync(car);
+        try {
+            slot.get(1, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (TimeoutException e) {
+            return !slot.cancel(false); // not cancelled: the car has just parked
+        }
+    }
+
+    /**
+     * Create a random operation on one of the cars.
+     *
+     * @param random
+     *         the random generator of the round
+     * @param waiting
+     *         true to allow the entries waiting for a slot
+     *
+     * @return the operation, an asynchronous entry with a random follow-up operation not waiting
+     */
+    private static ParkingOperation randomOperation(final Random random, final boolean waiting) {
+        final Kind[] kinds = waiting ? Kind.values()
+                : new Kind[] { Kind.ENTER, Kind.LEAVE, Kind.LEAVE_IN_BATCH, Kind.BILL, Kind.REMAINING_FREE_SLOTS };
+        final Kind kind = kinds[random.nextInt(kinds.length)];
+        final int carNumber = random.nextInt(CARS);
+        if (kind != Kind.ENTER_ASYNC) {
+            return new ParkingOperation(kind, carNumber, SLOTS, null);
+        }
+        final ParkingOperation stage = random.nextBoolean() ? new ParkingOperation(Kind.LEAVE, carNumber, SLOTS, null)
+                : randomOperation(random, false);
+        return new ParkingOperation(kind, carNumber, SLOTS, stage);
+    }
+
+    /**
+     * Run the operations of each thread on the parking, all threads started at once, then let the parked cars leave
+     * until every asynchronous entry has parked and run its follow-up operation.
+     *
+     * @param parking
+     *         the parking under test
+     * @param threads
+     *         the operations of each thread, in program order
+     * @param seed
+     *         seed of the yields between operations
+     *
+     * @return the completed history, with the follow-up operations and the successful drain leaves
+     */
+    private static List<ParkingOperation> record(final Parking parking, final List<List<ParkingOperation>> threads,
+            final long seed) throws InterruptedException {
+        final AtomicLong clock = new AtomicLong();
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads.size(); t++) {
+            final List<ParkingOperation> operations = threads.get(t);
+            final Random random = new Random(seed + t);
+            workers.add(new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (ParkingOperation operation : operations) {
+                    if (random.nextBoolean()) {
+                        Thread.yield(); // shuffle the interleavings, even on a single core
+                    }
+                    operation.run(parking, clock);
+                }
+            }));
+        }
+        workers.forEach(Thread::start);
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        final List<ParkingOperation> history = new ArrayList<>();
+        threads.forEach(history::addAll);
+        while (history.stream().anyMatch(ParkingOperation::isPending)) {
+            for (int carNumber = 0; carNumber < CARS; carNumber++) {
+                final ParkingOperation leave = new ParkingOperation(Kind.LEAVE, carNumber, SLOTS, null);
+                leave.run(parking, clock);
+                if (leave.getOutcome() == ParkingOperation.Outcome.OK) {
+                    history.add(leave); // the other drain leaves are concurrent with the follow-up operations
+                }
+            }
+            Thread.sleep(1);
+        }
+        threads.forEach(operations -> operations.stream()
+                .map(ParkingOperation::getStage)
+                .filter(Objects::nonNull)
+                .forEach(history::add));
+        return history;
+    }
+
+    private static LinearizabilityChecker.Operation operation(final long invokedAt, final long returnedAt,
+            final IntUnaryOperator model) {
+        return new LinearizabilityChecker.Operation() {
+            @Override
+            public long getInvokedAt() {
+                return invokedAt;
+            }
+
+            @Override
+            public long getReturnedAt() {
+                return returnedAt;
+            }
+
+            @Override
+            public int apply(final int state) {
+                return model.applyAsInt(state);
+            }
+        };
+    }
+}